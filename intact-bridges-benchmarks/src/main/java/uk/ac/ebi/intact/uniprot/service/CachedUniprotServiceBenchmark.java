@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit and miss paths of CachedUniprotService in front of a service handing out copies of a protein built from
+ * MockUniProtEntries, under the AC they are asked for.
+ * <p/>
+ * The miss path includes the cost of the underlying service, measured alone by the baseline.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CachedUniprotServiceBenchmark {
+
+    private static final RetrievalOptions SEQUENCE_ONLY = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) );
+
+    /**
+     * Hands out copies of a template protein, renamed after the AC asked for.
+     */
+    static class TemplateUniprotService extends DummyUniprotService {
+
+        private final ProteinCodec codec = new ProteinCodec();
+
+        private final byte[] template;
+
+        TemplateUniprotService() {
+            UniprotProtein protein = new SimpleUniprotRemoteService().buildUniprotProtein( MockUniProtEntries.build_P60952(), true );
+            try {
+                template = codec.serialize( protein );
+            } catch ( IOException e ) {
+                throw new IllegalStateException( "Could not encode the template protein", e );
+            }
+        }
+
+        @Override
+        public Collection<UniprotProtein> retrieve( String ac ) {
+            try {
+                UniprotProtein protein = codec.deserialize( template );
+                protein.setPrimaryAc( ac );
+                protein.setId( ac + "_BENCH" );
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( 1 );
+                proteins.add( protein );
+                return proteins;
+            } catch ( IOException e ) {
+                throw new IllegalStateException( "Could not decode the template protein", e );
+            }
+        }
+    }
+
+    private TemplateUniprotService remote;
+
+    private CachedUniprotService service;
+
+    private long missCounter;
+
+    @Setup( Level.Iteration )
+    public void setUp() {
+        remote = new TemplateUniprotService();
+        service = new CachedUniprotService( remote );
+        service.retrieve( "P60952" );
+        service.retrieve( "Q00001", SEQUENCE_ONLY );
+    }
+
+    @TearDown( Level.Iteration )
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> hit() {
+        return service.retrieve( "P60952" );
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> hit_withoutSpliceVariants() {
+        return service.retrieve( "P60952", false );
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> hit_sequenceOnly() {
+        return service.retrieve( "Q00001", SEQUENCE_ONLY );
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> hit_sequenceOnlyFromFull() {
+        return service.retrieve( "P60952", SEQUENCE_ONLY );
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> miss() {
+        return service.retrieve( "Q" + ( missCounter++ ) );
+    }
+
+    @Benchmark
+    public Collection<UniprotProtein> missBaseline() {
+        return remote.retrieve( "Q" + ( missCounter++ ) );
+    }
+}
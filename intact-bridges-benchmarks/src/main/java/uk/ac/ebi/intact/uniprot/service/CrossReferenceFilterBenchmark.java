@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of cross references by DefaultCrossReferenceFilter and by its compiled form, over database names as UniProt
+ * spells them, selected or not. The byType benchmarks make one pass over all the kraken database types, as the
+ * conversion of cross references asks for them.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class CrossReferenceFilterBenchmark {
+
+    static final String[] DATABASES = {
+            "GO", "InterPro", "PDB", "Ensembl", "RefSeq", "Reactome", "FlyBase", "EnsemblMetazoa",
+            "EMBL", "Pfam", "PROSITE", "SMART", "PRINTS", "KEGG", "PIR", "PhosphoSitePlus"
+    };
+
+    private DefaultCrossReferenceFilter filter;
+
+    private CompiledCrossReferenceFilter compiledFilter;
+
+    private DatabaseType[] types;
+
+    @Setup
+    public void setUp() {
+        filter = new DefaultCrossReferenceFilter();
+        compiledFilter = CompiledCrossReferenceFilter.compile( filter );
+        types = DatabaseType.values();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 16 )
+    public void isSelected( Blackhole blackhole ) {
+        for ( String database : DATABASES ) {
+            blackhole.consume( filter.isSelected( database ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 16 )
+    public void isSelected_compiled( Blackhole blackhole ) {
+        for ( String database : DATABASES ) {
+            blackhole.consume( compiledFilter.isSelected( database ) );
+        }
+    }
+
+    @Benchmark
+    public void byType( Blackhole blackhole ) {
+        for ( DatabaseType type : types ) {
+            blackhole.consume( filter.isSelected( type.getName() ) );
+        }
+    }
+
+    @Benchmark
+    public void byType_compiled( Blackhole blackhole ) {
+        for ( DatabaseType type : types ) {
+            blackhole.consume( compiledFilter.isSelected( type ) );
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification of identifiers by IdentifierChecker, over a mix of the identifiers the services are given.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class IdentifierCheckerBenchmark {
+
+    /**
+     * Proteins, splice variants, feature chains, bare PRO_ ids and identifiers that are none of them.
+     */
+    static final String[] IDENTIFIERS = {
+            "P60952", "Q9VGX3", "A0A024R161", "CDC42_HUMAN",
+            "P60952-1", "Q9VGX3-2", "A0A024R161-3",
+            "P60952-PRO_0000030424", "Q9VGX3-PRO_0000012345",
+            "PRO_0000030424",
+            "EBI-1234", "", "not an identifier at all"
+    };
+
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void lookupType( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            blackhole.consume( NegativeResultCache.LookupType.of( identifier ) );
+        }
+    }
+
+    /**
+     * Classification as the services did it before classify: upper casing, then up to three patterns.
+     */
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void classify_patterns( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            String upperCaseAc = identifier.toUpperCase();
+            if ( IdentifierChecker.isSpliceVariantId( upperCaseAc ) ) {
+                blackhole.consume( IdentifierChecker.IdentifierType.SPLICE_VARIANT );
+            } else if ( IdentifierChecker.isFeatureChainId( upperCaseAc ) ) {
+                blackhole.consume( IdentifierChecker.IdentifierType.FEATURE_CHAIN );
+            } else if ( IdentifierChecker.isProteinId( upperCaseAc ) ) {
+                blackhole.consume( IdentifierChecker.IdentifierType.PROTEIN );
+            } else {
+                blackhole.consume( IdentifierChecker.IdentifierType.UNKNOWN );
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void classify( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            blackhole.consume( IdentifierChecker.classify( identifier ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void isProteinId( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            blackhole.consume( IdentifierChecker.isProteinId( identifier ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void isSpliceVariantId( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            blackhole.consume( IdentifierChecker.isSpliceVariantId( identifier ) );
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( 13 )
+    public void isFeatureChainId( Blackhole blackhole ) {
+        for ( String identifier : IDENTIFIERS ) {
+            blackhole.consume( IdentifierChecker.isFeatureChainId( identifier ) );
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of UniProt entries into UniprotProteins by SimpleUniprotRemoteService, as a whole and step by step.
+ * <p/>
+ * The entries come from MockUniProtEntries, none of their isoforms is EXTERNAL so UniProt is never queried.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ProteinConversionBenchmark {
+
+    private static final RetrievalOptions LAZY_CROSS_REFERENCES = RetrievalOptions.FULL.withLazyCrossReferences( true );
+
+    private static final RetrievalOptions SEQUENCE_AND_ORGANISM =
+            RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE, UniprotField.ORGANISM ) );
+
+    private static final RetrievalOptions SEQUENCE_ONLY = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) );
+
+    @Param( {"P60952", "Q9VGX3"} )
+    public String entryAc;
+
+    private SimpleUniprotRemoteService service;
+
+    private UniProtEntry entry;
+
+    private Organism organism;
+
+    private Collection<DatabaseCrossReference> crossReferences;
+
+    @Setup
+    public void setUp() {
+        service = new SimpleUniprotRemoteService();
+        entry = "P60952".equals( entryAc ) ? MockUniProtEntries.build_P60952() : MockUniProtEntries.build_Q9VGX3();
+        organism = service.buildUniprotProtein( entry, false ).getOrganism();
+        crossReferences = entry.getDatabaseCrossReferences();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public UniprotProtein buildUniprotProtein() {
+        return service.buildUniprotProtein( entry, true );
+    }
+
+    @Benchmark
+    public UniprotProtein buildUniprotProtein_withoutSpliceVariants() {
+        return service.buildUniprotProtein( entry, false );
+    }
+
+    @Benchmark
+    public UniprotProtein buildUniprotProtein_lazyCrossReferences() {
+        return service.buildUniprotProtein( entry, true, new IsoformResolutionCache(), LAZY_CROSS_REFERENCES );
+    }
+
+    @Benchmark
+    public UniprotProtein buildUniprotProtein_sequenceAndOrganism() {
+        return service.buildUniprotProtein( entry, true, new IsoformResolutionCache(), SEQUENCE_AND_ORGANISM );
+    }
+
+    @Benchmark
+    public UniprotProtein buildUniprotProtein_sequenceOnly() {
+        return service.buildUniprotProtein( entry, true, new IsoformResolutionCache(), SEQUENCE_ONLY );
+    }
+
+    @Benchmark
+    public UniprotProtein processCrossReference() {
+        UniprotProtein protein = new UniprotProtein( entryAc, entryAc, organism, null );
+        service.processCrossReference( entry, protein );
+        return protein;
+    }
+
+    @Benchmark
+    public Collection<UniprotXref> convertCrossReferenceToUniprotXref() {
+        return service.convertCrossReferenceToUniprotXref( crossReferences );
+    }
+
+    @Benchmark
+    public List<UniprotSpliceVariant> findSpliceVariants() {
+        return service.findSpliceVariants( entry, organism, new IsoformResolutionCache() );
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.model;
+
+/**
+ * Builds the cross references of a protein and of its splice variants the first time they are asked for.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public interface CrossReferenceResolver {
+
+    /**
+     * Adds the cross references to the protein and to its splice variants, then detaches itself from them. Once done,
+     * further calls do nothing. It is called by the getters of the cross references, also while it runs.
+     */
+    void resolve();
+}
@@ -5,6 +5,8 @@
  */
 package uk.ac.ebi.intact.uniprot.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -89,6 +91,11 @@ public class UniprotProtein implements Serializable, UniprotProteinLike {
      */
     private Collection<UniprotXref> crossReferences;
 
+    /**
+     * Builds the cross references on first access when they are materialized lazily, null once they are built.
+     */
+    private transient volatile CrossReferenceResolver crossReferenceResolver;
+
     /**
      * Collection of Splice variant.
      */
@@ -346,6 +353,10 @@ public class UniprotProtein implements Serializable, UniprotProteinLike {
      * @return non null collection of cross references.
      */
     public Collection<UniprotXref> getCrossReferences() {
+        CrossReferenceResolver resolver = crossReferenceResolver;
+        if ( resolver != null ) {
+            resolver.resolve();
+        }
         if ( crossReferences == null ) {
             crossReferences = new ArrayList<UniprotXref>();
         }
@@ -504,6 +515,30 @@ public class UniprotProtein implements Serializable, UniprotProteinLike {
         return source;
     }
     
+    /**
+     * Sets what builds the cross references of this protein and of its splice variants on first access.
+     *
+     * @param crossReferenceResolver the resolver, null once the cross references are built.
+     */
+    public void setCrossReferenceResolver( CrossReferenceResolver crossReferenceResolver ) {
+        this.crossReferenceResolver = crossReferenceResolver;
+    }
+
+    /**
+     * @return true if the cross references are still to be built on first access.
+     */
+    public boolean hasUnresolvedCrossReferences() {
+        return crossReferenceResolver != null;
+    }
+
+    /**
+     * Builds the cross references left to be built lazily, as the resolver is not serialized.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        getCrossReferences();
+        out.defaultWriteObject();
+    }
+
     /////////////////////////
     // Object's override
 
@@ -1,5 +1,7 @@
 package uk.ac.ebi.intact.uniprot.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -17,10 +19,17 @@ public abstract class UniprotProteinTranscriptImpl implements UniprotProteinTran
     private String id;
 
     /**
-     * Sequence of the protein transcript.
+     * Sequence of the protein transcript, built on first access when it is a view over a part of another sequence.
      */
     private String sequence;
 
+    /**
+     * When the sequence is a view over a part of another sequence: the sequence it is part of, and where.
+     */
+    private String sequenceSource;
+    private int sequenceBegin;
+    private int sequenceEnd;
+
     /**
      * primaryAc of the protein transcript.
      */
@@ -48,6 +57,10 @@ public abstract class UniprotProteinTranscriptImpl implements UniprotProteinTran
      */
     private Collection<UniprotXref> crossReferences;
 
+    /**
+     * Builds the cross references on first access when they are materialized lazily, null once they are built.
+     */
+    private transient volatile CrossReferenceResolver crossReferenceResolver;
 
     public UniprotProteinTranscriptImpl(String primaryAc, Organism organism, String sequence){
         this.id = primaryAc;
@@ -75,11 +88,39 @@ public abstract class UniprotProteinTranscriptImpl implements UniprotProteinTran
     }
 
     public String getSequence() {
-        return sequence;
+        String built = sequence;
+        if ( built == null && sequenceSource != null ) {
+            // two threads may both build it, each gets an equal immutable string
+            built = sequenceSource.substring( sequenceBegin, sequenceEnd );
+            sequence = built;
+        }
+        return built;
     }
 
     public void setSequence(String sequence) {
         this.sequence = sequence;
+        this.sequenceSource = null;
+    }
+
+    /**
+     * Sets the sequence as a part of another sequence, typically the one of the master protein. Only a reference to the
+     * other sequence is kept until getSequence() is first called, the part is then built once and kept.
+     *
+     * @param source     the sequence this sequence is part of.
+     * @param beginIndex the beginning index in source, inclusive.
+     * @param endIndex   the ending index in source, exclusive.
+     */
+    public void setSequence(String source, int beginIndex, int endIndex) {
+        if ( source == null ) {
+            throw new IllegalArgumentException( "The source sequence must not be null." );
+        }
+        if ( beginIndex < 0 || endIndex > source.length() || beginIndex > endIndex ) {
+            throw new IllegalArgumentException( "Invalid part [" + beginIndex + ", " + endIndex + "[ of a sequence of length " + source.length() );
+        }
+        this.sequence = null;
+        this.sequenceSource = source;
+        this.sequenceBegin = beginIndex;
+        this.sequenceEnd = endIndex;
     }
 
     public Organism getOrganism() {
@@ -127,6 +168,10 @@ public abstract class UniprotProteinTranscriptImpl implements UniprotProteinTran
     }
 
     public Collection<UniprotXref> getCrossReferences() {
+        CrossReferenceResolver resolver = crossReferenceResolver;
+        if ( resolver != null ) {
+            resolver.resolve();
+        }
         if ( crossReferences == null ) {
             crossReferences = new ArrayList<UniprotXref>();
         }
@@ -134,9 +179,31 @@ public abstract class UniprotProteinTranscriptImpl implements UniprotProteinTran
     }
 
     public void setCrossReferences(Collection<UniprotXref> crossReferences) {
+        CrossReferenceResolver resolver = crossReferenceResolver;
+        if ( resolver != null ) {
+            resolver.resolve();
+        }
         this.crossReferences = crossReferences;
     }
 
+    /**
+     * Sets what builds the cross references of this transcript, along with the ones of its master protein, on first
+     * access.
+     *
+     * @param crossReferenceResolver the resolver, null once the cross references are built.
+     */
+    public void setCrossReferenceResolver( CrossReferenceResolver crossReferenceResolver ) {
+        this.crossReferenceResolver = crossReferenceResolver;
+    }
+
+    /**
+     * Builds the cross references left to be built lazily, as the resolver is not serialized.
+     */
+    private void writeObject( ObjectOutputStream out ) throws IOException {
+        getCrossReferences();
+        out.defaultWriteObject();
+    }
+
     @Override
     public UniprotProtein getMasterProtein() {
         return masterProtein;
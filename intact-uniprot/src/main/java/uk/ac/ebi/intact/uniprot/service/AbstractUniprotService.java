@@ -7,12 +7,16 @@ package uk.ac.ebi.intact.uniprot.service;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.Organism;
 import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
 import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -36,15 +40,37 @@ public abstract class AbstractUniprotService implements UniprotService {
     protected static final String CHAIN_SEPARATOR = "PRO_";
 
     /**
-     * Holds error messages accumulated during protein retreival.
+     * Number of ACs searched at once by retrieveIncrementally, unless the service says otherwise.
      */
-    private Map<String, UniprotServiceReport> errors = new HashMap<String, UniprotServiceReport>();
+    public static final int DEFAULT_INCREMENTAL_BATCH_SIZE = 50;
+
+    /**
+     * Number of reports kept by getErrors() unless the service says otherwise.
+     */
+    public static final int DEFAULT_MAX_ERRORS = 10000;
+
+    /**
+     * Result of the call running with a report on the current thread, if any. It is shared by all the services so
+     * that the errors met by an underlying service reach the call that reached it.
+     */
+    private static final ThreadLocal<UniprotServiceResult> callResult = new ThreadLocal<UniprotServiceResult>();
+
+    /**
+     * Holds error messages accumulated during protein retreival, by calls made without a report. It can be written by
+     * several threads at once.
+     */
+    private final BoundedErrorMap errors = new BoundedErrorMap( DEFAULT_MAX_ERRORS );
 
     /**
      * Defines how should the cross references be selected.
      */
     private CrossReferenceFilter crossReferenceFilter;
 
+    /**
+     * The cross reference filter compiled on first use, compiled again once another filter is set.
+     */
+    private volatile CompiledCrossReferenceFilter compiledCrossReferenceFilter;
+
     public AbstractUniprotService(){
         this.crossReferenceFilter = new DefaultCrossReferenceFilter();
     }
@@ -53,6 +79,10 @@ public abstract class AbstractUniprotService implements UniprotService {
         this.crossReferenceFilter = filter != null ? filter : new DefaultCrossReferenceFilter();
     }
 
+    /**
+     * @return the most recent errors met by the calls made without a report, the oldest ones are dropped once the
+     * maximum number of errors is reached.
+     */
     public Map<String, UniprotServiceReport> getErrors() {
         return errors;
     }
@@ -61,6 +91,127 @@ public abstract class AbstractUniprotService implements UniprotService {
         errors.clear();
     }
 
+    /**
+     * @param maxErrors the number of reports getErrors() may hold.
+     */
+    public void setMaxErrors( int maxErrors ) {
+        errors.setMaxSize( maxErrors );
+    }
+
+    public int getMaxErrors() {
+        return errors.getMaxSize();
+    }
+
+    /**
+     * @return number of reports dropped from getErrors() to make room for newer ones.
+     */
+    public int getDroppedErrorCount() {
+        return errors.getDroppedCount();
+    }
+
+    /**
+     * Runs retrieve in a report of its own: the errors met on the calling thread, by this service or the services it
+     * relies on, go to the result instead of getErrors().
+     */
+    public UniprotServiceResult retrieveWithReport( Collection<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        UniprotServiceResult result = new UniprotServiceResult();
+        UniprotServiceResult outer = enterReport( result );
+        try {
+            addProteins( result, acs, retrieve( acs, processSpliceVars ) );
+        } finally {
+            exitReport( outer );
+        }
+        return result;
+    }
+
+    /**
+     * Runs retrieve in a report of its own: the errors met on the calling thread, by this service or the services it
+     * relies on, go to the result instead of getErrors().
+     */
+    public UniprotServiceResult retrieveWithReport( Collection<String> acs, RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        UniprotServiceResult result = new UniprotServiceResult();
+        UniprotServiceResult outer = enterReport( result );
+        try {
+            addProteins( result, acs, retrieve( acs, options ) );
+        } finally {
+            exitReport( outer );
+        }
+        return result;
+    }
+
+    private static void addProteins( UniprotServiceResult result, Collection<String> acs,
+                                     Map<String, Collection<UniprotProtein>> proteins ) {
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> found = proteins.get( ac );
+            result.addProteins( ac, found != null ? found : new ArrayList<UniprotProtein>() );
+        }
+    }
+
+    /**
+     * Sends the errors met on the current thread to the given result until exitReport is called.
+     *
+     * @param result the result of the call.
+     *
+     * @return the result of the enclosing call, to give back to exitReport.
+     */
+    protected static UniprotServiceResult enterReport( UniprotServiceResult result ) {
+        if ( result == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotServiceResult." );
+        }
+        UniprotServiceResult outer = callResult.get();
+        callResult.set( result );
+        return outer;
+    }
+
+    /**
+     * Sends the errors met on the current thread back to the result of the enclosing call, or to getErrors().
+     *
+     * @param outer the result enterReport returned.
+     */
+    protected static void exitReport( UniprotServiceResult outer ) {
+        if ( outer == null ) {
+            callResult.remove();
+        } else {
+            callResult.set( outer );
+        }
+    }
+
+    /**
+     * @return true if the errors met on the current thread go to the result of a call.
+     */
+    protected static boolean isReporting() {
+        return callResult.get() != null;
+    }
+
+    public Iterator<UniprotRetrievalResult> retrieveIncrementally( Iterable<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of UniProt ACs." );
+        }
+        return new BatchRetrievalIterator( this, acs.iterator(), getIncrementalBatchSize(), processSpliceVars );
+    }
+
+    /**
+     * @return the number of ACs searched at once by retrieveIncrementally.
+     */
+    protected int getIncrementalBatchSize() {
+        return DEFAULT_INCREMENTAL_BATCH_SIZE;
+    }
+
+    /**
+     * Reports a problem met with an AC, to the result of the call running on the current thread if it has one, to
+     * getErrors() otherwise.
+     */
     public void addError( String ac, UniprotServiceReport report ) {
         if( ac == null ) {
             throw new IllegalArgumentException( "You must give a non null UniProt AC." );
@@ -70,16 +221,26 @@ public abstract class AbstractUniprotService implements UniprotService {
             throw new IllegalArgumentException( "You must give a non null Report." );
         }
 
-        if( errors.containsKey( ac ) ) {
-            log.warn( "Overwriting existing report for UniProt AC: " + ac );
+        UniprotServiceResult result = callResult.get();
+        if( result != null ) {
+            result.addError( ac, report );
+            return;
         }
 
-        errors.put( ac, report );
+        if( errors.put( ac, report ) != null ) {
+            log.warn( "Overwriting existing report for UniProt AC: " + ac );
+        }
     }
 
     ///////////////////////////
     // Strategies
 
+    /**
+     * Sets the filter selecting the cross references. It is compiled when proteins are first built with it: changes
+     * made to the filter afterwards are only seen once it is set again.
+     *
+     * @param crossReferenceFilter the filter, null if cross references are not filtered.
+     */
     public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
         this.crossReferenceFilter = crossReferenceFilter;
     }
@@ -88,6 +249,152 @@ public abstract class AbstractUniprotService implements UniprotService {
         return crossReferenceFilter;
     }
 
+    /**
+     * @return the cross reference filter as compiled when it was set, null if cross references are not filtered.
+     */
+    protected CompiledCrossReferenceFilter getCompiledCrossReferenceSelector() {
+        CrossReferenceFilter filter = crossReferenceFilter;
+        if ( filter == null ) {
+            return null;
+        }
+        CompiledCrossReferenceFilter compiled = compiledCrossReferenceFilter;
+        if ( compiled == null || !compiled.isCompiledFrom( filter ) ) {
+            compiled = CompiledCrossReferenceFilter.compile( filter );
+            compiledCrossReferenceFilter = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Turns a protein built with splice variants into the protein built without them: the splice variants and feature
+     * chains are dropped, and the cross references of the entry given to the splice variants go back to the protein.
+     * <p/>
+     * The cross references the EXTERNAL isoforms got from their parent entries are dropped with them, along with the
+     * ones of the entry itself naming an isoform of another entry, which cannot be told apart.
+     */
+    protected static void removeSpliceVariants( UniprotProtein protein ) {
+        for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+            for ( UniprotXref xref : spliceVariant.getCrossReferences() ) {
+                if ( isOfEntry( xref, protein ) && !protein.getCrossReferences().contains( xref ) ) {
+                    protein.getCrossReferences().add( xref );
+                }
+            }
+        }
+        protein.getSpliceVariants().clear();
+        protein.getFeatureChains().clear();
+    }
+
+    /**
+     * @return true unless the cross reference is about an isoform whose id does not start with an AC of the protein.
+     */
+    private static boolean isOfEntry( UniprotXref xref, UniprotProtein protein ) {
+        String isoformId = xref.getIsoformId();
+        if ( isoformId == null ) {
+            return true;
+        }
+        int index = isoformId.indexOf( '-' );
+        String ac = ( index == -1 ? isoformId : isoformId.substring( 0, index ) ).trim();
+        if ( ac.equalsIgnoreCase( protein.getPrimaryAc() ) ) {
+            return true;
+        }
+        for ( String secondaryAc : protein.getSecondaryAcs() ) {
+            if ( ac.equalsIgnoreCase( secondaryAc ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asks another service for proteins. The options the retrieve flag stands for are asked with the flag, so that
+     * the service builds them the way it always did.
+     */
+    protected static Collection<UniprotProtein> retrieveFrom( UniprotService service, String ac,
+                                                              RetrievalOptions options ) {
+        if ( isFlagOptions( options ) ) {
+            return service.retrieve( ac, options.isProcessSpliceVariants() );
+        }
+        return service.retrieve( ac, options );
+    }
+
+    /**
+     * Asks another service for a set of proteins, the options the retrieve flag stands for are asked with the flag.
+     */
+    protected static Map<String, Collection<UniprotProtein>> retrieveFrom( UniprotService service,
+                                                                          Collection<String> acs,
+                                                                          RetrievalOptions options ) {
+        if ( isFlagOptions( options ) ) {
+            return service.retrieve( acs, options.isProcessSpliceVariants() );
+        }
+        return service.retrieve( acs, options );
+    }
+
+    /**
+     * @return true if the options are the ones the retrieve flag stands for.
+     */
+    protected static boolean isFlagOptions( RetrievalOptions options ) {
+        return options.equals( RetrievalOptions.FULL ) || options.equals( RetrievalOptions.NO_SPLICE_VARIANTS );
+    }
+
+    /**
+     * Turns a protein built with every part of its entry into the protein built with the given options: the parts that
+     * were not asked for are dropped, the organism is reduced to its taxid. As when the splice variants are not built,
+     * the cross references given to the splice variants go back to the protein when the splice variants are dropped.
+     *
+     * @param protein the protein, changed in place.
+     * @param options the parts of the entry to keep.
+     */
+    protected static void project( UniprotProtein protein, RetrievalOptions options ) {
+        if ( !options.includes( UniprotField.SPLICE_VARIANTS ) && !options.includes( UniprotField.FEATURE_CHAINS ) ) {
+            removeSpliceVariants( protein );
+        } else if ( !options.includes( UniprotField.SPLICE_VARIANTS ) ) {
+            Collection<UniprotFeatureChain> chains = new ArrayList<UniprotFeatureChain>( protein.getFeatureChains() );
+            removeSpliceVariants( protein );
+            protein.getFeatureChains().addAll( chains );
+        } else if ( !options.includes( UniprotField.FEATURE_CHAINS ) ) {
+            protein.getFeatureChains().clear();
+        }
+
+        if ( !options.includes( UniprotField.XREFS ) ) {
+            protein.getCrossReferences().clear();
+            for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+                spliceVariant.getCrossReferences().clear();
+            }
+        }
+        if ( !options.includes( UniprotField.COMMENTS ) ) {
+            protein.getFunctions().clear();
+            protein.getDiseases().clear();
+        }
+        if ( !options.includes( UniprotField.NAMES ) ) {
+            protein.getGenes().clear();
+            protein.getOrfs().clear();
+            protein.getSynomyms().clear();
+            protein.getLocuses().clear();
+        }
+        if ( !options.includes( UniprotField.KEYWORDS ) ) {
+            protein.getKeywords().clear();
+        }
+        if ( !options.includes( UniprotField.SEQUENCE ) ) {
+            protein.setSequence( null );
+        }
+        if ( !options.includes( UniprotField.ORGANISM ) && protein.getOrganism() != null ) {
+            Organism organism = protein.getOrganism();
+            Organism taxid = new Organism( organism.getTaxid() );
+            protein.setOrganism( taxid );
+            // the transcripts are built with the organism of their protein
+            for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+                if ( spliceVariant.getOrganism() == organism ) {
+                    spliceVariant.setOrganism( taxid );
+                }
+            }
+            for ( UniprotFeatureChain chain : protein.getFeatureChains() ) {
+                if ( chain.getOrganism() == organism ) {
+                    chain.setOrganism( taxid );
+                }
+            }
+        }
+    }
+
     public UniprotSpliceVariant retrieveUniprotSpliceVariant( UniprotProtein uniProtEntry, String ac) {
 
         if (uniProtEntry != null && ac != null){
@@ -107,15 +414,11 @@ public abstract class AbstractUniprotService implements UniprotService {
     public UniprotFeatureChain retrieveUniprotFeatureChain( UniprotProtein uniProtEntry, String ac) {
 
         if (uniProtEntry != null && ac != null){
-            for (UniprotFeatureChain fc : uniProtEntry.getFeatureChains()){
-                String acFixed = ac;
+            // if not of type primaryAc-PRO_xxxxx, the feature chain ac is the primary ac of the entry followed by ac
+            String primaryAc = ac.indexOf('-') == -1 ? String.valueOf(uniProtEntry.getPrimaryAc()) : null;
 
-                // if not of type primaryAc-PRO_xxxxx, it is not a feature chain. we have to build the feature chain ac
-                if (ac.indexOf("-") == -1){
-                    acFixed = uniProtEntry.getPrimaryAc() + "-" + ac;
-                }
-                
-                if (acFixed.equals(fc.getPrimaryAc())){
+            for (UniprotFeatureChain fc : uniProtEntry.getFeatureChains()){
+                if (isFeatureChainAc(fc.getPrimaryAc(), primaryAc, ac)){
                     return fc;
                 }
             }
@@ -123,4 +426,27 @@ public abstract class AbstractUniprotService implements UniprotService {
 
         return null;
     }
+
+    /**
+     * Compares the AC of a feature chain with primaryAc-ac without building that string.
+     *
+     * @param chainAc   the AC of the feature chain.
+     * @param primaryAc the primary AC prefixing ac, null if ac is already prefixed.
+     * @param ac        the feature chain identifier searched.
+     *
+     * @return true if the feature chain is the one searched.
+     */
+    private static boolean isFeatureChainAc( String chainAc, String primaryAc, String ac ) {
+        if ( chainAc == null ) {
+            return false;
+        }
+        if ( primaryAc == null ) {
+            return ac.equals( chainAc );
+        }
+        int separator = primaryAc.length();
+        return chainAc.length() == separator + 1 + ac.length()
+               && chainAc.charAt( separator ) == '-'
+               && chainAc.startsWith( primaryAc )
+               && chainAc.endsWith( ac );
+    }
 }
\ No newline at end of file
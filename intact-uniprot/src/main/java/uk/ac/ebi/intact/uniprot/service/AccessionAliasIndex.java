@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the identifiers the proteins already retrieved can be looked up by, each resolving to the complete set of
+ * proteins it names: the primary AC and UniProt ID of the proteins, and the identifiers that were searched.
+ * <p/>
+ * The other aliases of a protein, listed by aliasesOf, are not indexed: a secondary AC, an isoform id or a chain id may
+ * be shared by entries that were not registered, such as the other entries of a demerge, so the proteins registered so
+ * far are not a complete answer for them. They resolve once they have been searched. Lookups are lock free.
+ * <p/>
+ * The index does not know which proteins are still cached: the services forget the aliases of a primary AC once they
+ * find the protein gone, and clear the index along with their cache.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class AccessionAliasIndex {
+
+    /**
+     * Primary ACs indexed by alias, the sets are never modified once published.
+     */
+    private final Map<String, Set<String>> primaryAcs = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Aliases indexed by the primary ACs they resolve to, guarded by this.
+     */
+    private final Map<String, Set<String>> aliases = new HashMap<String, Set<String>>();
+
+    /**
+     * Lists the upper case identifiers a protein can be found by, including its primary AC.
+     *
+     * @param protein the protein.
+     *
+     * @return the aliases of the protein.
+     */
+    public static Set<String> aliasesOf( UniprotProtein protein ) {
+        Set<String> aliases = new LinkedHashSet<String>();
+        addAlias( aliases, protein.getPrimaryAc() );
+        addAlias( aliases, protein.getId() );
+        for ( String secondaryAc : protein.getSecondaryAcs() ) {
+            addAlias( aliases, secondaryAc );
+        }
+        for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+            addAlias( aliases, spliceVariant.getPrimaryAc() );
+            for ( String secondaryAc : spliceVariant.getSecondaryAcs() ) {
+                addAlias( aliases, secondaryAc );
+            }
+        }
+        for ( UniprotFeatureChain chain : protein.getFeatureChains() ) {
+            String chainId = chain.getPrimaryAc();
+            addAlias( aliases, chainId );
+            if ( chainId != null ) {
+                int index = chainId.toUpperCase().indexOf( AbstractUniprotService.CHAIN_SEPARATOR );
+                if ( index != -1 ) {
+                    addAlias( aliases, chainId.substring( index ) );
+                }
+            }
+        }
+        return aliases;
+    }
+
+    /**
+     * Indexes the identifiers naming a protein alone: its primary AC and UniProt ID.
+     *
+     * @param protein the protein.
+     */
+    public void register( UniprotProtein protein ) {
+        if ( protein == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotProtein." );
+        }
+        String primaryAc = normalize( protein.getPrimaryAc() );
+        addPrimaryAc( primaryAc, primaryAc );
+        if ( protein.getId() != null && protein.getId().trim().length() > 0 ) {
+            addPrimaryAc( normalize( protein.getId() ), primaryAc );
+        }
+    }
+
+    /**
+     * Indexes the proteins found for an identifier, whatever it is. The proteins found are the complete answer for it,
+     * they replace the ones it resolved to before.
+     *
+     * @param identifier the identifier that was searched.
+     * @param proteins   the proteins found for it.
+     */
+    public void register( String identifier, Collection<UniprotProtein> proteins ) {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "You must give a non null identifier." );
+        }
+        Set<String> found = new LinkedHashSet<String>( proteins.size() );
+        for ( UniprotProtein protein : proteins ) {
+            register( protein );
+            found.add( normalize( protein.getPrimaryAc() ) );
+        }
+        setPrimaryAcs( normalize( identifier ), found );
+    }
+
+    /**
+     * Drops the aliases resolving to a primary AC, typically once its protein is no longer cached: the other proteins
+     * these aliases resolve to are no longer a complete answer for them either.
+     *
+     * @param primaryAc the primary AC, in any case.
+     */
+    public synchronized void forget( String primaryAc ) {
+        if ( primaryAc == null ) {
+            return;
+        }
+        Set<String> forgotten = aliases.remove( normalize( primaryAc ) );
+        if ( forgotten != null ) {
+            for ( String alias : forgotten ) {
+                unlink( alias );
+            }
+        }
+    }
+
+    /**
+     * @param identifier any identifier, in any case.
+     *
+     * @return the upper case primary ACs of the proteins having this identifier, empty if none is known.
+     */
+    public Set<String> resolve( String identifier ) {
+        if ( identifier == null ) {
+            return Collections.emptySet();
+        }
+        Set<String> acs = primaryAcs.get( normalize( identifier ) );
+        return acs == null ? Collections.<String>emptySet() : acs;
+    }
+
+    /**
+     * @return number of aliases indexed.
+     */
+    public int size() {
+        return primaryAcs.size();
+    }
+
+    public synchronized void clear() {
+        primaryAcs.clear();
+        aliases.clear();
+    }
+
+    private synchronized void addPrimaryAc( String alias, String primaryAc ) {
+        Set<String> acs = primaryAcs.get( alias );
+        if ( acs != null && acs.contains( primaryAc ) ) {
+            return;
+        }
+        Set<String> updated = acs == null ? new LinkedHashSet<String>( 2 ) : new LinkedHashSet<String>( acs );
+        updated.add( primaryAc );
+        primaryAcs.put( alias, Collections.unmodifiableSet( updated ) );
+        link( alias, primaryAc );
+    }
+
+    private synchronized void setPrimaryAcs( String alias, Set<String> acs ) {
+        unlink( alias );
+        if ( !acs.isEmpty() ) {
+            primaryAcs.put( alias, Collections.unmodifiableSet( acs ) );
+            for ( String primaryAc : acs ) {
+                link( alias, primaryAc );
+            }
+        }
+    }
+
+    private void link( String alias, String primaryAc ) {
+        Set<String> linked = aliases.get( primaryAc );
+        if ( linked == null ) {
+            linked = new HashSet<String>( 4 );
+            aliases.put( primaryAc, linked );
+        }
+        linked.add( alias );
+    }
+
+    /**
+     * Removes an alias, and its links from the primary ACs it resolved to.
+     */
+    private void unlink( String alias ) {
+        Set<String> acs = primaryAcs.remove( alias );
+        if ( acs == null ) {
+            return;
+        }
+        for ( String primaryAc : acs ) {
+            Set<String> linked = aliases.get( primaryAc );
+            if ( linked != null ) {
+                linked.remove( alias );
+                if ( linked.isEmpty() ) {
+                    aliases.remove( primaryAc );
+                }
+            }
+        }
+    }
+
+    private static void addAlias( Set<String> aliases, String alias ) {
+        if ( alias != null && alias.trim().length() > 0 ) {
+            aliases.add( normalize( alias ) );
+        }
+    }
+
+    private static String normalize( String identifier ) {
+        return identifier.trim().toUpperCase();
+    }
+}
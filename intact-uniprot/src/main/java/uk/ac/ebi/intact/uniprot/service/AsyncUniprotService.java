@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Definition of a non blocking access to the UniProt protein retrieval service: the retrievals run in the background
+ * and the caller is handed a future completed with their outcome.
+ * <p/>
+ * Cancelling a future, or letting it time out, tells the service that the caller is no longer interested in the
+ * proteins; the underlying query is stopped once nobody else waits for it.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public interface AsyncUniprotService {
+
+    /**
+     * Retrieve a Uniprot protein based on its ID, AC or splice variant ID, building its splice variants and feature
+     * chains.
+     *
+     * @param ac ID, AC or splice variant ID of the protein we are searching for.
+     *
+     * @return a future completed with the collection of proteins found, or with the exception met.
+     */
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac );
+
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac, boolean processSpliceVars );
+
+    /**
+     * Retrieve a Uniprot protein based on its ID, AC or splice variant ID, along with the report of the errors met.
+     *
+     * @param ac                ID, AC or splice variant ID of the protein we are searching for.
+     * @param processSpliceVars whether the splice variants and feature chains are built.
+     *
+     * @return a future completed with the proteins found and, if the AC could not be processed, its report. These
+     *         reports are not kept in the errors of the service.
+     */
+    public CompletableFuture<UniprotRetrievalResult> retrieveWithReportAsync( String ac, boolean processSpliceVars );
+
+    public CompletableFuture<Collection<UniprotProteinTranscript>> retrieveProteinTranscriptsAsync( String ac );
+
+    public CompletableFuture<Collection<UniprotSpliceVariant>> retrieveSpliceVariantAsync( String ac );
+
+    public CompletableFuture<Collection<UniprotFeatureChain>> retrieveFeatureChainAsync( String ac );
+
+    /**
+     * Close the service, the retrievals still running are cancelled.
+     */
+    public void close();
+}
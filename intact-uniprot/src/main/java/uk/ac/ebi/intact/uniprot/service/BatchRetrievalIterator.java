@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+/**
+ * Iterates over the results of a retrieval, reading the requested ACs one batch at a time and only retrieving the
+ * next batch once the results of the current one have been consumed.
+ * <p/>
+ * Only the current batch is held, whatever the number of ACs requested. Each batch is retrieved with a report of its
+ * own, handed over with the results, so the reports never reach the errors of the service. Not thread-safe.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+class BatchRetrievalIterator implements Iterator<UniprotRetrievalResult> {
+
+    private final UniprotService service;
+
+    private final Iterator<String> acs;
+
+    private final int batchSize;
+
+    private final boolean processSpliceVars;
+
+    private final Queue<UniprotRetrievalResult> pending;
+
+    BatchRetrievalIterator( UniprotService service, Iterator<String> acs, int batchSize, boolean processSpliceVars ) {
+        if ( service == null ) {
+            throw new IllegalArgumentException( "You must give a non null service." );
+        }
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of UniProt ACs." );
+        }
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "The batch size must be 1 or greater: " + batchSize );
+        }
+        this.service = service;
+        this.acs = acs;
+        this.batchSize = batchSize;
+        this.processSpliceVars = processSpliceVars;
+        this.pending = new ArrayDeque<UniprotRetrievalResult>( batchSize );
+    }
+
+    public boolean hasNext() {
+        if ( pending.isEmpty() ) {
+            retrieveNextBatch();
+        }
+        return !pending.isEmpty();
+    }
+
+    public UniprotRetrievalResult next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        return pending.poll();
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void retrieveNextBatch() {
+        List<String> batch = new ArrayList<String>( batchSize );
+        while ( batch.size() < batchSize && acs.hasNext() ) {
+            String ac = acs.next();
+            if ( ac != null && ac.trim().length() > 0 ) {
+                batch.add( ac );
+            }
+        }
+        if ( batch.isEmpty() ) {
+            return;
+        }
+
+        UniprotServiceResult result = service.retrieveWithReport( batch, processSpliceVars );
+        for ( String ac : batch ) {
+            pending.add( result.getResult( ac ) );
+        }
+    }
+}
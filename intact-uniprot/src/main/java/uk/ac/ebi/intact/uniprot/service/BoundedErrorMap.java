@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Errors of a service, holding at most a given number of reports: once it is reached, the oldest reports are dropped
+ * to make room for the new ones. It can be read and written by several threads at once without locking.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+class BoundedErrorMap extends AbstractMap<String, UniprotServiceReport> {
+
+    private final ConcurrentHashMap<String, UniprotServiceReport> reports =
+            new ConcurrentHashMap<String, UniprotServiceReport>();
+
+    /**
+     * Reports in the order they were added. A report replaced or removed since stays queued until its turn comes, it is
+     * then dropped without touching the report now held for its AC.
+     */
+    private final ConcurrentLinkedQueue<Map.Entry<String, UniprotServiceReport>> order =
+            new ConcurrentLinkedQueue<Map.Entry<String, UniprotServiceReport>>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger droppedCount = new AtomicInteger();
+
+    private volatile int maxSize;
+
+    BoundedErrorMap( int maxSize ) {
+        setMaxSize( maxSize );
+    }
+
+    void setMaxSize( int maxSize ) {
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException( "The maximum number of errors must be 1 or greater: " + maxSize );
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of reports dropped to make room for newer ones.
+     */
+    int getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public UniprotServiceReport put( String ac, UniprotServiceReport report ) {
+        if ( ac == null || report == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC and Report." );
+        }
+        UniprotServiceReport previous = reports.put( ac, report );
+        order.add( new SimpleImmutableEntry<String, UniprotServiceReport>( ac, report ) );
+        queued.incrementAndGet();
+        evict();
+        return previous;
+    }
+
+    private void evict() {
+        while ( queued.get() > maxSize ) {
+            Map.Entry<String, UniprotServiceReport> oldest = order.poll();
+            if ( oldest == null ) {
+                return;
+            }
+            queued.decrementAndGet();
+            if ( reports.remove( oldest.getKey(), oldest.getValue() ) ) {
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public UniprotServiceReport get( Object ac ) {
+        return reports.get( ac );
+    }
+
+    @Override
+    public boolean containsKey( Object ac ) {
+        return reports.containsKey( ac );
+    }
+
+    @Override
+    public UniprotServiceReport remove( Object ac ) {
+        return reports.remove( ac );
+    }
+
+    @Override
+    public int size() {
+        return reports.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return reports.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        reports.clear();
+        while ( order.poll() != null ) {
+            queued.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Set<Entry<String, UniprotServiceReport>> entrySet() {
+        return reports.entrySet();
+    }
+}
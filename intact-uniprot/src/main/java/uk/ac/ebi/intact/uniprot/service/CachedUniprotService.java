@@ -16,12 +16,21 @@ import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
 import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
 import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
 
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Proxy implementation that caches the result of UniprotService queries.
@@ -44,6 +53,14 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
 
     public static final String CACHE_NAME = "uniprot-service-cache";
 
+    /**
+     * The options of the proteins cached by the requests using the retrieve flag, looked up when the proteins of a
+     * request needing fewer parts of their entries are not cached.
+     */
+    private static final RetrievalOptions[] BROADER_OPTIONS = {
+            RetrievalOptions.FULL, RetrievalOptions.NO_SPLICE_VARIANTS
+    };
+
     /**
      * Cache for queries to UniProt.
      */
@@ -55,6 +72,35 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
      */
     private UniprotService service;
 
+    /**
+     * Proteins are cached encoded, which keeps them small in memory and when they overflow to disk.
+     */
+    private final ProteinCodec codec = new ProteinCodec();
+
+    /**
+     * Identifiers UniProt did not know, they are kept apart from the proteins with their own time to live.
+     */
+    private NegativeResultCache negativeResultCache = new NegativeResultCache();
+
+    /**
+     * Primary ACs of the cached proteins, indexed by all their identifiers.
+     */
+    private final AccessionAliasIndex aliasIndex = new AccessionAliasIndex();
+
+    /**
+     * Retrievals from the underlying service running, indexed by the cache key of their request. Threads missing on a
+     * request already being retrieved wait for it rather than retrieving it again, and decode their own copies of the
+     * proteins it encoded.
+     */
+    private final ConcurrentMap<String, CompletableFuture<SharedRetrieval>> inFlight =
+            new ConcurrentHashMap<String, CompletableFuture<SharedRetrieval>>();
+
+    // statistics
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong upgradeHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+
     public CachedUniprotService( UniprotService service ) {
         super();
         if ( service == null ) {
@@ -80,46 +126,119 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
     }
 
     public Collection<UniprotProtein> retrieve( String ac ) {
-
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
-
-        return proteins;
+        return retrieve( ac, true );
     }
 
     public Collection<UniprotProtein> retrieve(String ac, boolean processSpliceVars) {
-        return retrieve(ac);
+        return fetch( ac, processSpliceVars );
+    }
+
+    /**
+     * Proteins are cached under the parts of the entries they hold, and proteins cached with more parts also answer
+     * requests needing fewer.
+     */
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        return fetch( ac, options );
     }
 
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve(Collection<String> acs, boolean processSpliceVars) {
 
         // TODO, here, we by-pass the underlying service method !!! Might not be what we want !!
 
         Map<String, Collection<UniprotProtein>> resultMap = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
 
         for ( String ac : acs ) {
-            Collection<UniprotProtein> proteins = retrieve( ac );
+            Collection<UniprotProtein> proteins = fetch( ac, processSpliceVars );
             resultMap.put( ac, proteins );
         }
 
         return resultMap;
     }
 
-    public Map<String, Collection<UniprotProtein>> retrieve(Collection<String> acs, boolean processSpliceVars) {
-        return retrieve(acs);
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        Map<String, Collection<UniprotProtein>> resultMap = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+
+        for ( String ac : acs ) {
+            resultMap.put( ac, fetch( ac, options ) );
+        }
+
+        return resultMap;
     }
 
+    /**
+     * @return the errors of the underlying service, and the identifiers not searched again because they were not
+     * found before.
+     */
     public Map<String, UniprotServiceReport> getErrors() {
-        return service.getErrors();
+        Map<String, UniprotServiceReport> errors = new HashMap<String, UniprotServiceReport>( super.getErrors() );
+        errors.putAll( service.getErrors() );
+        return errors;
     }
 
     public void clearErrors() {
+        super.clearErrors();
         service.clearErrors();
     }
 
+    public NegativeResultCache getNegativeResultCache() {
+        return negativeResultCache;
+    }
+
+    public void setNegativeResultCache( NegativeResultCache negativeResultCache ) {
+        if ( negativeResultCache == null ) {
+            throw new IllegalArgumentException( "You must give a non null NegativeResultCache." );
+        }
+        this.negativeResultCache = negativeResultCache;
+    }
+
+    public AccessionAliasIndex getAliasIndex() {
+        return aliasIndex;
+    }
+
+    /**
+     * @return number of requests answered from the proteins cached for the same request, or the same request made with
+     * another identifier of the proteins.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of requests answered from the proteins cached with more parts of their entry, such as requests
+     * without splice variants answered from the proteins cached with splice variants.
+     */
+    public long getUpgradeHitCount() {
+        return upgradeHitCount.get();
+    }
+
+    /**
+     * @return number of retrievals from the underlying service avoided by waiting for the same retrieval running in
+     * another thread.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicatedCount.get();
+    }
+
+    /**
+     * @return number of requests the cache could not answer.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
     public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
         service.setCrossReferenceSelector( crossReferenceFilter );
     }
@@ -147,16 +266,12 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
         Collection<String> variantAcProcessed = new ArrayList<String>();
 
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
+        Collection<UniprotProtein> proteins = fetch( ac, true );
 
         for (UniprotProtein p : proteins){
             UniprotSpliceVariant variant = super.retrieveUniprotSpliceVariant(p, ac);
 
-            if (!variantAcProcessed.contains(variant.getPrimaryAc())){
+            if (variant != null && !variantAcProcessed.contains(variant.getPrimaryAc())){
                 variants.add(variant);
                 variantAcProcessed.add(variant.getPrimaryAc());
             }
@@ -171,16 +286,14 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         }
         Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
 
-        Collection<UniprotProtein> proteins = getFromCache( ac );
-        if ( proteins == null ) {
-            proteins = service.retrieve( ac );
-            storeInCache( proteins, ac );
-        }
+        Collection<UniprotProtein> proteins = fetch( ac, true );
 
         for (UniprotProtein p : proteins){
             UniprotFeatureChain variant = retrieveUniprotFeatureChain(p, ac);
 
-            variants.add(variant);
+            if (variant != null) {
+                variants.add(variant);
+            }
         }
 
         return variants;
@@ -198,6 +311,7 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         if (cacheManager != null){
             cacheManager.clearAll();
         }
+        aliasIndex.clear();
         service.close();
     }
 
@@ -206,24 +320,225 @@ public class CachedUniprotService extends AbstractUniprotService implements Unip
         service.start();
     }
 
+    /**
+     * Gives the proteins of a request from the cache, or from the underlying service when they are not cached and the
+     * AC is not known to be missing from UniProt.
+     * <p/>
+     * Proteins are cached one by one under their primary AC and the rest of the description of the request, so that
+     * proteins built without splice variants, with fewer parts of their entry, or with another cross reference filter,
+     * are never given for a different request. The alias index finds them back from their primary AC, UniProt ID, or an identifier
+     * searched before; their other aliases may be shared by entries that are not cached, so they are searched again.
+     */
+    private Collection<UniprotProtein> fetch( String ac, boolean processSpliceVars ) {
+        return fetch( ac, RetrievalOptions.forSpliceVariants( processSpliceVars ) );
+    }
+
+    private Collection<UniprotProtein> fetch( String ac, RetrievalOptions options ) {
+        UniprotRequestDescriptor request = new UniprotRequestDescriptor( ac, options, service.getCrossReferenceSelector() );
+
+        Collection<UniprotProtein> proteins = getCachedProteins( request );
+        if ( proteins != null ) {
+            return proteins;
+        }
+
+        missCount.incrementAndGet();
+
+        if ( negativeResultCache.isNotFound( request.getLookupType(), ac ) ) {
+            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac + " (not found by a previous search)" ) );
+            return new ArrayList<UniprotProtein>();
+        }
+
+        String key = request.toCacheKey();
+        CompletableFuture<SharedRetrieval> flight = new CompletableFuture<SharedRetrieval>();
+        CompletableFuture<SharedRetrieval> running = inFlight.putIfAbsent( key, flight );
+        if ( running != null ) {
+            deduplicatedCount.incrementAndGet();
+            SharedRetrieval shared = await( ac, running );
+            if ( shared.encoded == null ) {
+                // the proteins could not be encoded, so they cannot be copied
+                return retrieveFrom( service, ac, options );
+            }
+            if ( shared.report != null && isReporting() ) {
+                // the report went to the call of the thread that searched, this call needs its own
+                addError( ac, shared.report );
+            }
+            return decode( ac, shared.encoded );
+        }
+
+        try {
+            // the underlying service reports to this call, which tells an AC UniProt does not know from a failure
+            UniprotServiceResult result = new UniprotServiceResult();
+            UniprotServiceResult outer = enterReport( result );
+            try {
+                proteins = retrieveFrom( service, ac, options );
+            } finally {
+                exitReport( outer );
+            }
+            for ( Map.Entry<String, UniprotServiceReport> error : result.getErrors().entrySet() ) {
+                addError( error.getKey(), error.getValue() );
+            }
+            UniprotServiceReport report = result.getErrors().get( ac );
+
+            List<byte[]> encoded = new ArrayList<byte[]>();
+            if ( proteins == null || proteins.isEmpty() ) {
+                if ( report != null && report.getType() == UniprotReportType.NOT_FOUND ) {
+                    negativeResultCache.putNotFound( request.getLookupType(), ac );
+                }
+            } else {
+                for ( UniprotProtein protein : proteins ) {
+                    encoded.add( storeInCache( protein, request.withAc( protein.getPrimaryAc() ).toCacheKey() ) );
+                }
+                aliasIndex.register( request.getAc(), proteins );
+            }
+            flight.complete( new SharedRetrieval( encoded.contains( null ) ? null : encoded, report ) );
+        } catch ( RuntimeException e ) {
+            flight.completeExceptionally( e );
+            throw e;
+        } catch ( Error e ) {
+            flight.completeExceptionally( e );
+            throw e;
+        } finally {
+            inFlight.remove( key, flight );
+        }
+
+        return proteins;
+    }
+
+    /**
+     * Waits for the retrieval another thread is running for the same request. The proteins it built are given encoded
+     * to the waiting threads, and its failure is shared with them.
+     *
+     * @return the encoded proteins and the report of the AC.
+     */
+    private SharedRetrieval await( String ac, CompletableFuture<SharedRetrieval> running ) {
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Waiting for the retrieval of " + ac + " running in another thread" );
+        }
+        try {
+            return running.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while waiting for the retrieval of " + ac, e );
+        } catch ( ExecutionException e ) {
+            throw new RuntimeUniprotServiceException( "The retrieval of " + ac + " failed in another thread", e.getCause() );
+        }
+    }
+
+    /**
+     * Decodes the proteins another thread retrieved, giving this thread its own copies as a cache hit does.
+     */
+    private Collection<UniprotProtein> decode( String ac, List<byte[]> encoded ) {
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( encoded.size() );
+        for ( byte[] bytes : encoded ) {
+            try {
+                proteins.add( codec.deserialize( bytes ) );
+            } catch ( IOException e ) {
+                throw new RuntimeUniprotServiceException( "Could not decode a protein retrieved for " + ac, e );
+            }
+        }
+        return proteins;
+    }
+
+    /**
+     * Gives the cached proteins known under the AC of a request. Proteins cached with every part of their entry, or
+     * with all but their splice variants, also answer requests needing fewer parts: the parts not asked for are
+     * dropped from the decoded copy.
+     *
+     * @return the proteins, or null unless all of them are cached.
+     */
+    private Collection<UniprotProtein> getCachedProteins( UniprotRequestDescriptor request ) {
+        Set<String> primaryAcs = aliasIndex.resolve( request.getAc() );
+        if ( primaryAcs.isEmpty() ) {
+            return null;
+        }
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( primaryAcs.size() );
+        boolean upgraded = false;
+        for ( String primaryAc : primaryAcs ) {
+            UniprotRequestDescriptor proteinRequest = request.withAc( primaryAc );
+
+            String key = proteinRequest.toCacheKey();
+            UniprotProtein protein = getFromCache( key );
+            for ( int i = 0; protein == null && i < BROADER_OPTIONS.length; i++ ) {
+                RetrievalOptions broader = BROADER_OPTIONS[i];
+                String broaderKey = proteinRequest.withOptions( broader ).toCacheKey();
+                if ( broader.covers( request.getOptions() ) && !broaderKey.equals( key ) ) {
+                    protein = getFromCache( broaderKey );
+                    if ( protein != null ) {
+                        project( protein, request.getOptions() );
+                        upgraded = true;
+                    }
+                }
+            }
+            if ( protein == null ) {
+                // expired or evicted since, the identifiers it was found by are no longer answered by the cache
+                aliasIndex.forget( primaryAc );
+                return null;
+            }
+            proteins.add( protein );
+        }
+
+        if ( upgraded ) {
+            upgradeHitCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return proteins;
+    }
+
     /////////////////////////
     // EH CACHE utilities
 
-    private Collection<UniprotProtein> getFromCache( String ac ) {
+    private UniprotProtein getFromCache( String key ) {
 
-        Collection<UniprotProtein> proteins = null;
+        UniprotProtein protein = null;
 
-        Element element = cache.get( ac );
+        Element element = cache.get( key );
 
         if ( element != null ) {
-            proteins = ( Collection<UniprotProtein> ) element.getValue();
+            try {
+                protein = codec.deserialize( ( byte[] ) element.getValue() );
+            } catch ( IOException e ) {
+                log.warn( "Could not decode cached protein " + key + ", removing it from the cache", e );
+                cache.remove( key );
+            }
         }
 
-        return proteins;
+        return protein;
+    }
+
+    /**
+     * @return the encoded protein, or null if it could not be encoded.
+     */
+    private byte[] storeInCache( UniprotProtein protein, String key ) {
+        try {
+            byte[] encoded = codec.serialize( protein );
+            cache.put( new Element( key, encoded ) );
+            return encoded;
+        } catch ( IOException e ) {
+            log.warn( "Could not encode protein " + key + ", it is not cached", e );
+            return null;
+        }
     }
 
-    private void storeInCache( Collection<UniprotProtein> proteins, String ac ) {
-        Element element = new Element( ac, proteins );
-        cache.put( element );
+    /**
+     * What a thread retrieved for a request, given to the threads waiting for the same request.
+     */
+    private static class SharedRetrieval {
+
+        /**
+         * The encoded proteins, null if some of them could not be encoded.
+         */
+        private final List<byte[]> encoded;
+
+        /**
+         * The report of the requested AC, null if it was retrieved without error.
+         */
+        private final UniprotServiceReport report;
+
+        private SharedRetrieval( List<byte[]> encoded, UniprotServiceReport report ) {
+            this.encoded = encoded;
+            this.report = report;
+        }
     }
-}
\ No newline at end of file
+}
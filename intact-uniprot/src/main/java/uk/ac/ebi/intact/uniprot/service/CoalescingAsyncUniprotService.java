@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs the retrievals of a UniprotService in the background, sharing a single query between the callers asking for
+ * the same AC at the same time.
+ * <p/>
+ * Each caller is handed its own future: cancelling it, or letting it time out (see setTimeoutMillis or
+ * CompletableFuture.orTimeout), only withdraws that caller. The underlying query is cancelled, and the thread running
+ * it interrupted, once every caller waiting for it has withdrawn.
+ * <p/>
+ * Each caller is also completed with its own copy of the proteins found, and the errors met by the query are given
+ * to the callers of retrieveWithReportAsync rather than kept in the errors of the service.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class CoalescingAsyncUniprotService implements AsyncUniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( CoalescingAsyncUniprotService.class );
+
+    /**
+     * Default number of queries running at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = ConcurrentUniprotService.DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * The UniprotService the retrievals are delegated to, it must support being called by several threads.
+     */
+    private final UniprotService service;
+
+    private final ExecutorService executor;
+
+    private final ProteinCodec codec = new ProteinCodec();
+
+    /**
+     * Queries running or waiting to run, indexed by the request they answer.
+     */
+    private final ConcurrentMap<String, Flight<?>> flights = new ConcurrentHashMap<String, Flight<?>>();
+
+    /**
+     * Time after which the futures handed to the callers time out, 0 if they never do.
+     */
+    private volatile long timeoutMillis;
+
+    // statistics
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong cancelledCount = new AtomicLong();
+
+    public CoalescingAsyncUniprotService() {
+        this( new SimpleUniprotRemoteService() );
+    }
+
+    public CoalescingAsyncUniprotService( UniprotService service ) {
+        this( service, DEFAULT_MAX_IN_FLIGHT );
+    }
+
+    public CoalescingAsyncUniprotService( UniprotService service, int maxInFlight ) {
+        if ( service == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotService." );
+        }
+        if ( maxInFlight < 1 ) {
+            throw new IllegalArgumentException( "The number of concurrent retrievals must be 1 or greater: " + maxInFlight );
+        }
+        this.service = service;
+        this.executor = ConcurrentUniprotService.newExecutor( maxInFlight );
+    }
+
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac ) {
+        return retrieveAsync( ac, true );
+    }
+
+    public CompletableFuture<Collection<UniprotProtein>> retrieveAsync( String ac, boolean processSpliceVars ) {
+        return submit( "protein", ac, processSpliceVars, new ProteinRetrieval( ac, processSpliceVars ) )
+                .newCallerFuture( this.<UniprotProtein>copies() );
+    }
+
+    public CompletableFuture<UniprotRetrievalResult> retrieveWithReportAsync( final String ac, boolean processSpliceVars ) {
+        return submit( "protein", ac, processSpliceVars, new ProteinRetrieval( ac, processSpliceVars ) )
+                .newCallerFuture( new Function<Answer<UniprotProtein>, UniprotRetrievalResult>() {
+                    public UniprotRetrievalResult apply( Answer<UniprotProtein> answer ) {
+                        return new UniprotRetrievalResult( ac, answer.copy(), answer.report );
+                    }
+                } );
+    }
+
+    public CompletableFuture<Collection<UniprotProteinTranscript>> retrieveProteinTranscriptsAsync( final String ac ) {
+        return this.<UniprotProteinTranscript>submit( "transcript", ac, true, new Retrieval<UniprotProteinTranscript>( ac ) {
+            Collection<UniprotProteinTranscript> retrieve() {
+                return service.retrieveProteinTranscripts( ac );
+            }
+        } ).newCallerFuture( this.<UniprotProteinTranscript>copies() );
+    }
+
+    public CompletableFuture<Collection<UniprotSpliceVariant>> retrieveSpliceVariantAsync( final String ac ) {
+        return this.<UniprotSpliceVariant>submit( "splice-variant", ac, true, new Retrieval<UniprotSpliceVariant>( ac ) {
+            Collection<UniprotSpliceVariant> retrieve() {
+                return service.retrieveSpliceVariant( ac );
+            }
+        } ).newCallerFuture( this.<UniprotSpliceVariant>copies() );
+    }
+
+    public CompletableFuture<Collection<UniprotFeatureChain>> retrieveFeatureChainAsync( final String ac ) {
+        return this.<UniprotFeatureChain>submit( "feature-chain", ac, true, new Retrieval<UniprotFeatureChain>( ac ) {
+            Collection<UniprotFeatureChain> retrieve() {
+                return service.retrieveFeatureChain( ac );
+            }
+        } ).newCallerFuture( this.<UniprotFeatureChain>copies() );
+    }
+
+    private <E> Function<Answer<E>, Collection<E>> copies() {
+        return new Function<Answer<E>, Collection<E>>() {
+            public Collection<E> apply( Answer<E> answer ) {
+                return answer.copy();
+            }
+        };
+    }
+
+    /**
+     * Joins the query answering the same request if there is one running, starts a new one otherwise.
+     *
+     * @return the query the caller joined, the caller must then ask it for a future.
+     */
+    @SuppressWarnings( "unchecked" )
+    private <E> Flight<E> submit( String kind, String ac, boolean processSpliceVars, Retrieval<E> retrieval ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+
+        String key = kind + '|' + new UniprotRequestDescriptor( ac, processSpliceVars,
+                                                                service.getCrossReferenceSelector() ).toCacheKey();
+        while ( true ) {
+            Flight<E> flight = new Flight<E>( key );
+            flight.join();
+            Flight<E> existing = ( Flight<E> ) flights.putIfAbsent( key, flight );
+            if ( existing == null ) {
+                flight.start( retrieval );
+                return flight;
+            }
+            if ( existing.join() ) {
+                coalescedCount.incrementAndGet();
+                if ( log.isDebugEnabled() ) {
+                    log.debug( "Joining the running retrieval of " + key );
+                }
+                return existing;
+            }
+            // every caller withdrew from that query, it is about to go away
+            flights.remove( key, existing );
+        }
+    }
+
+    public void close() {
+        // the callers are cancelled before the queries are interrupted, which would fail them otherwise
+        for ( Flight<?> flight : flights.values() ) {
+            flight.result.cancel( false );
+        }
+        executor.shutdownNow();
+        flights.clear();
+        service.close();
+    }
+
+    // Getters and Setters
+
+    public UniprotService getService() {
+        return service;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Sets the time after which the futures handed to the callers complete with a TimeoutException.
+     *
+     * @param timeoutMillis a time in milliseconds, 0 if the futures never time out.
+     */
+    public void setTimeoutMillis( long timeoutMillis ) {
+        if ( timeoutMillis < 0 ) {
+            throw new IllegalArgumentException( "The timeout must be 0 or greater: " + timeoutMillis );
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return number of calls that joined a query already running instead of starting their own.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of queries cancelled because every caller waiting for them withdrew.
+     */
+    public long getCancelledCount() {
+        return cancelledCount.get();
+    }
+
+    /**
+     * @return number of queries running or waiting to run.
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * A retrieval run by a query: the errors it meets go to a report of its own.
+     */
+    private abstract class Retrieval<E> {
+
+        final String ac;
+
+        private Retrieval( String ac ) {
+            this.ac = ac;
+        }
+
+        abstract Collection<E> retrieve();
+
+        Answer<E> answer( Collection<E> found, UniprotServiceReport report ) {
+            return new Answer<E>( found, report );
+        }
+
+        private Answer<E> run() {
+            UniprotServiceResult result = new UniprotServiceResult();
+            UniprotServiceResult outer = AbstractUniprotService.enterReport( result );
+            Collection<E> found;
+            try {
+                found = retrieve();
+            } finally {
+                AbstractUniprotService.exitReport( outer );
+            }
+            return answer( found != null ? found : new ArrayList<E>(), result.getErrors().get( ac ) );
+        }
+    }
+
+    private class ProteinRetrieval extends Retrieval<UniprotProtein> {
+
+        private final boolean processSpliceVars;
+
+        private ProteinRetrieval( String ac, boolean processSpliceVars ) {
+            super( ac );
+            this.processSpliceVars = processSpliceVars;
+        }
+
+        Collection<UniprotProtein> retrieve() {
+            return service.retrieve( ac, processSpliceVars );
+        }
+
+        @Override
+        Answer<UniprotProtein> answer( Collection<UniprotProtein> found, UniprotServiceReport report ) {
+            return new ProteinAnswer( found, report );
+        }
+    }
+
+    /**
+     * What a query found, and the report of the requested AC if it met an error. The callers never see the collection
+     * found, each of them is given a copy.
+     */
+    private static class Answer<E> {
+
+        final Collection<E> found;
+
+        final UniprotServiceReport report;
+
+        Answer( Collection<E> found, UniprotServiceReport report ) {
+            this.found = found;
+            this.report = report;
+        }
+
+        Collection<E> copy() {
+            return new ArrayList<E>( found );
+        }
+    }
+
+    /**
+     * Proteins found by a query, encoded once so that each caller decodes proteins of its own.
+     */
+    private class ProteinAnswer extends Answer<UniprotProtein> {
+
+        /**
+         * The encoded proteins, null if some of them could not be encoded: the callers then share the proteins.
+         */
+        private final List<byte[]> encoded;
+
+        ProteinAnswer( Collection<UniprotProtein> found, UniprotServiceReport report ) {
+            super( found, report );
+            this.encoded = encode( found );
+        }
+
+        private List<byte[]> encode( Collection<UniprotProtein> proteins ) {
+            List<byte[]> encoded = new ArrayList<byte[]>( proteins.size() );
+            for ( UniprotProtein protein : proteins ) {
+                try {
+                    encoded.add( codec.serialize( protein ) );
+                } catch ( IOException e ) {
+                    log.warn( "Could not encode protein " + protein.getPrimaryAc() + ", its callers share it", e );
+                    return null;
+                }
+            }
+            return encoded;
+        }
+
+        @Override
+        Collection<UniprotProtein> copy() {
+            if ( encoded == null ) {
+                return super.copy();
+            }
+            Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( encoded.size() );
+            for ( byte[] bytes : encoded ) {
+                try {
+                    proteins.add( codec.deserialize( bytes ) );
+                } catch ( IOException e ) {
+                    throw new RuntimeUniprotServiceException( "Could not decode a protein found by a query", e );
+                }
+            }
+            return proteins;
+        }
+    }
+
+    /**
+     * A query and the callers waiting for it.
+     */
+    private class Flight<E> {
+
+        private final String key;
+
+        private final CompletableFuture<Answer<E>> result = new CompletableFuture<Answer<E>>();
+
+        private volatile Future<?> task;
+
+        // guarded by this
+        private int waiters;
+        private boolean abandoned;
+
+        private Flight( String key ) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if every caller already withdrew and the query is being cancelled.
+         */
+        private synchronized boolean join() {
+            if ( abandoned ) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        private synchronized void leave() {
+            if ( abandoned || result.isDone() ) {
+                return;
+            }
+            if ( --waiters == 0 ) {
+                abandoned = true;
+                flights.remove( key, this );
+                cancelledCount.incrementAndGet();
+                if ( task != null ) {
+                    task.cancel( true );
+                }
+                result.cancel( false );
+            }
+        }
+
+        private void start( final Retrieval<E> retrieval ) {
+            try {
+                task = executor.submit( new Runnable() {
+                    public void run() {
+                        // the query leaves the flights before its callers are woken up, so none of them sees it running
+                        Answer<E> answer = null;
+                        Throwable failure = null;
+                        try {
+                            if ( !result.isDone() ) {
+                                answer = retrieval.run();
+                            }
+                        } catch ( Throwable e ) {
+                            failure = e;
+                        } finally {
+                            flights.remove( key, Flight.this );
+                        }
+                        if ( failure != null ) {
+                            result.completeExceptionally( failure );
+                        } else {
+                            result.complete( answer );
+                        }
+                    }
+                } );
+            } catch ( RejectedExecutionException e ) {
+                flights.remove( key, this );
+                result.completeExceptionally( new RuntimeUniprotServiceException( "The service is closed.", e ) );
+            }
+        }
+
+        /**
+         * @param convert gives the caller its own result from the answer of the query.
+         *
+         * @return a future of the result private to a caller, withdrawing it from the query if cancelled or timed out.
+         */
+        private <R> CompletableFuture<R> newCallerFuture( final Function<Answer<E>, R> convert ) {
+            final CompletableFuture<R> caller = new CompletableFuture<R>();
+            result.whenComplete( new BiConsumer<Answer<E>, Throwable>() {
+                public void accept( Answer<E> answer, Throwable throwable ) {
+                    if ( throwable != null ) {
+                        caller.completeExceptionally( throwable );
+                        return;
+                    }
+                    try {
+                        caller.complete( convert.apply( answer ) );
+                    } catch ( RuntimeException e ) {
+                        caller.completeExceptionally( e );
+                    }
+                }
+            } );
+            caller.whenComplete( new BiConsumer<R, Throwable>() {
+                public void accept( R value, Throwable throwable ) {
+                    if ( caller.isCancelled() || throwable instanceof TimeoutException ) {
+                        leave();
+                    }
+                }
+            } );
+
+            long timeout = timeoutMillis;
+            if ( timeout > 0 ) {
+                caller.orTimeout( timeout, TimeUnit.MILLISECONDS );
+            }
+            return caller;
+        }
+    }
+}
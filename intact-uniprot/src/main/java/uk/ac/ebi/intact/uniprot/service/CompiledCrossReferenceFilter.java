@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a cross reference filter, answering without allocating.
+ * <p/>
+ * The databases of the filter are laid out in a table with a perfect hash of their lower cased names, so a lookup
+ * hashes the given name once, ignoring its case and surrounding spaces, and compares it with a single candidate. The
+ * decision for every kraken DatabaseType is also taken once, by asking the original filter, so that the conversion of
+ * cross references only reads an array. Should no perfect hash be found within MAX_TABLE_SIZE slots, the lower cased
+ * names are looked up in a map instead.
+ * <p/>
+ * Changes made to the original filter after it was compiled are not seen.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class CompiledCrossReferenceFilter implements CrossReferenceFilter {
+
+    /**
+     * Number of seeds tried on a table size before the table is made larger.
+     */
+    private static final int MAX_SEEDS_PER_SIZE = 64;
+
+    /**
+     * Largest table tried for the perfect hash.
+     */
+    static final int MAX_TABLE_SIZE = 1 << 16;
+
+    /**
+     * The filter this one was compiled from.
+     */
+    private final CrossReferenceFilter source;
+
+    private final List<String> filteredDatabases;
+
+    // perfect hash table of the databases, indexed by slot
+    private final String[] names;
+    private final String[] mis;
+    private final int[] hashes;
+    private final int seed;
+    private final int mask;
+
+    /**
+     * The psi-mi identifiers of the databases indexed by lower cased name, when no perfect hash was found, null otherwise.
+     */
+    private final Map<String, String> fallback;
+
+    // decisions taken for the kraken database types, indexed by ordinal
+    private final boolean[] selectedTypes;
+    private final String[] typeMis;
+
+    CompiledCrossReferenceFilter( CrossReferenceFilter filter, int maxTableSize ) {
+        this.source = filter;
+
+        Map<String, String> db2mi = new LinkedHashMap<String, String>();
+        for ( String database : filter.getFilteredDatabases() ) {
+            String name = format( database );
+            if ( !db2mi.containsKey( name ) ) {
+                String mi = filter.getMi( database );
+                db2mi.put( name, mi != null ? mi : filter.getMi( name ) );
+            }
+        }
+        this.filteredDatabases = Collections.unmodifiableList( new ArrayList<String>( filter.getFilteredDatabases() ) );
+
+        int size = 2;
+        while ( size < db2mi.size() * 2 ) {
+            size <<= 1;
+        }
+
+        int[] layout = null;
+        int chosenSeed = 0;
+        while ( layout == null && size <= maxTableSize ) {
+            for ( int candidate = 0; candidate < MAX_SEEDS_PER_SIZE && layout == null; candidate++ ) {
+                layout = layout( db2mi.keySet(), candidate, size - 1 );
+                chosenSeed = candidate;
+            }
+            if ( layout == null ) {
+                size <<= 1;
+            }
+        }
+
+        if ( layout == null ) {
+            this.seed = 0;
+            this.mask = 0;
+            this.names = new String[1];
+            this.mis = new String[1];
+            this.hashes = new int[1];
+            this.fallback = db2mi;
+        } else {
+            this.seed = chosenSeed;
+            this.mask = size - 1;
+            this.names = new String[size];
+            this.mis = new String[size];
+            this.hashes = new int[size];
+            this.fallback = null;
+            int i = 0;
+            for ( Map.Entry<String, String> entry : db2mi.entrySet() ) {
+                int slot = layout[i++];
+                names[slot] = entry.getKey();
+                mis[slot] = entry.getValue();
+                hashes[slot] = hash( entry.getKey(), 0, entry.getKey().length(), seed );
+            }
+        }
+
+        DatabaseType[] types = DatabaseType.values();
+        this.selectedTypes = new boolean[types.length];
+        this.typeMis = new String[types.length];
+        for ( DatabaseType type : types ) {
+            String name = type.getName();
+            if ( name != null && name.trim().length() > 0 ) {
+                selectedTypes[type.ordinal()] = filter.isSelected( name );
+                typeMis[type.ordinal()] = getMi( name );
+            }
+        }
+    }
+
+    /**
+     * @param filter the filter to compile.
+     *
+     * @return the compiled filter, the filter itself if it is already compiled.
+     */
+    public static CompiledCrossReferenceFilter compile( CrossReferenceFilter filter ) {
+        if ( filter == null ) {
+            throw new IllegalArgumentException( "You must give a non null CrossReferenceFilter." );
+        }
+        if ( filter instanceof CompiledCrossReferenceFilter ) {
+            return ( CompiledCrossReferenceFilter ) filter;
+        }
+        return new CompiledCrossReferenceFilter( filter, MAX_TABLE_SIZE );
+    }
+
+    /**
+     * @param filter a filter.
+     *
+     * @return true if this filter is that filter or was compiled from it.
+     */
+    boolean isCompiledFrom( CrossReferenceFilter filter ) {
+        return this == filter || source == filter;
+    }
+
+    /**
+     * @return true if the databases are laid out with a perfect hash, false if they are looked up in a map.
+     */
+    boolean isPerfectlyHashed() {
+        return fallback == null;
+    }
+
+    /**
+     * Finds a slot for every name with the given seed.
+     *
+     * @return the slot of each name, in iteration order, or null if two names share a slot.
+     */
+    private static int[] layout( Iterable<String> names, int seed, int mask ) {
+        boolean[] taken = new boolean[mask + 1];
+        List<Integer> slots = new ArrayList<Integer>();
+        for ( String name : names ) {
+            int slot = hash( name, 0, name.length(), seed ) & mask;
+            if ( taken[slot] ) {
+                return null;
+            }
+            taken[slot] = true;
+            slots.add( slot );
+        }
+
+        int[] layout = new int[slots.size()];
+        for ( int i = 0; i < layout.length; i++ ) {
+            layout[i] = slots.get( i );
+        }
+        return layout;
+    }
+
+    private static int hash( CharSequence s, int start, int end, int seed ) {
+        // the seed is mixed in at every character: names colliding under one seed do not collide under all of them
+        int h = seed;
+        for ( int i = start; i < end; i++ ) {
+            h = ( h ^ Character.toLowerCase( s.charAt( i ) ) ) * 0x9E3779B1 + seed;
+        }
+        h ^= ( h >>> 16 );
+        h *= 0x85ebca6b;
+        h ^= ( h >>> 13 );
+        return h;
+    }
+
+    private static boolean isBlank( String s ) {
+        for ( int i = 0; i < s.length(); i++ ) {
+            if ( s.charAt( i ) > ' ' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String format( String database ) {
+        if ( database == null ) {
+            throw new IllegalArgumentException( "Database must not be null." );
+        }
+        String name = database.trim();
+        if ( name.length() == 0 ) {
+            throw new IllegalArgumentException( "Database must be a non empty String." );
+        }
+        return name.toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * @return the slot holding the given database name, -1 if it is blank or not one of the databases of the filter.
+     */
+    private int slotOf( String database ) {
+        int start = 0;
+        int end = database.length();
+        while ( start < end && database.charAt( start ) <= ' ' ) {
+            start++;
+        }
+        while ( end > start && database.charAt( end - 1 ) <= ' ' ) {
+            end--;
+        }
+        if ( start == end || fallback != null ) {
+            return -1;
+        }
+
+        int h = hash( database, start, end, seed );
+        int slot = h & mask;
+        String name = names[slot];
+        if ( name == null || hashes[slot] != h || name.length() != end - start ) {
+            return -1;
+        }
+        for ( int i = 0; i < name.length(); i++ ) {
+            if ( Character.toLowerCase( database.charAt( start + i ) ) != name.charAt( i ) ) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    /////////////////////////////////////
+    // CrossReferenceSelector method
+
+    /**
+     * @param database database name, its case and surrounding spaces are ignored.
+     *
+     * @return true if the given database name is to be included, false otherwise.
+     */
+    public boolean isSelected( String database ) {
+        if ( database == null ) {
+            throw new IllegalArgumentException( "Database must not be null." );
+        }
+        if ( fallback != null ) {
+            return fallback.containsKey( format( database ) );
+        }
+        int slot = slotOf( database );
+        if ( slot == -1 && isBlank( database ) ) {
+            throw new IllegalArgumentException( "Database must be a non empty String." );
+        }
+        return slot != -1;
+    }
+
+    /**
+     * @param type a kraken database type.
+     *
+     * @return the decision the original filter took for the name of this type.
+     */
+    public boolean isSelected( DatabaseType type ) {
+        if ( type == null ) {
+            throw new IllegalArgumentException( "You must give a non null DatabaseType." );
+        }
+        return selectedTypes[type.ordinal()];
+    }
+
+    public List<String> getFilteredDatabases() {
+        return filteredDatabases;
+    }
+
+    /**
+     * @param databaseName a database name, its case and surrounding spaces are ignored.
+     *
+     * @return the psi-mi identifier of the database, null if not found.
+     */
+    public String getMi( String databaseName ) {
+        if ( databaseName == null ) {
+            return null;
+        }
+        if ( fallback != null ) {
+            return isBlank( databaseName ) ? null : fallback.get( format( databaseName ) );
+        }
+        int slot = slotOf( databaseName );
+        return slot == -1 ? null : mis[slot];
+    }
+
+    /**
+     * @param type a kraken database type.
+     *
+     * @return the psi-mi identifier of the database, null if not found.
+     */
+    public String getMi( DatabaseType type ) {
+        if ( type == null ) {
+            throw new IllegalArgumentException( "You must give a non null DatabaseType." );
+        }
+        return typeMis[type.ordinal()];
+    }
+}
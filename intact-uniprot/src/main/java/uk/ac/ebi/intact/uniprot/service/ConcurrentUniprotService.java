@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proxy implementation that fans the retrieval of a collection of proteins out across a bounded pool of threads.
+ * <p/>
+ * The collection of ACs is split in chunks, each chunk being retrieved by the underlying service in a single call, and
+ * at most <code>maxInFlight</code> chunks are being retrieved at the same time so that the remote service is not
+ * flooded. Virtual threads are used when the JVM provides them, a fixed pool of daemon threads otherwise.
+ * <p/>
+ * The underlying service must support concurrent calls.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ConcurrentUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( ConcurrentUniprotService.class );
+
+    /**
+     * Default number of chunks being retrieved at the same time.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * Default number of ACs sent to the underlying service in a single call.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = SimpleUniprotRemoteService.DEFAULT_BATCH_SIZE;
+
+    /**
+     * The UniprotService the retrievals are delegated to.
+     */
+    private final UniprotService service;
+
+    private final ExecutorService executor;
+
+    /**
+     * Bounds the number of chunks being retrieved at the same time.
+     */
+    private final Semaphore inFlight;
+
+    private final int maxInFlight;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public ConcurrentUniprotService( UniprotService service ) {
+        this( service, DEFAULT_MAX_IN_FLIGHT );
+    }
+
+    public ConcurrentUniprotService( UniprotService service, int maxInFlight ) {
+        super();
+        if ( service == null ) {
+            throw new NullPointerException( "UniprotService must not be null." );
+        }
+        if ( maxInFlight < 1 ) {
+            throw new IllegalArgumentException( "The number of concurrent retrievals must be 1 or greater: " + maxInFlight );
+        }
+        this.service = service;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore( maxInFlight );
+        this.executor = newExecutor( maxInFlight );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        return retrieve( Collections.singletonList( ac ), processSpliceVars ).get( ac );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        return retrieve( acs, RetrievalOptions.forSpliceVariants( processSpliceVars ) );
+    }
+
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        return retrieve( Collections.singletonList( ac ), options ).get( ac );
+    }
+
+    /**
+     * The chunks are retrieved with the given options by the underlying service.
+     */
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        UniprotServiceResult result = retrieveWithReport( acs, options );
+
+        for ( Map.Entry<String, UniprotServiceReport> error : result.getErrors().entrySet() ) {
+            addError( error.getKey(), error.getValue() );
+        }
+
+        return new HashMap<String, Collection<UniprotProtein>>( result.getProteins() );
+    }
+
+    /**
+     * Retrieves a set of proteins concurrently and reports the problems met in a result private to this call, so that
+     * parallel callers do not see each other's errors. The errors of this call are not added to getErrors().
+     *
+     * @param acs               list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param processSpliceVars whether the splice variants and feature chains should be built.
+     *
+     * @return the proteins found and the errors met, indexed by requested AC.
+     */
+    @Override
+    public UniprotServiceResult retrieveWithReport( Collection<String> acs, boolean processSpliceVars ) {
+        return retrieveWithReport( acs, RetrievalOptions.forSpliceVariants( processSpliceVars ) );
+    }
+
+    /**
+     * Retrieves a set of proteins concurrently, holding only the parts of their entries selected by the options, and
+     * reports the problems met in a result private to this call.
+     *
+     * @param acs     list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param options the parts of the entries to build.
+     *
+     * @return the proteins found and the errors met, indexed by requested AC.
+     */
+    @Override
+    public UniprotServiceResult retrieveWithReport( Collection<String> acs, final RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        UniprotServiceResult result = new UniprotServiceResult();
+        List<ChunkRetrieval> retrievals = new ArrayList<ChunkRetrieval>();
+        boolean completed = false;
+
+        try {
+            for ( List<String> chunk : split( new LinkedHashSet<String>( acs ) ) ) {
+                inFlight.acquire();
+                ChunkRetrieval retrieval = new ChunkRetrieval( chunk, options, result );
+                try {
+                    retrieval.future = executor.submit( retrieval );
+                } catch ( RejectedExecutionException e ) {
+                    inFlight.release();
+                    throw new RuntimeUniprotServiceException( "The service has been closed.", e );
+                }
+                retrievals.add( retrieval );
+            }
+
+            for ( ChunkRetrieval retrieval : retrievals ) {
+                retrieval.future.get();
+            }
+            completed = true;
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while retrieving " + acs.size() + " proteins.", e );
+        } catch ( ExecutionException e ) {
+            // retrieveChunk reports its own failures, this can only be an unexpected error
+            throw new RuntimeUniprotServiceException( "Failed to retrieve " + acs.size() + " proteins.", e.getCause() );
+        } finally {
+            if ( !completed ) {
+                for ( ChunkRetrieval retrieval : retrievals ) {
+                    retrieval.cancel();
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieval of a chunk holding one of the inFlight permits, released once the chunk is retrieved or, when the
+     * retrieval is cancelled before it starts, by the caller cancelling it.
+     */
+    private class ChunkRetrieval implements Runnable {
+
+        private final List<String> chunk;
+        private final RetrievalOptions options;
+        private final UniprotServiceResult result;
+
+        /**
+         * Set by whichever of run() and cancel() comes first, the permit is released by the one that set it.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private Future<?> future;
+
+        private ChunkRetrieval( List<String> chunk, RetrievalOptions options, UniprotServiceResult result ) {
+            this.chunk = chunk;
+            this.options = options;
+            this.result = result;
+        }
+
+        public void run() {
+            if ( !started.compareAndSet( false, true ) ) {
+                return;
+            }
+            try {
+                retrieveChunk( chunk, options, result );
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private void cancel() {
+            if ( future.cancel( true ) && started.compareAndSet( false, true ) ) {
+                inFlight.release();
+            }
+        }
+    }
+
+    private void retrieveChunk( List<String> chunk, RetrievalOptions options, UniprotServiceResult result ) {
+        if ( log.isDebugEnabled() ) {
+            log.debug( Thread.currentThread().getName() + " retrieving " + chunk.size() + " ACs" );
+        }
+
+        // the errors the underlying service meets on this worker go straight to the result of the call
+        Map<String, Collection<UniprotProtein>> proteins;
+        UniprotServiceResult outer = enterReport( result );
+        try {
+            proteins = retrieveFrom( service, chunk, options );
+        } catch ( RuntimeException e ) {
+            log.error( "Failed to retrieve " + chunk.size() + " ACs", e );
+            for ( String ac : chunk ) {
+                result.addError( ac, new UniprotServiceReport( "Could not retrieve protein: " + ac, e ) );
+            }
+            return;
+        } finally {
+            exitReport( outer );
+        }
+
+        for ( String ac : chunk ) {
+            Collection<UniprotProtein> found = proteins.get( ac );
+            result.addProteins( ac, found != null ? found : new ArrayList<UniprotProtein>() );
+        }
+    }
+
+    private List<List<String>> split( Collection<String> acs ) {
+        List<List<String>> chunks = new ArrayList<List<String>>( acs.size() / chunkSize + 1 );
+        List<String> chunk = new ArrayList<String>( chunkSize );
+        for ( String ac : acs ) {
+            chunk.add( ac );
+            if ( chunk.size() == chunkSize ) {
+                chunks.add( chunk );
+                chunk = new ArrayList<String>( chunkSize );
+            }
+        }
+        if ( !chunk.isEmpty() ) {
+            chunks.add( chunk );
+        }
+        return chunks;
+    }
+
+    static ExecutorService newExecutor( int threads ) {
+        // virtual threads are only available from Java 21 onward
+        try {
+            ExecutorService executor = ( ExecutorService ) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Retrieving proteins using virtual threads" );
+            }
+            return executor;
+        } catch ( NoSuchMethodException e ) {
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Virtual threads not available, retrieving proteins using " + threads + " threads" );
+            }
+        } catch ( Exception e ) {
+            log.warn( "Could not create a virtual thread executor, retrieving proteins using " + threads + " threads", e );
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool( threads, new ThreadFactory() {
+            public Thread newThread( Runnable runnable ) {
+                Thread thread = new Thread( runnable, "uniprot-retrieval-" + threadCount.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Searches enough ACs at a time to keep every concurrent retrieval busy.
+     */
+    @Override
+    protected int getIncrementalBatchSize() {
+        return chunkSize * maxInFlight;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the number of ACs sent to the underlying service in a single call.
+     *
+     * @param chunkSize a strictly positive number of ACs.
+     */
+    public void setChunkSize( int chunkSize ) {
+        if ( chunkSize < 1 ) {
+            throw new IllegalArgumentException( "The chunk size must be 1 or greater: " + chunkSize );
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        service.setCrossReferenceSelector( crossReferenceFilter );
+    }
+
+    public CrossReferenceFilter getCrossReferenceSelector() {
+        return service.getCrossReferenceSelector();
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        return service.retrieveProteinTranscripts( ac );
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        return service.retrieveSpliceVariant( ac );
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        return service.retrieveFeatureChain( ac );
+    }
+
+    public void close() {
+        executor.shutdownNow();
+        service.close();
+    }
+
+    public void start() {
+        service.start();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseAttribute;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseCrossReference;
+
+import java.util.Arrays;
+
+/**
+ * Values of the cross references of an entry kept in a single flat array, so that the cross references can be built
+ * later without holding on to the kraken objects.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+final class CrossReferenceBuffer {
+
+    private static final int DATABASE = 0;
+    private static final int PRIMARY_ID = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int THIRD = 3;
+    private static final int ISOFORM_ID = 4;
+
+    /**
+     * Number of values kept per cross reference.
+     */
+    private static final int STRIDE = 5;
+
+    private String[] values;
+
+    private int size;
+
+    CrossReferenceBuffer( int expectedSize ) {
+        this.values = new String[Math.max( 1, expectedSize ) * STRIDE];
+    }
+
+    void add( DatabaseCrossReference crossRef ) {
+        if ( ( size + 1 ) * STRIDE > values.length ) {
+            values = Arrays.copyOf( values, values.length * 2 );
+        }
+        int offset = size * STRIDE;
+        values[offset + DATABASE] = crossRef.getDatabase().getName();
+        values[offset + PRIMARY_ID] = valueOf( crossRef.getPrimaryId() );
+        values[offset + DESCRIPTION] = valueOf( crossRef.getDescription() );
+        values[offset + THIRD] = valueOf( crossRef.getThird() );
+        values[offset + ISOFORM_ID] = valueOf( crossRef.getIsoformId() );
+        size++;
+    }
+
+    private static String valueOf( DatabaseAttribute attribute ) {
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    int size() {
+        return size;
+    }
+
+    String getDatabase( int index ) {
+        return values[index * STRIDE + DATABASE];
+    }
+
+    String getPrimaryId( int index ) {
+        return values[index * STRIDE + PRIMARY_ID];
+    }
+
+    String getDescription( int index ) {
+        return values[index * STRIDE + DESCRIPTION];
+    }
+
+    String getThird( int index ) {
+        return values[index * STRIDE + THIRD];
+    }
+
+    String getIsoformId( int index ) {
+        return values[index * STRIDE + ISOFORM_ID];
+    }
+}
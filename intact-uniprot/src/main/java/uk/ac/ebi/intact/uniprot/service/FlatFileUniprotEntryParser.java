@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.kraken.interfaces.factories.UniProtFactory;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.kraken.model.factories.DefaultUniProtFactory;
+import uk.ac.ebi.kraken.parser.UniProtParser;
+
+/**
+ * Parses the entries of a UniProt flat file dump (uniprot_sprot.dat.gz, uniprot_trembl.dat.gz) with the flat file
+ * parser of the UniProt JAPI. This is the parser a UniprotDumpLoader uses when none is given.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class FlatFileUniprotEntryParser implements UniprotEntryParser {
+
+    private final UniProtFactory factory;
+
+    public FlatFileUniprotEntryParser() {
+        this( DefaultUniProtFactory.getInstance() );
+    }
+
+    /**
+     * @param factory builds the parts of the entries.
+     */
+    public FlatFileUniprotEntryParser( UniProtFactory factory ) {
+        if ( factory == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtFactory." );
+        }
+        this.factory = factory;
+    }
+
+    public UniProtEntry parse( String record ) {
+        if ( record == null ) {
+            throw new IllegalArgumentException( "You must give a non null entry." );
+        }
+        UniProtEntry entry = UniProtParser.parse( record, factory );
+        if ( entry == null ) {
+            throw new RuntimeUniprotServiceException( "Could not parse the UniProt entry: "
+                                                      + record.substring( 0, Math.min( 80, record.length() ) ) );
+        }
+        return entry;
+    }
+}
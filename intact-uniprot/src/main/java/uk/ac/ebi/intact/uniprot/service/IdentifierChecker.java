@@ -29,6 +29,192 @@ public class IdentifierChecker {
     private static final Pattern SPLICE_VARIANT_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-[0-9]+" );
     private static final Pattern FEATURE_CHAIN_ID_PATTERN = Pattern.compile( PROTEIN_AC_PATTERN_STR + "-PRO_[0-9]{10}|PRO_[0-9]{10}" );
 
+    /**
+     * Length of the protein ACs recognised by the checker, it is also where the suffix of a splice variant or of a
+     * feature chain identifier starts.
+     */
+    private static final int PROTEIN_AC_LENGTH = 6;
+
+    private static final int FEATURE_CHAIN_DIGITS = 10;
+
+    /**
+     * Kinds of identifiers told apart by {@link IdentifierChecker#classify(CharSequence)}.
+     */
+    public enum IdentifierType {
+        /**
+         * A protein AC, e.g. P12345.
+         */
+        PROTEIN( PROTEIN_AC_LENGTH, -1 ),
+        /**
+         * A splice variant identifier, e.g. P12345-2.
+         */
+        SPLICE_VARIANT( PROTEIN_AC_LENGTH, -1 ),
+        /**
+         * A feature chain identifier prefixed by the AC of its protein, e.g. P12345-PRO_0000030424.
+         */
+        FEATURE_CHAIN( PROTEIN_AC_LENGTH, PROTEIN_AC_LENGTH + 1 ),
+        /**
+         * A feature chain identifier on its own, e.g. PRO_0000030424.
+         */
+        BARE_PRO( -1, 0 ),
+        /**
+         * Anything else, e.g. a UniProt ID such as CDC42_HUMAN.
+         */
+        UNKNOWN( -1, -1 );
+
+        private final int proteinAcEnd;
+
+        private final int featureChainIdStart;
+
+        IdentifierType( int proteinAcEnd, int featureChainIdStart ) {
+            this.proteinAcEnd = proteinAcEnd;
+            this.featureChainIdStart = featureChainIdStart;
+        }
+
+        /**
+         * @return the index the protein AC of an identifier of this type ends at (exclusive), -1 if it has none.
+         */
+        public int getProteinAcEnd() {
+            return proteinAcEnd;
+        }
+
+        /**
+         * @return the index the PRO_ identifier starts at in an identifier of this type, -1 if it has none.
+         */
+        public int getFeatureChainIdStart() {
+            return featureChainIdStart;
+        }
+
+        public boolean isFeatureChain() {
+            return featureChainIdStart != -1;
+        }
+    }
+
+    /**
+     * Tells what kind of identifier is given, in a single pass over its characters and without allocating. It accepts
+     * the same syntax as isProteinId, isSpliceVariantId and isFeatureChainId, but ignores the case of the letters so
+     * that the identifier does not have to be upper cased beforehand.
+     *
+     * @param id the identifier to classify.
+     *
+     * @return the type of the identifier, UNKNOWN if it is none of the others.
+     */
+    public static IdentifierType classify( CharSequence id ) {
+        if ( id == null ) {
+            throw new IllegalArgumentException( "You must give a non null Identifier to check upon." );
+        }
+        int length = id.length();
+
+        if ( isProPrefix( id, 0 ) ) {
+            return isFeatureChainNumber( id, 4 ) ? IdentifierType.BARE_PRO : IdentifierType.UNKNOWN;
+        }
+
+        if ( length < PROTEIN_AC_LENGTH
+             || !isLetter( id.charAt( 0 ) )
+             || !isDigit( id.charAt( 1 ) )
+             || !isLetterOrDigit( id.charAt( 2 ) )
+             || !isLetterOrDigit( id.charAt( 3 ) )
+             || !isLetterOrDigit( id.charAt( 4 ) )
+             || !isDigit( id.charAt( 5 ) ) ) {
+            return IdentifierType.UNKNOWN;
+        }
+        if ( length == PROTEIN_AC_LENGTH ) {
+            return IdentifierType.PROTEIN;
+        }
+        if ( id.charAt( PROTEIN_AC_LENGTH ) != '-' ) {
+            return IdentifierType.UNKNOWN;
+        }
+
+        int suffixStart = PROTEIN_AC_LENGTH + 1;
+        if ( length > suffixStart && isDigits( id, suffixStart, length ) ) {
+            return IdentifierType.SPLICE_VARIANT;
+        }
+        if ( isProPrefix( id, suffixStart ) && isFeatureChainNumber( id, suffixStart + 4 ) ) {
+            return IdentifierType.FEATURE_CHAIN;
+        }
+        return IdentifierType.UNKNOWN;
+    }
+
+    /**
+     * @param id the identifier to read the isoform number from.
+     *
+     * @return the number following the protein AC of a splice variant identifier, -1 if the identifier is not one or
+     *         if the number does not fit in an int.
+     */
+    public static int getIsoformNumber( CharSequence id ) {
+        if ( classify( id ) != IdentifierType.SPLICE_VARIANT ) {
+            return -1;
+        }
+        long number = parseDigits( id, PROTEIN_AC_LENGTH + 1, id.length() );
+        return number > Integer.MAX_VALUE ? -1 : ( int ) number;
+    }
+
+    /**
+     * @param id the identifier to read the feature chain number from.
+     *
+     * @return the number of the PRO_ identifier of a feature chain, with or without protein AC, -1 if the identifier
+     *         is not one.
+     */
+    public static long getFeatureChainNumber( CharSequence id ) {
+        IdentifierType type = classify( id );
+        if ( !type.isFeatureChain() ) {
+            return -1;
+        }
+        return parseDigits( id, type.getFeatureChainIdStart() + 4, id.length() );
+    }
+
+    private static boolean isProPrefix( CharSequence id, int start ) {
+        return id.length() >= start + 4
+               && equalsIgnoreCase( id.charAt( start ), 'P' )
+               && equalsIgnoreCase( id.charAt( start + 1 ), 'R' )
+               && equalsIgnoreCase( id.charAt( start + 2 ), 'O' )
+               && id.charAt( start + 3 ) == '_';
+    }
+
+    private static boolean isFeatureChainNumber( CharSequence id, int start ) {
+        return id.length() == start + FEATURE_CHAIN_DIGITS && isDigits( id, start, id.length() );
+    }
+
+    private static boolean isDigits( CharSequence id, int start, int end ) {
+        for ( int i = start; i < end; i++ ) {
+            if ( !isDigit( id.charAt( i ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of the digits, saturated to Long.MAX_VALUE.
+     */
+    private static long parseDigits( CharSequence id, int start, int end ) {
+        long value = 0;
+        for ( int i = start; i < end; i++ ) {
+            int digit = id.charAt( i ) - '0';
+            if ( value > ( Long.MAX_VALUE - digit ) / 10 ) {
+                return Long.MAX_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean isDigit( char c ) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter( char c ) {
+        return ( c >= 'A' && c <= 'Z' ) || ( c >= 'a' && c <= 'z' );
+    }
+
+    private static boolean isLetterOrDigit( char c ) {
+        return isLetter( c ) || isDigit( c );
+    }
+
+    private static boolean equalsIgnoreCase( char c, char upperCase ) {
+        return c == upperCase || c == upperCase + ( 'a' - 'A' );
+    }
+
     private static boolean check( Pattern pattern, String ac ) {
         if ( ac == null ) {
             throw new IllegalArgumentException( "You must give a non null Identifier to check upon." );
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.util.*;
+
+/**
+ * Remembers, for the duration of a single request, the parent entries of EXTERNAL isoforms and the sequences resolved
+ * from them, so that a parent shared by several entries of a batch is only fetched once.
+ * <p/>
+ * Parents can be requested while a batch is scanned and fetched together afterwards. A cache is meant to be used by a
+ * single thread and thrown away at the end of the request.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class IsoformResolutionCache {
+
+    /**
+     * Sequences known before any resolution, indexed by isoform id.
+     */
+    private final Map<String, String> knownSequences;
+
+    /**
+     * Entries found for each parent AC, an empty list if the parent could not be found.
+     */
+    private final Map<String, List<UniProtEntry>> parents = new HashMap<String, List<UniProtEntry>>();
+
+    /**
+     * Sequences resolved from a parent entry, indexed by isoform id.
+     */
+    private final Map<String, String> resolvedSequences = new HashMap<String, String>();
+
+    private final Set<String> pendingParents = new LinkedHashSet<String>();
+
+    // statistics
+    private int parentHitCount;
+    private int parentFetchCount;
+    private int sequenceHitCount;
+
+    public IsoformResolutionCache() {
+        this( new HashMap<String, String>() );
+    }
+
+    /**
+     * @param knownSequences sequences to use as they are, indexed by isoform id.
+     */
+    public IsoformResolutionCache( Map<String, String> knownSequences ) {
+        if ( knownSequences == null ) {
+            throw new IllegalArgumentException( "You must give a non null Map of sequences." );
+        }
+        this.knownSequences = knownSequences;
+    }
+
+    /**
+     * Records that the entries of a parent AC will be needed. Parents already resolved are ignored.
+     *
+     * @param parentAc the AC of the parent entry.
+     */
+    public void requestParent( String parentAc ) {
+        String key = parentAc.toUpperCase();
+        if ( !parents.containsKey( key ) ) {
+            pendingParents.add( key );
+        }
+    }
+
+    /**
+     * @return the upper case ACs of the parents requested but not resolved yet.
+     */
+    public Collection<String> getPendingParents() {
+        return new ArrayList<String>( pendingParents );
+    }
+
+    /**
+     * Stores the entries found for a parent AC.
+     *
+     * @param parentAc the AC of the parent entry.
+     * @param entries  the entries found, empty if none.
+     */
+    public void putParent( String parentAc, List<UniProtEntry> entries ) {
+        String key = parentAc.toUpperCase();
+        pendingParents.remove( key );
+        parents.put( key, entries );
+        parentFetchCount++;
+    }
+
+    /**
+     * @param parentAc the AC of the parent entry.
+     *
+     * @return the entries found for this parent, null if it was not resolved yet.
+     */
+    public List<UniProtEntry> getParent( String parentAc ) {
+        List<UniProtEntry> entries = parents.get( parentAc.toUpperCase() );
+        if ( entries != null ) {
+            parentHitCount++;
+        }
+        return entries;
+    }
+
+    /**
+     * @param isoformId the id of the isoform.
+     *
+     * @return the sequence of this isoform if it was given when the cache was created, null otherwise.
+     */
+    public String getKnownSequence( String isoformId ) {
+        return knownSequences.get( isoformId );
+    }
+
+    public boolean isKnownSequence( String isoformId ) {
+        return knownSequences.containsKey( isoformId );
+    }
+
+    /**
+     * @param isoformId the id of the isoform.
+     *
+     * @return the sequence already resolved from its parent entry, null if it was not resolved yet.
+     */
+    public String getResolvedSequence( String isoformId ) {
+        String sequence = resolvedSequences.get( isoformId );
+        if ( sequence != null ) {
+            sequenceHitCount++;
+        }
+        return sequence;
+    }
+
+    public void putResolvedSequence( String isoformId, String sequence ) {
+        if ( sequence != null && sequence.length() > 0 ) {
+            resolvedSequences.put( isoformId, sequence );
+        }
+    }
+
+    /**
+     * @return number of times the entries of a parent were found in the cache.
+     */
+    public int getParentHitCount() {
+        return parentHitCount;
+    }
+
+    /**
+     * @return number of parents resolved.
+     */
+    public int getParentFetchCount() {
+        return parentFetchCount;
+    }
+
+    /**
+     * @return number of times the sequence of an EXTERNAL isoform was found in the cache.
+     */
+    public int getSequenceHitCount() {
+        return sequenceHitCount;
+    }
+}
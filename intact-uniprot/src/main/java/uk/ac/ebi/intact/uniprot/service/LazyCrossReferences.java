@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.CrossReferenceResolver;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+/**
+ * Builds the cross references of a protein and of its splice variants from the values kept in a buffer, the first time
+ * one of them is asked for its cross references.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+class LazyCrossReferences implements CrossReferenceResolver {
+
+    private final SimpleUniprotRemoteService service;
+
+    private final UniprotProtein protein;
+
+    private final UniprotSpliceVariant[] spliceVariants;
+
+    private CrossReferenceBuffer buffer;
+
+    private boolean resolved;
+
+    /**
+     * Attaches itself to the protein and to its splice variants.
+     */
+    LazyCrossReferences( SimpleUniprotRemoteService service, UniprotProtein protein, CrossReferenceBuffer buffer ) {
+        this.service = service;
+        this.protein = protein;
+        this.buffer = buffer;
+        this.spliceVariants = protein.getSpliceVariants().toArray( new UniprotSpliceVariant[0] );
+
+        protein.setCrossReferenceResolver( this );
+        for ( UniprotSpliceVariant spliceVariant : spliceVariants ) {
+            spliceVariant.setCrossReferenceResolver( this );
+        }
+    }
+
+    /**
+     * Other threads wait for the cross references to be built, the thread building them goes through as the getters
+     * it calls come back here.
+     */
+    public synchronized void resolve() {
+        if ( resolved ) {
+            return;
+        }
+        resolved = true;
+
+        try {
+            service.assignCrossReferences( protein, service.convertCrossReferenceToUniprotXref( buffer ) );
+        } finally {
+            buffer = null;
+            protein.setCrossReferenceResolver( null );
+            for ( UniprotSpliceVariant spliceVariant : spliceVariants ) {
+                spliceVariant.setCrossReferenceResolver( null );
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UniprotService answering from a local snapshot of UniProt only, without ever relying on the network.
+ * <p/>
+ * The snapshot is a UniprotProteinStore, filled either from UniProt dumps by a UniprotDumpLoader or with the proteins
+ * retrieved by a PersistentUniprotService. Proteins are found by AC, secondary AC, ID, splice variant ID and PRO_ id
+ * with a single lookup in the index of the store, and read from the file. Identifiers that are not in the snapshot are
+ * reported as not found. Splice variants and feature chains asked for proteins stored without them are not served,
+ * the identifier is reported as failed instead.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class LocalUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( LocalUniprotService.class );
+
+    private final UniprotProteinStore store;
+
+    public LocalUniprotService( File directory ) {
+        this( new UniprotProteinStore( directory ) );
+    }
+
+    public LocalUniprotService( UniprotProteinStore store ) {
+        super();
+        if ( store == null ) {
+            throw new NullPointerException( "UniprotProteinStore must not be null." );
+        }
+        this.store = store;
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+
+        Collection<UniprotProtein> proteins = load( ac, processSpliceVars );
+        if ( proteins == null ) {
+            return new ArrayList<UniprotProtein>();
+        }
+        if ( proteins.isEmpty() ) {
+            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+        } else if ( !processSpliceVars ) {
+            for ( UniprotProtein protein : proteins ) {
+                removeSpliceVariants( protein );
+            }
+        }
+        return proteins;
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        for ( String ac : acs ) {
+            results.put( ac, retrieve( ac, processSpliceVars ) );
+        }
+        return results;
+    }
+
+    /**
+     * Each protein is loaded from the store on its own, the parts not asked for are then dropped.
+     */
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        Collection<UniprotProtein> proteins = load( ac, options.isProcessSpliceVariants() );
+        if ( proteins == null ) {
+            return new ArrayList<UniprotProtein>();
+        }
+        if ( proteins.isEmpty() ) {
+            addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+        }
+        for ( UniprotProtein protein : proteins ) {
+            project( protein, options );
+        }
+        return proteins;
+    }
+
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        for ( String ac : acs ) {
+            results.put( ac, retrieve( ac, options ) );
+        }
+        return results;
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        Collection<UniprotProteinTranscript> transcripts = new ArrayList<UniprotProteinTranscript>();
+        transcripts.addAll( retrieveSpliceVariant( ac ) );
+        transcripts.addAll( retrieveFeatureChain( ac ) );
+        return transcripts;
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+
+        Collection<UniprotProtein> proteins = load( ac, true );
+        if ( proteins == null ) {
+            return new ArrayList<UniprotSpliceVariant>();
+        }
+        if ( proteins.isEmpty() ) {
+            addError( ac, new UniprotServiceReport( "Could not find splice variants: " + ac ) );
+        }
+
+        Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
+        Set<String> variantAcProcessed = new HashSet<String>();
+        for ( UniprotProtein protein : proteins ) {
+            UniprotSpliceVariant variant = retrieveUniprotSpliceVariant( protein, ac );
+            if ( variant != null && variantAcProcessed.add( variant.getPrimaryAc() ) ) {
+                variant.setMasterProtein( protein );
+                variants.add( variant );
+            }
+        }
+        return variants;
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+
+        Collection<UniprotProtein> proteins = load( ac, true );
+        if ( proteins == null ) {
+            return new ArrayList<UniprotFeatureChain>();
+        }
+        if ( proteins.isEmpty() ) {
+            addError( ac, new UniprotServiceReport( "Could not find feature chains: " + ac ) );
+        }
+
+        Collection<UniprotFeatureChain> chains = new ArrayList<UniprotFeatureChain>();
+        for ( UniprotProtein protein : proteins ) {
+            UniprotFeatureChain chain = retrieveUniprotFeatureChain( protein, ac );
+            if ( chain != null ) {
+                chain.setMasterProtein( protein );
+                chains.add( chain );
+            }
+        }
+        return chains;
+    }
+
+    /**
+     * Reads the proteins known under an identifier, each call getting its own copies.
+     *
+     * @param ac                 the identifier.
+     * @param withSpliceVariants whether the splice variants and feature chains of the proteins are needed.
+     *
+     * @return the proteins, or null if one of them was stored without the splice variants needed, which is reported.
+     */
+    private Collection<UniprotProtein> load( String ac, boolean withSpliceVariants ) {
+        Collection<UniprotProteinStore.StoredProtein> stored = store.lookup( ac.trim() );
+        if ( withSpliceVariants && !isWithSpliceVariants( ac, stored ) ) {
+            return null;
+        }
+
+        Collection<UniprotProtein> proteins;
+        try {
+            proteins = load( stored );
+        } catch ( RuntimeUniprotServiceException e ) {
+            // a record replaced or moved by a compaction since the lookup, the new one is looked up once
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Could not load the stored proteins of " + ac + ", looking them up again", e );
+            }
+            stored = store.lookup( ac.trim() );
+            if ( withSpliceVariants && !isWithSpliceVariants( ac, stored ) ) {
+                return null;
+            }
+            proteins = load( stored );
+        }
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Found " + proteins.size() + " protein(s) for " + ac + " in the local snapshot" );
+        }
+        return proteins;
+    }
+
+    private Collection<UniprotProtein> load( Collection<UniprotProteinStore.StoredProtein> stored ) {
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( stored.size() );
+        for ( UniprotProteinStore.StoredProtein s : stored ) {
+            proteins.add( store.load( s ) );
+        }
+        return proteins;
+    }
+
+    /**
+     * @return true if every stored protein holds its splice variants, otherwise the first one missing them is reported.
+     */
+    private boolean isWithSpliceVariants( String ac, Collection<UniprotProteinStore.StoredProtein> stored ) {
+        for ( UniprotProteinStore.StoredProtein s : stored ) {
+            if ( !s.isWithSpliceVariants() ) {
+                addError( ac, new UniprotServiceReport( UniprotReportType.RETRIEVAL_FAILED,
+                                                        "The local snapshot holds " + s.getPrimaryAc()
+                                                        + " without its splice variants and feature chains: " + ac,
+                                                        null ) );
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Getters
+
+    public UniprotProteinStore getStore() {
+        return store;
+    }
+
+    public void close() {
+        store.close();
+    }
+
+    public void start() {
+        // the store is opened when the service is created
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the identifiers UniProt did not know, so that deleted or merged ACs are not searched again until their
+ * time to live is over.
+ * <p/>
+ * Each kind of lookup has its own time to live, and counts the remote calls it saved. Outcomes whose time to live is
+ * over are dropped when they are looked up, and every EVICTION_INTERVAL outcomes recorded, so that identifiers never
+ * looked up again do not stay for ever.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class NegativeResultCache {
+
+    /**
+     * Kind of lookup a "not found" outcome applies to.
+     */
+    public enum LookupType {
+        PROTEIN,
+        SPLICE_VARIANT,
+        FEATURE_CHAIN;
+
+        /**
+         * @param ac a protein AC, splice variant or feature chain identifier.
+         *
+         * @return the kind of lookup UniProt is searched with for that identifier.
+         */
+        public static LookupType of( String ac ) {
+            switch ( IdentifierChecker.classify( ac ) ) {
+                case SPLICE_VARIANT:
+                    return SPLICE_VARIANT;
+                case FEATURE_CHAIN:
+                case BARE_PRO:
+                    return FEATURE_CHAIN;
+                default:
+                    return PROTEIN;
+            }
+        }
+    }
+
+    /**
+     * Time to live of the outcomes of every kind of lookup, unless set otherwise: one day.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Number of outcomes recorded between two removals of the expired ones.
+     */
+    public static final int EVICTION_INTERVAL = 1000;
+
+    private final Map<LookupType, Map<String, Long>> expiries = new EnumMap<LookupType, Map<String, Long>>( LookupType.class );
+
+    private final Map<LookupType, Long> timesToLive = new EnumMap<LookupType, Long>( LookupType.class );
+
+    // statistics
+    private final Map<LookupType, AtomicLong> savedCalls = new EnumMap<LookupType, AtomicLong>( LookupType.class );
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    private final AtomicLong putCount = new AtomicLong();
+
+    public NegativeResultCache() {
+        this( DEFAULT_TIME_TO_LIVE_MILLIS );
+    }
+
+    /**
+     * @param timeToLiveMillis time to live of the outcomes of every kind of lookup.
+     */
+    public NegativeResultCache( long timeToLiveMillis ) {
+        for ( LookupType type : LookupType.values() ) {
+            expiries.put( type, new ConcurrentHashMap<String, Long>() );
+            savedCalls.put( type, new AtomicLong() );
+            setTimeToLiveMillis( type, timeToLiveMillis );
+        }
+    }
+
+    /**
+     * Checks whether an identifier is known not to be in UniProt. A positive answer counts as a saved remote call.
+     *
+     * @param type the kind of lookup.
+     * @param ac   the identifier looked up.
+     *
+     * @return true if the identifier was not found and its time to live is not over.
+     */
+    public boolean isNotFound( LookupType type, String ac ) {
+        Map<String, Long> typeExpiries = expiries.get( type );
+        String key = ac.toUpperCase();
+
+        Long expiry = typeExpiries.get( key );
+        if ( expiry == null ) {
+            missCount.incrementAndGet();
+            return false;
+        }
+        if ( expiry <= currentTimeMillis() ) {
+            if ( typeExpiries.remove( key, expiry ) ) {
+                expiredCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            return false;
+        }
+
+        savedCalls.get( type ).incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records that an identifier was not found in UniProt.
+     *
+     * @param type the kind of lookup.
+     * @param ac   the identifier looked up.
+     */
+    public void putNotFound( LookupType type, String ac ) {
+        expiries.get( type ).put( ac.toUpperCase(), currentTimeMillis() + timesToLive.get( type ) );
+        if ( putCount.incrementAndGet() % EVICTION_INTERVAL == 0 ) {
+            evictExpired();
+        }
+    }
+
+    /**
+     * Forgets the outcome of a lookup, for instance when the identifier was found by other means.
+     */
+    public void remove( LookupType type, String ac ) {
+        expiries.get( type ).remove( ac.toUpperCase() );
+    }
+
+    /**
+     * Forgets every outcome.
+     */
+    public void clear() {
+        for ( Map<String, Long> typeExpiries : expiries.values() ) {
+            typeExpiries.clear();
+        }
+    }
+
+    /**
+     * Removes the outcomes whose time to live is over.
+     *
+     * @return the number of outcomes removed.
+     */
+    public int evictExpired() {
+        long now = currentTimeMillis();
+        int evicted = 0;
+        for ( Map<String, Long> typeExpiries : expiries.values() ) {
+            for ( Iterator<Long> iterator = typeExpiries.values().iterator(); iterator.hasNext(); ) {
+                if ( iterator.next() <= now ) {
+                    iterator.remove();
+                    evicted++;
+                }
+            }
+        }
+        expiredCount.addAndGet( evicted );
+        return evicted;
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // Getters and Setters
+
+    public long getTimeToLiveMillis( LookupType type ) {
+        return timesToLive.get( type );
+    }
+
+    /**
+     * Sets how long the "not found" outcomes of a kind of lookup are kept. Outcomes already recorded keep their expiry.
+     *
+     * @param type             the kind of lookup.
+     * @param timeToLiveMillis a strictly positive time to live.
+     */
+    public void setTimeToLiveMillis( LookupType type, long timeToLiveMillis ) {
+        if ( timeToLiveMillis <= 0 ) {
+            throw new IllegalArgumentException( "The time to live must be strictly positive: " + timeToLiveMillis );
+        }
+        timesToLive.put( type, timeToLiveMillis );
+    }
+
+    /**
+     * @return number of outcomes currently recorded, some of which may have expired.
+     */
+    public int size() {
+        int size = 0;
+        for ( Map<String, Long> typeExpiries : expiries.values() ) {
+            size += typeExpiries.size();
+        }
+        return size;
+    }
+
+    public int size( LookupType type ) {
+        return expiries.get( type ).size();
+    }
+
+    /**
+     * @return number of remote calls saved for a kind of lookup.
+     */
+    public long getSavedCalls( LookupType type ) {
+        return savedCalls.get( type ).get();
+    }
+
+    /**
+     * @return number of remote calls saved for all kinds of lookup.
+     */
+    public long getSavedCalls() {
+        long saved = 0;
+        for ( AtomicLong typeSavedCalls : savedCalls.values() ) {
+            saved += typeSavedCalls.get();
+        }
+        return saved;
+    }
+
+    /**
+     * @return number of lookups for which no outcome was recorded.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of outcomes dropped because their time to live was over.
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+}
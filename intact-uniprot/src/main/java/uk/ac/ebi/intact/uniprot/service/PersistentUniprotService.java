@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Proxy implementation that keeps the proteins retrieved by a UniprotService in a persistent store, so that they do
+ * not have to be fetched again after a restart.
+ * <p/>
+ * Stored proteins are served as long as they were built from the current UniProt release. When no current release is
+ * set, stored proteins are always considered valid. An identifier is only answered from the store when the stored
+ * proteins are all the proteins it names: primary AC, UniProt ID or identifier that was retrieved before. A secondary
+ * AC that was never retrieved may be shared with entries that are not stored, it is retrieved. This can be used instead
+ * of CachedUniprotService.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class PersistentUniprotService extends AbstractUniprotService implements UniprotService {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( PersistentUniprotService.class );
+
+    /**
+     * The UniprotService we are going to store proteins for.
+     */
+    private final UniprotService service;
+
+    private final UniprotProteinStore store;
+
+    /**
+     * UniProt release stored proteins have to come from to be served, null to serve them regardless of their release.
+     */
+    private volatile String currentRelease;
+
+    public PersistentUniprotService( UniprotService service, File directory ) {
+        this( service, new UniprotProteinStore( directory ) );
+    }
+
+    public PersistentUniprotService( UniprotService service, UniprotProteinStore store ) {
+        super();
+        if ( service == null ) {
+            throw new NullPointerException( "UniprotService must not be null." );
+        }
+        if ( store == null ) {
+            throw new NullPointerException( "UniprotProteinStore must not be null." );
+        }
+        this.service = service;
+        this.store = store;
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac ) {
+        return retrieve( ac, true );
+    }
+
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+
+        Collection<UniprotProtein> proteins = getFromStore( ac, processSpliceVars );
+        if ( proteins == null ) {
+            proteins = service.retrieve( ac, processSpliceVars );
+            storeProteins( ac, proteins, processSpliceVars );
+        } else if ( !processSpliceVars ) {
+            for ( UniprotProtein protein : proteins ) {
+                removeSpliceVariants( protein );
+            }
+        }
+
+        return proteins;
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+        return retrieve( acs, true );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        List<String> missing = new ArrayList<String>();
+
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> proteins = getFromStore( ac, processSpliceVars );
+            if ( proteins != null ) {
+                if ( !processSpliceVars ) {
+                    for ( UniprotProtein protein : proteins ) {
+                        removeSpliceVariants( protein );
+                    }
+                }
+                results.put( ac, proteins );
+            } else {
+                missing.add( ac );
+            }
+        }
+
+        if ( !missing.isEmpty() ) {
+            Map<String, Collection<UniprotProtein>> fetched = service.retrieve( missing, processSpliceVars );
+            for ( Map.Entry<String, Collection<UniprotProtein>> entry : fetched.entrySet() ) {
+                storeProteins( entry.getKey(), entry.getValue(), processSpliceVars );
+            }
+            results.putAll( fetched );
+        }
+
+        return results;
+    }
+
+    /**
+     * Stored proteins answer the request once the parts not asked for are dropped. The proteins missing from the store
+     * are retrieved with the options and are not stored, as they do not hold their whole entry.
+     */
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        if ( isFlagOptions( options ) ) {
+            return retrieve( ac, options.isProcessSpliceVariants() );
+        }
+
+        Collection<UniprotProtein> proteins = getFromStore( ac, options.isProcessSpliceVariants() );
+        if ( proteins == null ) {
+            return service.retrieve( ac, options );
+        }
+        for ( UniprotProtein protein : proteins ) {
+            project( protein, options );
+        }
+        return proteins;
+    }
+
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        if ( isFlagOptions( options ) ) {
+            return retrieve( acs, options.isProcessSpliceVariants() );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        List<String> missing = new ArrayList<String>();
+
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> proteins = getFromStore( ac, options.isProcessSpliceVariants() );
+            if ( proteins != null ) {
+                for ( UniprotProtein protein : proteins ) {
+                    project( protein, options );
+                }
+                results.put( ac, proteins );
+            } else {
+                missing.add( ac );
+            }
+        }
+
+        if ( !missing.isEmpty() ) {
+            results.putAll( service.retrieve( missing, options ) );
+        }
+
+        return results;
+    }
+
+    public Map<String, UniprotServiceReport> getErrors() {
+        return service.getErrors();
+    }
+
+    public void clearErrors() {
+        service.clearErrors();
+    }
+
+    public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        service.setCrossReferenceSelector( crossReferenceFilter );
+    }
+
+    public CrossReferenceFilter getCrossReferenceSelector() {
+        return service.getCrossReferenceSelector();
+    }
+
+    public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+        Collection<UniprotProteinTranscript> variants = new ArrayList<UniprotProteinTranscript>();
+
+        variants.addAll( retrieveSpliceVariant( ac ) );
+        variants.addAll( retrieveFeatureChain( ac ) );
+
+        return variants;
+    }
+
+    public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+        Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
+        Collection<String> variantAcProcessed = new ArrayList<String>();
+
+        for ( UniprotProtein p : retrieve( ac ) ) {
+            UniprotSpliceVariant variant = retrieveUniprotSpliceVariant( p, ac );
+
+            if ( variant != null && !variantAcProcessed.contains( variant.getPrimaryAc() ) ) {
+                variants.add( variant );
+                variantAcProcessed.add( variant.getPrimaryAc() );
+            }
+        }
+
+        return variants;
+    }
+
+    public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+        Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
+
+        for ( UniprotProtein p : retrieve( ac ) ) {
+            UniprotFeatureChain variant = retrieveUniprotFeatureChain( p, ac );
+
+            if ( variant != null ) {
+                variants.add( variant );
+            }
+        }
+
+        return variants;
+    }
+
+    public void close() {
+        store.close();
+        service.close();
+    }
+
+    public void start() {
+        service.start();
+    }
+
+    ///////////////////////////
+    // Getters and Setters
+
+    public UniprotProteinStore getStore() {
+        return store;
+    }
+
+    public String getCurrentRelease() {
+        return currentRelease;
+    }
+
+    /**
+     * Sets the current UniProt release, stored proteins built from another release are fetched again.
+     *
+     * @param currentRelease the UniProt release, or null to serve stored proteins regardless of their release.
+     */
+    public void setCurrentRelease( String currentRelease ) {
+        this.currentRelease = currentRelease;
+    }
+
+    ///////////////////////////
+    // Store utilities
+
+    /**
+     * Reads the proteins known under an identifier from the store.
+     *
+     * @return the proteins, or null if they have to be fetched: unknown identifier, identifier the stored proteins may
+     *         not be a complete answer for, outdated release or splice variants required but not stored.
+     */
+    private Collection<UniprotProtein> getFromStore( String ac, boolean processSpliceVars ) {
+        Collection<UniprotProteinStore.StoredProtein> stored = store.lookupComplete( ac );
+        if ( stored.isEmpty() ) {
+            return null;
+        }
+
+        for ( UniprotProteinStore.StoredProtein s : stored ) {
+            if ( !isValid( s, processSpliceVars ) ) {
+                if ( log.isDebugEnabled() ) {
+                    log.debug( "Stored protein " + s.getPrimaryAc() + " is outdated, fetching " + ac + " again" );
+                }
+                return null;
+            }
+        }
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( stored.size() );
+        for ( UniprotProteinStore.StoredProtein s : stored ) {
+            try {
+                proteins.add( store.load( s ) );
+            } catch ( RuntimeUniprotServiceException e ) {
+                log.warn( "Could not load stored protein " + s.getPrimaryAc() + ", fetching " + ac + " again", e );
+                return null;
+            }
+        }
+        return proteins;
+    }
+
+    private boolean isValid( UniprotProteinStore.StoredProtein stored, boolean processSpliceVars ) {
+        if ( processSpliceVars && !stored.isWithSpliceVariants() ) {
+            return false;
+        }
+        String release = currentRelease;
+        return release == null || release.equals( stored.getReleaseVersion() );
+    }
+
+    private void storeProteins( String ac, Collection<UniprotProtein> proteins, boolean processSpliceVars ) {
+        if ( proteins == null ) {
+            return;
+        }
+        for ( UniprotProtein protein : proteins ) {
+            store.put( protein, processSpliceVars, Collections.singleton( ac ) );
+        }
+    }
+}
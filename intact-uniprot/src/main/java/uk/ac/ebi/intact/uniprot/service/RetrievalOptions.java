@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * What the proteins built from UniProt entries hold, so that callers only pay for the parts they use.
+ * <p/>
+ * The primary and secondary ACs, ID, description, versions, source, sequence length and CRC64 of the proteins are
+ * always given. Asking for the feature chains also gives the sequence, as the chains are views over it.
+ * <p/>
+ * The cross references can also be built lazily: the values they are built from are kept in a compact buffer, and the
+ * cross references of the protein and of its splice variants are built the first time one of them is asked for.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class RetrievalOptions {
+
+    /**
+     * Every part of the entries, cross references built at once.
+     */
+    public static final RetrievalOptions FULL = new RetrievalOptions( EnumSet.allOf( UniprotField.class ), false );
+
+    /**
+     * Every part of the entries but the splice variants and feature chains, cross references built at once.
+     */
+    public static final RetrievalOptions NO_SPLICE_VARIANTS = FULL.without( UniprotField.SPLICE_VARIANTS,
+                                                                            UniprotField.FEATURE_CHAINS );
+
+    private final Set<UniprotField> fields;
+
+    private final boolean lazyCrossReferences;
+
+    private RetrievalOptions( EnumSet<UniprotField> fields, boolean lazyCrossReferences ) {
+        if ( fields.contains( UniprotField.FEATURE_CHAINS ) ) {
+            fields.add( UniprotField.SEQUENCE );
+        }
+        this.fields = Collections.unmodifiableSet( fields );
+        this.lazyCrossReferences = lazyCrossReferences;
+    }
+
+    /**
+     * @param fields the parts of the entries to build.
+     *
+     * @return the options building only these parts, cross references built at once.
+     */
+    public static RetrievalOptions of( Collection<UniprotField> fields ) {
+        if ( fields == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of fields." );
+        }
+        EnumSet<UniprotField> copy = EnumSet.noneOf( UniprotField.class );
+        copy.addAll( fields );
+        return new RetrievalOptions( copy, false );
+    }
+
+    /**
+     * @param processSpliceVars the flag given to the retrieve methods.
+     *
+     * @return the options the flag stands for.
+     */
+    public static RetrievalOptions forSpliceVariants( boolean processSpliceVars ) {
+        return processSpliceVars ? FULL : NO_SPLICE_VARIANTS;
+    }
+
+    /**
+     * @param skipped the parts of the entries to leave out.
+     *
+     * @return the same options, leaving these parts out.
+     */
+    public RetrievalOptions without( UniprotField... skipped ) {
+        EnumSet<UniprotField> remaining = EnumSet.noneOf( UniprotField.class );
+        remaining.addAll( fields );
+        remaining.removeAll( Arrays.asList( skipped ) );
+        return new RetrievalOptions( remaining, lazyCrossReferences );
+    }
+
+    /**
+     * @param lazy whether the cross references are built on first access.
+     *
+     * @return the same options, building the cross references as asked.
+     */
+    public RetrievalOptions withLazyCrossReferences( boolean lazy ) {
+        if ( lazy == lazyCrossReferences ) {
+            return this;
+        }
+        EnumSet<UniprotField> copy = EnumSet.noneOf( UniprotField.class );
+        copy.addAll( fields );
+        return new RetrievalOptions( copy, lazy );
+    }
+
+    public boolean includes( UniprotField field ) {
+        return fields.contains( field );
+    }
+
+    /**
+     * @return true if the alternative products or the features of the entries are read, whatever is built from them.
+     */
+    public boolean isProcessSpliceVariants() {
+        return fields.contains( UniprotField.SPLICE_VARIANTS ) || fields.contains( UniprotField.FEATURE_CHAINS );
+    }
+
+    /**
+     * @param other other options.
+     *
+     * @return true if the proteins built with these options hold every part the other options ask for.
+     */
+    public boolean covers( RetrievalOptions other ) {
+        return fields.containsAll( other.fields );
+    }
+
+    /**
+     * Short name of the parts of the entries selected, telling apart proteins built with different options. The
+     * options the retrieve flag stands for are named SV and NOSV, so that they keep the keys used before the parts
+     * could be selected.
+     *
+     * @return the name of the selected parts, the way cross references are built is left out.
+     */
+    public String getProjectionKey() {
+        if ( fields.equals( FULL.fields ) ) {
+            return "SV";
+        }
+        if ( fields.equals( NO_SPLICE_VARIANTS.fields ) ) {
+            return "NOSV";
+        }
+        int mask = 0;
+        for ( UniprotField field : fields ) {
+            mask |= 1 << field.ordinal();
+        }
+        return "P" + Integer.toHexString( mask );
+    }
+
+    // Getters
+
+    public Set<UniprotField> getFields() {
+        return fields;
+    }
+
+    public boolean isLazyCrossReferences() {
+        return lazyCrossReferences;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) return true;
+        if ( o == null || getClass() != o.getClass() ) return false;
+
+        RetrievalOptions that = ( RetrievalOptions ) o;
+        return lazyCrossReferences == that.lazyCrossReferences && fields.equals( that.fields );
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * fields.hashCode() + ( lazyCrossReferences ? 1 : 0 );
+    }
+
+    @Override
+    public String toString() {
+        return "RetrievalOptions{fields=" + fields + ", lazyCrossReferences=" + lazyCrossReferences + '}';
+    }
+}
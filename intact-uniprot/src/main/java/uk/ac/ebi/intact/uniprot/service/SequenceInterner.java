@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares a single instance of identical amino acid sequences, typically a master protein and its isoforms, or the
+ * isoforms of several entries.
+ * <p/>
+ * Sequences are indexed by their CRC64 and only weakly referenced, so a sequence is kept for as long as a protein uses
+ * it. Two different sequences having the same CRC64 are not shared.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class SequenceInterner {
+
+    private static final long CRC64_POLYNOMIAL = 0xd800000000000000L;
+
+    private static final long[] CRC64_TABLE = new long[256];
+
+    static {
+        for ( int i = 0; i < 256; i++ ) {
+            long part = i;
+            for ( int j = 0; j < 8; j++ ) {
+                if ( ( part & 1 ) != 0 ) {
+                    part = ( part >>> 1 ) ^ CRC64_POLYNOMIAL;
+                } else {
+                    part >>>= 1;
+                }
+            }
+            CRC64_TABLE[i] = part;
+        }
+    }
+
+    private final Map<Long, SequenceReference> sequences = new ConcurrentHashMap<Long, SequenceReference>();
+
+    private final ReferenceQueue<String> collected = new ReferenceQueue<String>();
+
+    // statistics
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong savedResidues = new AtomicLong();
+
+    /**
+     * Gives the shared instance of a sequence.
+     *
+     * @param sequence the sequence, can be null.
+     *
+     * @return an instance equal to the given sequence, null if the sequence is null.
+     */
+    public String intern( String sequence ) {
+        if ( sequence == null ) {
+            return null;
+        }
+
+        expungeCollected();
+
+        Long crc64 = crc64( sequence );
+        while ( true ) {
+            SequenceReference reference = sequences.get( crc64 );
+            if ( reference == null ) {
+                if ( sequences.putIfAbsent( crc64, new SequenceReference( crc64, sequence, collected ) ) == null ) {
+                    return sequence;
+                }
+                continue;
+            }
+
+            String shared = reference.get();
+            if ( shared == null ) {
+                // collected but not yet expunged
+                if ( sequences.replace( crc64, reference, new SequenceReference( crc64, sequence, collected ) ) ) {
+                    return sequence;
+                }
+                continue;
+            }
+
+            if ( shared == sequence ) {
+                return shared;
+            }
+            if ( shared.equals( sequence ) ) {
+                hitCount.incrementAndGet();
+                savedResidues.addAndGet( sequence.length() );
+                return shared;
+            }
+
+            // CRC64 collision, the first sequence keeps the slot
+            return sequence;
+        }
+    }
+
+    /**
+     * @return number of sequences currently shared.
+     */
+    public int size() {
+        expungeCollected();
+        return sequences.size();
+    }
+
+    /**
+     * @return number of times an identical sequence was already known.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of residues that did not have to be kept thanks to sharing.
+     */
+    public long getSavedResidues() {
+        return savedResidues.get();
+    }
+
+    /**
+     * Computes the CRC64 of a sequence, as used by UniProt.
+     *
+     * @param sequence the sequence.
+     *
+     * @return the CRC64.
+     */
+    public static long crc64( String sequence ) {
+        long crc = 0;
+        for ( int i = 0; i < sequence.length(); i++ ) {
+            crc = CRC64_TABLE[( int ) ( ( crc ^ sequence.charAt( i ) ) & 0xff )] ^ ( crc >>> 8 );
+        }
+        return crc;
+    }
+
+    private void expungeCollected() {
+        SequenceReference reference;
+        while ( ( reference = ( SequenceReference ) collected.poll() ) != null ) {
+            sequences.remove( reference.crc64, reference );
+        }
+    }
+
+    private static class SequenceReference extends WeakReference<String> {
+
+        private final Long crc64;
+
+        private SequenceReference( Long crc64, String sequence, ReferenceQueue<String> queue ) {
+            super( sequence, queue );
+            this.crc64 = crc64;
+        }
+    }
+}
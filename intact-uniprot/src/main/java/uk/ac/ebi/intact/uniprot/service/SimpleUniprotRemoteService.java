@@ -16,7 +16,6 @@ import uk.ac.ebi.kraken.interfaces.uniprot.genename.ORFName;
 import uk.ac.ebi.kraken.interfaces.uniprot.genename.OrderedLocusName;
 import uk.ac.ebi.uniprot.dataservice.client.Client;
 import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
-import uk.ac.ebi.uniprot.dataservice.client.ServiceFactory;
 import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
 import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtQueryBuilder;
 import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
@@ -39,24 +38,50 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
      */
     public static final Log log = LogFactory.getLog(UniprotRemoteService.class);
 
-    protected UniProtService uniProtQueryService;
+    /**
+     * Started UniProt query services, reused from one query to the next.
+     */
+    protected UniProtServicePool servicePool;
+
+    /**
+     * Shares identical sequences between master proteins and isoforms.
+     */
+    protected SequenceInterner sequenceInterner = new SequenceInterner();
 
 //    protected final static String FEATURE_CHAIN_FIELD = "chain:";
 //    protected final static String FEATURE_PEPTIDE_FIELD = "feature.peptide:";
 //    protected final static String FEATURE_PRO_PEPTIDE_FIELD = "feature.propep:";
 
+    /**
+     * Default number of identifiers combined in a single query when retrieving a collection of proteins.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * Number of identifiers combined in a single query when retrieving a collection of proteins.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * What the proteins are built with.
+     */
+    private volatile RetrievalOptions retrievalOptions = RetrievalOptions.FULL;
+
     public SimpleUniprotRemoteService() {
         super();
-//        uniProtQueryService = UniProtJAPI.factory.getUniProtQueryService();
-        ServiceFactory serviceFactoryInstance = Client.getServiceFactoryInstance();
-        uniProtQueryService = serviceFactoryInstance.getUniProtQueryService();
+        servicePool = new UniProtServicePool();
     }
 
     public SimpleUniprotRemoteService(CrossReferenceFilter filter) {
+        this(filter, new UniProtServicePool());
+    }
+
+    public SimpleUniprotRemoteService(CrossReferenceFilter filter, UniProtServicePool servicePool) {
         super(filter);
-        ServiceFactory serviceFactoryInstance = Client.getServiceFactoryInstance();
-        uniProtQueryService = serviceFactoryInstance.getUniProtQueryService();
-//        uniProtQueryService = UniProtJAPI.factory.getUniProtQueryService();
+        if ( servicePool == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtServicePool." );
+        }
+        this.servicePool = servicePool;
     }
 
     public Collection<UniprotProtein> retrieve( String ac ) {
@@ -154,6 +179,21 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
     }
 
     public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        return retrieve( ac, processSpliceVars, retrievalOptions );
+    }
+
+    /**
+     * Builds only the parts of the entries selected by the options.
+     */
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        return retrieve( ac, options.isProcessSpliceVariants(), options );
+    }
+
+    private Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars, RetrievalOptions options ) {
         if (log.isDebugEnabled()) {
             log.debug("Retrieving from UniProt: "+ac);
         }
@@ -168,7 +208,7 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
         while ( it.hasNext() ) {
             UniProtEntry uniProtEntry = it.next();
-            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
+            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars, new IsoformResolutionCache(), options ) );
         }
 
         return proteins;
@@ -179,6 +219,22 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
     }
 
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        return retrieve( acs, processSpliceVars, retrievalOptions );
+    }
+
+    /**
+     * Builds only the parts of the entries selected by the options.
+     */
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        return retrieve( acs, options.isProcessSpliceVariants(), options );
+    }
+
+    private Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars,
+                                                              RetrievalOptions options ) {
 
         if ( acs == null ) {
             throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
@@ -190,19 +246,591 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
         Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
 
-        // TODO use bulk loading and post sort the Map
+        // group the identifiers by the kind of query they need, each group is then fetched in batches.
+        // The keys are the identifiers as they will be searched, the values are the ACs given by the caller.
+        Map<String, List<String>> proteinAcs = new LinkedHashMap<String, List<String>>();
+        Map<String, List<String>> spliceVariantAcs = new LinkedHashMap<String, List<String>>();
+        Map<String, List<String>> featureChainAcs = new LinkedHashMap<String, List<String>>();
+
         for ( String ac : acs ) {
-            Collection<UniprotProtein> proteins = retrieve( ac, processSpliceVars );
-            if ( proteins != null ) {
-                results.put( ac, proteins );
+            String upperCaseAc = ac.toUpperCase();
+            IdentifierChecker.IdentifierType type = IdentifierChecker.classify( upperCaseAc );
+
+            if ( type == IdentifierChecker.IdentifierType.SPLICE_VARIANT ) {
+                groupAc( spliceVariantAcs, upperCaseAc, ac );
+            } else if ( type.isFeatureChain() ) {
+                groupAc( featureChainAcs, upperCaseAc.substring( type.getFeatureChainIdStart() ), ac );
             } else {
-                addError( ac, new UniprotServiceReport( "Could not find protein for AC: " + ac ) );
+                groupAc( proteinAcs, upperCaseAc, ac );
+            }
+        }
+
+        // the parents of EXTERNAL isoforms are shared by all the batches of the request
+        IsoformResolutionCache isoformCache = new IsoformResolutionCache();
+
+        retrieveInBatches( BatchType.PROTEIN, proteinAcs, processSpliceVars, options, results, isoformCache );
+        retrieveInBatches( BatchType.SPLICE_VARIANT, spliceVariantAcs, processSpliceVars, options, results, isoformCache );
+        retrieveInBatches( BatchType.FEATURE_CHAIN, featureChainAcs, processSpliceVars, options, results, isoformCache );
+
+        for ( String ac : acs ) {
+            if ( !results.containsKey( ac ) ) {
+                // we didn't find anything
+                results.put( ac, new ArrayList<UniprotProtein>() );
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
             }
         }
 
         return results;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of identifiers combined in a single query when retrieving a collection of proteins.
+     *
+     * @param batchSize a strictly positive number of identifiers.
+     */
+    public void setBatchSize( int batchSize ) {
+        if ( batchSize < 1 ) {
+            throw new IllegalArgumentException( "The batch size must be 1 or greater: " + batchSize );
+        }
+        this.batchSize = batchSize;
+    }
+
+    public RetrievalOptions getRetrievalOptions() {
+        return retrievalOptions;
+    }
+
+    /**
+     * Sets what the proteins are built with: the parts of the entries left out, and whether the cross references are
+     * built on first access.
+     *
+     * @param retrievalOptions the options, RetrievalOptions.FULL unless set otherwise.
+     */
+    public void setRetrievalOptions( RetrievalOptions retrievalOptions ) {
+        if ( retrievalOptions == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        this.retrievalOptions = retrievalOptions;
+    }
+
+    /**
+     * @param processSpliceVars the flag given to the retrieve methods.
+     *
+     * @return the options the proteins retrieved with this flag are built with.
+     */
+    protected RetrievalOptions getRetrievalOptions( boolean processSpliceVars ) {
+        RetrievalOptions options = retrievalOptions;
+        return processSpliceVars ? options : options.without( UniprotField.SPLICE_VARIANTS, UniprotField.FEATURE_CHAINS );
+    }
+
+    /**
+     * Searches a single query worth of identifiers at a time.
+     */
+    @Override
+    protected int getIncrementalBatchSize() {
+        return batchSize;
+    }
+
+    /////////////////////////
+    // Batch retrieval
+
+    /**
+     * Kind of query a group of identifiers is fetched with, and how the returned entries are matched back to the
+     * identifiers of the group.
+     */
+    protected enum BatchType {
+
+        /**
+         * Primary AC, secondary AC or UniProt ID.
+         */
+        PROTEIN {
+            Query buildQuery( String id ) {
+                return UniProtQueryBuilder.id( id ).or( UniProtQueryBuilder.accession( id ) ).or( UniProtQueryBuilder.secondaryAccession( id ) );
+            }
+
+            Collection<String> collectIdentifiers( UniProtEntry entry ) {
+                Collection<String> ids = new HashSet<String>();
+                ids.add( entry.getPrimaryUniProtAccession().getValue().toUpperCase() );
+                ids.add( entry.getUniProtId().getValue().toUpperCase() );
+                for ( SecondaryUniProtAccession secondaryAc : entry.getSecondaryUniProtAccessions() ) {
+                    ids.add( secondaryAc.getValue().toUpperCase() );
+                }
+                return ids;
+            }
+        },
+
+        /**
+         * Isoform identifier, searched in the alternative products comments.
+         */
+        SPLICE_VARIANT {
+            Query buildQuery( String id ) {
+                return UniProtQueryBuilder.comments( CommentType.ALTERNATIVE_PRODUCTS, id );
+            }
+
+            Collection<String> collectIdentifiers( UniProtEntry entry ) {
+                Collection<String> ids = new HashSet<String>();
+                List<AlternativeProductsComment> comments = entry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
+                for ( AlternativeProductsComment comment : comments ) {
+                    for ( AlternativeProductsIsoform isoform : comment.getIsoforms() ) {
+                        for ( IsoformId isoID : isoform.getIds() ) {
+                            // multiple ids can be returned as a comma separated value
+                            for ( String id : isoID.getValue().split( "," ) ) {
+                                ids.add( id.trim().toUpperCase() );
+                            }
+                        }
+                    }
+                }
+                return ids;
+            }
+        },
+
+        /**
+         * PRO_ identifier of a chain, peptide or pro-peptide feature.
+         */
+        FEATURE_CHAIN {
+            Query buildQuery( String id ) {
+                return UniProtQueryBuilder.features( FeatureType.CHAIN, id ).or( UniProtQueryBuilder.features( FeatureType.PEPTIDE, id ) ).or( UniProtQueryBuilder.features( FeatureType.PROPEP, id ) );
+            }
+
+            Collection<String> collectIdentifiers( UniProtEntry entry ) {
+                Collection<String> ids = new HashSet<String>();
+                Collection<ChainFeature> chains = entry.getFeatures( FeatureType.CHAIN );
+                for ( ChainFeature chain : chains ) {
+                    ids.add( chain.getFeatureId().getValue().toUpperCase() );
+                }
+                Collection<PeptideFeature> peptides = entry.getFeatures( FeatureType.PEPTIDE );
+                for ( PeptideFeature peptide : peptides ) {
+                    ids.add( peptide.getFeatureId().getValue().toUpperCase() );
+                }
+                Collection<ProPepFeature> proPeptides = entry.getFeatures( FeatureType.PROPEP );
+                for ( ProPepFeature proPeptide : proPeptides ) {
+                    ids.add( proPeptide.getFeatureId().getValue().toUpperCase() );
+                }
+                return ids;
+            }
+        };
+
+        /**
+         * Builds the query matching the entries of a single identifier.
+         */
+        abstract Query buildQuery( String id );
+
+        /**
+         * Lists the upper case identifiers under which the given entry can be found by this kind of query.
+         */
+        abstract Collection<String> collectIdentifiers( UniProtEntry entry );
+    }
+
+    private void groupAc( Map<String, List<String>> groups, String id, String ac ) {
+        List<String> requestedAcs = groups.get( id );
+        if ( requestedAcs == null ) {
+            requestedAcs = new ArrayList<String>( 1 );
+            groups.put( id, requestedAcs );
+        }
+        if ( !requestedAcs.contains( ac ) ) {
+            requestedAcs.add( ac );
+        }
+    }
+
+    private void retrieveInBatches( BatchType type, Map<String, List<String>> groups, boolean processSpliceVars,
+                                    RetrievalOptions options, Map<String, Collection<UniprotProtein>> results,
+                                    IsoformResolutionCache isoformCache ) {
+        List<String> batch = new ArrayList<String>( batchSize );
+        for ( String id : groups.keySet() ) {
+            batch.add( id );
+            if ( batch.size() == batchSize ) {
+                retrieveBatch( type, batch, groups, processSpliceVars, options, results, isoformCache );
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            retrieveBatch( type, batch, groups, processSpliceVars, options, results, isoformCache );
+        }
+    }
+
+    /**
+     * Runs a single OR-combined query for the given identifiers and assigns each returned entry to every requested AC
+     * it matches. Each entry is only built once, even if it matches several of the requested ACs.
+     *
+     * @param type      the kind of query to run.
+     * @param ids       the identifiers of the batch, as they will be searched.
+     * @param groups    the ACs given by the caller, indexed by searched identifier.
+     * @param processSpliceVars whether the splice variants and feature chains should be built.
+     * @param results   where the proteins found are stored, indexed by requested AC.
+     * @param isoformCache the parents of EXTERNAL isoforms already fetched during this request.
+     */
+    protected void retrieveBatch( BatchType type, List<String> ids, Map<String, List<String>> groups,
+                                  boolean processSpliceVars, Map<String, Collection<UniprotProtein>> results,
+                                  IsoformResolutionCache isoformCache ) {
+        retrieveBatch( type, ids, groups, processSpliceVars, retrievalOptions, results, isoformCache );
+    }
+
+    /**
+     * Runs a single OR-combined query for the given identifiers, building only the parts of the entries selected by
+     * the options.
+     */
+    protected void retrieveBatch( BatchType type, List<String> ids, Map<String, List<String>> groups,
+                                  boolean processSpliceVars, RetrievalOptions options,
+                                  Map<String, Collection<UniprotProtein>> results, IsoformResolutionCache isoformCache ) {
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Retrieving a batch of " + ids.size() + " " + type + " identifiers from UniProt" );
+        }
+
+        Query query = null;
+        for ( String id : ids ) {
+            Query idQuery = type.buildQuery( id );
+            query = ( query == null ? idQuery : query.or( idQuery ) );
+        }
+
+        List<UniProtEntry> entries;
+        try {
+            entries = executeQuery( query );
+        } catch ( ServiceException e ) {
+            log.error( "Could not retrieve a batch of " + ids.size() + " identifiers from UniProt", e );
+            for ( String id : ids ) {
+                for ( String ac : groups.get( id ) ) {
+                    // an empty result keeps the failure from being reported as not found afterwards
+                    results.put( ac, new ArrayList<UniprotProtein>() );
+                    addError( ac, new UniprotServiceReport( "Could not retrieve protein: " + ac, e ) );
+                }
+            }
+            return;
+        }
+
+        // first pass: match the entries to the identifiers of the batch and collect the parents of their EXTERNAL isoforms
+        Set<String> batchIds = new HashSet<String>( ids );
+        Map<UniProtEntry, List<String>> matchedEntries = new LinkedHashMap<UniProtEntry, List<String>>();
+        for ( UniProtEntry entry : entries ) {
+            List<String> matchedIds = new ArrayList<String>();
+            for ( String id : type.collectIdentifiers( entry ) ) {
+                if ( batchIds.contains( id ) ) {
+                    matchedIds.add( id );
+                }
+            }
+            if ( !matchedIds.isEmpty() ) {
+                matchedEntries.put( entry, matchedIds );
+                if ( processSpliceVars && options.includes( UniprotField.SPLICE_VARIANTS ) ) {
+                    collectExternalParents( entry, isoformCache );
+                }
+            }
+        }
+
+        fetchExternalParents( isoformCache );
+
+        // second pass: build the proteins
+        for ( Map.Entry<UniProtEntry, List<String>> matched : matchedEntries.entrySet() ) {
+            UniprotProtein protein = buildUniprotProtein( matched.getKey(), processSpliceVars, isoformCache, options );
+
+            for ( String id : matched.getValue() ) {
+                for ( String ac : groups.get( id ) ) {
+                    Collection<UniprotProtein> proteins = results.get( ac );
+                    if ( proteins == null ) {
+                        proteins = new ArrayList<UniprotProtein>();
+                        results.put( ac, proteins );
+                    }
+                    proteins.add( protein );
+                }
+            }
+        }
+    }
+
+    /**
+     * Records in the cache the parent entries needed to resolve the EXTERNAL isoforms of an entry.
+     *
+     * @param entry        the entry to scan.
+     * @param isoformCache where the parents are requested.
+     */
+    protected void collectExternalParents( UniProtEntry entry, IsoformResolutionCache isoformCache ) {
+        List<AlternativeProductsComment> comments = entry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
+        for ( AlternativeProductsComment comment : comments ) {
+            for ( AlternativeProductsIsoform isoform : comment.getIsoforms() ) {
+                if ( isoform.getIsoformSequenceStatus() != IsoformSequenceStatus.EXTERNAL || isoform.getIds().isEmpty() ) {
+                    continue;
+                }
+                String spliceVarId = isoform.getIds().get( 0 ).getValue().split( "," )[0].trim();
+                if ( !isoformCache.isKnownSequence( spliceVarId ) ) {
+                    isoformCache.requestParent( getUniProtAccFromSpliceVariantId( spliceVarId ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches all the parents requested in the cache, combining them in OR queries of at most batch size ACs. Parents
+     * that could not be fetched are left pending and will be fetched one by one when needed.
+     *
+     * @param isoformCache the cache holding the requested parents.
+     */
+    protected void fetchExternalParents( IsoformResolutionCache isoformCache ) {
+        List<String> parentAcs = new ArrayList<String>( isoformCache.getPendingParents() );
+
+        for ( int from = 0; from < parentAcs.size(); from += batchSize ) {
+            List<String> batch = parentAcs.subList( from, Math.min( from + batchSize, parentAcs.size() ) );
+
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Retrieving a batch of " + batch.size() + " parent entries of external isoforms from UniProt" );
+            }
+
+            Query query = null;
+            for ( String parentAc : batch ) {
+                Query parentQuery = BatchType.PROTEIN.buildQuery( parentAc );
+                query = ( query == null ? parentQuery : query.or( parentQuery ) );
+            }
+
+            List<UniProtEntry> entries;
+            try {
+                entries = executeQuery( query );
+            } catch ( ServiceException e ) {
+                log.warn( "Could not retrieve a batch of " + batch.size() + " parent entries of external isoforms from UniProt", e );
+                continue;
+            }
+
+            Map<String, List<UniProtEntry>> parents = new HashMap<String, List<UniProtEntry>>();
+            for ( String parentAc : batch ) {
+                parents.put( parentAc, new ArrayList<UniProtEntry>( 1 ) );
+            }
+            for ( UniProtEntry entry : entries ) {
+                for ( String id : BatchType.PROTEIN.collectIdentifiers( entry ) ) {
+                    List<UniProtEntry> parentEntries = parents.get( id );
+                    if ( parentEntries != null && !parentEntries.contains( entry ) ) {
+                        parentEntries.add( entry );
+                    }
+                }
+            }
+            for ( Map.Entry<String, List<UniProtEntry>> parent : parents.entrySet() ) {
+                isoformCache.putParent( parent.getKey(), parent.getValue() );
+            }
+        }
+    }
+
+    /**
+     * Gives the entries of the parent of an EXTERNAL isoform, fetching them if they are not in the cache yet.
+     *
+     * @param parentAc     the AC of the parent.
+     * @param isoformCache the parents already fetched during this request.
+     *
+     * @return the entries found for this AC.
+     */
+    protected List<UniProtEntry> resolveExternalParent( String parentAc, IsoformResolutionCache isoformCache ) {
+        List<UniProtEntry> entries = isoformCache.getParent( parentAc );
+        if ( entries == null ) {
+            entries = new ArrayList<UniProtEntry>( 1 );
+            Iterator<UniProtEntry> iterator = getUniProtEntry( parentAc );
+            while ( iterator.hasNext() ) {
+                entries.add( iterator.next() );
+            }
+            isoformCache.putParent( parentAc, entries );
+        }
+        return entries;
+    }
+
+    /////////////////////////
+    // Delta retrieval
+
+    /**
+     * Tells how the entry of each given AC changed since the version the caller knows, and only builds the proteins of
+     * the entries that changed.
+     *
+     * @param knownVersions the versions the caller knows, indexed by UniProt protein AC.
+     *
+     * @return how the entry of each AC changed, in the order of the given map.
+     */
+    public Map<String, UniprotDelta> retrieveDelta( Map<String, UniprotEntryVersion> knownVersions ) {
+        return retrieveDelta( knownVersions, retrievalOptions );
+    }
+
+    /**
+     * Tells how the entry of each given AC changed since the version the caller knows, and only builds the proteins of
+     * the entries that changed, with the given options.
+     * <p/>
+     * The ACs are searched a batch at a time, as by retrieve. The versions are read from the entries found, which are
+     * only converted to proteins when they changed. The ACs of a batch that could not be searched are reported in
+     * getErrors() and left out of the result.
+     *
+     * @param knownVersions the versions the caller knows, indexed by UniProt protein AC.
+     * @param options       the parts of the changed entries to build.
+     *
+     * @return how the entry of each AC changed, in the order of the given map.
+     */
+    public Map<String, UniprotDelta> retrieveDelta( Map<String, UniprotEntryVersion> knownVersions,
+                                                    RetrievalOptions options ) {
+        if ( knownVersions == null ) {
+            throw new IllegalArgumentException( "You must give a non null Map of known versions." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        // the keys are the ACs as they will be searched, the values are the ACs given by the caller
+        Map<String, List<String>> groups = new LinkedHashMap<String, List<String>>();
+        for ( String ac : knownVersions.keySet() ) {
+            String upperCaseAc = ac.trim().toUpperCase();
+            IdentifierChecker.IdentifierType type = IdentifierChecker.classify( upperCaseAc );
+            if ( type == IdentifierChecker.IdentifierType.SPLICE_VARIANT || type.isFeatureChain() ) {
+                throw new IllegalArgumentException( "Only the changes of UniProt protein ACs can be retrieved: " + ac );
+            }
+            groupAc( groups, upperCaseAc, ac );
+        }
+
+        Map<String, UniprotDelta> deltas = new HashMap<String, UniprotDelta>( knownVersions.size() * 2 );
+        List<String> batch = new ArrayList<String>( batchSize );
+        for ( String id : groups.keySet() ) {
+            batch.add( id );
+            if ( batch.size() == batchSize ) {
+                retrieveDeltaBatch( batch, groups, knownVersions, options, deltas );
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            retrieveDeltaBatch( batch, groups, knownVersions, options, deltas );
+        }
+
+        Map<String, UniprotDelta> results = new LinkedHashMap<String, UniprotDelta>( deltas.size() * 2 );
+        for ( String ac : knownVersions.keySet() ) {
+            UniprotDelta delta = deltas.get( ac );
+            if ( delta != null ) {
+                results.put( ac, delta );
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs a single OR-combined query for the given ACs, compares the versions of the entries found with the known
+     * ones and builds the proteins of the entries that changed, each of them once.
+     */
+    private void retrieveDeltaBatch( List<String> ids, Map<String, List<String>> groups,
+                                     Map<String, UniprotEntryVersion> knownVersions, RetrievalOptions options,
+                                     Map<String, UniprotDelta> deltas ) {
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Retrieving the versions of a batch of " + ids.size() + " identifiers from UniProt" );
+        }
+
+        Query query = null;
+        for ( String id : ids ) {
+            Query idQuery = BatchType.PROTEIN.buildQuery( id );
+            query = ( query == null ? idQuery : query.or( idQuery ) );
+        }
+
+        List<UniProtEntry> entries;
+        try {
+            entries = executeQuery( query );
+        } catch ( ServiceException e ) {
+            log.error( "Could not retrieve a batch of " + ids.size() + " identifiers from UniProt", e );
+            for ( String id : ids ) {
+                for ( String ac : groups.get( id ) ) {
+                    addError( ac, new UniprotServiceReport( "Could not retrieve protein: " + ac, e ) );
+                }
+            }
+            return;
+        }
+
+        // first pass: match the entries to the ACs of the batch and compare their versions
+        Set<String> batchIds = new HashSet<String>( ids );
+        Map<String, List<UniProtEntry>> matches = new HashMap<String, List<UniProtEntry>>();
+        for ( UniProtEntry entry : entries ) {
+            for ( String id : BatchType.PROTEIN.collectIdentifiers( entry ) ) {
+                if ( batchIds.contains( id ) ) {
+                    List<UniProtEntry> matched = matches.get( id );
+                    if ( matched == null ) {
+                        matched = new ArrayList<UniProtEntry>( 1 );
+                        matches.put( id, matched );
+                    }
+                    if ( !matched.contains( entry ) ) {
+                        matched.add( entry );
+                    }
+                }
+            }
+        }
+
+        IsoformResolutionCache isoformCache = new IsoformResolutionCache();
+        boolean processSpliceVars = options.isProcessSpliceVariants();
+        Map<String, UniprotChangeType> changes = new HashMap<String, UniprotChangeType>();
+        Map<UniProtEntry, UniprotProtein> built = new IdentityHashMap<UniProtEntry, UniprotProtein>();
+        for ( String id : ids ) {
+            List<UniProtEntry> matched = matches.containsKey( id ) ? matches.get( id ) : new ArrayList<UniProtEntry>( 0 );
+            for ( String ac : groups.get( id ) ) {
+                UniprotChangeType change = compareVersions( id, matched, knownVersions.get( ac ) );
+                changes.put( ac, change );
+                if ( change.isRebuilt() ) {
+                    for ( UniProtEntry entry : matched ) {
+                        if ( !built.containsKey( entry ) ) {
+                            built.put( entry, null );
+                            if ( processSpliceVars && options.includes( UniprotField.SPLICE_VARIANTS ) ) {
+                                collectExternalParents( entry, isoformCache );
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        fetchExternalParents( isoformCache );
+
+        // second pass: build the proteins of the entries that changed
+        for ( String id : ids ) {
+            List<UniProtEntry> matched = matches.containsKey( id ) ? matches.get( id ) : new ArrayList<UniProtEntry>( 0 );
+            UniprotEntryVersion currentVersion = matched.size() == 1 ? readVersion( matched.get( 0 ) ) : null;
+
+            for ( String ac : groups.get( id ) ) {
+                UniprotChangeType change = changes.get( ac );
+                List<String> primaryAcs = new ArrayList<String>( matched.size() );
+                Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( change.isRebuilt() ? matched.size() : 0 );
+                for ( UniProtEntry entry : matched ) {
+                    primaryAcs.add( entry.getPrimaryUniProtAccession().getValue() );
+                    if ( change.isRebuilt() ) {
+                        UniprotProtein protein = built.get( entry );
+                        if ( protein == null ) {
+                            protein = buildUniprotProtein( entry, processSpliceVars, isoformCache, options );
+                            built.put( entry, protein );
+                        }
+                        proteins.add( protein );
+                    }
+                }
+                deltas.put( ac, new UniprotDelta( ac, change, knownVersions.get( ac ), currentVersion, primaryAcs, proteins ) );
+            }
+        }
+    }
+
+    /**
+     * @param id         the upper case AC searched.
+     * @param matched    the entries found for it.
+     * @param knownVersion the version the caller knows, can be null.
+     *
+     * @return how the entry of the AC changed.
+     */
+    private UniprotChangeType compareVersions( String id, List<UniProtEntry> matched, UniprotEntryVersion knownVersion ) {
+        if ( matched.isEmpty() ) {
+            return UniprotChangeType.DELETED;
+        }
+        if ( matched.size() > 1 ) {
+            return UniprotChangeType.DEMERGED;
+        }
+
+        UniProtEntry entry = matched.get( 0 );
+        if ( !id.equals( entry.getPrimaryUniProtAccession().getValue().toUpperCase() )
+             && !id.equals( entry.getUniProtId().getValue().toUpperCase() ) ) {
+            // only found as a secondary AC
+            return UniprotChangeType.MERGED;
+        }
+        if ( knownVersion == null ) {
+            return UniprotChangeType.SEQUENCE_CHANGED;
+        }
+        return knownVersion.compare( readVersion( entry ) );
+    }
+
+    /**
+     * Reads the version of an entry without converting it.
+     */
+    protected UniprotEntryVersion readVersion( UniProtEntry uniProtEntry ) {
+        return new UniprotEntryVersion( getSPTREntryReleaseVersion( uniProtEntry ),
+                                        uniProtEntry.getEntryAudit().getLastAnnotationUpdateDate(),
+                                        uniProtEntry.getSequence().getCRC64() );
+    }
+
     //////////////////////////
     // private methods
 
@@ -210,37 +838,25 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         Iterator<UniProtEntry> iterator = null;
 
         String upperCaseAc = ac.toUpperCase();
+        IdentifierChecker.IdentifierType type = IdentifierChecker.classify( upperCaseAc );
 
-        if ( IdentifierChecker.isSpliceVariantId( upperCaseAc ) ) {
+        if ( type == IdentifierChecker.IdentifierType.SPLICE_VARIANT ) {
 
             // we only use this search for splice variants
 //            Query query = UniProtQueryBuilder.id(upperCaseAc);
             CommentType ccType = CommentType.ALTERNATIVE_PRODUCTS;
             //TODO Can ge infer here which isoform is the canonical? display=true
             Query query = UniProtQueryBuilder.comments(ccType, upperCaseAc);
-            try {
-                iterator = uniProtQueryService.getEntries(query);
-            } catch (ServiceException e) {
-                e.printStackTrace();
-            }
+            iterator = getUniProtEntry(query, upperCaseAc);
 
         }
-        else if (IdentifierChecker.isFeatureChainId( upperCaseAc )){
-            String acFixed = upperCaseAc;
-
-            int index = upperCaseAc.indexOf(CHAIN_SEPARATOR);
-            if (index != -1){
-                acFixed = upperCaseAc.substring(index);
-            }
+        else if (type.isFeatureChain()){
+            String acFixed = upperCaseAc.substring(type.getFeatureChainIdStart());
             // we only use this search for feature chains
 
 //            Query query = UniProtQueryBuilder.buildFullTextSearch( FEATURE_CHAIN_FIELD + acFixed + " OR " + FEATURE_PEPTIDE_FIELD + acFixed + " OR " + FEATURE_PRO_PEPTIDE_FIELD + acFixed );
             Query query = UniProtQueryBuilder.features(FeatureType.CHAIN, acFixed).or(UniProtQueryBuilder.features(FeatureType.PEPTIDE, acFixed)).or(UniProtQueryBuilder.features(FeatureType.PROPEP, acFixed));
-            try {
-                iterator = uniProtQueryService.getEntries(query);
-            } catch (ServiceException e) {
-                e.printStackTrace();
-            }
+            iterator = getUniProtEntry(query, upperCaseAc);
         }
         else {
             iterator = getUniProtEntryForProteinEntry( upperCaseAc );
@@ -259,16 +875,47 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         //IndexField.UNIPROT_EXPIRED_IDENTIFIER.getValue() + ":" + ac +
         //" OR " +
         //IndexField.UNIPROT_ID.getValue() + ":" + ac;
-        QueryResult<UniProtEntry> iterator = null;
-        uniProtQueryService.start();
+        Query query = UniProtQueryBuilder.id(ac).or(UniProtQueryBuilder.accession(ac)).or(UniProtQueryBuilder.secondaryAccession(ac));
+        return getUniProtEntry(query, ac);
+    }
+
+    private Iterator<UniProtEntry> getUniProtEntry( Query query, String ac ) {
         try {
-            iterator = uniProtQueryService.getEntries(UniProtQueryBuilder.id(ac).or(UniProtQueryBuilder.accession(ac)).or(UniProtQueryBuilder.secondaryAccession(ac)));
+            return executeQuery(query).iterator();
         } catch (ServiceException e) {
-            uniProtQueryService.stop();
-            e.printStackTrace();
+            throw new RuntimeUniprotServiceException("Could not query UniProt for: " + ac, e);
         }
-        uniProtQueryService.stop();
-        return iterator;
+    }
+
+    /**
+     * Runs a query on a service leased from the pool, and reads all the entries it returns before giving the service
+     * back.
+     *
+     * @param query the query to run.
+     *
+     * @return the entries found.
+     *
+     * @throws ServiceException if the query failed, the service it was run on is then discarded.
+     */
+    protected List<UniProtEntry> executeQuery( Query query ) throws ServiceException {
+        List<UniProtEntry> entries = new ArrayList<UniProtEntry>();
+
+        UniProtService service = servicePool.lease();
+        try {
+            Iterator<UniProtEntry> iterator = service.getEntries(query);
+            while (iterator.hasNext()) {
+                entries.add(iterator.next());
+            }
+        } catch (ServiceException e) {
+            servicePool.invalidate(service);
+            throw e;
+        } catch (RuntimeException e) {
+            servicePool.invalidate(service);
+            throw e;
+        }
+        servicePool.release(service);
+
+        return entries;
     }
 
     public static void main(String[] args) throws ServiceException {
@@ -285,22 +932,43 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
     }
 
     protected UniprotProtein buildUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants ) {
+        return buildUniprotProtein( uniProtEntry, fetchSpliceVariants, new IsoformResolutionCache() );
+    }
+
+    /**
+     * Builds a protein, resolving its EXTERNAL isoforms from the parent entries of the given cache when possible.
+     */
+    protected UniprotProtein buildUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants,
+                                                  IsoformResolutionCache isoformCache ) {
+        return buildUniprotProtein( uniProtEntry, fetchSpliceVariants, isoformCache, retrievalOptions );
+    }
+
+    /**
+     * Builds a protein holding only the parts of the entry selected by the options.
+     */
+    protected UniprotProtein buildUniprotProtein( UniProtEntry uniProtEntry, boolean fetchSpliceVariants,
+                                                  IsoformResolutionCache isoformCache, RetrievalOptions options ) {
 
         // Process OS, OC, OX
         List<NcbiTaxonomyId> taxids = uniProtEntry.getNcbiTaxonomyIds();
 
-        final uk.ac.ebi.kraken.interfaces.uniprot.Organism organism = uniProtEntry.getOrganism();
-        String organismName = organism.getScientificName().getValue();
         String entryTaxid = taxids.get( 0 ).getValue();
-        Organism o = new Organism( Integer.parseInt( entryTaxid ), organismName );
-        o.setCommonName(organism.getCommonName().getValue());
-
-        // extract parent's names
-        if ( organism.hasCommonName() ) {
-            o.getParents().add( organism.getCommonName().getValue() );
-        }
-        if ( organism.hasSynonym() ) {
-            o.getParents().add( organism.getSynonym().getValue() );
+        Organism o;
+        if ( options.includes( UniprotField.ORGANISM ) ) {
+            final uk.ac.ebi.kraken.interfaces.uniprot.Organism organism = uniProtEntry.getOrganism();
+            String organismName = organism.getScientificName().getValue();
+            o = new Organism( Integer.parseInt( entryTaxid ), organismName );
+            o.setCommonName(organism.getCommonName().getValue());
+
+            // extract parent's names
+            if ( organism.hasCommonName() ) {
+                o.getParents().add( organism.getCommonName().getValue() );
+            }
+            if ( organism.hasSynonym() ) {
+                o.getParents().add( organism.getSynonym().getValue() );
+            }
+        } else {
+            o = new Organism( Integer.parseInt( entryTaxid ) );
         }
 
         String description = readDescription(uniProtEntry);
@@ -332,60 +1000,92 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
                     uniProtEntry.getType().getValue() );
         }
 
-        // Process gene names, orfs, synonyms, locus...
-        processGeneNames( uniProtEntry, uniprotProtein );
+        if ( options.includes( UniprotField.NAMES ) ) {
+            // Process gene names, orfs, synonyms, locus...
+            processGeneNames( uniProtEntry, uniprotProtein );
 
-        // add alternative full names
-        for (Name name : uniProtEntry.getProteinDescription().getAlternativeNames()) {
-            final List<Field> fullFields = name.getFieldsByType(FieldType.FULL);
+            // add alternative full names
+            for (Name name : uniProtEntry.getProteinDescription().getAlternativeNames()) {
+                final List<Field> fullFields = name.getFieldsByType(FieldType.FULL);
 
-            for (Field fullField : fullFields) {
-                uniprotProtein.getSynomyms().add(fullField.getValue());
+                for (Field fullField : fullFields) {
+                    uniprotProtein.getSynomyms().add(fullField.getValue());
+                }
             }
         }
 
-        // comments: function
-        List<FunctionComment> functions = uniProtEntry.getComments( CommentType.FUNCTION );
-        for ( FunctionComment function : functions ) {
-
-            uniprotProtein.getFunctions().add( function.getValue() );
-        }
-
-        // Comments: disease
-        List<DiseaseCommentStructured> diseases = uniProtEntry.getComments( CommentType.DISEASE );
-        for ( DiseaseCommentStructured disease : diseases ) {
-            uniprotProtein.getFunctions().add( disease.getDisease().getDescription().getValue() );
+        boolean processComments = options.includes( UniprotField.COMMENTS );
+        boolean processSpliceVariants = fetchSpliceVariants && options.includes( UniprotField.SPLICE_VARIANTS );
+
+        // comments: function, disease and alternative products are collected in a single pass
+        List<String> functions = new ArrayList<String>();
+        List<String> diseases = new ArrayList<String>();
+        List<AlternativeProductsComment> alternativeProducts = new ArrayList<AlternativeProductsComment>();
+        if ( processComments || processSpliceVariants ) {
+            for ( Comment comment : uniProtEntry.getComments() ) {
+                switch ( comment.getCommentType() ) {
+                    case FUNCTION:
+                        if ( processComments ) {
+                            functions.add( ( ( FunctionComment ) comment ).getValue() );
+                        }
+                        break;
+                    case DISEASE:
+                        if ( processComments ) {
+                            diseases.add( ( ( DiseaseCommentStructured ) comment ).getDisease().getDescription().getValue() );
+                        }
+                        break;
+                    case ALTERNATIVE_PRODUCTS:
+                        if ( processSpliceVariants ) {
+                            alternativeProducts.add( ( AlternativeProductsComment ) comment );
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
         }
+        uniprotProtein.getFunctions().addAll( functions );
+        uniprotProtein.getFunctions().addAll( diseases );
 
         // keywords
-        List<Keyword> keywords = uniProtEntry.getKeywords();
-        for ( Keyword keyword : keywords ) {
-            uniprotProtein.getKeywords().add( keyword.getValue() );
+        if ( options.includes( UniprotField.KEYWORDS ) ) {
+            List<Keyword> keywords = uniProtEntry.getKeywords();
+            for ( Keyword keyword : keywords ) {
+                uniprotProtein.getKeywords().add( keyword.getValue() );
+            }
         }
 
-        // sequence
-        uniprotProtein.setSequence( uniProtEntry.getSequence().getValue() );
+        // sequence, the feature chains are views over it
+        if ( options.includes( UniprotField.SEQUENCE ) ) {
+            uniprotProtein.setSequence( sequenceInterner.intern( uniProtEntry.getSequence().getValue() ) );
+        }
         uniprotProtein.setSequenceLength( uniProtEntry.getSequence().getLength() );
         uniprotProtein.setCrc64( uniProtEntry.getSequence().getCRC64() );
         // TODO molecular weight ?!
 
         // splice variants
-        if (fetchSpliceVariants) {
-            processSpliceVariants( uniProtEntry, uniprotProtein );
-            //I commented this line because we not making any use of uniprot features in IntAct. But in case we use them later,
-            // I have let the processFeatureChain method.
-            // chains
-            processFeatureChain( uniProtEntry, uniprotProtein );
-            // feature peptides to be processed as feature chains
-            processFeaturePeptide(uniProtEntry, uniprotProtein);
-            // feature pro-peptides to be processed as feature chains
-            processFeatureProPeptide(uniProtEntry, uniprotProtein);
+        if (processSpliceVariants) {
+            uniprotProtein.getSpliceVariants().addAll( findSpliceVariants( alternativeProducts, uniProtEntry,
+                    uniprotProtein.getOrganism(), isoformCache ) );
+        }
+        if (fetchSpliceVariants && options.includes( UniprotField.FEATURE_CHAINS )) {
+            // chains, peptides and pro-peptides are processed as feature chains
+            processFeatures( uniProtEntry, uniprotProtein );
         }
 
         // We process the cross references at the end to assigned the xrefs to the correct splice variant (if we have that information)
         // For the time being only emsembl* xrefs are propagated form the canonical to the isoforms. It takes care too of the exceptional case where
         // xrefs are coming from an external entry
-        processCrossReference(uniProtEntry, uniprotProtein);
+        if ( !options.includes( UniprotField.XREFS ) ) {
+            // the splice variants of EXTERNAL isoforms come with the cross references of their parent entry
+            for ( UniprotSpliceVariant spliceVariant : uniprotProtein.getSpliceVariants() ) {
+                spliceVariant.getCrossReferences().clear();
+            }
+        } else if ( options.isLazyCrossReferences() ) {
+            processCrossReferenceLazily( uniProtEntry, uniprotProtein );
+        } else {
+            processCrossReference( uniProtEntry, uniprotProtein );
+        }
 
         return uniprotProtein;
     }
@@ -430,49 +1130,41 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         return version;
     }
 
-    protected void processFeatureChain( UniProtEntry uniProtEntry, UniprotProtein protein ) {
-        Collection<ChainFeature> features = uniProtEntry.getFeatures( FeatureType.CHAIN );
-
-        for ( ChainFeature featureChain : features ) {
-
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featureChain.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
-
-            String description = featureChain.getFeatureDescription().getValue();
-
-            FeatureLocation location = featureChain.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
-
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of chain "+
-                        featureChain.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature chain "+ featureChain.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
+    /**
+     * Processes the chains, peptides and pro-peptides of an entry in a single pass over its features. Chains are added
+     * first, then peptides and pro-peptides.
+     */
+    protected void processFeatures( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        List<UniprotFeatureChain> chains = new ArrayList<UniprotFeatureChain>();
+        List<UniprotFeatureChain> peptides = new ArrayList<UniprotFeatureChain>();
+        List<UniprotFeatureChain> proPeptides = new ArrayList<UniprotFeatureChain>();
+
+        for ( Feature feature : uniProtEntry.getFeatures() ) {
+            switch ( feature.getType() ) {
+                case CHAIN:
+                    chains.add( buildFeatureChain( uniProtEntry, protein, ( ChainFeature ) feature, "chain" ) );
+                    break;
+                case PEPTIDE:
+                    peptides.add( buildFeatureChain( uniProtEntry, protein, ( PeptideFeature ) feature, "peptide" ) );
+                    break;
+                case PROPEP:
+                    proPeptides.add( buildFeatureChain( uniProtEntry, protein, ( ProPepFeature ) feature, "peptide" ) );
+                    break;
+                default:
+                    break;
             }
+        }
 
-            String chainSequence = null;
-
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
-            }
+        protein.getFeatureChains().addAll( chains );
+        protein.getFeatureChains().addAll( peptides );
+        protein.getFeatureChains().addAll( proPeptides );
+    }
 
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
+    protected void processFeatureChain( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        Collection<ChainFeature> features = uniProtEntry.getFeatures( FeatureType.CHAIN );
 
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+        for ( ChainFeature featureChain : features ) {
+            protein.getFeatureChains().add( buildFeatureChain( uniProtEntry, protein, featureChain, "chain" ) );
         }
     }
 
@@ -480,45 +1172,7 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         Collection<PeptideFeature> features = uniProtEntry.getFeatures( FeatureType.PEPTIDE );
 
         for ( PeptideFeature featurePeptide : features ) {
-
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + featurePeptide.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
-
-            String description = featurePeptide.getFeatureDescription().getValue();
-
-            FeatureLocation location = featurePeptide.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
-
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
-                        featurePeptide.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature peptide "+ featurePeptide.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
-            }
-
-            String chainSequence = null;
-
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
-            }
-
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
-
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+            protein.getFeatureChains().add( buildFeatureChain( uniProtEntry, protein, featurePeptide, "peptide" ) );
         }
     }
 
@@ -526,46 +1180,53 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         Collection<ProPepFeature> features = uniProtEntry.getFeatures( FeatureType.PROPEP );
 
         for ( ProPepFeature proPep : features ) {
+            protein.getFeatureChains().add( buildFeatureChain( uniProtEntry, protein, proPep, "peptide" ) );
+        }
+    }
 
-            String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + proPep.getFeatureId().getValue();
-            // when uniprot does not know where is the start or the end of the protein the value will be -1
-            // Getting a sequence from -1 to x throw an Exception take into account this exception.
-
-            String description = proPep.getFeatureDescription().getValue();
-
-            FeatureLocation location = proPep.getFeatureLocation();
-            int begin = location.getStart();
-            int end = location.getEnd();
+    /**
+     * Builds the feature chain of a chain, peptide or pro-peptide feature.
+     *
+     * @param kind what the feature is, used in error messages.
+     */
+    protected <T extends Feature & HasFeatureId & HasFeatureDescription> UniprotFeatureChain buildFeatureChain(
+            UniProtEntry uniProtEntry, UniprotProtein protein, T feature, String kind ) {
 
-            if( end > 0 && begin > 0 && end < begin ) {
-                throw new IllegalArgumentException( "Unexpected feature location boundaries of peptide "+
-                        proPep.getFeatureId() +" for parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() +
-                        ": ["+begin+", "+ end +"]" );
-            }
+        String id = uniProtEntry.getPrimaryUniProtAccession().getValue() + "-" + feature.getFeatureId().getValue();
+        // when uniprot does not know where is the start or the end of the protein the value will be -1
+        // Getting a sequence from -1 to x throw an Exception take into account this exception.
 
-            final String sequence = protein.getSequence();
-            if( sequence.length() < end ) {
-                throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
-                        uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
-                        " boundaried of feature peptide "+ proPep.getFeatureId() +
-                        ": ["+begin+", "+ end +"]" );
-            }
+        String description = feature.getFeatureDescription().getValue();
 
-            String chainSequence = null;
+        FeatureLocation location = feature.getFeatureLocation();
+        int begin = location.getStart();
+        int end = location.getEnd();
 
-            if (begin != -1 && end != -1){
-                chainSequence = sequence.substring( begin - 1, end );
-            }
+        if( end > 0 && begin > 0 && end < begin ) {
+            throw new IllegalArgumentException( "Unexpected feature location boundaries of " + kind + " " +
+                    feature.getFeatureId() +" for parent " +
+                    uniProtEntry.getPrimaryUniProtAccession() +
+                    ": ["+begin+", "+ end +"]" );
+        }
 
-            UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), chainSequence );
-            chain.setDescription( description );
-            chain.setStart( begin );
-            chain.setEnd( end );
+        final String sequence = protein.getSequence();
+        if( sequence.length() < end ) {
+            throw new IllegalArgumentException( "The AA sequence (length:"+ sequence.length() +") of parent " +
+                    uniProtEntry.getPrimaryUniProtAccession() + " doesn't match the" +
+                    " boundaried of feature " + kind + " "+ feature.getFeatureId() +
+                    ": ["+begin+", "+ end +"]" );
+        }
 
-            // add the chain to the protein
-            protein.getFeatureChains().add( chain );
+        UniprotFeatureChain chain = new UniprotFeatureChain( id, protein.getOrganism(), null );
+        if (begin != -1 && end != -1){
+            // the chain only keeps a view over the sequence of the protein
+            chain.setSequence( sequence, begin - 1, end );
         }
+        chain.setDescription( description );
+        chain.setStart( begin );
+        chain.setEnd( end );
+
+        return chain;
     }
 
     protected void processGeneNames( UniProtEntry uniProtEntry, UniprotProtein protein ) {
@@ -592,20 +1253,62 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
     }
 
     protected void processCrossReference(UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        assignCrossReferences( protein, convertCrossReferenceToUniprotXref( uniProtEntry.getDatabaseCrossReferences() ) );
+    }
+
+    /**
+     * Keeps the values of the selected cross references of the entry in a buffer, the cross references of the protein
+     * and of its splice variants are built from it when first asked for.
+     */
+    protected void processCrossReferenceLazily( UniProtEntry uniProtEntry, UniprotProtein protein ) {
+        CompiledCrossReferenceFilter filter = getCompiledCrossReferenceSelector();
+        Collection<DatabaseCrossReference> refs = uniProtEntry.getDatabaseCrossReferences();
+
+        CrossReferenceBuffer buffer = new CrossReferenceBuffer( refs.size() );
+        for ( DatabaseCrossReference ref : refs ) {
+            if ( filter == null || filter.isSelected( ref.getDatabase() ) ) {
+                buffer.add( ref );
+            }
+        }
+        new LazyCrossReferences( this, protein, buffer );
+    }
+
+    /**
+     * Adds cross references to a protein, giving to its splice variants the ones of their isoform.
+     */
+    protected void assignCrossReferences( UniprotProtein protein, Collection<UniprotXref> xrefs ) {
 
         Collection<UniprotXref> propagateToMasterXref = new HashSet<>();
 
-        Collection<UniprotXref> xrefs = convertCrossReferenceToUniprotXref(uniProtEntry.getDatabaseCrossReferences());
-        for (Iterator<UniprotXref> iterator = xrefs.iterator(); iterator.hasNext(); ) {
-            UniprotXref xref = iterator.next();
-            for (UniprotSpliceVariant spliceVariant : protein.getSpliceVariants()) {
-                if (spliceVariant.getId().equalsIgnoreCase(xref.getIsoformId())) {
+        // index the splice variants by isoform id so each xref is assigned with a single lookup
+        Map<String, List<UniprotSpliceVariant>> variantsByIsoformId = new HashMap<String, List<UniprotSpliceVariant>>();
+        for (UniprotSpliceVariant spliceVariant : protein.getSpliceVariants()) {
+            String key = spliceVariant.getId().toUpperCase(Locale.ROOT);
+            List<UniprotSpliceVariant> variants = variantsByIsoformId.get(key);
+            if (variants == null) {
+                variants = new ArrayList<UniprotSpliceVariant>(1);
+                variantsByIsoformId.put(key, variants);
+            }
+            variants.add(spliceVariant);
+        }
+
+        if (!variantsByIsoformId.isEmpty()) {
+            for (Iterator<UniprotXref> iterator = xrefs.iterator(); iterator.hasNext(); ) {
+                UniprotXref xref = iterator.next();
+                if (xref.getIsoformId() == null) {
+                    continue;
+                }
+                List<UniprotSpliceVariant> variants = variantsByIsoformId.get(xref.getIsoformId().toUpperCase(Locale.ROOT));
+                if (variants == null) {
+                    continue;
+                }
+                for (UniprotSpliceVariant spliceVariant : variants) {
                     spliceVariant.getCrossReferences().add(xref);
                     if (spliceVariant.isCanonical()) {
                         propagateToMasterXref.add(xref);
                     }
-                    iterator.remove();
                 }
+                iterator.remove();
             }
         }
 
@@ -618,10 +1321,14 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         // We could at least provide specific handlers in case we know we need to process specific databases.
         Collection<UniprotXref> convertedRefs = new HashSet<>();
 
+        CompiledCrossReferenceFilter filter = getCompiledCrossReferenceSelector();
+
         for ( DatabaseCrossReference ref : refs ) {
-            String db = ref.getDatabase().getName();
-            if ( getCrossReferenceSelector() != null && !getCrossReferenceSelector().isSelected( db ) ) {
-                log.trace( getCrossReferenceSelector().getClass().getSimpleName() + " filtered out database: '" + db + "'." );
+            if ( filter != null && !filter.isSelected( ref.getDatabase() ) ) {
+                if ( log.isTraceEnabled() ) {
+                    log.trace( getCrossReferenceSelector().getClass().getSimpleName() + " filtered out database: '"
+                               + ref.getDatabase().getName() + "'." );
+                }
                 continue;
             }
             convertedRefs.addAll(buildDatabaseCrossReference(ref));
@@ -629,6 +1336,20 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         return convertedRefs;
     }
 
+    /**
+     * Builds the cross references kept in a buffer, the buffer only holds selected cross references.
+     */
+    protected Collection<UniprotXref> convertCrossReferenceToUniprotXref( CrossReferenceBuffer buffer ) {
+        Collection<UniprotXref> convertedRefs = new HashSet<>();
+
+        for ( int i = 0; i < buffer.size(); i++ ) {
+            convertedRefs.addAll( buildDatabaseCrossReference( buffer.getDatabase( i ), buffer.getPrimaryId( i ),
+                                                               buffer.getDescription( i ), buffer.getThird( i ),
+                                                               buffer.getIsoformId( i ) ) );
+        }
+        return convertedRefs;
+    }
+
     /**
      * Convert an implementation of DatabaseCrossReference into a UniprotXref
      * @param crossRef the cross reference to convert.
@@ -637,62 +1358,71 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
      */
     protected <T extends DatabaseCrossReference> Collection<UniprotXref> buildDatabaseCrossReference(T crossRef) {
 
-        Collection<UniprotXref> references = new HashSet<>();
-        String desc = null;
-        String db = crossRef.getDatabase().getName();
-
         if (log.isDebugEnabled()) {
             log.debug("Converting " + crossRef.getClass().getName() + " into a UniprotXref");
         }
 
+        return buildDatabaseCrossReference(crossRef.getDatabase().getName(),
+                crossRef.getPrimaryId() == null ? null : crossRef.getPrimaryId().getValue(),
+                crossRef.getDescription() == null ? null : crossRef.getDescription().getValue(),
+                crossRef.getThird() == null ? null : crossRef.getThird().getValue(),
+                crossRef.getIsoformId() == null ? null : crossRef.getIsoformId().getValue());
+    }
+
+    /**
+     * Builds the UniprotXrefs of a cross reference from its values.
+     *
+     * @param db          the name of the database.
+     * @param primaryId   the primary id, can be null.
+     * @param description the description, can be null.
+     * @param third       the third value, can be null.
+     * @param isoformId   the isoform the cross reference is about, can be null.
+     *
+     * @return a collection of UniprotXrefs.
+     */
+    protected Collection<UniprotXref> buildDatabaseCrossReference(String db, String primaryId, String description,
+                                                                  String third, String isoformId) {
+
+        Collection<UniprotXref> references = new HashSet<>();
+        String desc = null;
+
         // We treat the same way every possible ensembl cross ref to be able to map UniprotIds to EnsemblProteins
         // Related to INVAR and genome coordinates mapping project
         if (db.contains("Ensembl")) {
             // We treat ensembl in a different way to extract different Ensembl Xrefs reported in Uniprot simultaneously
-            String isoformId = null;
-
-            if (crossRef.getIsoformId() != null && !crossRef.getIsoformId().getValue().trim().isEmpty()) {
-                isoformId = crossRef.getIsoformId().getValue().trim();
-            }
+            String ensemblIsoformId = isBlank(isoformId) ? null : isoformId.trim();
 
-            if (crossRef.getPrimaryId() != null && !crossRef.getPrimaryId().getValue().trim().isEmpty()) {
+            if (!isBlank(primaryId)) {
                 // Ensembl Transcript
-                String ensemblT = crossRef.getPrimaryId().getValue().trim();
-                references.add(new UniprotXref(ensemblT, db, null, "transcript", isoformId));
+                references.add(new UniprotXref(primaryId.trim(), db, null, "transcript", ensemblIsoformId));
             }
-            if (crossRef.getDescription() != null && !crossRef.getDescription().getValue().trim().isEmpty()) {
+            if (!isBlank(description)) {
                 // Ensembl Protein
-                String ensemblP = crossRef.getDescription().getValue().trim();
-                references.add(new UniprotXref(ensemblP, db, null, "identity", isoformId));
+                references.add(new UniprotXref(description.trim(), db, null, "identity", ensemblIsoformId));
             }
-            if (crossRef.getThird() != null && !crossRef.getThird().getValue().trim().isEmpty()) {
+            if (!isBlank(third)) {
                 // Ensembl Gene
-                String ensemblG = crossRef.getThird().getValue().trim();
-                references.add(new UniprotXref(ensemblG, db, null, "gene", isoformId));
+                references.add(new UniprotXref(third.trim(), db, null, "gene", ensemblIsoformId));
             }
 
-            // crossRef.getFourth not used in Ensembl for now
+            // the fourth value is not used in Ensembl for now
         } else if (db.equals("Orphanet")) {
             // We store Orphanet Xrefs as EFO Xrefs, as we want to link them to the EFO url
-            String id = crossRef.getPrimaryId().getValue();
-            references.add(new UniprotXref(String.format("Orphanet:%s", id), "efo"));
+            references.add(new UniprotXref(String.format("Orphanet:%s", primaryId), "efo"));
         } else {
-            String id = crossRef.getPrimaryId().getValue();
-            if (id == null) {
-                throw new IllegalArgumentException("Cannot get id from cross reference: " + crossRef.getClass().getSimpleName() + " [ " + crossRef + " ]");
+            if (primaryId == null) {
+                throw new IllegalArgumentException("Cannot get id from " + db + " cross reference");
             }
 
-            if (db.equalsIgnoreCase("go") && crossRef.getDescription() != null && !crossRef.getDescription().getValue().trim().isEmpty()) {
-                desc = crossRef.getDescription().getValue();
-                if (!desc.isEmpty()) {
-                    int index = desc.indexOf(':');
-                    if (index != -1) {
-                        desc = desc.substring(index + 1);
-                    }
+            if (db.equalsIgnoreCase("go") && !isBlank(description)) {
+                desc = description;
+                int index = desc.indexOf(':');
+                if (index != -1) {
+                    desc = desc.substring(index + 1);
                 }
             }
             // Build the Generic Cross reference
-            references.add(new UniprotXref(id, db, desc));
+            references.add(new UniprotXref(primaryId, db, desc));
         }
 
         // TODO 2006-10-24: how to retreive a description ?!?!
@@ -701,6 +1431,10 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         return references;
     }
 
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
     protected void processSpliceVariants( UniProtEntry uniProtEntry, UniprotProtein protein ) {
 
         Map<String,String> seqMap = new HashMap<String,String>();
@@ -713,13 +1447,26 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
     //TODO Noe: I don't see the need of the map becasue I can't find any place in the code where it is getting updated. Remove it?
     protected List<UniprotSpliceVariant> findSpliceVariants(UniProtEntry uniProtEntry, Organism organism, Map<String, String> seqMap) {
+        return findSpliceVariants(uniProtEntry, organism, new IsoformResolutionCache(seqMap));
+    }
+
+    protected List<UniprotSpliceVariant> findSpliceVariants(UniProtEntry uniProtEntry, Organism organism, IsoformResolutionCache isoformCache) {
+        List<AlternativeProductsComment> comments = uniProtEntry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
+        return findSpliceVariants(comments, uniProtEntry, organism, isoformCache);
+    }
+
+    /**
+     * Builds the splice variants described by the alternative products comments of an entry. The parents of EXTERNAL
+     * isoforms are taken from the cache, or fetched and added to it.
+     */
+    protected List<UniprotSpliceVariant> findSpliceVariants(List<AlternativeProductsComment> comments, UniProtEntry uniProtEntry,
+                                                            Organism organism, IsoformResolutionCache isoformCache) {
         if (log.isDebugEnabled()) {
             log.debug("Finding splice variants for: " + uniProtEntry.getPrimaryUniProtAccession().getValue());
         }
 
         List<UniprotSpliceVariant> spliceVariants = new ArrayList<UniprotSpliceVariant>();
 
-        List<AlternativeProductsComment> comments = uniProtEntry.getComments( CommentType.ALTERNATIVE_PRODUCTS );
         for ( AlternativeProductsComment comment : comments ) {
             List<AlternativeProductsIsoform> isoforms = comment.getIsoforms();
 
@@ -748,8 +1495,8 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
                 // process alternative sequence
                 spliceVarId = ids.get(0);
 
-                if (seqMap.containsKey(spliceVarId)) {
-                    sequence = seqMap.get(spliceVarId);
+                if (isoformCache.isKnownSequence(spliceVarId)) {
+                    sequence = isoformCache.getKnownSequence(spliceVarId);
                 } else {
 
                     String parentProtein = getUniProtAccFromSpliceVariantId(spliceVarId);
@@ -777,7 +1524,7 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
                             //sequence = uniProtEntry.getSplicedSequence(isoform.getName().getValue());
 
-                            Iterator<UniProtEntry> iterator = getUniProtEntry(parentProtein);
+                            Iterator<UniProtEntry> iterator = resolveExternalParent(parentProtein, isoformCache).iterator();
                             int numberOfEntryInIterator = 0;
                             while (iterator.hasNext()) {
 
@@ -796,16 +1543,21 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
 
                                 } else {
                                     numberOfEntryInIterator++;
-                                    sequence = uniprotEntryParentProtein.getSplicedSequence(isoform.getName().getValue());
                                     databaseCrossReferences = uniprotEntryParentProtein.getDatabaseCrossReferences();
+                                    sequence = isoformCache.getResolvedSequence(spliceVarId);
+
+                                    if (sequence == null) {
+                                        sequence = uniprotEntryParentProtein.getSplicedSequence(isoform.getName().getValue());
 
-                                    if (sequence == null || sequence.length() == 0 ) {
-                                        for (UniprotSpliceVariant uniprotSpliceVariant : findSpliceVariants(uniprotEntryParentProtein, organism, seqMap)) {
-                                            if (uniprotSpliceVariant.getPrimaryAc().equals(spliceVarId)) {
-                                                sequence = uniprotSpliceVariant.getSequence();
-                                                break;
+                                        if (sequence == null || sequence.length() == 0 ) {
+                                            for (UniprotSpliceVariant uniprotSpliceVariant : findSpliceVariants(uniprotEntryParentProtein, organism, isoformCache)) {
+                                                if (uniprotSpliceVariant.getPrimaryAc().equals(spliceVarId)) {
+                                                    sequence = uniprotSpliceVariant.getSequence();
+                                                    break;
+                                                }
                                             }
                                         }
+                                        isoformCache.putResolvedSequence(spliceVarId, sequence);
                                     }
 
                                 }
@@ -817,7 +1569,7 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
                 // build splice variant
                 UniprotSpliceVariant sv = new UniprotSpliceVariant(spliceVarId,
                         organism,
-                        sequence );
+                        sequenceInterner.intern( sequence ) );
                 // add secondary ids (if any)
                 for ( int i = 1; i < ids.size(); i++ ) {
                     String id = ids.get( i );
@@ -878,11 +1630,20 @@ public class SimpleUniprotRemoteService extends AbstractUniprotService {
         return svId.substring( 0, index );
     }
 
+    public UniProtServicePool getServicePool() {
+        return servicePool;
+    }
+
+    public SequenceInterner getSequenceInterner() {
+        return sequenceInterner;
+    }
+
     public void start() {
-        uniProtQueryService.start();
+        // warm up a service so that the first query does not pay for it
+        servicePool.release(servicePool.lease());
     }
 
     public void close() {
-        uniProtQueryService.stop();
+        servicePool.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.uniprot.dataservice.client.Client;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of started UniProt query services, so that successive queries reuse a warm connection instead of paying for
+ * start() and stop() every time.
+ * <p/>
+ * A service is leased for the duration of a query and given back with release(), or invalidate() if the query failed.
+ * The most recently used service is leased first; services that have been idle for longer than the idle timeout or
+ * that are no longer started are stopped and discarded. At most <code>maxSize</code> services are leased at the same
+ * time, further callers wait for one to be given back.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniProtServicePool {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniProtServicePool.class );
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+
+    /**
+     * Creates new, not yet started, services.
+     */
+    private final Supplier<UniProtService> factory;
+
+    private final int maxSize;
+
+    private final Semaphore leases;
+
+    /**
+     * Started services waiting to be leased, most recently used first.
+     */
+    private final Deque<IdleService> idleServices = new ArrayDeque<IdleService>();
+
+    private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    // statistics
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong startCount = new AtomicLong();
+    private final AtomicLong startTimeNanos = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public UniProtServicePool() {
+        this( new Supplier<UniProtService>() {
+            public UniProtService get() {
+                return Client.getServiceFactoryInstance().getUniProtQueryService();
+            }
+        }, DEFAULT_MAX_SIZE );
+    }
+
+    public UniProtServicePool( Supplier<UniProtService> factory, int maxSize ) {
+        if ( factory == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtService factory." );
+        }
+        if ( maxSize < 1 ) {
+            throw new IllegalArgumentException( "The pool size must be 1 or greater: " + maxSize );
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.leases = new Semaphore( maxSize, true );
+    }
+
+    /**
+     * Leases a started service, waiting for one to be given back if the pool is exhausted.
+     *
+     * @return a started service, to be given back with release() or invalidate().
+     */
+    public UniProtService lease() {
+        try {
+            leases.acquire();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while waiting for a UniProt service.", e );
+        }
+
+        try {
+            leaseCount.incrementAndGet();
+
+            UniProtService service;
+            while ( ( service = pollIdleService() ) != null ) {
+                if ( isHealthy( service ) ) {
+                    return service;
+                }
+                discard( service );
+            }
+
+            return startNewService();
+        } catch ( RuntimeException e ) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a service back to the pool once the query is over.
+     *
+     * @param service a service obtained from lease().
+     */
+    public void release( UniProtService service ) {
+        if ( service == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtService." );
+        }
+        try {
+            synchronized ( idleServices ) {
+                idleServices.push( new IdleService( service, System.currentTimeMillis() ) );
+            }
+            evictIdle();
+        } finally {
+            leases.release();
+        }
+    }
+
+    /**
+     * Gives a service back to the pool after a failed query, the service is stopped and will not be leased again.
+     *
+     * @param service a service obtained from lease().
+     */
+    public void invalidate( UniProtService service ) {
+        if ( service == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtService." );
+        }
+        try {
+            discard( service );
+        } finally {
+            leases.release();
+        }
+    }
+
+    /**
+     * Stops and discards the services that have been idle for longer than the idle timeout.
+     */
+    public void evictIdle() {
+        List<UniProtService> expired = new ArrayList<UniProtService>();
+        long limit = System.currentTimeMillis() - idleTimeoutMillis;
+
+        synchronized ( idleServices ) {
+            for ( Iterator<IdleService> iterator = idleServices.iterator(); iterator.hasNext(); ) {
+                IdleService idle = iterator.next();
+                if ( idle.since < limit ) {
+                    expired.add( idle.service );
+                    iterator.remove();
+                }
+            }
+        }
+
+        for ( UniProtService service : expired ) {
+            evictionCount.incrementAndGet();
+            discard( service );
+        }
+    }
+
+    /**
+     * Stops all the idle services. The pool can still be used afterwards, new services are then started on demand.
+     */
+    public void close() {
+        List<UniProtService> services = new ArrayList<UniProtService>();
+        synchronized ( idleServices ) {
+            for ( IdleService idle : idleServices ) {
+                services.add( idle.service );
+            }
+            idleServices.clear();
+        }
+
+        for ( UniProtService service : services ) {
+            discard( service );
+        }
+
+        if ( log.isDebugEnabled() ) {
+            log.debug( toString() );
+        }
+    }
+
+    private UniProtService pollIdleService() {
+        synchronized ( idleServices ) {
+            IdleService idle = idleServices.poll();
+            return idle != null ? idle.service : null;
+        }
+    }
+
+    private boolean isHealthy( UniProtService service ) {
+        try {
+            return service.isStarted();
+        } catch ( RuntimeException e ) {
+            log.warn( "Could not check the state of a pooled UniProt service", e );
+            return false;
+        }
+    }
+
+    private UniProtService startNewService() {
+        UniProtService service = factory.get();
+        if ( service == null ) {
+            throw new RuntimeUniprotServiceException( "The UniProtService factory returned null." );
+        }
+
+        long start = System.nanoTime();
+        service.start();
+        startTimeNanos.addAndGet( System.nanoTime() - start );
+        startCount.incrementAndGet();
+
+        return service;
+    }
+
+    private void discard( UniProtService service ) {
+        try {
+            service.stop();
+        } catch ( RuntimeException e ) {
+            log.warn( "Could not stop a pooled UniProt service", e );
+        }
+    }
+
+    ///////////////////////////
+    // Getters and Setters
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        synchronized ( idleServices ) {
+            return idleServices.size();
+        }
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis( long idleTimeoutMillis ) {
+        if ( idleTimeoutMillis < 0 ) {
+            throw new IllegalArgumentException( "The idle timeout must be positive: " + idleTimeoutMillis );
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    ///////////////////////////
+    // Statistics
+
+    /**
+     * @return number of services leased so far.
+     */
+    public long getLeaseCount() {
+        return leaseCount.get();
+    }
+
+    /**
+     * @return number of services started so far.
+     */
+    public long getStartCount() {
+        return startCount.get();
+    }
+
+    /**
+     * @return number of services stopped because they had been idle for too long.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return time spent starting services so far, in nanoseconds.
+     */
+    public long getStartTimeNanos() {
+        return startTimeNanos.get();
+    }
+
+    /**
+     * Estimates the start up time saved by reusing services, based on the average time it took to start one.
+     *
+     * @return the estimated time saved so far, in nanoseconds.
+     */
+    public long getSavedStartTimeNanos() {
+        long starts = startCount.get();
+        if ( starts == 0 ) {
+            return 0;
+        }
+        long reuses = Math.max( 0, leaseCount.get() - starts );
+        return reuses * ( startTimeNanos.get() / starts );
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "UniProtServicePool" );
+        sb.append( "{leases=" ).append( getLeaseCount() );
+        sb.append( ", starts=" ).append( getStartCount() );
+        sb.append( ", evictions=" ).append( getEvictionCount() );
+        sb.append( ", startTimeMillis=" ).append( TimeUnit.NANOSECONDS.toMillis( getStartTimeNanos() ) );
+        sb.append( ", savedStartTimeMillis=" ).append( TimeUnit.NANOSECONDS.toMillis( getSavedStartTimeNanos() ) );
+        sb.append( '}' );
+        return sb.toString();
+    }
+
+    private static class IdleService {
+
+        private final UniProtService service;
+
+        /**
+         * When the service was given back to the pool.
+         */
+        private final long since;
+
+        private IdleService( UniProtService service, long since ) {
+            this.service = service;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+/**
+ * How the UniProt entry of an AC changed since the version the caller knows.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public enum UniprotChangeType {
+
+    /**
+     * Same release, annotation update and sequence.
+     */
+    UNCHANGED( false ),
+
+    /**
+     * Same sequence, but another release or annotation update.
+     */
+    ANNOTATION_CHANGED( true ),
+
+    /**
+     * Another sequence.
+     */
+    SEQUENCE_CHANGED( true ),
+
+    /**
+     * The AC is now a secondary AC of a single entry.
+     */
+    MERGED( true ),
+
+    /**
+     * The AC is now found in several entries.
+     */
+    DEMERGED( true ),
+
+    /**
+     * The AC is not found anymore.
+     */
+    DELETED( false );
+
+    private final boolean rebuilt;
+
+    UniprotChangeType( boolean rebuilt ) {
+        this.rebuilt = rebuilt;
+    }
+
+    /**
+     * @return true if the proteins of the AC are built again.
+     */
+    public boolean isRebuilt() {
+        return rebuilt;
+    }
+}
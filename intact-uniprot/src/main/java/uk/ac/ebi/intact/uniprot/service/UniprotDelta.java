@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * How the entry of an AC changed since the version the caller knows, with the proteins built again if it did.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class UniprotDelta {
+
+    private final String ac;
+
+    private final UniprotChangeType changeType;
+
+    private final UniprotEntryVersion knownVersion;
+
+    private final UniprotEntryVersion currentVersion;
+
+    private final List<String> currentPrimaryAcs;
+
+    private final Collection<UniprotProtein> proteins;
+
+    /**
+     * @param ac                the AC requested.
+     * @param changeType        how the entry changed.
+     * @param knownVersion      the version the caller knows.
+     * @param currentVersion    the current version of the entry, null unless the AC is found in a single entry.
+     * @param currentPrimaryAcs the primary ACs of the entries the AC is found in.
+     * @param proteins          the proteins built from these entries, empty unless the change type is rebuilt.
+     */
+    public UniprotDelta( String ac, UniprotChangeType changeType, UniprotEntryVersion knownVersion,
+                         UniprotEntryVersion currentVersion, List<String> currentPrimaryAcs,
+                         Collection<UniprotProtein> proteins ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( changeType == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotChangeType." );
+        }
+        if ( currentPrimaryAcs == null ) {
+            throw new IllegalArgumentException( "You must give a non null list of primary ACs." );
+        }
+        if ( proteins == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+        this.ac = ac;
+        this.changeType = changeType;
+        this.knownVersion = knownVersion;
+        this.currentVersion = currentVersion;
+        this.currentPrimaryAcs = currentPrimaryAcs;
+        this.proteins = proteins;
+    }
+
+    // Getters
+
+    public String getAc() {
+        return ac;
+    }
+
+    public UniprotChangeType getChangeType() {
+        return changeType;
+    }
+
+    public UniprotEntryVersion getKnownVersion() {
+        return knownVersion;
+    }
+
+    /**
+     * @return the current version of the entry, null unless the AC is found in a single entry.
+     */
+    public UniprotEntryVersion getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public List<String> getCurrentPrimaryAcs() {
+        return currentPrimaryAcs;
+    }
+
+    /**
+     * @return the proteins built again, empty if the entry is unchanged or deleted.
+     */
+    public Collection<UniprotProtein> getProteins() {
+        return proteins;
+    }
+
+    public boolean isChanged() {
+        return changeType != UniprotChangeType.UNCHANGED;
+    }
+
+    @Override
+    public String toString() {
+        return "UniprotDelta{ac='" + ac + "', changeType=" + changeType + ", currentPrimaryAcs=" + currentPrimaryAcs
+               + ", proteins=" + proteins.size() + '}';
+    }
+}
@@ -0,0 +1,630 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore.StoredProtein;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads the entries of a local UniProt dump into a UniprotProteinStore, which a PersistentUniprotService can then
+ * serve without querying UniProt.
+ * <p/>
+ * The load runs as a pipeline: the calling thread reads the entries of the dump, several threads parse them and build
+ * the proteins exactly as SimpleUniprotRemoteService does (same cross reference filter, splice variants and feature
+ * chains), and a single thread writes them to the store in batches. The stages are connected by bounded queues, so
+ * the memory used does not depend on the size of the dump.
+ * <p/>
+ * The sequence of an EXTERNAL isoform is described by another entry, which may come later in the dump. The proteins are
+ * first stored without the sequences of their EXTERNAL isoforms, then a last pass takes these sequences, and the
+ * cross references of the isoforms, from the parent entries in the store. Parents missing from the dump are only
+ * fetched from UniProt when asked to, otherwise their isoforms are left without a sequence. Entries that cannot be
+ * parsed or built are logged and skipped, a failure to write stops the load.
+ * <p/>
+ * Unless told otherwise, the entries are parsed by a FlatFileUniprotEntryParser: loading an XML dump needs a parser
+ * of XML entries.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotDumpLoader {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniprotDumpLoader.class );
+
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 500;
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+    public static final int DEFAULT_PROGRESS_INTERVAL = 10000;
+
+    private static final String END_OF_RECORDS = new String( "END_OF_RECORDS" );
+
+    private final UniprotEntryParser parser;
+
+    private final SimpleUniprotRemoteService converter;
+
+    private final UniprotProteinStore store;
+
+    private int buildThreads = Runtime.getRuntime().availableProcessors();
+
+    private int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+    private boolean processSpliceVariants = true;
+
+    private boolean resolveExternalIsoformsRemotely = false;
+
+    /**
+     * Loads flat file dumps.
+     *
+     * @param converter builds the proteins, configured with the cross reference filter to apply.
+     * @param store     where the proteins are written.
+     */
+    public UniprotDumpLoader( SimpleUniprotRemoteService converter, UniprotProteinStore store ) {
+        this( new FlatFileUniprotEntryParser(), converter, store );
+    }
+
+    /**
+     * @param parser    parses the text of the entries.
+     * @param converter builds the proteins, configured with the cross reference filter to apply.
+     * @param store     where the proteins are written.
+     */
+    public UniprotDumpLoader( UniprotEntryParser parser, SimpleUniprotRemoteService converter, UniprotProteinStore store ) {
+        if ( parser == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotEntryParser." );
+        }
+        if ( converter == null ) {
+            throw new IllegalArgumentException( "You must give a non null SimpleUniprotRemoteService." );
+        }
+        if ( store == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotProteinStore." );
+        }
+        this.parser = parser;
+        this.converter = converter;
+        this.store = store;
+    }
+
+    /**
+     * Loads a dump file, possibly gzipped, in flat file or XML format as told by its name.
+     *
+     * @param dump the dump.
+     *
+     * @return the statistics of the load.
+     */
+    public LoadStatistics load( File dump ) throws IOException {
+        UniprotDumpReader reader = new UniprotDumpReader( dump );
+        try {
+            if ( reader.getFormat() == UniprotDumpReader.Format.XML && parser instanceof FlatFileUniprotEntryParser ) {
+                throw new IllegalArgumentException( "The flat file parser cannot read the XML dump " + dump
+                                                    + ", you must give a UniprotEntryParser of XML entries." );
+            }
+            if ( log.isInfoEnabled() ) {
+                log.info( "Loading UniProt dump " + dump + " (" + reader.getFormat() + ")" );
+            }
+            return load( reader );
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Loads entries, read in the calling thread.
+     *
+     * @param records text of the entries.
+     *
+     * @return the statistics of the load.
+     */
+    public LoadStatistics load( Iterator<String> records ) {
+        if ( records == null ) {
+            throw new IllegalArgumentException( "You must give a non null Iterator of entries." );
+        }
+
+        final LoadStatistics statistics = new LoadStatistics();
+        final BlockingQueue<String> parseQueue = new ArrayBlockingQueue<String>( queueCapacity );
+        final BlockingQueue<UniprotProtein> writeQueue = new ArrayBlockingQueue<UniprotProtein>( queueCapacity );
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch buildersDone = new CountDownLatch( buildThreads );
+        // primary AC of the proteins having EXTERNAL isoforms -> AC of the parents of these isoforms
+        final Map<String, Collection<String>> externalParents = new ConcurrentHashMap<String, Collection<String>>();
+
+        List<Thread> threads = new ArrayList<Thread>( buildThreads + 1 );
+        for ( int i = 0; i < buildThreads; i++ ) {
+            threads.add( new Thread( new Runnable() {
+                public void run() {
+                    try {
+                        build( parseQueue, writeQueue, externalParents, statistics, failure );
+                    } catch ( Throwable t ) {
+                        failure.compareAndSet( null, t );
+                    } finally {
+                        buildersDone.countDown();
+                    }
+                }
+            }, "uniprot-dump-build-" + ( i + 1 ) ) );
+        }
+        threads.add( new Thread( new Runnable() {
+            public void run() {
+                try {
+                    write( writeQueue, buildersDone, statistics, failure );
+                } catch ( Throwable t ) {
+                    failure.compareAndSet( null, t );
+                }
+            }
+        }, "uniprot-dump-write" ) );
+
+        for ( Thread thread : threads ) {
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+        try {
+            while ( records.hasNext() && failure.get() == null ) {
+                enqueue( parseQueue, records.next(), failure );
+                statistics.readCount.incrementAndGet();
+            }
+            for ( int i = 0; i < buildThreads; i++ ) {
+                enqueue( parseQueue, END_OF_RECORDS, failure );
+            }
+        } catch ( RuntimeException e ) {
+            failure.compareAndSet( null, e );
+        } finally {
+            join( threads, failure );
+        }
+
+        if ( failure.get() != null ) {
+            statistics.stop();
+            throw new RuntimeUniprotServiceException( "The load of the UniProt dump failed: " + statistics, failure.get() );
+        }
+
+        store.flush();
+        if ( !externalParents.isEmpty() ) {
+            resolveExternalIsoforms( externalParents, statistics );
+            store.flush();
+        }
+        statistics.stop();
+        if ( log.isInfoEnabled() ) {
+            log.info( "Loaded UniProt dump: " + statistics );
+        }
+        return statistics;
+    }
+
+    /**
+     * Parses and builds entries until the end of the records, recording the proteins whose EXTERNAL isoforms are left
+     * to resolve.
+     */
+    private void build( BlockingQueue<String> parseQueue, BlockingQueue<UniprotProtein> writeQueue,
+                        Map<String, Collection<String>> externalParents, LoadStatistics statistics,
+                        AtomicReference<Throwable> failure ) throws InterruptedException {
+        while ( failure.get() == null ) {
+            String record = parseQueue.poll( 100, TimeUnit.MILLISECONDS );
+            if ( record == null ) {
+                continue;
+            }
+            if ( record == END_OF_RECORDS ) {
+                return;
+            }
+
+            UniprotProtein protein;
+            try {
+                UniProtEntry entry = parser.parse( record );
+                IsoformResolutionCache isoformCache = new IsoformResolutionCache();
+                Collection<String> parentAcs = processSpliceVariants
+                                               ? deferExternalParents( entry, isoformCache )
+                                               : Collections.<String>emptyList();
+                protein = converter.buildUniprotProtein( entry, processSpliceVariants, isoformCache );
+                if ( !parentAcs.isEmpty() ) {
+                    externalParents.put( protein.getPrimaryAc(), parentAcs );
+                }
+            } catch ( RuntimeException e ) {
+                statistics.failedCount.incrementAndGet();
+                log.warn( "Could not load UniProt entry: " + firstLine( record ), e );
+                continue;
+            }
+            statistics.builtCount.incrementAndGet();
+            enqueue( writeQueue, protein, failure );
+        }
+    }
+
+    /**
+     * Writes the proteins built in batches, until every build thread is done.
+     */
+    private void write( BlockingQueue<UniprotProtein> writeQueue, CountDownLatch buildersDone,
+                        LoadStatistics statistics, AtomicReference<Throwable> failure ) throws InterruptedException {
+        List<UniprotProtein> batch = new ArrayList<UniprotProtein>( writeBatchSize );
+        long nextProgress = progressInterval;
+
+        while ( failure.get() == null ) {
+            UniprotProtein protein = writeQueue.poll( 100, TimeUnit.MILLISECONDS );
+            if ( protein != null ) {
+                batch.add( protein );
+            }
+
+            boolean done = protein == null && buildersDone.getCount() == 0 && writeQueue.isEmpty();
+            if ( batch.size() >= writeBatchSize || ( done && !batch.isEmpty() ) ) {
+                store.putAll( batch, processSpliceVariants );
+                long written = statistics.writtenCount.addAndGet( batch.size() );
+                batch.clear();
+
+                if ( written >= nextProgress ) {
+                    nextProgress += progressInterval;
+                    if ( log.isInfoEnabled() ) {
+                        log.info( "Loaded " + written + " UniProt entries ("
+                                  + String.format( "%.1f", statistics.getEntriesPerSecond() ) + " entries/s)" );
+                    }
+                }
+            }
+            if ( done ) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gives the parents of the EXTERNAL isoforms of an entry as not found, so that building the entry never fetches
+     * them: the isoforms are resolved once the whole dump is stored.
+     *
+     * @return the ACs of the parents, empty if the entry has no EXTERNAL isoform.
+     */
+    private Collection<String> deferExternalParents( UniProtEntry entry, IsoformResolutionCache isoformCache ) {
+        converter.collectExternalParents( entry, isoformCache );
+        Collection<String> parentAcs = isoformCache.getPendingParents();
+        for ( String parentAc : parentAcs ) {
+            isoformCache.putParent( parentAc, Collections.<UniProtEntry>emptyList() );
+        }
+        return parentAcs;
+    }
+
+    /**
+     * Gives their sequence, and the cross references of their parent, to the EXTERNAL isoforms of the stored proteins.
+     *
+     * @param externalParents the AC of the parents of the EXTERNAL isoforms, indexed by the primary AC of the proteins.
+     */
+    private void resolveExternalIsoforms( Map<String, Collection<String>> externalParents, LoadStatistics statistics ) {
+        if ( log.isInfoEnabled() ) {
+            log.info( "Resolving the EXTERNAL isoforms of " + externalParents.size() + " UniProt entries" );
+        }
+
+        // only the isoforms of the parents are kept, whatever the number of proteins pointing to them
+        Set<String> parentAcs = new LinkedHashSet<String>();
+        for ( Collection<String> acs : externalParents.values() ) {
+            parentAcs.addAll( acs );
+        }
+        Map<String, UniprotSpliceVariant> isoforms = new HashMap<String, UniprotSpliceVariant>();
+        Set<String> missingParentAcs = new LinkedHashSet<String>();
+        for ( String parentAc : parentAcs ) {
+            UniprotProtein parent = loadParent( parentAc );
+            if ( parent == null ) {
+                missingParentAcs.add( parentAc );
+            } else {
+                addIsoforms( parent, isoforms );
+            }
+        }
+        if ( !missingParentAcs.isEmpty() ) {
+            if ( resolveExternalIsoformsRemotely ) {
+                fetchParents( missingParentAcs, isoforms );
+            } else if ( log.isWarnEnabled() ) {
+                log.warn( missingParentAcs.size() + " parents of EXTERNAL isoforms are not in the dump, their isoforms are "
+                          + "left without a sequence: " + missingParentAcs );
+            }
+        }
+
+        List<UniprotProtein> batch = new ArrayList<UniprotProtein>( writeBatchSize );
+        for ( Map.Entry<String, Collection<String>> external : externalParents.entrySet() ) {
+            StoredProtein stored = store.get( external.getKey() );
+            if ( stored == null ) {
+                continue;
+            }
+            UniprotProtein protein = store.load( stored );
+            Set<String> proteinParentAcs = new HashSet<String>( external.getValue() );
+
+            for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+                if ( hasSequence( spliceVariant )
+                     || !proteinParentAcs.contains( converter.getUniProtAccFromSpliceVariantId( spliceVariant.getPrimaryAc() ).toUpperCase() ) ) {
+                    continue;
+                }
+                UniprotSpliceVariant isoform = isoforms.get( spliceVariant.getPrimaryAc().toUpperCase() );
+                if ( isoform == null ) {
+                    statistics.unresolvedIsoformCount.incrementAndGet();
+                    continue;
+                }
+                spliceVariant.setSequence( converter.getSequenceInterner().intern( isoform.getSequence() ) );
+                for ( UniprotXref xref : isoform.getCrossReferences() ) {
+                    if ( !spliceVariant.getCrossReferences().contains( xref ) ) {
+                        spliceVariant.getCrossReferences().add( xref );
+                    }
+                }
+                statistics.resolvedIsoformCount.incrementAndGet();
+            }
+
+            batch.add( protein );
+            if ( batch.size() >= writeBatchSize ) {
+                store.putAll( batch, processSpliceVariants );
+                batch.clear();
+            }
+        }
+        if ( !batch.isEmpty() ) {
+            store.putAll( batch, processSpliceVariants );
+        }
+    }
+
+    /**
+     * @return the parent of EXTERNAL isoforms as stored, null if it is not stored with its isoforms.
+     */
+    private UniprotProtein loadParent( String parentAc ) {
+        Collection<StoredProtein> stored = store.lookup( parentAc );
+        if ( stored.size() > 1 ) {
+            log.error( "We were expecting to find only one protein while loading external sequence from: " + parentAc
+                       + ", found " + stored );
+            return null;
+        }
+        if ( stored.isEmpty() || !stored.iterator().next().isWithSpliceVariants() ) {
+            return null;
+        }
+        return store.load( stored.iterator().next() );
+    }
+
+    /**
+     * Fetches from UniProt the parents of EXTERNAL isoforms missing from the dump, in batches.
+     */
+    private void fetchParents( Collection<String> parentAcs, Map<String, UniprotSpliceVariant> isoforms ) {
+        if ( log.isInfoEnabled() ) {
+            log.info( "Retrieving " + parentAcs.size() + " parents of EXTERNAL isoforms from UniProt" );
+        }
+
+        IsoformResolutionCache parents = new IsoformResolutionCache();
+        for ( String parentAc : parentAcs ) {
+            parents.requestParent( parentAc );
+        }
+        converter.fetchExternalParents( parents );
+
+        for ( String parentAc : parentAcs ) {
+            List<UniProtEntry> entries = parents.getParent( parentAc );
+            if ( entries == null || entries.size() != 1 ) {
+                log.warn( "Could not retrieve the parent of EXTERNAL isoforms " + parentAc + " from UniProt: "
+                          + ( entries == null ? "the query failed" : entries.size() + " entries found" ) );
+                continue;
+            }
+            UniProtEntry entry = entries.get( 0 );
+            IsoformResolutionCache isoformCache = new IsoformResolutionCache();
+            deferExternalParents( entry, isoformCache );
+            addIsoforms( converter.buildUniprotProtein( entry, true, isoformCache ), isoforms );
+        }
+    }
+
+    private static void addIsoforms( UniprotProtein parent, Map<String, UniprotSpliceVariant> isoforms ) {
+        for ( UniprotSpliceVariant spliceVariant : parent.getSpliceVariants() ) {
+            if ( hasSequence( spliceVariant ) ) {
+                isoforms.put( spliceVariant.getPrimaryAc().toUpperCase(), spliceVariant );
+            }
+        }
+    }
+
+    /**
+     * Splice variants refuse to give an empty sequence.
+     */
+    private static boolean hasSequence( UniprotSpliceVariant spliceVariant ) {
+        try {
+            return spliceVariant.getSequence() != null;
+        } catch ( IllegalArgumentException e ) {
+            return false;
+        }
+    }
+
+    private static <T> void enqueue( BlockingQueue<T> queue, T item, AtomicReference<Throwable> failure ) {
+        try {
+            while ( !queue.offer( item, 100, TimeUnit.MILLISECONDS ) ) {
+                if ( failure.get() != null ) {
+                    throw new RuntimeUniprotServiceException( "The load of the UniProt dump was stopped", failure.get() );
+                }
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeUniprotServiceException( "Interrupted while loading the UniProt dump", e );
+        }
+    }
+
+    private static void join( List<Thread> threads, AtomicReference<Throwable> failure ) {
+        for ( Thread thread : threads ) {
+            try {
+                thread.join();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet( null, e );
+                return;
+            }
+        }
+    }
+
+    private static String firstLine( String record ) {
+        int end = record.indexOf( '\n' );
+        return end < 0 ? record : record.substring( 0, end );
+    }
+
+    // Getters and Setters
+
+    public int getBuildThreads() {
+        return buildThreads;
+    }
+
+    public void setBuildThreads( int buildThreads ) {
+        if ( buildThreads < 1 ) {
+            throw new IllegalArgumentException( "The number of build threads must be 1 or greater: " + buildThreads );
+        }
+        this.buildThreads = buildThreads;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public void setWriteBatchSize( int writeBatchSize ) {
+        if ( writeBatchSize < 1 ) {
+            throw new IllegalArgumentException( "The write batch size must be 1 or greater: " + writeBatchSize );
+        }
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the number of entries waiting between two stages of the pipeline, which bounds the memory used.
+     */
+    public void setQueueCapacity( int queueCapacity ) {
+        if ( queueCapacity < 1 ) {
+            throw new IllegalArgumentException( "The queue capacity must be 1 or greater: " + queueCapacity );
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Sets the number of entries written between two progress reports in the log.
+     */
+    public void setProgressInterval( int progressInterval ) {
+        if ( progressInterval < 1 ) {
+            throw new IllegalArgumentException( "The progress interval must be 1 or greater: " + progressInterval );
+        }
+        this.progressInterval = progressInterval;
+    }
+
+    public boolean isProcessSpliceVariants() {
+        return processSpliceVariants;
+    }
+
+    public void setProcessSpliceVariants( boolean processSpliceVariants ) {
+        this.processSpliceVariants = processSpliceVariants;
+    }
+
+    public boolean isResolveExternalIsoformsRemotely() {
+        return resolveExternalIsoformsRemotely;
+    }
+
+    /**
+     * Sets whether the parents of EXTERNAL isoforms missing from the dump are fetched from UniProt, in batches, once
+     * the dump is stored. Off by default: a load does not query UniProt.
+     */
+    public void setResolveExternalIsoformsRemotely( boolean resolveExternalIsoformsRemotely ) {
+        this.resolveExternalIsoformsRemotely = resolveExternalIsoformsRemotely;
+    }
+
+    /**
+     * Counts of a load, and its throughput.
+     */
+    public static class LoadStatistics {
+
+        private final long startNanos = System.nanoTime();
+        private volatile long endNanos;
+
+        private final AtomicLong readCount = new AtomicLong();
+        private final AtomicLong builtCount = new AtomicLong();
+        private final AtomicLong failedCount = new AtomicLong();
+        private final AtomicLong writtenCount = new AtomicLong();
+        private final AtomicLong resolvedIsoformCount = new AtomicLong();
+        private final AtomicLong unresolvedIsoformCount = new AtomicLong();
+
+        private void stop() {
+            endNanos = System.nanoTime();
+        }
+
+        /**
+         * @return number of entries read from the dump.
+         */
+        public long getReadCount() {
+            return readCount.get();
+        }
+
+        /**
+         * @return number of proteins built.
+         */
+        public long getBuiltCount() {
+            return builtCount.get();
+        }
+
+        /**
+         * @return number of entries skipped because they could not be parsed or built.
+         */
+        public long getFailedCount() {
+            return failedCount.get();
+        }
+
+        /**
+         * @return number of proteins written to the store.
+         */
+        public long getWrittenCount() {
+            return writtenCount.get();
+        }
+
+        /**
+         * @return number of EXTERNAL isoforms given the sequence of their parent entry.
+         */
+        public long getResolvedIsoformCount() {
+            return resolvedIsoformCount.get();
+        }
+
+        /**
+         * @return number of EXTERNAL isoforms left without a sequence, their parent entry being unavailable.
+         */
+        public long getUnresolvedIsoformCount() {
+            return unresolvedIsoformCount.get();
+        }
+
+        public long getElapsedMillis() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis( end - startNanos );
+        }
+
+        /**
+         * @return number of proteins written per second.
+         */
+        public double getEntriesPerSecond() {
+            long elapsed = getElapsedMillis();
+            return elapsed == 0 ? 0 : writtenCount.get() * 1000d / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "read=" + getReadCount() + ", built=" + getBuiltCount() + ", failed=" + getFailedCount()
+                   + ", written=" + getWrittenCount() + ", external isoforms resolved=" + getResolvedIsoformCount()
+                   + ", unresolved=" + getUnresolvedIsoformCount() + ", elapsed=" + getElapsedMillis() + "ms, "
+                   + String.format( "%.1f", getEntriesPerSecond() ) + " entries/s";
+        }
+    }
+}
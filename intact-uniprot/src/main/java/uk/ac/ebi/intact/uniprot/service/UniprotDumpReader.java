@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a UniProt dump one entry at a time, handing out the text of each entry as it is read. Only the entry being
+ * read is held in memory, whatever the size of the dump.
+ * <p/>
+ * Flat file entries end with a '//' line, XML entries are the lines from an &lt;entry&gt; element to its closing
+ * tag. Dumps whose name ends with .gz are decompressed on the fly. Not thread-safe.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotDumpReader implements Iterator<String>, Closeable {
+
+    public enum Format {
+        FLAT_FILE, XML;
+
+        /**
+         * @return the format of a dump, as told by its name (uniprot_sprot.dat.gz, uniprot_sprot.xml.gz...).
+         */
+        public static Format of( File dump ) {
+            String name = dump.getName().toLowerCase();
+            if ( name.endsWith( ".gz" ) ) {
+                name = name.substring( 0, name.length() - 3 );
+            }
+            return name.endsWith( ".xml" ) ? XML : FLAT_FILE;
+        }
+    }
+
+    private static final String FLAT_FILE_END = "//";
+    private static final String XML_START = "<entry";
+    private static final String XML_END = "</entry>";
+
+    private final BufferedReader reader;
+
+    private final Format format;
+
+    private String next;
+
+    private long recordCount;
+
+    public UniprotDumpReader( File dump ) throws IOException {
+        this( open( dump ), Format.of( dump ) );
+    }
+
+    public UniprotDumpReader( Reader reader, Format format ) {
+        if ( reader == null ) {
+            throw new IllegalArgumentException( "You must give a non null Reader." );
+        }
+        if ( format == null ) {
+            throw new IllegalArgumentException( "You must give a non null Format." );
+        }
+        this.reader = reader instanceof BufferedReader ? ( BufferedReader ) reader : new BufferedReader( reader, 1 << 16 );
+        this.format = format;
+    }
+
+    private static Reader open( File dump ) throws IOException {
+        if ( dump == null ) {
+            throw new IllegalArgumentException( "You must give a non null dump." );
+        }
+        InputStream in = new FileInputStream( dump );
+        try {
+            if ( dump.getName().toLowerCase().endsWith( ".gz" ) ) {
+                in = new GZIPInputStream( in, 1 << 16 );
+            }
+        } catch ( IOException e ) {
+            in.close();
+            throw e;
+        }
+        return new InputStreamReader( in, StandardCharsets.UTF_8 );
+    }
+
+    public boolean hasNext() {
+        if ( next == null ) {
+            try {
+                next = format == Format.XML ? readXmlEntry() : readFlatFileEntry();
+            } catch ( IOException e ) {
+                throw new RuntimeUniprotServiceException( "Could not read the UniProt dump after " + recordCount + " entries", e );
+            }
+        }
+        return next != null;
+    }
+
+    public String next() {
+        if ( !hasNext() ) {
+            throw new NoSuchElementException();
+        }
+        String record = next;
+        next = null;
+        recordCount++;
+        return record;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private String readFlatFileEntry() throws IOException {
+        StringBuilder record = new StringBuilder( 8192 );
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+            if ( line.startsWith( FLAT_FILE_END ) ) {
+                record.append( line ).append( '\n' );
+                return record.toString();
+            }
+            if ( record.length() > 0 || line.trim().length() > 0 ) {
+                record.append( line ).append( '\n' );
+            }
+        }
+        // an entry missing its terminator is incomplete, it is not handed out
+        return null;
+    }
+
+    private String readXmlEntry() throws IOException {
+        StringBuilder record = null;
+        String line;
+        while ( ( line = reader.readLine() ) != null ) {
+            String trimmed = line.trim();
+            if ( record == null ) {
+                if ( trimmed.startsWith( XML_START ) && ( trimmed.length() == XML_START.length()
+                                                          || trimmed.charAt( XML_START.length() ) == ' '
+                                                          || trimmed.charAt( XML_START.length() ) == '>' ) ) {
+                    record = new StringBuilder( 8192 );
+                } else {
+                    continue;
+                }
+            }
+            record.append( line ).append( '\n' );
+            if ( trimmed.endsWith( XML_END ) ) {
+                return record.toString();
+            }
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Getters
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * @return number of entries handed out so far.
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+/**
+ * Turns the text of a single entry of a UniProt dump into a UniProtEntry, typically by delegating to the flat file or
+ * XML parser shipped with the UniProt JAPI. Implementations are called by several threads at once.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public interface UniprotEntryParser {
+
+    /**
+     * @param record text of the entry, as read by a UniprotDumpReader.
+     *
+     * @return the entry, never null.
+     *
+     * @throws RuntimeException if the record could not be parsed.
+     */
+    public UniProtEntry parse( String record );
+}
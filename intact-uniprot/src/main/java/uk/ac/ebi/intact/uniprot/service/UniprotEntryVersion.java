@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.Date;
+
+/**
+ * Version of a UniProt entry, as far as telling whether it changed is concerned: the release it comes from, the date of
+ * its last annotation update and the CRC64 of its sequence.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class UniprotEntryVersion {
+
+    private final String releaseVersion;
+
+    private final Date lastAnnotationUpdate;
+
+    private final String crc64;
+
+    /**
+     * @param releaseVersion       the release version, as given by UniprotProtein.getReleaseVersion().
+     * @param lastAnnotationUpdate the date of the last annotation update.
+     * @param crc64                the CRC64 of the sequence.
+     */
+    public UniprotEntryVersion( String releaseVersion, Date lastAnnotationUpdate, String crc64 ) {
+        this.releaseVersion = releaseVersion;
+        this.lastAnnotationUpdate = lastAnnotationUpdate == null ? null : new Date( lastAnnotationUpdate.getTime() );
+        this.crc64 = crc64;
+    }
+
+    /**
+     * @param protein a protein built from UniProt.
+     *
+     * @return the version of the entry the protein was built from.
+     */
+    public static UniprotEntryVersion of( UniprotProtein protein ) {
+        if ( protein == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotProtein." );
+        }
+        return new UniprotEntryVersion( protein.getReleaseVersion(), protein.getLastAnnotationUpdate(),
+                                        protein.getCrc64() );
+    }
+
+    /**
+     * Compares this known version with the current version of the same entry. A value missing from this version is
+     * taken as changed.
+     *
+     * @param current the current version of the entry.
+     *
+     * @return SEQUENCE_CHANGED, ANNOTATION_CHANGED or UNCHANGED.
+     */
+    public UniprotChangeType compare( UniprotEntryVersion current ) {
+        if ( current == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniprotEntryVersion." );
+        }
+        if ( crc64 == null || !crc64.equalsIgnoreCase( current.crc64 ) ) {
+            return UniprotChangeType.SEQUENCE_CHANGED;
+        }
+        if ( releaseVersion == null || !releaseVersion.equals( current.releaseVersion )
+             || lastAnnotationUpdate == null || !lastAnnotationUpdate.equals( current.lastAnnotationUpdate ) ) {
+            return UniprotChangeType.ANNOTATION_CHANGED;
+        }
+        return UniprotChangeType.UNCHANGED;
+    }
+
+    // Getters
+
+    public String getReleaseVersion() {
+        return releaseVersion;
+    }
+
+    public Date getLastAnnotationUpdate() {
+        return lastAnnotationUpdate == null ? null : new Date( lastAnnotationUpdate.getTime() );
+    }
+
+    public String getCrc64() {
+        return crc64;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) return true;
+        if ( o == null || getClass() != o.getClass() ) return false;
+
+        UniprotEntryVersion that = ( UniprotEntryVersion ) o;
+        return ( releaseVersion != null ? releaseVersion.equals( that.releaseVersion ) : that.releaseVersion == null )
+               && ( lastAnnotationUpdate != null ? lastAnnotationUpdate.equals( that.lastAnnotationUpdate ) : that.lastAnnotationUpdate == null )
+               && ( crc64 != null ? crc64.equals( that.crc64 ) : that.crc64 == null );
+    }
+
+    @Override
+    public int hashCode() {
+        int result = releaseVersion != null ? releaseVersion.hashCode() : 0;
+        result = 31 * result + ( lastAnnotationUpdate != null ? lastAnnotationUpdate.hashCode() : 0 );
+        result = 31 * result + ( crc64 != null ? crc64.hashCode() : 0 );
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "UniprotEntryVersion{releaseVersion='" + releaseVersion + "', lastAnnotationUpdate=" + lastAnnotationUpdate
+               + ", crc64='" + crc64 + "'}";
+    }
+}
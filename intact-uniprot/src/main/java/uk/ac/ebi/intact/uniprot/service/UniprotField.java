@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+/**
+ * Parts of a UniProt entry that can be left out of the proteins built from it.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public enum UniprotField {
+
+    /**
+     * Amino acid sequence of the protein, its length and CRC64 are always given.
+     */
+    SEQUENCE,
+
+    /**
+     * Names and parents of the organism, its taxid is always given.
+     */
+    ORGANISM,
+
+    /**
+     * Genes, ORFs, locuses, synonyms and alternative names.
+     */
+    NAMES,
+
+    /**
+     * Keywords of the entry.
+     */
+    KEYWORDS,
+
+    /**
+     * Cross references of the protein and of its splice variants.
+     */
+    XREFS,
+
+    /**
+     * Functions and diseases, read from the comments of the entry.
+     */
+    COMMENTS,
+
+    /**
+     * Splice variants, only built when the splice variants are asked for.
+     */
+    SPLICE_VARIANTS,
+
+    /**
+     * Chains, peptides and pro-peptides, only built when the splice variants are asked for. They are views over the
+     * sequence of the protein, which is then always given.
+     */
+    FEATURE_CHAINS
+}
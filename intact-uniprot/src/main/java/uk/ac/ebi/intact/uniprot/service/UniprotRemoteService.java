@@ -20,6 +20,7 @@ import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
 import uk.ac.ebi.uniprot.dataservice.query.Query;
 
 import java.util.*;
+import java.util.function.ToLongFunction;
 
 /**
  * Adapter to read UniProt entries using the remote services.
@@ -30,7 +31,20 @@ import java.util.*;
  */
 public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
-    private Map<String,Collection<UniprotProtein>> retrievalCache;
+    /**
+     * Estimated size of the proteins the cache may hold, unless set otherwise: 64 MB.
+     */
+    public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Proteins retrieved so far, indexed by upper case primary AC and the parts of their entries they were built with.
+     */
+    private final WeightedLruCache<String, UniprotProtein> retrievalCache;
+
+    /**
+     * Primary ACs of the proteins retrieved so far, indexed by all their identifiers.
+     */
+    private final AccessionAliasIndex aliasIndex = new AccessionAliasIndex();
 
     /**
      * Sets up a logger for that class.
@@ -39,12 +53,20 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
     public UniprotRemoteService() {
         super();
-        retrievalCache = new WeakHashMap<String,Collection<UniprotProtein>>();
+        retrievalCache = new WeightedLruCache<String, UniprotProtein>( DEFAULT_CACHE_SIZE, new ProteinSizeEstimator() );
     }
 
     public UniprotRemoteService(CrossReferenceFilter filter) {
+        this(filter, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param filter    the cross reference filter.
+     * @param cacheSize estimated size in bytes of the proteins kept in memory.
+     */
+    public UniprotRemoteService(CrossReferenceFilter filter, long cacheSize) {
         super(filter);
-        retrievalCache = new WeakHashMap<String,Collection<UniprotProtein>>();
+        retrievalCache = new WeightedLruCache<String, UniprotProtein>( cacheSize, new ProteinSizeEstimator() );
     }
 
     @Override
@@ -54,10 +76,10 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
         }
         Collection<UniprotSpliceVariant> variants = new ArrayList<UniprotSpliceVariant>();
         Collection<String> variantAcProcessed = new ArrayList<String>();
-        start();
-        if (retrievalCache.containsKey(ac)) {
+        RetrievalOptions options = getRetrievalOptions( true );
+        Collection<UniprotProtein> uniprotProteins = getFromRetrievalCache(ac, options);
+        if (uniprotProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
 
             for (UniprotProtein p : uniprotProteins){
                 UniprotSpliceVariant variant = retrieveUniprotSpliceVariant(p, ac);
@@ -82,7 +104,7 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
         while ( it.hasNext() ) {
             UniProtEntry uniProtEntry = it.next();
-            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
+            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true, new IsoformResolutionCache(), options );
             proteins.add( uniprotProtein );
             UniprotSpliceVariant variant = retrieveUniprotSpliceVariant(uniprotProtein, ac);
 
@@ -95,8 +117,7 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             }
         }
 
-        retrievalCache.put(ac, proteins);
-        close();
+        putInRetrievalCache(ac, proteins, options);
         return variants;
     }
 
@@ -106,10 +127,10 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             log.debug("Retrieving feature chains from UniProt: "+ac);
         }
         Collection<UniprotFeatureChain> variants = new ArrayList<UniprotFeatureChain>();
-        start();
-        if (retrievalCache.containsKey(ac)) {
+        RetrievalOptions options = getRetrievalOptions( true );
+        Collection<UniprotProtein> uniprotProteins = getFromRetrievalCache(ac, options);
+        if (uniprotProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            Collection<UniprotProtein> uniprotProteins = retrievalCache.get(ac);
 
             for (UniprotProtein p : uniprotProteins){
                 UniprotFeatureChain variant = retrieveUniprotFeatureChain(p, ac);
@@ -134,7 +155,7 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
         while ( it.hasNext() ) {
             UniProtEntry uniProtEntry = it.next();
-            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true );
+            UniprotProtein uniprotProtein = buildUniprotProtein( uniProtEntry, true, new IsoformResolutionCache(), options );
             proteins.add( uniprotProtein );
             UniprotFeatureChain variant = retrieveUniprotFeatureChain(uniprotProtein, ac);
 
@@ -144,8 +165,7 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             }
         }
 
-        retrievalCache.put(ac, proteins);
-        close();
+        putInRetrievalCache(ac, proteins, options);
         return variants;
     }
 
@@ -154,11 +174,12 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
             log.debug("Retrieving from UniProt: "+ac);
         }
 
-        if (retrievalCache.containsKey(ac)) {
+        RetrievalOptions options = getRetrievalOptions( processSpliceVars );
+        Collection<UniprotProtein> cachedProteins = getFromRetrievalCache(ac, options);
+        if (cachedProteins != null) {
             if (log.isDebugEnabled()) log.debug("\tFound in cache");
-            return retrievalCache.get(ac);
+            return cachedProteins;
         }
-        start();
         Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
 
         Iterator<UniProtEntry> it = getUniProtEntry( ac );
@@ -170,14 +191,201 @@ public class UniprotRemoteService extends SimpleUniprotRemoteService {
 
         while ( it.hasNext() ) {
             UniProtEntry uniProtEntry = it.next();
-            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars ) );
+            proteins.add( buildUniprotProtein( uniProtEntry, processSpliceVars, new IsoformResolutionCache(), options ) );
         }
 
-        retrievalCache.put(ac, proteins);
+        putInRetrievalCache(ac, proteins, options);
 
         return proteins;
     }
     
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+
+        if ( acs.isEmpty() ) {
+            throw new IllegalArgumentException( "You must give a non empty List of UniProt ACs." );
+        }
+
+        RetrievalOptions options = getRetrievalOptions( processSpliceVars );
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        Collection<String> missingAcs = new ArrayList<String>( acs.size() );
+
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> proteins = getFromRetrievalCache( ac, options );
+            if ( proteins != null ) {
+                results.put( ac, proteins );
+            } else {
+                missingAcs.add( ac );
+            }
+        }
+
+        if ( !missingAcs.isEmpty() ) {
+            // built with the options the flag stands for right now, the ones the proteins are cached under
+            Map<String, Collection<UniprotProtein>> fetched = super.retrieve( missingAcs, options );
+            for ( Map.Entry<String, Collection<UniprotProtein>> entry : fetched.entrySet() ) {
+                putInRetrievalCache( entry.getKey(), entry.getValue(), options );
+            }
+            results.putAll( fetched );
+        }
+
+        return results;
+    }
+
+    /**
+     * Builds only the parts of the entries selected by the options, proteins already retrieved with at least these
+     * parts are given as they are.
+     */
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        Collection<UniprotProtein> cachedProteins = getFromRetrievalCache( ac, options );
+        if ( cachedProteins != null ) {
+            if (log.isDebugEnabled()) log.debug("\tFound in cache");
+            return cachedProteins;
+        }
+
+        Collection<UniprotProtein> proteins = super.retrieve( ac, options );
+        putInRetrievalCache( ac, proteins, options );
+        return proteins;
+    }
+
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+
+        Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+        Collection<String> missingAcs = new ArrayList<String>( acs.size() );
+
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> proteins = getFromRetrievalCache( ac, options );
+            if ( proteins != null ) {
+                results.put( ac, proteins );
+            } else {
+                missingAcs.add( ac );
+            }
+        }
+
+        if ( !missingAcs.isEmpty() ) {
+            Map<String, Collection<UniprotProtein>> fetched = super.retrieve( missingAcs, options );
+            for ( Map.Entry<String, Collection<UniprotProtein>> entry : fetched.entrySet() ) {
+                putInRetrievalCache( entry.getKey(), entry.getValue(), options );
+            }
+            results.putAll( fetched );
+        }
+
+        return results;
+    }
+
+    /**
+     * Empties the proteins retrieved so far, along with the identifiers they were found by.
+     */
+    public void clearRetrievalCache() {
+        retrievalCache.clear();
+        aliasIndex.clear();
+    }
+
+    @Override
+    public void close() {
+        clearRetrievalCache();
+        super.close();
+    }
+
+    public AccessionAliasIndex getAliasIndex() {
+        return aliasIndex;
+    }
+
+    public WeightedLruCache<String, UniprotProtein> getRetrievalCache() {
+        return retrievalCache;
+    }
+
+    /**
+     * Gives the proteins retrieved for an identifier, or found by their primary AC or UniProt ID. Proteins built
+     * with more parts of their entry, such as their splice variants, also answer requests that do not need them.
+     *
+     * @param ac      the identifier.
+     * @param options the parts of the entries the proteins must have been built with.
+     *
+     * @return the proteins, null unless they are all cached.
+     */
+    private Collection<UniprotProtein> getFromRetrievalCache( String ac, RetrievalOptions options ) {
+        Set<String> primaryAcs = aliasIndex.resolve( ac );
+        if ( primaryAcs.isEmpty() ) {
+            return null;
+        }
+
+        // the proteins built with every part, then without splice variants, then with exactly the given parts
+        boolean projection = !options.getProjectionKey().equals( RetrievalOptions.FULL.getProjectionKey() )
+                          && !options.getProjectionKey().equals( RetrievalOptions.NO_SPLICE_VARIANTS.getProjectionKey() );
+
+        Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>( primaryAcs.size() );
+        for ( String primaryAc : primaryAcs ) {
+            UniprotProtein protein = retrievalCache.get( cacheKey( primaryAc, RetrievalOptions.FULL ) );
+            if ( protein == null && RetrievalOptions.NO_SPLICE_VARIANTS.covers( options ) ) {
+                protein = retrievalCache.get( cacheKey( primaryAc, RetrievalOptions.NO_SPLICE_VARIANTS ) );
+            }
+            if ( protein == null && projection ) {
+                protein = retrievalCache.get( cacheKey( primaryAc, options ) );
+            }
+            if ( protein == null ) {
+                // evicted since, the identifiers it was found by are no longer answered by the cache
+                aliasIndex.forget( primaryAc );
+                return null;
+            }
+            proteins.add( protein );
+        }
+        return proteins;
+    }
+
+    private void putInRetrievalCache( String ac, Collection<UniprotProtein> proteins, RetrievalOptions options ) {
+        for ( UniprotProtein protein : proteins ) {
+            retrievalCache.put( cacheKey( protein.getPrimaryAc(), options ), protein );
+        }
+        aliasIndex.register( ac, proteins );
+    }
+
+    private String cacheKey( String primaryAc, RetrievalOptions options ) {
+        return primaryAc.toUpperCase() + '|' + options.getProjectionKey();
+    }
+
+    /**
+     * Estimates the memory used by a protein from the length of its sequences and its number of cross references.
+     */
+    private static class ProteinSizeEstimator implements ToLongFunction<UniprotProtein> {
+
+        private static final int PROTEIN_SIZE = 1024;
+        private static final int TRANSCRIPT_SIZE = 256;
+        private static final int XREF_SIZE = 160;
+
+        public long applyAsLong( UniprotProtein protein ) {
+            String sequence = protein.getSequence();
+            long size = PROTEIN_SIZE + ( sequence == null ? 0 : sequence.length() )
+                        + XREF_SIZE * protein.getCrossReferences().size();
+
+            for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+                size += TRANSCRIPT_SIZE + XREF_SIZE * spliceVariant.getCrossReferences().size();
+                String variantSequence = spliceVariant.getSequence();
+                if ( variantSequence != null && variantSequence != sequence ) {
+                    size += variantSequence.length();
+                }
+            }
+            // feature chains are views over the sequence of the protein
+            size += TRANSCRIPT_SIZE * protein.getFeatureChains().size();
+
+            return size;
+        }
+    }
+
     public static void main(String[] args) throws ServiceException {
         final UniProtService uniProtQueryService = Client.getServiceFactoryInstance().getUniProtQueryService();
         uniProtQueryService.start();
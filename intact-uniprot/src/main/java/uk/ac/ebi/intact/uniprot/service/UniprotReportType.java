@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+/**
+ * Kind of problem a UniprotServiceReport tells about.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public enum UniprotReportType {
+
+    /**
+     * UniProt was searched and has nothing for the AC.
+     */
+    NOT_FOUND,
+
+    /**
+     * The AC could not be searched or its entry could not be converted, searching it again may succeed.
+     */
+    RETRIEVAL_FAILED
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Normalized description of a retrieval: what is searched, how, and how the resulting proteins are built. Two requests
+ * with the same descriptor give the same proteins.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class UniprotRequestDescriptor {
+
+    private final String ac;
+
+    private final NegativeResultCache.LookupType lookupType;
+
+    private final RetrievalOptions options;
+
+    private final String filterFingerprint;
+
+    /**
+     * @param ac                    the identifier searched.
+     * @param processSpliceVariants whether the splice variants and feature chains are built.
+     * @param filter                the cross reference filter the proteins are built with, can be null.
+     */
+    public UniprotRequestDescriptor( String ac, boolean processSpliceVariants, CrossReferenceFilter filter ) {
+        this( ac, RetrievalOptions.forSpliceVariants( processSpliceVariants ), fingerprint( filter ) );
+    }
+
+    /**
+     * @param ac      the identifier searched.
+     * @param options the parts of the entries the proteins are built with.
+     * @param filter  the cross reference filter the proteins are built with, can be null.
+     */
+    public UniprotRequestDescriptor( String ac, RetrievalOptions options, CrossReferenceFilter filter ) {
+        this( ac, options, fingerprint( filter ) );
+    }
+
+    private UniprotRequestDescriptor( String ac, RetrievalOptions options, String filterFingerprint ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        this.ac = ac.trim().toUpperCase();
+        this.lookupType = NegativeResultCache.LookupType.of( this.ac );
+        // lazy and eager cross references give the same proteins
+        this.options = options.withLazyCrossReferences( false );
+        this.filterFingerprint = filterFingerprint;
+    }
+
+    /**
+     * Computes a short identifier of the databases a filter selects, so that proteins built with differently
+     * configured filters are told apart.
+     *
+     * @param filter the filter, can be null if cross references are not filtered.
+     *
+     * @return the fingerprint of the filter.
+     */
+    public static String fingerprint( CrossReferenceFilter filter ) {
+        if ( filter == null ) {
+            return "none";
+        }
+
+        List<String> databases = new ArrayList<String>();
+        for ( String database : filter.getFilteredDatabases() ) {
+            databases.add( database.toLowerCase() );
+        }
+        Collections.sort( databases );
+
+        StringBuilder sb = new StringBuilder( filter.getClass().getName() );
+        for ( String database : databases ) {
+            sb.append( '|' ).append( database );
+        }
+        return Long.toHexString( SequenceInterner.crc64( sb.toString() ) );
+    }
+
+    /**
+     * @return the same request, building the splice variants and feature chains.
+     */
+    public UniprotRequestDescriptor withSpliceVariants() {
+        if ( options.includes( UniprotField.SPLICE_VARIANTS ) && options.includes( UniprotField.FEATURE_CHAINS ) ) {
+            return this;
+        }
+        EnumSet<UniprotField> fields = EnumSet.of( UniprotField.SPLICE_VARIANTS, UniprotField.FEATURE_CHAINS );
+        fields.addAll( options.getFields() );
+        return new UniprotRequestDescriptor( ac, RetrievalOptions.of( fields ), filterFingerprint );
+    }
+
+    /**
+     * @param otherOptions other parts of the entries.
+     *
+     * @return the same request, building the proteins with other parts of their entries.
+     */
+    public UniprotRequestDescriptor withOptions( RetrievalOptions otherOptions ) {
+        return new UniprotRequestDescriptor( ac, otherOptions, filterFingerprint );
+    }
+
+    /**
+     * @param otherAc another identifier.
+     *
+     * @return the same request, for another identifier.
+     */
+    public UniprotRequestDescriptor withAc( String otherAc ) {
+        return new UniprotRequestDescriptor( otherAc, options, filterFingerprint );
+    }
+
+    /**
+     * @return the key under which the proteins of this request are cached, tagged with the parts of the entries they
+     * hold.
+     */
+    public String toCacheKey() {
+        return ac + '|' + lookupType + '|' + options.getProjectionKey() + '|' + filterFingerprint;
+    }
+
+    // Getters
+
+    public String getAc() {
+        return ac;
+    }
+
+    public NegativeResultCache.LookupType getLookupType() {
+        return lookupType;
+    }
+
+    public boolean isProcessSpliceVariants() {
+        return options.isProcessSpliceVariants();
+    }
+
+    public RetrievalOptions getOptions() {
+        return options;
+    }
+
+    public String getFilterFingerprint() {
+        return filterFingerprint;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+        if ( this == o ) return true;
+        if ( o == null || getClass() != o.getClass() ) return false;
+
+        UniprotRequestDescriptor that = ( UniprotRequestDescriptor ) o;
+        return options.equals( that.options )
+               && ac.equals( that.ac )
+               && filterFingerprint.equals( that.filterFingerprint );
+    }
+
+    @Override
+    public int hashCode() {
+        int result = ac.hashCode();
+        result = 31 * result + options.hashCode();
+        result = 31 * result + filterFingerprint.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toCacheKey();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.Collection;
+
+/**
+ * Outcome of the retrieval of a single AC: the proteins found and, if it could not be processed, its report.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public final class UniprotRetrievalResult {
+
+    private final String ac;
+
+    private final Collection<UniprotProtein> proteins;
+
+    private final UniprotServiceReport report;
+
+    /**
+     * @param ac       the AC requested.
+     * @param proteins the proteins found.
+     * @param report   the report of the AC, null if it was processed without error.
+     */
+    public UniprotRetrievalResult( String ac, Collection<UniprotProtein> proteins, UniprotServiceReport report ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( proteins == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+        this.ac = ac;
+        this.proteins = proteins;
+        this.report = report;
+    }
+
+    // Getters
+
+    public String getAc() {
+        return ac;
+    }
+
+    public Collection<UniprotProtein> getProteins() {
+        return proteins;
+    }
+
+    /**
+     * @return the report of the AC, null if it was processed without error.
+     */
+    public UniprotServiceReport getReport() {
+        return report;
+    }
+
+    public boolean isFound() {
+        return !proteins.isEmpty();
+    }
+
+    public boolean hasReport() {
+        return report != null;
+    }
+
+    @Override
+    public String toString() {
+        return "UniprotRetrievalResult{ac='" + ac + "', proteins=" + proteins.size()
+               + ( report != null ? ", report='" + report.getMessage() + "'" : "" ) + '}';
+    }
+}
@@ -13,10 +13,17 @@ import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
 import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Definition of the access to the UniProt protein retreival service.
+ * <p/>
+ * The retrievals taking RetrievalOptions, retrieveIncrementally and retrieveWithReport are given on top of the other
+ * retrievals, so that services written before them keep working. AbstractUniprotService implements them better.
  *
  * @author Samuel Kerrien (skerrien@ebi.ac.uk)
  * @version $Id$
@@ -24,8 +31,6 @@ import java.util.Map;
  */
 public interface UniprotService {
 
-    // TODO REFACTORING IDEA return the result and the report in the same object so we don't have to call getErrors
-
     /**
      * Retreive a Uniprot protein based on its ID, AC or splice variant ID.
      *
@@ -54,7 +59,111 @@ public interface UniprotService {
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars );
 
     /**
-     * Error messages encountered during retreival of proteins.
+     * Retrieve Uniprot proteins holding only some parts of their entry, so that workloads reading a few of them do not
+     * pay for building the others.
+     *
+     * By default, the proteins are retrieved with or without their splice variants as the options need, then the
+     * parts that were not asked for are left out.
+     *
+     * @param ac      ID, AC or splice variant ID of the protein we are searching for.
+     * @param options the parts of the entries to build.
+     *
+     * @return a collection of protein found.
+     */
+    public default Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        Collection<UniprotProtein> proteins = retrieve( ac, options.isProcessSpliceVariants() );
+        for ( UniprotProtein protein : proteins ) {
+            AbstractUniprotService.project( protein, options );
+        }
+        return proteins;
+    }
+
+    /**
+     * Retrieve a set of Uniprot proteins holding only some parts of their entry.
+     *
+     * @param acs     list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param options the parts of the entries to build.
+     *
+     * @return an associative structure where each given ac is an entry and associated is a collection of protein found.
+     */
+    public default Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        if ( options == null ) {
+            throw new IllegalArgumentException( "You must give non null RetrievalOptions." );
+        }
+        Map<String, Collection<UniprotProtein>> results = retrieve( acs, options.isProcessSpliceVariants() );
+        Set<UniprotProtein> projected = Collections.newSetFromMap( new IdentityHashMap<UniprotProtein, Boolean>() );
+        for ( Collection<UniprotProtein> proteins : results.values() ) {
+            for ( UniprotProtein protein : proteins ) {
+                // a protein found for several ACs is only projected once
+                if ( projected.add( protein ) ) {
+                    AbstractUniprotService.project( protein, options );
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieve a set of Uniprot proteins incrementally: the ACs are read and searched a batch at a time, and the next
+     * batch is only searched once the results of the current one have been consumed. The memory used does not depend
+     * on the number of ACs requested.
+     * <p/>
+     * The reports of the ACs that could not be processed are given with their result and are not kept in getErrors().
+     *
+     * @param acs               ID, AC or splice variant ID of the proteins we are searching for.
+     * @param processSpliceVars whether the splice variants and feature chains should be built.
+     *
+     * @return the result of each given AC, in the order they were given.
+     */
+    public default Iterator<UniprotRetrievalResult> retrieveIncrementally( Iterable<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of UniProt ACs." );
+        }
+        return new BatchRetrievalIterator( this, acs.iterator(), AbstractUniprotService.DEFAULT_INCREMENTAL_BATCH_SIZE,
+                                           processSpliceVars );
+    }
+
+    /**
+     * Retrieve a set of Uniprot proteins along with the reports of the ACs that could not be processed. The reports
+     * are only given to the caller: parallel callers do not see each other's errors and nothing is left to clear.
+     * <p/>
+     * By default, the reports are the ones getErrors() holds for the ACs no protein was found for, as a service unable
+     * to report to a single call does not tell them apart from the reports of other calls.
+     *
+     * @param acs               list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param processSpliceVars whether the splice variants and feature chains should be built.
+     *
+     * @return the proteins found and the errors met, indexed by requested AC.
+     */
+    public default UniprotServiceResult retrieveWithReport( Collection<String> acs, boolean processSpliceVars ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+        return UniprotServiceResult.collect( acs, retrieve( acs, processSpliceVars ), getErrors() );
+    }
+
+    /**
+     * Retrieve a set of Uniprot proteins holding only some parts of their entry, along with the reports of the ACs
+     * that could not be processed.
+     *
+     * @param acs     list of ID, AC or splice variant ID of the proteins we are searching for.
+     * @param options the parts of the entries to build.
+     *
+     * @return the proteins found and the errors met, indexed by requested AC.
+     */
+    public default UniprotServiceResult retrieveWithReport( Collection<String> acs, RetrievalOptions options ) {
+        if ( acs == null ) {
+            throw new IllegalArgumentException( "You must give a non null List of UniProt ACs." );
+        }
+        return UniprotServiceResult.collect( acs, retrieve( acs, options ), getErrors() );
+    }
+
+    /**
+     * Error messages encountered during retreival of proteins, by the calls made without a report. Only the most
+     * recent ones are kept.
      *
      * @return an associative structure where each given ac is an entry and associated a message.
      */
@@ -26,22 +26,39 @@ public class UniprotServiceReport {
      */
     private Exception exception;
 
+    /**
+     * Kind of problem.
+     */
+    private UniprotReportType type;
+
 
     /////////////////////////////
     // Constructor
 
-    public UniprotServiceReport( String message, Exception exception ) {
+    public UniprotServiceReport( UniprotReportType type, String message, Exception exception ) {
+        if( type == null ) {
+            throw new IllegalArgumentException( "Type must not be null." );
+        }
         if( message == null && exception == null ) {
             throw new IllegalArgumentException( "Either message or exception must not be null." );
         }
+        this.type = type;
         this.message = message;
         this.exception = exception;
     }
 
+    /**
+     * A report holding an exception is a failed retrieval, a report only holding a message a protein not found.
+     */
+    public UniprotServiceReport( String message, Exception exception ) {
+        this( exception == null ? UniprotReportType.NOT_FOUND : UniprotReportType.RETRIEVAL_FAILED, message, exception );
+    }
+
     public UniprotServiceReport( String message ) {
         if( message == null  ) {
             throw new IllegalArgumentException( "Message must not be null." );
         }
+        this.type = UniprotReportType.NOT_FOUND;
         this.message = message;
     }
 
@@ -49,6 +66,7 @@ public class UniprotServiceReport {
         if( exception == null ) {
             throw new IllegalArgumentException( "Exception must not be null." );
         }
+        this.type = UniprotReportType.RETRIEVAL_FAILED;
         this.exception = exception;
     }
 
@@ -63,6 +81,10 @@ public class UniprotServiceReport {
         return exception;
     }
 
+    public UniprotReportType getType() {
+        return type;
+    }
+
     ///////////////////////
     // Object
 
@@ -70,7 +92,8 @@ public class UniprotServiceReport {
     public String toString() {
         final StringBuilder sb = new StringBuilder();
         sb.append( "UniprotBridgeReport" );
-        sb.append( "{message=" ).append( ( message == null ? "" : message ) );
+        sb.append( "{type=" ).append( type );
+        sb.append( ", message=" ).append( ( message == null ? "" : message ) );
         sb.append( ", exception=" ).append( ( exception == null ? "none" : ExceptionUtils.getFullStackTrace( exception ) ) );
         sb.append( '}' );
         return sb.toString();
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcome of a single retrieval call: the proteins found and the reports of the ACs that could not be processed.
+ * <p/>
+ * Unlike the errors held by a UniprotService, a result is only seen by the caller that requested it, so parallel
+ * callers do not see each other's reports. It can be filled by several threads at once.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotServiceResult {
+
+    /**
+     * Proteins found, indexed by requested AC.
+     */
+    private final Map<String, Collection<UniprotProtein>> proteins;
+
+    /**
+     * Reports of the ACs that could not be processed, indexed by requested AC.
+     */
+    private final Map<String, UniprotServiceReport> errors;
+
+    public UniprotServiceResult() {
+        this.proteins = new ConcurrentHashMap<String, Collection<UniprotProtein>>();
+        this.errors = new ConcurrentHashMap<String, UniprotServiceReport>();
+    }
+
+    /**
+     * Builds the result of a call from what a service found and the errors it holds.
+     *
+     * @param acs      the ACs requested.
+     * @param proteins the proteins found, indexed by requested AC.
+     * @param errors   the errors of the service, only those of the ACs no protein was found for are given.
+     *
+     * @return the result of the call.
+     */
+    static UniprotServiceResult collect( Collection<String> acs, Map<String, Collection<UniprotProtein>> proteins,
+                                         Map<String, UniprotServiceReport> errors ) {
+        UniprotServiceResult result = new UniprotServiceResult();
+        for ( String ac : acs ) {
+            Collection<UniprotProtein> found = proteins.get( ac );
+            if ( found == null ) {
+                found = new ArrayList<UniprotProtein>();
+            }
+            result.addProteins( ac, found );
+            UniprotServiceReport report = errors.get( ac );
+            if ( found.isEmpty() && report != null ) {
+                result.addError( ac, report );
+            }
+        }
+        return result;
+    }
+
+    public void addProteins( String ac, Collection<UniprotProtein> found ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( found == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+        proteins.put( ac, found );
+    }
+
+    public void addError( String ac, UniprotServiceReport report ) {
+        if ( ac == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProt AC." );
+        }
+        if ( report == null ) {
+            throw new IllegalArgumentException( "You must give a non null Report." );
+        }
+        errors.put( ac, report );
+    }
+
+    /**
+     * Proteins found during the call.
+     *
+     * @return an associative structure where each given ac is an entry and associated is a collection of protein found.
+     */
+    public Map<String, Collection<UniprotProtein>> getProteins() {
+        return proteins;
+    }
+
+    /**
+     * Error messages encountered during the call.
+     *
+     * @return an associative structure where each given ac is an entry and associated a message.
+     */
+    public Map<String, UniprotServiceReport> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @param ac an AC requested by the call.
+     *
+     * @return the proteins found for this AC and its report, null if the AC was not processed by the call.
+     */
+    public UniprotRetrievalResult getResult( String ac ) {
+        Collection<UniprotProtein> found = proteins.get( ac );
+        UniprotServiceReport report = errors.get( ac );
+        if ( found == null && report == null ) {
+            return null;
+        }
+        return new UniprotRetrievalResult( ac, found != null ? found : Collections.<UniprotProtein>emptyList(), report );
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "UniprotServiceResult" );
+        sb.append( "{proteins=" ).append( proteins.size() );
+        sb.append( ", errors=" ).append( errors.keySet() );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
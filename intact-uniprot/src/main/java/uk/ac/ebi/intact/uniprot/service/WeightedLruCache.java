@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * In-process cache bounded by the estimated weight of its values, evicting the least recently used ones first.
+ * <p/>
+ * The cache is split in segments, each owning an equal share of the maximum weight and guarded by its own lock, so that
+ * threads working on different keys rarely wait for each other. Null keys and values are not supported.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class WeightedLruCache<K, V> {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] segments;
+
+    private final ToLongFunction<? super V> weigher;
+
+    private final long maximumWeight;
+
+    // statistics
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maximumWeight the total weight the values may reach.
+     * @param weigher       estimates the weight of a value, it must not change while the value is cached.
+     */
+    public WeightedLruCache( long maximumWeight, ToLongFunction<? super V> weigher ) {
+        this( maximumWeight, DEFAULT_CONCURRENCY_LEVEL, weigher );
+    }
+
+    /**
+     * @param maximumWeight    the total weight the values may reach.
+     * @param concurrencyLevel number of threads expected to use the cache at the same time.
+     * @param weigher          estimates the weight of a value, it must not change while the value is cached.
+     */
+    @SuppressWarnings( "unchecked" )
+    public WeightedLruCache( long maximumWeight, int concurrencyLevel, ToLongFunction<? super V> weigher ) {
+        if ( maximumWeight < 1 ) {
+            throw new IllegalArgumentException( "The maximum weight must be 1 or greater: " + maximumWeight );
+        }
+        if ( concurrencyLevel < 1 ) {
+            throw new IllegalArgumentException( "The concurrency level must be 1 or greater: " + concurrencyLevel );
+        }
+        if ( weigher == null ) {
+            throw new IllegalArgumentException( "You must give a non null weigher." );
+        }
+
+        int segmentCount = 1;
+        while ( segmentCount < concurrencyLevel ) {
+            segmentCount <<= 1;
+        }
+
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.segments = new Segment[segmentCount];
+        long segmentWeight = Math.max( 1, maximumWeight / segmentCount );
+        for ( int i = 0; i < segmentCount; i++ ) {
+            segments[i] = new Segment<K, V>( segmentWeight );
+        }
+    }
+
+    /**
+     * @param key the key.
+     *
+     * @return the value cached under this key, null if none.
+     */
+    public V get( K key ) {
+        V value = segmentFor( key ).get( key );
+        if ( value == null ) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used values of its segment if needed. A value heavier than a
+     * segment can hold is not cached.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    public void put( K key, V value ) {
+        if ( key == null || value == null ) {
+            throw new IllegalArgumentException( "You must give a non null key and value." );
+        }
+        long weight = Math.max( 1, weigher.applyAsLong( value ) );
+        evictionCount.addAndGet( segmentFor( key ).put( key, value, weight ) );
+    }
+
+    public void remove( K key ) {
+        segmentFor( key ).remove( key );
+    }
+
+    public void clear() {
+        for ( Segment<K, V> segment : segments ) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return number of values cached.
+     */
+    public int size() {
+        int size = 0;
+        for ( Segment<K, V> segment : segments ) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return total weight of the values cached.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for ( Segment<K, V> segment : segments ) {
+            weight += segment.getWeight();
+        }
+        return weight;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of values removed to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private Segment<K, V> segmentFor( K key ) {
+        int hash = key.hashCode();
+        hash ^= ( hash >>> 16 );
+        return segments[hash & ( segments.length - 1 )];
+    }
+
+    /**
+     * Part of the cache guarded by a single lock, its map is kept in access order.
+     */
+    private static class Segment<K, V> {
+
+        private final long maximumWeight;
+
+        private final LinkedHashMap<K, WeightedValue<V>> map = new LinkedHashMap<K, WeightedValue<V>>( 16, 0.75f, true );
+
+        private long weight;
+
+        private Segment( long maximumWeight ) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        private synchronized V get( K key ) {
+            WeightedValue<V> weightedValue = map.get( key );
+            return weightedValue == null ? null : weightedValue.value;
+        }
+
+        /**
+         * @return the number of values evicted.
+         */
+        private synchronized int put( K key, V value, long valueWeight ) {
+            WeightedValue<V> previous = map.remove( key );
+            if ( previous != null ) {
+                weight -= previous.weight;
+            }
+            if ( valueWeight > maximumWeight ) {
+                return 0;
+            }
+
+            int evicted = 0;
+            for ( Iterator<WeightedValue<V>> iterator = map.values().iterator();
+                  weight + valueWeight > maximumWeight && iterator.hasNext(); ) {
+                weight -= iterator.next().weight;
+                iterator.remove();
+                evicted++;
+            }
+
+            map.put( key, new WeightedValue<V>( value, valueWeight ) );
+            weight += valueWeight;
+            return evicted;
+        }
+
+        private synchronized void remove( K key ) {
+            WeightedValue<V> previous = map.remove( key );
+            if ( previous != null ) {
+                weight -= previous.weight;
+            }
+        }
+
+        private synchronized void clear() {
+            map.clear();
+            weight = 0;
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+
+        private synchronized long getWeight() {
+            return weight;
+        }
+    }
+
+    private static class WeightedValue<V> {
+
+        private final V value;
+
+        private final long weight;
+
+        private WeightedValue( V value, long weight ) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.replay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stand-in for a UniProtService that forwards every call to the real service and records the entries returned by
+ * getEntries(Query) and getEntry(String) in a UniProtResponseStore, to be replayed later by a ReplayUniProtService.
+ * <p/>
+ * Queries are told apart by their toString(). Entries that cannot be serialized are returned but not recorded.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class RecordingUniProtService implements InvocationHandler {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( RecordingUniProtService.class );
+
+    private final UniProtService delegate;
+
+    private final UniProtResponseStore store;
+
+    private RecordingUniProtService( UniProtService delegate, UniProtResponseStore store ) {
+        this.delegate = delegate;
+        this.store = store;
+    }
+
+    /**
+     * @param delegate the service answering the queries.
+     * @param store    where the responses are recorded.
+     *
+     * @return a UniProtService recording the responses of the given one.
+     */
+    public static UniProtService newInstance( UniProtService delegate, UniProtResponseStore store ) {
+        if ( delegate == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtService." );
+        }
+        if ( store == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtResponseStore." );
+        }
+        return ( UniProtService ) Proxy.newProxyInstance( UniProtService.class.getClassLoader(),
+                                                          new Class[]{UniProtService.class},
+                                                          new RecordingUniProtService( delegate, store ) );
+    }
+
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke( delegate, args );
+        } catch ( InvocationTargetException e ) {
+            throw e.getCause();
+        }
+
+        if ( "getEntries".equals( method.getName() ) && args != null && args.length == 1 ) {
+            List<UniProtEntry> entries = new ArrayList<UniProtEntry>();
+            for ( Iterator<?> iterator = ( Iterator<?> ) result; iterator.hasNext(); ) {
+                entries.add( ( UniProtEntry ) iterator.next() );
+            }
+            record( String.valueOf( args[0] ), entries );
+            return ReplayUniProtService.queryResult( entries );
+        }
+        if ( "getEntry".equals( method.getName() ) && args != null && args.length == 1 ) {
+            record( ReplayUniProtService.entryKey( args[0] ),
+                    result != null ? Collections.singletonList( ( UniProtEntry ) result ) : Collections.<UniProtEntry>emptyList() );
+        }
+        return result;
+    }
+
+    private void record( String query, List<UniProtEntry> entries ) {
+        try {
+            store.write( query, entries );
+        } catch ( RuntimeException e ) {
+            log.warn( "Could not record the response to " + query, e );
+        }
+    }
+}
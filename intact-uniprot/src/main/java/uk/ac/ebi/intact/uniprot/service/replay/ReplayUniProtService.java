@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.replay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
+import uk.ac.ebi.uniprot.dataservice.client.QueryResultPage;
+import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for a UniProtService answering getEntries(Query) and getEntry(String) from the responses recorded by a
+ * RecordingUniProtService, so that the retrieval code can be load tested without the network.
+ * <p/>
+ * A latency, with an optional random jitter, can be added to every call and a share of the calls can be made to fail
+ * with a ServiceException. The random choices come from a seeded generator, so that a run can be repeated. Queries
+ * that were not recorded find no entry, unless the replay is strict.
+ * <p/>
+ * The services are handed to SimpleUniprotRemoteService through a UniProtServicePool built with a factory calling
+ * newService().
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ReplayUniProtService implements InvocationHandler {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( ReplayUniProtService.class );
+
+    public static final long DEFAULT_SEED = 42;
+
+    private final UniProtResponseStore store;
+
+    private volatile long latencyMillis;
+
+    private volatile long latencyJitterMillis;
+
+    private volatile double failureRate;
+
+    private volatile boolean strict;
+
+    private Random random = new Random( DEFAULT_SEED );
+
+    // statistics
+    private final AtomicLong replayCount = new AtomicLong();
+    private final AtomicLong missingCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public ReplayUniProtService( UniProtResponseStore store ) {
+        if ( store == null ) {
+            throw new IllegalArgumentException( "You must give a non null UniProtResponseStore." );
+        }
+        this.store = store;
+    }
+
+    /**
+     * @return a UniProtService replaying the recorded responses. Services created by the same replay share its
+     * settings, statistics and random generator.
+     */
+    public UniProtService newService() {
+        return ( UniProtService ) Proxy.newProxyInstance( UniProtService.class.getClassLoader(),
+                                                          new Class[]{UniProtService.class},
+                                                          this );
+    }
+
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        String name = method.getName();
+
+        if ( "getEntries".equals( name ) && args != null && args.length == 1 ) {
+            return queryResult( replay( String.valueOf( args[0] ) ) );
+        }
+        if ( "getEntry".equals( name ) && args != null && args.length == 1 ) {
+            List<UniProtEntry> entries = replay( entryKey( args[0] ) );
+            return entries.isEmpty() ? null : entries.get( 0 );
+        }
+        if ( "start".equals( name ) || "stop".equals( name ) ) {
+            return null;
+        }
+        if ( "isStarted".equals( name ) ) {
+            return true;
+        }
+        if ( "toString".equals( name ) ) {
+            return "ReplayUniProtService{" + store.getDirectory() + "}";
+        }
+        if ( "hashCode".equals( name ) ) {
+            return System.identityHashCode( proxy );
+        }
+        if ( "equals".equals( name ) ) {
+            return proxy == args[0];
+        }
+        throw new UnsupportedOperationException( "Replaying " + name + " is not supported" );
+    }
+
+    private List<UniProtEntry> replay( String query ) throws ServiceException {
+        long latency = latencyMillis;
+        long jitter = latencyJitterMillis;
+        double rate = failureRate;
+        long delay;
+        boolean fail;
+        synchronized ( this ) {
+            delay = latency + ( jitter > 0 ? ( long ) ( random.nextDouble() * jitter ) : 0 );
+            fail = rate > 0 && random.nextDouble() < rate;
+        }
+
+        if ( delay > 0 ) {
+            try {
+                Thread.sleep( delay );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeUniprotServiceException( "Interrupted while replaying " + query, e );
+            }
+        }
+        if ( fail ) {
+            failureCount.incrementAndGet();
+            throw new ServiceException( "Injected failure while replaying " + query );
+        }
+
+        replayCount.incrementAndGet();
+        List<UniProtEntry> entries = store.read( query );
+        if ( entries == null ) {
+            missingCount.incrementAndGet();
+            if ( strict ) {
+                throw new ServiceException( "No response recorded for " + query );
+            }
+            if ( log.isDebugEnabled() ) {
+                log.debug( "No response recorded for " + query + ", replaying an empty one" );
+            }
+            return Collections.emptyList();
+        }
+        return entries;
+    }
+
+    /**
+     * @return the key under which the response of getEntry( ac ) is recorded.
+     */
+    static String entryKey( Object ac ) {
+        return "entry:" + ac;
+    }
+
+    /**
+     * @return a QueryResult handing out the given entries, in a single page.
+     */
+    @SuppressWarnings( "unchecked" )
+    static QueryResult<UniProtEntry> queryResult( final List<UniProtEntry> entries ) {
+        final Iterator<UniProtEntry> iterator = entries.iterator();
+        final QueryResultPage<UniProtEntry> page = ( QueryResultPage<UniProtEntry> ) Proxy.newProxyInstance(
+                QueryResultPage.class.getClassLoader(), new Class[]{QueryResultPage.class}, new InvocationHandler() {
+                    public Object invoke( Object proxy, Method method, Object[] args ) {
+                        if ( "getResults".equals( method.getName() ) ) {
+                            return entries;
+                        }
+                        throw new UnsupportedOperationException( "Replaying " + method.getName() + " is not supported" );
+                    }
+                } );
+
+        return ( QueryResult<UniProtEntry> ) Proxy.newProxyInstance(
+                QueryResult.class.getClassLoader(), new Class[]{QueryResult.class}, new InvocationHandler() {
+                    public Object invoke( Object proxy, Method method, Object[] args ) {
+                        String name = method.getName();
+                        if ( "hasNext".equals( name ) ) {
+                            return iterator.hasNext();
+                        }
+                        if ( "next".equals( name ) ) {
+                            return iterator.next();
+                        }
+                        if ( "getNumberOfHits".equals( name ) ) {
+                            return ( long ) entries.size();
+                        }
+                        if ( "getCurrentPage".equals( name ) ) {
+                            return page;
+                        }
+                        throw new UnsupportedOperationException( "Replaying " + name + " is not supported" );
+                    }
+                } );
+    }
+
+    // Getters and Setters
+
+    public UniProtResponseStore getStore() {
+        return store;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Sets the time every call takes, before its jitter.
+     */
+    public void setLatencyMillis( long latencyMillis ) {
+        if ( latencyMillis < 0 ) {
+            throw new IllegalArgumentException( "The latency must be 0 or greater: " + latencyMillis );
+        }
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    /**
+     * Sets the maximum random time added to the latency of every call.
+     */
+    public void setLatencyJitterMillis( long latencyJitterMillis ) {
+        if ( latencyJitterMillis < 0 ) {
+            throw new IllegalArgumentException( "The latency jitter must be 0 or greater: " + latencyJitterMillis );
+        }
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Sets the share of the calls failing with a ServiceException, between 0 and 1.
+     */
+    public void setFailureRate( double failureRate ) {
+        if ( failureRate < 0 || failureRate > 1 ) {
+            throw new IllegalArgumentException( "The failure rate must be between 0 and 1: " + failureRate );
+        }
+        this.failureRate = failureRate;
+    }
+
+    public boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * Sets whether queries that were not recorded fail with a ServiceException instead of finding no entry.
+     */
+    public void setStrict( boolean strict ) {
+        this.strict = strict;
+    }
+
+    /**
+     * Restarts the random generator from a seed, so that the latencies and failures of a run can be repeated.
+     */
+    public synchronized void setSeed( long seed ) {
+        this.random = new Random( seed );
+    }
+
+    /**
+     * @return number of calls answered, with or without a recorded response.
+     */
+    public long getReplayCount() {
+        return replayCount.get();
+    }
+
+    /**
+     * @return number of calls for which no response was recorded.
+     */
+    public long getMissingCount() {
+        return missingCount.get();
+    }
+
+    /**
+     * @return number of failures injected.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.replay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+import uk.ac.ebi.intact.uniprot.service.SequenceInterner;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Responses of the UniProt Java API recorded on disk, indexed by the query they answer.
+ * <p/>
+ * Each response is kept in its own file, named after a checksum of the query and holding the query itself and the
+ * entries found, written with Java serialization. Files are replaced atomically, so a store can be read while it is
+ * being recorded.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniProtResponseStore {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniProtResponseStore.class );
+
+    private static final String EXTENSION = ".entries";
+
+    private final File directory;
+
+    public UniProtResponseStore( File directory ) {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "You must give a non null directory." );
+        }
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new RuntimeUniprotServiceException( "Could not create the response directory: " + directory );
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @param query the query, as given by its toString().
+     *
+     * @return the entries recorded for the query, null if it was not recorded.
+     */
+    @SuppressWarnings( "unchecked" )
+    public List<UniProtEntry> read( String query ) {
+        File file = fileFor( query );
+        if ( !file.exists() ) {
+            return null;
+        }
+
+        try {
+            ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+            try {
+                String recordedQuery = ( String ) in.readObject();
+                if ( !query.equals( recordedQuery ) ) {
+                    log.warn( "Query " + query + " shares its file with " + recordedQuery + ", it is not recorded" );
+                    return null;
+                }
+                int count = in.readInt();
+                List<UniProtEntry> entries = new ArrayList<UniProtEntry>( count );
+                for ( int i = 0; i < count; i++ ) {
+                    entries.add( ( UniProtEntry ) in.readObject() );
+                }
+                return entries;
+            } finally {
+                in.close();
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not read the response recorded in " + file, e );
+        } catch ( ClassNotFoundException e ) {
+            throw new RuntimeUniprotServiceException( "Could not read the response recorded in " + file, e );
+        }
+    }
+
+    /**
+     * Records the entries found by a query, replacing any previous recording of the same query.
+     *
+     * @param query   the query, as given by its toString().
+     * @param entries the entries found.
+     */
+    public void write( String query, List<UniProtEntry> entries ) {
+        File file = fileFor( query );
+        File temporary = null;
+        boolean moved = false;
+        try {
+            temporary = File.createTempFile( file.getName(), ".tmp", directory );
+            ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( temporary ) ) );
+            try {
+                out.writeObject( query );
+                out.writeInt( entries.size() );
+                for ( UniProtEntry entry : entries ) {
+                    out.writeObject( entry );
+                }
+            } finally {
+                out.close();
+            }
+            Files.move( temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            moved = true;
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not record the response to " + query, e );
+        } finally {
+            // an entry that cannot be serialized leaves an incomplete temporary file behind
+            if ( !moved && temporary != null && temporary.exists() && !temporary.delete() ) {
+                log.warn( "Could not delete the temporary file " + temporary );
+            }
+        }
+    }
+
+    /**
+     * @return number of responses recorded.
+     */
+    public int size() {
+        String[] names = directory.list();
+        int size = 0;
+        if ( names != null ) {
+            for ( String name : names ) {
+                if ( name.endsWith( EXTENSION ) ) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    private File fileFor( String query ) {
+        if ( query == null ) {
+            throw new IllegalArgumentException( "You must give a non null query." );
+        }
+        return new File( directory, Long.toHexString( SequenceInterner.crc64( query ) ) + EXTENSION );
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.*;
+
+/**
+ * ProteinSerializer relying on the default Java serialization of the model.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class JavaProteinSerializer implements ProteinSerializer {
+
+    public byte[] serialize( UniprotProtein protein ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        try {
+            out.writeObject( protein );
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    public UniprotProtein deserialize( byte[] bytes ) throws IOException {
+        ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes ) );
+        try {
+            return ( UniprotProtein ) in.readObject();
+        } catch ( ClassNotFoundException e ) {
+            throw new IOException( "Could not deserialize protein", e );
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import uk.ac.ebi.intact.uniprot.model.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary serializer of UniprotProteins, their splice variants, feature chains, cross references and organisms.
+ * <p/>
+ * Every string is written once per payload and then referred to by its index, which mostly pays off on database
+ * names, qualifiers and organisms shared by hundreds of cross references and transcripts. Integers are written as
+ * variable length integers and amino acid sequences are packed at 5 bits per residue, sequences holding characters
+ * outside of the amino acid alphabet are written as plain strings.
+ * <p/>
+ * Instances are stateless and can be shared between threads.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ProteinCodec implements ProteinSerializer {
+
+    /**
+     * Version of the encoding, increased whenever it changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0xC5;
+
+    /**
+     * Residues that can be packed, at most 32 so each fits in 5 bits.
+     */
+    private static final String ALPHABET = "ACDEFGHIKLMNPQRSTVWYBZXUOJ*-";
+
+    private static final byte[] RESIDUE_CODES = new byte[128];
+
+    static {
+        Arrays.fill( RESIDUE_CODES, ( byte ) -1 );
+        for ( int i = 0; i < ALPHABET.length(); i++ ) {
+            RESIDUE_CODES[ALPHABET.charAt( i )] = ( byte ) i;
+        }
+    }
+
+    private static final int NO_SEQUENCE = 0;
+    private static final int PACKED_SEQUENCE = 1;
+    private static final int PLAIN_SEQUENCE = 2;
+
+    private static final int NO_MASTER = 0;
+    private static final int ENCLOSING_MASTER = 1;
+    private static final int OTHER_MASTER = 2;
+
+    public byte[] serialize( UniprotProtein protein ) throws IOException {
+        if ( protein == null ) {
+            throw new IllegalArgumentException( "You must give a non null protein." );
+        }
+        return encode( Collections.singletonList( protein ) );
+    }
+
+    public UniprotProtein deserialize( byte[] bytes ) throws IOException {
+        List<UniprotProtein> proteins = decode( bytes );
+        if ( proteins.size() != 1 ) {
+            throw new IOException( "Expected a single protein but found " + proteins.size() );
+        }
+        return proteins.get( 0 );
+    }
+
+    /**
+     * Encodes a collection of proteins, strings and organisms they share are only written once.
+     *
+     * @param proteins the proteins to encode.
+     *
+     * @return the encoded proteins.
+     *
+     * @throws IOException if the proteins could not be encoded.
+     */
+    public byte[] encode( Collection<UniprotProtein> proteins ) throws IOException {
+        if ( proteins == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+
+        Writer writer = new Writer();
+        writer.writeByte( MAGIC );
+        writer.writeByte( FORMAT_VERSION );
+        writer.writeVarInt( proteins.size() );
+        for ( UniprotProtein protein : proteins ) {
+            writer.writeProtein( protein );
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes proteins encoded by encode().
+     *
+     * @param bytes the encoded proteins.
+     *
+     * @return the proteins, in the order they were encoded.
+     *
+     * @throws IOException if the bytes are not a valid encoding.
+     */
+    public List<UniprotProtein> decode( byte[] bytes ) throws IOException {
+        if ( bytes == null ) {
+            throw new IllegalArgumentException( "You must give non null bytes." );
+        }
+
+        Reader reader = new Reader( bytes );
+        if ( reader.readByte() != MAGIC ) {
+            throw new IOException( "Not an encoded protein" );
+        }
+        int version = reader.readByte();
+        if ( version != FORMAT_VERSION ) {
+            throw new IOException( "Unsupported encoding version " + version + ", expected " + FORMAT_VERSION );
+        }
+
+        int count = reader.readVarInt();
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>( count );
+        for ( int i = 0; i < count; i++ ) {
+            proteins.add( reader.readProtein() );
+        }
+        return proteins;
+    }
+
+    /**
+     * Writes one payload, keeps the tables of strings and organisms already written.
+     */
+    private static class Writer {
+
+        private byte[] buffer = new byte[4096];
+
+        private int size;
+
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        private final Map<Organism, Integer> organisms = new IdentityHashMap<Organism, Integer>();
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf( buffer, size );
+        }
+
+        private void ensureCapacity( int extra ) {
+            if ( size + extra > buffer.length ) {
+                buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, size + extra ) );
+            }
+        }
+
+        private void writeByte( int value ) {
+            ensureCapacity( 1 );
+            buffer[size++] = ( byte ) value;
+        }
+
+        private void writeBytes( byte[] bytes ) {
+            ensureCapacity( bytes.length );
+            System.arraycopy( bytes, 0, buffer, size, bytes.length );
+            size += bytes.length;
+        }
+
+        private void writeProtein( UniprotProtein protein ) {
+            writeString( protein.getId() );
+            writeString( protein.getPrimaryAc() );
+            writeOrganism( protein.getOrganism() );
+            writeString( protein.getDescription() );
+            writeStrings( protein.getSecondaryAcs() );
+            writeStrings( protein.getGenes() );
+            writeStrings( protein.getOrfs() );
+            writeStrings( protein.getSynomyms() );
+            writeStrings( protein.getLocuses() );
+            writeStrings( protein.getDiseases() );
+            writeStrings( protein.getKeywords() );
+            writeStrings( protein.getFunctions() );
+            writeXrefs( protein.getCrossReferences() );
+            writeString( protein.getCrc64() );
+            writeSequence( protein.getSequence() );
+            writeVarInt( protein.getSequenceLength() );
+            writeString( protein.getReleaseVersion() );
+            writeDate( protein.getLastAnnotationUpdate() );
+            writeDate( protein.getLastSequenceUpdate() );
+            writeVarInt( protein.getSource() == null ? 0 : protein.getSource().ordinal() + 1 );
+
+            writeVarInt( protein.getSpliceVariants().size() );
+            for ( UniprotSpliceVariant variant : protein.getSpliceVariants() ) {
+                writeTranscript( variant, protein );
+                writeStrings( variant.getSecondaryAcs() );
+                writeStrings( variant.getSynomyms() );
+                writeString( variant.getNote() );
+                writeByte( variant.isCanonical() ? 1 : 0 );
+            }
+
+            writeVarInt( protein.getFeatureChains().size() );
+            for ( UniprotFeatureChain chain : protein.getFeatureChains() ) {
+                writeTranscript( chain, protein );
+                writeString( chain.getDescription() );
+            }
+        }
+
+        private void writeTranscript( UniprotProteinTranscriptImpl transcript, UniprotProtein enclosing ) {
+            writeString( transcript.getId() );
+            writeString( transcript.getPrimaryAc() );
+            writeOrganism( transcript.getOrganism() );
+            writeSequence( rawSequence( transcript ) );
+            writeNullableInt( transcript.getStart() );
+            writeNullableInt( transcript.getEnd() );
+            writeXrefs( transcript.getCrossReferences() );
+
+            UniprotProtein master = transcript.getMasterProtein();
+            if ( master == null ) {
+                writeVarInt( NO_MASTER );
+            } else if ( master == enclosing ) {
+                writeVarInt( ENCLOSING_MASTER );
+            } else {
+                writeVarInt( OTHER_MASTER );
+                writeProtein( master );
+            }
+        }
+
+        private void writeXrefs( Collection<UniprotXref> xrefs ) {
+            writeVarInt( xrefs.size() );
+            for ( UniprotXref xref : xrefs ) {
+                writeString( xref.getAccession() );
+                writeString( xref.getDatabase() );
+                writeString( xref.getDescription() );
+                writeString( xref.getQualifier() );
+                writeString( xref.getIsoformId() );
+            }
+        }
+
+        private void writeOrganism( Organism organism ) {
+            if ( organism == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+            Integer index = organisms.get( organism );
+            if ( index != null ) {
+                writeVarInt( index + 2 );
+                return;
+            }
+            organisms.put( organism, organisms.size() );
+            writeVarInt( 1 );
+            writeVarInt( organism.getTaxid() );
+            writeString( organism.getName() );
+            writeString( organism.getCommonName() );
+            writeStrings( organism.getParents() );
+        }
+
+        private void writeStrings( Collection<String> values ) {
+            writeVarInt( values.size() );
+            for ( String value : values ) {
+                writeString( value );
+            }
+        }
+
+        /**
+         * Writes 0 for null, 1 followed by the string the first time it is met, its index + 2 afterwards.
+         */
+        private void writeString( String value ) {
+            if ( value == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+            Integer index = strings.get( value );
+            if ( index != null ) {
+                writeVarInt( index + 2 );
+                return;
+            }
+            strings.put( value, strings.size() );
+            writeVarInt( 1 );
+            byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+            writeVarInt( utf8.length );
+            writeBytes( utf8 );
+        }
+
+        private void writeSequence( String sequence ) {
+            if ( sequence == null ) {
+                writeVarInt( NO_SEQUENCE );
+                return;
+            }
+            if ( !isPackable( sequence ) ) {
+                writeVarInt( PLAIN_SEQUENCE );
+                byte[] utf8 = sequence.getBytes( StandardCharsets.UTF_8 );
+                writeVarInt( utf8.length );
+                writeBytes( utf8 );
+                return;
+            }
+
+            writeVarInt( PACKED_SEQUENCE );
+            int length = sequence.length();
+            writeVarInt( length );
+
+            ensureCapacity( ( length * 5 + 7 ) / 8 );
+            int bits = 0;
+            int bitCount = 0;
+            for ( int i = 0; i < length; i++ ) {
+                bits = ( bits << 5 ) | RESIDUE_CODES[sequence.charAt( i )];
+                bitCount += 5;
+                if ( bitCount >= 8 ) {
+                    bitCount -= 8;
+                    buffer[size++] = ( byte ) ( bits >>> bitCount );
+                }
+            }
+            if ( bitCount > 0 ) {
+                buffer[size++] = ( byte ) ( bits << ( 8 - bitCount ) );
+            }
+        }
+
+        private void writeDate( Date date ) {
+            if ( date == null ) {
+                writeByte( 0 );
+            } else {
+                writeByte( 1 );
+                writeVarLong( date.getTime() );
+            }
+        }
+
+        private void writeNullableInt( Integer value ) {
+            writeVarInt( value == null ? 0 : zigZag( value ) + 1 );
+        }
+
+        private void writeVarInt( int value ) {
+            writeVarLong( value & 0xFFFFFFFFL );
+        }
+
+        private void writeVarLong( long value ) {
+            ensureCapacity( 10 );
+            while ( ( value & ~0x7FL ) != 0 ) {
+                buffer[size++] = ( byte ) ( ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            buffer[size++] = ( byte ) value;
+        }
+    }
+
+    /**
+     * Reads one payload, rebuilds the tables of strings and organisms as it goes.
+     */
+    private static class Reader {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        private final List<String> strings = new ArrayList<String>();
+
+        private final List<Organism> organisms = new ArrayList<Organism>();
+
+        private Reader( byte[] bytes ) {
+            this.bytes = bytes;
+        }
+
+        private int readByte() throws IOException {
+            if ( position >= bytes.length ) {
+                throw new EOFException( "Unexpected end of encoded proteins" );
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private void checkAvailable( int length ) throws IOException {
+            if ( length < 0 || bytes.length - position < length ) {
+                throw new EOFException( "Unexpected end of encoded proteins" );
+            }
+        }
+
+        private UniprotProtein readProtein() throws IOException {
+            String id = readString();
+            String primaryAc = readString();
+            Organism organism = readOrganism();
+            String description = readString();
+
+            UniprotProtein protein = new UniprotProtein( id, primaryAc, organism, description );
+            readStrings( protein.getSecondaryAcs() );
+            readStrings( protein.getGenes() );
+            readStrings( protein.getOrfs() );
+            readStrings( protein.getSynomyms() );
+            readStrings( protein.getLocuses() );
+            readStrings( protein.getDiseases() );
+            readStrings( protein.getKeywords() );
+            readStrings( protein.getFunctions() );
+            readXrefs( protein.getCrossReferences() );
+            protein.setCrc64( readString() );
+            protein.setSequence( readSequence() );
+            protein.setSequenceLength( readVarInt() );
+            protein.setReleaseVersion( readString() );
+            protein.setLastAnnotationUpdate( readDate() );
+            protein.setLastSequenceUpdate( readDate() );
+            int source = readVarInt();
+            if ( source > 0 ) {
+                protein.setSource( UniprotProteinType.values()[source - 1] );
+            }
+
+            int variantCount = readVarInt();
+            for ( int i = 0; i < variantCount; i++ ) {
+                String variantId = readString();
+                String variantAc = readString();
+                Organism variantOrganism = readOrganism();
+                UniprotSpliceVariant variant = new UniprotSpliceVariant( variantId, variantOrganism, readSequence() );
+                readTranscript( variant, variantAc, protein );
+                readStrings( variant.getSecondaryAcs() );
+                readStrings( variant.getSynomyms() );
+                variant.setNote( readString() );
+                variant.setCanonical( readByte() != 0 );
+                protein.getSpliceVariants().add( variant );
+            }
+
+            int chainCount = readVarInt();
+            for ( int i = 0; i < chainCount; i++ ) {
+                String chainId = readString();
+                String chainAc = readString();
+                Organism chainOrganism = readOrganism();
+                UniprotFeatureChain chain = new UniprotFeatureChain( chainId, chainOrganism, readSequence() );
+                readTranscript( chain, chainAc, protein );
+                chain.setDescription( readString() );
+                protein.getFeatureChains().add( chain );
+            }
+
+            return protein;
+        }
+
+        private void readTranscript( UniprotProteinTranscriptImpl transcript, String primaryAc,
+                                     UniprotProtein enclosing ) throws IOException {
+            transcript.setPrimaryAc( primaryAc );
+            // start and end are checked against each other, setting the start first accepts any pair that was valid
+            transcript.setStart( readNullableInt() );
+            transcript.setEnd( readNullableInt() );
+            readXrefs( transcript.getCrossReferences() );
+
+            int master = readVarInt();
+            if ( master == ENCLOSING_MASTER ) {
+                transcript.setMasterProtein( enclosing );
+            } else if ( master == OTHER_MASTER ) {
+                transcript.setMasterProtein( readProtein() );
+            }
+        }
+
+        private void readXrefs( Collection<UniprotXref> xrefs ) throws IOException {
+            int count = readVarInt();
+            for ( int i = 0; i < count; i++ ) {
+                String accession = readString();
+                String database = readString();
+                String description = readString();
+                String qualifier = readString();
+                String isoformId = readString();
+                xrefs.add( new UniprotXref( accession, database, description, qualifier, isoformId ) );
+            }
+        }
+
+        private Organism readOrganism() throws IOException {
+            int reference = readVarInt();
+            if ( reference == 0 ) {
+                return null;
+            }
+            if ( reference > 1 ) {
+                return organisms.get( reference - 2 );
+            }
+            Organism organism = new Organism( readVarInt() );
+            organisms.add( organism );
+            organism.setName( readString() );
+            organism.setCommonName( readString() );
+            readStrings( organism.getParents() );
+            return organism;
+        }
+
+        private void readStrings( Collection<String> values ) throws IOException {
+            int count = readVarInt();
+            for ( int i = 0; i < count; i++ ) {
+                values.add( readString() );
+            }
+        }
+
+        private String readString() throws IOException {
+            int reference = readVarInt();
+            if ( reference == 0 ) {
+                return null;
+            }
+            if ( reference > 1 ) {
+                return strings.get( reference - 2 );
+            }
+            String value = readUtf8();
+            strings.add( value );
+            return value;
+        }
+
+        private String readUtf8() throws IOException {
+            int length = readVarInt();
+            checkAvailable( length );
+            String value = new String( bytes, position, length, StandardCharsets.UTF_8 );
+            position += length;
+            return value;
+        }
+
+        private String readSequence() throws IOException {
+            int type = readVarInt();
+            if ( type == NO_SEQUENCE ) {
+                return null;
+            }
+            if ( type == PLAIN_SEQUENCE ) {
+                return readUtf8();
+            }
+
+            int length = readVarInt();
+            checkAvailable( ( length * 5 + 7 ) / 8 );
+
+            char[] residues = new char[length];
+            int bits = 0;
+            int bitCount = 0;
+            for ( int i = 0; i < length; i++ ) {
+                if ( bitCount < 5 ) {
+                    bits = ( bits << 8 ) | ( bytes[position++] & 0xFF );
+                    bitCount += 8;
+                }
+                bitCount -= 5;
+                residues[i] = ALPHABET.charAt( ( bits >>> bitCount ) & 0x1F );
+            }
+            return new String( residues );
+        }
+
+        private Date readDate() throws IOException {
+            return readByte() != 0 ? new Date( readVarLong() ) : null;
+        }
+
+        private Integer readNullableInt() throws IOException {
+            int value = readVarInt();
+            return value == 0 ? null : unZigZag( value - 1 );
+        }
+
+        private int readVarInt() throws IOException {
+            return ( int ) readVarLong();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for ( int shift = 0; shift < 64; shift += 7 ) {
+                int b = readByte();
+                value |= ( long ) ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 ) {
+                    return value;
+                }
+            }
+            throw new IOException( "Malformed variable length integer" );
+        }
+    }
+
+    private static boolean isPackable( String sequence ) {
+        for ( int i = 0; i < sequence.length(); i++ ) {
+            char c = sequence.charAt( i );
+            if ( c >= 128 || RESIDUE_CODES[c] < 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splice variants refuse to give an empty sequence, it is encoded as missing.
+     */
+    private static String rawSequence( UniprotProteinTranscriptImpl transcript ) {
+        try {
+            return transcript.getSequence();
+        } catch ( IllegalArgumentException e ) {
+            return null;
+        }
+    }
+
+    private static int zigZag( int value ) {
+        return ( value << 1 ) ^ ( value >> 31 );
+    }
+
+    private static int unZigZag( int value ) {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.IOException;
+
+/**
+ * Turns a UniprotProtein, its splice variants and feature chains into bytes and back.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public interface ProteinSerializer {
+
+    /**
+     * Serializes a protein.
+     *
+     * @param protein the protein to serialize.
+     *
+     * @return the serialized protein.
+     *
+     * @throws IOException if the protein could not be serialized.
+     */
+    public byte[] serialize( UniprotProtein protein ) throws IOException;
+
+    /**
+     * Rebuilds a protein serialized by this serializer.
+     *
+     * @param bytes the serialized protein.
+     *
+     * @return the protein.
+     *
+     * @throws IOException if the bytes could not be read.
+     */
+    public UniprotProtein deserialize( byte[] bytes ) throws IOException;
+}
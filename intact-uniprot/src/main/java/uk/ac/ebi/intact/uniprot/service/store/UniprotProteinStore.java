@@ -0,0 +1,808 @@
+/*
+ * Copyright (c) 2002 The European Bioinformatics Institute, and others.
+ * All rights reserved. Please see the file LICENSE
+ * in the root directory of this distribution.
+ */
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.AccessionAliasIndex;
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store of built UniprotProteins, keyed by primary AC.
+ * <p/>
+ * Proteins are appended to a single log file along with the UniProt release and last annotation update they were
+ * built from, so that they outlive the JVM and can be checked for staleness when a new UniProt release comes out. The
+ * identifiers listed by {@link AccessionAliasIndex#aliasesOf(UniprotProtein)} are kept as aliases, so a protein can be
+ * looked up by any of them. Only some of them name a complete set of proteins though: the UniProt ID and the
+ * identifiers the protein was retrieved for. A secondary AC may also belong to entries that are not stored, such as
+ * the other entries of a demerge, lookupComplete() leaves such aliases out.
+ * <p/>
+ * Only the index is held in memory, proteins are read from the file on demand. Every record is checksummed and a
+ * record left incomplete by a crash is dropped when the store is opened. Replaced and removed proteins keep using
+ * disk space until compact() is called.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotProteinStore {
+
+    /**
+     * Sets up a logger for that class.
+     */
+    public static final Log log = LogFactory.getLog( UniprotProteinStore.class );
+
+    public static final String STORE_FILE_NAME = "uniprot-proteins.db";
+
+    private static final int MAGIC = 0x55505354;
+
+    /**
+     * Version of the file layout, increased whenever the layout changes.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * Record type, body length and body checksum.
+     */
+    private static final int RECORD_HEADER_LENGTH = 9;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final File file;
+
+    private final ProteinSerializer serializer;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    /**
+     * Where the next record is going to be written.
+     */
+    private long end;
+
+    /**
+     * Stored proteins indexed by primary AC.
+     */
+    private final Map<String, StoredProtein> proteins = new ConcurrentHashMap<String, StoredProtein>();
+
+    /**
+     * Primary ACs indexed by alias, the sets are never modified once published.
+     */
+    private final Map<String, Set<String>> aliases = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Primary ACs indexed by the aliases naming a complete set of proteins, the sets are never modified once published.
+     */
+    private final Map<String, Set<String>> completeAliases = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Reads can run concurrently with each other, writes and compaction are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public UniprotProteinStore( File directory ) {
+        this( directory, new ProteinCodec() );
+    }
+
+    public UniprotProteinStore( File directory, ProteinSerializer serializer ) {
+        if ( directory == null ) {
+            throw new IllegalArgumentException( "You must give a non null directory." );
+        }
+        if ( serializer == null ) {
+            throw new IllegalArgumentException( "You must give a non null ProteinSerializer." );
+        }
+        if ( !directory.exists() && !directory.mkdirs() ) {
+            throw new RuntimeUniprotServiceException( "Could not create the store directory: " + directory );
+        }
+
+        this.file = new File( directory, STORE_FILE_NAME );
+        this.serializer = serializer;
+
+        try {
+            open();
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not open the protein store: " + file, e );
+        }
+    }
+
+    /**
+     * Stores a protein, replacing the one previously stored under the same primary AC.
+     *
+     * @param protein            the protein to store.
+     * @param withSpliceVariants whether the splice variants and feature chains of the protein have been built.
+     * @param extraAliases       identifiers the protein was retrieved for, along with every other protein retrieved
+     *                           for them.
+     */
+    public void put( UniprotProtein protein, boolean withSpliceVariants, Collection<String> extraAliases ) {
+        write( Collections.singletonList( prepare( protein, withSpliceVariants, extraAliases ) ) );
+    }
+
+    /**
+     * Stores several proteins at once, replacing the ones previously stored under the same primary ACs. The proteins
+     * are serialized before the store is locked and written in a single operation, which is much faster than storing
+     * them one by one when loading many proteins.
+     *
+     * @param proteins           the proteins to store.
+     * @param withSpliceVariants whether the splice variants and feature chains of the proteins have been built.
+     */
+    public void putAll( Collection<UniprotProtein> proteins, boolean withSpliceVariants ) {
+        if ( proteins == null ) {
+            throw new IllegalArgumentException( "You must give a non null collection of proteins." );
+        }
+
+        List<PendingRecord> records = new ArrayList<PendingRecord>( proteins.size() );
+        for ( UniprotProtein protein : proteins ) {
+            records.add( prepare( protein, withSpliceVariants, null ) );
+        }
+        write( records );
+    }
+
+    /**
+     * Builds the record of a protein, without touching the file.
+     */
+    private PendingRecord prepare( UniprotProtein protein, boolean withSpliceVariants, Collection<String> extraAliases ) {
+        if ( protein == null ) {
+            throw new IllegalArgumentException( "You must give a non null protein." );
+        }
+        if ( protein.getPrimaryAc() == null ) {
+            throw new IllegalArgumentException( "You must give a protein having a primary AC." );
+        }
+
+        String primaryAc = normalize( protein.getPrimaryAc() );
+
+        Set<String> proteinAliases = new HashSet<String>( AccessionAliasIndex.aliasesOf( protein ) );
+        Set<String> proteinCompleteAliases = new HashSet<String>();
+        addAlias( proteinCompleteAliases, protein.getId() );
+        if ( extraAliases != null ) {
+            for ( String alias : extraAliases ) {
+                addAlias( proteinCompleteAliases, alias );
+            }
+        }
+
+        // the identifiers the previous version was retrieved for are kept as long as they still name the protein,
+        // the other proteins retrieved for them are still stored under them
+        StoredProtein previous = proteins.get( primaryAc );
+        if ( previous != null ) {
+            for ( String alias : previous.getCompleteAliases() ) {
+                if ( proteinAliases.contains( alias ) ) {
+                    proteinCompleteAliases.add( alias );
+                }
+            }
+        }
+
+        proteinAliases.addAll( proteinCompleteAliases );
+        proteinAliases.remove( primaryAc );
+        proteinCompleteAliases.remove( primaryAc );
+
+        try {
+            byte[] payload = serializer.serialize( protein );
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( payload.length + 256 );
+            DataOutputStream body = new DataOutputStream( bytes );
+            body.writeUTF( primaryAc );
+            body.writeUTF( protein.getReleaseVersion() != null ? protein.getReleaseVersion() : "" );
+            body.writeLong( protein.getLastAnnotationUpdate() != null ? protein.getLastAnnotationUpdate().getTime() : -1 );
+            body.writeBoolean( withSpliceVariants );
+            body.writeInt( proteinAliases.size() );
+            for ( String alias : proteinAliases ) {
+                body.writeUTF( alias );
+            }
+            body.writeInt( proteinCompleteAliases.size() );
+            for ( String alias : proteinCompleteAliases ) {
+                body.writeUTF( alias );
+            }
+            body.writeInt( payload.length );
+            int payloadOffset = body.size();
+            body.write( payload );
+            body.flush();
+
+            return new PendingRecord( protein, primaryAc, withSpliceVariants, proteinAliases, proteinCompleteAliases,
+                                      bytes.toByteArray(), payloadOffset, payload.length );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not serialize protein: " + primaryAc, e );
+        }
+    }
+
+    /**
+     * Appends records in a single write and indexes them.
+     */
+    private void write( List<PendingRecord> records ) {
+        if ( records.isEmpty() ) {
+            return;
+        }
+
+        int length = 0;
+        for ( PendingRecord record : records ) {
+            length += RECORD_HEADER_LENGTH + record.body.length;
+        }
+
+        lock.writeLock().lock();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate( length );
+            long recordStart = end;
+            List<StoredProtein> stored = new ArrayList<StoredProtein>( records.size() );
+            for ( PendingRecord record : records ) {
+                buffer.put( PUT );
+                buffer.putInt( record.body.length );
+                buffer.putInt( checksum( record.body ) );
+                buffer.put( record.body );
+
+                stored.add( new StoredProtein( record.primaryAc,
+                                               record.protein.getReleaseVersion(),
+                                               record.protein.getLastAnnotationUpdate(),
+                                               record.withSpliceVariants,
+                                               record.aliases,
+                                               record.completeAliases,
+                                               recordStart,
+                                               recordStart + RECORD_HEADER_LENGTH + record.payloadOffset,
+                                               record.payloadLength ) );
+                recordStart += RECORD_HEADER_LENGTH + record.body.length;
+            }
+            buffer.flip();
+
+            long position = end;
+            while ( buffer.hasRemaining() ) {
+                position += channel.write( buffer, position );
+            }
+            end = position;
+
+            for ( StoredProtein protein : stored ) {
+                index( protein );
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not store protein: " + records.get( 0 ).primaryAc
+                                                      + ( records.size() > 1 ? " and " + ( records.size() - 1 ) + " others" : "" ), e );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a protein from the store.
+     *
+     * @param primaryAc primary AC of the protein to remove.
+     *
+     * @return true if a protein was removed.
+     */
+    public boolean remove( String primaryAc ) {
+        if ( primaryAc == null ) {
+            throw new IllegalArgumentException( "You must give a non null primary AC." );
+        }
+
+        String key = normalize( primaryAc );
+
+        lock.writeLock().lock();
+        try {
+            if ( !proteins.containsKey( key ) ) {
+                return false;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream( bytes );
+            body.writeUTF( key );
+            body.flush();
+            append( REMOVE, bytes.toByteArray() );
+
+            unindex( key );
+            return true;
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not remove protein: " + key, e );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives the protein stored under a primary AC.
+     *
+     * @param primaryAc the primary AC.
+     *
+     * @return the stored protein, or null if there is none.
+     */
+    public StoredProtein get( String primaryAc ) {
+        if ( primaryAc == null ) {
+            throw new IllegalArgumentException( "You must give a non null primary AC." );
+        }
+        return proteins.get( normalize( primaryAc ) );
+    }
+
+    /**
+     * Gives the proteins having an identifier as primary AC or alias. A secondary AC may be shared by several proteins
+     * after a demerge, some of which may not be stored: this is only a complete answer when all of UniProt is stored.
+     *
+     * @param identifier primary AC, secondary AC or ID.
+     *
+     * @return the stored proteins, empty if there is none.
+     */
+    public Collection<StoredProtein> lookup( String identifier ) {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "You must give a non null identifier." );
+        }
+
+        String key = normalize( identifier );
+        List<StoredProtein> found = new ArrayList<StoredProtein>( 1 );
+
+        StoredProtein stored = proteins.get( key );
+        if ( stored != null ) {
+            found.add( stored );
+        }
+
+        addProteins( found, aliases.get( key ) );
+        return found;
+    }
+
+    /**
+     * Gives the proteins having an identifier as primary AC, or as an alias naming a complete set of proteins: the
+     * UniProt ID, or an identifier the proteins were retrieved for. Identifiers the stored proteins may not be a
+     * complete answer for, such as a secondary AC that was never retrieved, give no protein.
+     *
+     * @param identifier primary AC, secondary AC or ID.
+     *
+     * @return the stored proteins, empty if there is none or if they may not be all the proteins of the identifier.
+     */
+    public Collection<StoredProtein> lookupComplete( String identifier ) {
+        if ( identifier == null ) {
+            throw new IllegalArgumentException( "You must give a non null identifier." );
+        }
+
+        String key = normalize( identifier );
+        List<StoredProtein> found = new ArrayList<StoredProtein>( 1 );
+
+        StoredProtein stored = proteins.get( key );
+        if ( stored != null ) {
+            found.add( stored );
+        }
+
+        addProteins( found, completeAliases.get( key ) );
+        return found;
+    }
+
+    private void addProteins( List<StoredProtein> found, Set<String> primaryAcs ) {
+        if ( primaryAcs == null ) {
+            return;
+        }
+        for ( String primaryAc : primaryAcs ) {
+            StoredProtein stored = proteins.get( primaryAc );
+            if ( stored != null && !found.contains( stored ) ) {
+                found.add( stored );
+            }
+        }
+    }
+
+    /**
+     * Reads a stored protein from disk.
+     *
+     * @param stored a protein given by get() or lookup().
+     *
+     * @return the protein.
+     */
+    public UniprotProtein load( StoredProtein stored ) {
+        if ( stored == null ) {
+            throw new IllegalArgumentException( "You must give a non null stored protein." );
+        }
+
+        lock.readLock().lock();
+        try {
+            if ( proteins.get( stored.getPrimaryAc() ) != stored ) {
+                throw new RuntimeUniprotServiceException( "The protein has been replaced or removed: " + stored.getPrimaryAc() );
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate( stored.length );
+            readFully( buffer, stored.offset );
+            return serializer.deserialize( buffer.array() );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not load protein: " + stored.getPrimaryAc(), e );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the store file keeping only the current version of each protein.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            File compacted = new File( file.getParentFile(), STORE_FILE_NAME + ".compact" );
+            RandomAccessFile out = new RandomAccessFile( compacted, "rw" );
+            try {
+                out.setLength( 0 );
+                FileChannel outChannel = out.getChannel();
+                long position = outChannel.write( header(), 0 );
+
+                for ( StoredProtein stored : new ArrayList<StoredProtein>( proteins.values() ) ) {
+                    // the whole record is copied, it starts before the payload
+                    long recordStart = stored.recordStart;
+                    long recordLength = stored.offset + stored.length - recordStart;
+                    long copied = 0;
+                    while ( copied < recordLength ) {
+                        copied += channel.transferTo( recordStart + copied, recordLength - copied, outChannel.position( position + copied ) );
+                    }
+                    position += recordLength;
+                }
+                outChannel.force( true );
+            } finally {
+                out.close();
+            }
+
+            close();
+            Files.move( compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            open();
+
+            if ( log.isInfoEnabled() ) {
+                log.info( "Compacted " + file + " down to " + end + " bytes" );
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not compact the protein store: " + file, e );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the stored proteins to disk.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            channel.force( false );
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not flush the protein store: " + file, e );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if ( channel != null && channel.isOpen() ) {
+                channel.force( true );
+                raf.close();
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeUniprotServiceException( "Could not close the protein store: " + file, e );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ///////////////////////////
+    // Getters
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of proteins stored.
+     */
+    public int size() {
+        return proteins.size();
+    }
+
+    public Set<String> getPrimaryAcs() {
+        return Collections.unmodifiableSet( proteins.keySet() );
+    }
+
+    ///////////////////////////
+    // File handling
+
+    private void open() throws IOException {
+        proteins.clear();
+        aliases.clear();
+        completeAliases.clear();
+
+        raf = new RandomAccessFile( file, "rw" );
+        channel = raf.getChannel();
+
+        if ( channel.size() == 0 ) {
+            channel.write( header(), 0 );
+            end = HEADER_LENGTH;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        readFully( header, 0 );
+        header.flip();
+        if ( header.getInt() != MAGIC ) {
+            raf.close();
+            throw new IOException( "Not a protein store: " + file );
+        }
+        int version = header.getInt();
+        if ( version != FORMAT_VERSION ) {
+            raf.close();
+            throw new IOException( "Unsupported protein store version " + version + ", expected " + FORMAT_VERSION + ": " + file );
+        }
+
+        replay();
+
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Opened " + file + " holding " + proteins.size() + " proteins" );
+        }
+    }
+
+    /**
+     * Rebuilds the index from the records of the file, dropping the trailing record if it is incomplete or corrupted.
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = HEADER_LENGTH;
+        ByteBuffer recordHeader = ByteBuffer.allocate( RECORD_HEADER_LENGTH );
+
+        while ( position < size ) {
+            if ( size - position < RECORD_HEADER_LENGTH ) {
+                break;
+            }
+            recordHeader.clear();
+            readFully( recordHeader, position );
+            recordHeader.flip();
+            byte type = recordHeader.get();
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+
+            if ( length < 0 || size - position - RECORD_HEADER_LENGTH < length ) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate( length );
+            readFully( body, position + RECORD_HEADER_LENGTH );
+            if ( checksum( body.array() ) != checksum ) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream( new ByteArrayInputStream( body.array() ) );
+            if ( type == PUT ) {
+                String primaryAc = in.readUTF();
+                String releaseVersion = in.readUTF();
+                long lastAnnotationUpdate = in.readLong();
+                boolean withSpliceVariants = in.readBoolean();
+                int aliasCount = in.readInt();
+                Set<String> proteinAliases = new HashSet<String>( aliasCount * 2 );
+                for ( int i = 0; i < aliasCount; i++ ) {
+                    proteinAliases.add( in.readUTF() );
+                }
+                int completeAliasCount = in.readInt();
+                Set<String> proteinCompleteAliases = new HashSet<String>( completeAliasCount * 2 );
+                for ( int i = 0; i < completeAliasCount; i++ ) {
+                    proteinCompleteAliases.add( in.readUTF() );
+                }
+                int payloadLength = in.readInt();
+                long payloadOffset = position + RECORD_HEADER_LENGTH + length - payloadLength;
+
+                StoredProtein stored = new StoredProtein( primaryAc,
+                                                          releaseVersion.length() == 0 ? null : releaseVersion,
+                                                          lastAnnotationUpdate == -1 ? null : new Date( lastAnnotationUpdate ),
+                                                          withSpliceVariants,
+                                                          proteinAliases,
+                                                          proteinCompleteAliases,
+                                                          position,
+                                                          payloadOffset,
+                                                          payloadLength );
+                index( stored );
+            } else if ( type == REMOVE ) {
+                unindex( in.readUTF() );
+            } else {
+                break;
+            }
+
+            position += RECORD_HEADER_LENGTH + length;
+        }
+
+        if ( position < size ) {
+            log.warn( "Dropping " + ( size - position ) + " bytes of incomplete or corrupted records at the end of " + file );
+            channel.truncate( position );
+        }
+        end = position;
+    }
+
+    private void append( byte type, byte[] body ) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate( RECORD_HEADER_LENGTH + body.length );
+        record.put( type );
+        record.putInt( body.length );
+        record.putInt( checksum( body ) );
+        record.put( body );
+        record.flip();
+
+        long position = end;
+        while ( record.hasRemaining() ) {
+            position += channel.write( record, position );
+        }
+        end = position;
+    }
+
+    private void readFully( ByteBuffer buffer, long position ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            int read = channel.read( buffer, position );
+            if ( read < 0 ) {
+                throw new EOFException( "Unexpected end of file: " + file );
+            }
+            position += read;
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+        header.putInt( MAGIC );
+        header.putInt( FORMAT_VERSION );
+        header.flip();
+        return header;
+    }
+
+    private static int checksum( byte[] body ) {
+        CRC32 crc = new CRC32();
+        crc.update( body, 0, body.length );
+        return ( int ) crc.getValue();
+    }
+
+    ///////////////////////////
+    // Index handling
+
+    private void index( StoredProtein stored ) {
+        unindex( stored.getPrimaryAc() );
+        proteins.put( stored.getPrimaryAc(), stored );
+        index( aliases, stored.getAliases(), stored.getPrimaryAc() );
+        index( completeAliases, stored.getCompleteAliases(), stored.getPrimaryAc() );
+    }
+
+    private static void index( Map<String, Set<String>> index, Set<String> proteinAliases, String primaryAc ) {
+        for ( String alias : proteinAliases ) {
+            Set<String> primaryAcs = index.get( alias );
+            Set<String> updated = primaryAcs == null ? new HashSet<String>( 2 ) : new HashSet<String>( primaryAcs );
+            updated.add( primaryAc );
+            index.put( alias, Collections.unmodifiableSet( updated ) );
+        }
+    }
+
+    private void unindex( String primaryAc ) {
+        StoredProtein previous = proteins.remove( primaryAc );
+        if ( previous == null ) {
+            return;
+        }
+        unindex( aliases, previous.getAliases(), primaryAc );
+        unindex( completeAliases, previous.getCompleteAliases(), primaryAc );
+    }
+
+    private static void unindex( Map<String, Set<String>> index, Set<String> proteinAliases, String primaryAc ) {
+        for ( String alias : proteinAliases ) {
+            Set<String> primaryAcs = index.get( alias );
+            if ( primaryAcs == null ) {
+                continue;
+            }
+            Set<String> updated = new HashSet<String>( primaryAcs );
+            updated.remove( primaryAc );
+            if ( updated.isEmpty() ) {
+                index.remove( alias );
+            } else {
+                index.put( alias, Collections.unmodifiableSet( updated ) );
+            }
+        }
+    }
+
+    private static void addAlias( Set<String> aliases, String alias ) {
+        if ( alias != null && alias.length() > 0 ) {
+            aliases.add( normalize( alias ) );
+        }
+    }
+
+    private static String normalize( String identifier ) {
+        return identifier.trim().toUpperCase();
+    }
+
+    /**
+     * Record of a protein serialized but not written yet.
+     */
+    private static final class PendingRecord {
+
+        private final UniprotProtein protein;
+        private final String primaryAc;
+        private final boolean withSpliceVariants;
+        private final Set<String> aliases;
+        private final Set<String> completeAliases;
+        private final byte[] body;
+        private final int payloadOffset;
+        private final int payloadLength;
+
+        private PendingRecord( UniprotProtein protein, String primaryAc, boolean withSpliceVariants, Set<String> aliases,
+                               Set<String> completeAliases, byte[] body, int payloadOffset, int payloadLength ) {
+            this.protein = protein;
+            this.primaryAc = primaryAc;
+            this.withSpliceVariants = withSpliceVariants;
+            this.aliases = aliases;
+            this.completeAliases = completeAliases;
+            this.body = body;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    /**
+     * Index entry of a stored protein: what it was built from and where it is in the store file.
+     */
+    public static final class StoredProtein {
+
+        private final String primaryAc;
+        private final String releaseVersion;
+        private final Date lastAnnotationUpdate;
+        private final boolean withSpliceVariants;
+        private final Set<String> aliases;
+        private final Set<String> completeAliases;
+
+        /**
+         * Position of the record in the store file.
+         */
+        private final long recordStart;
+
+        /**
+         * Position and length of the serialized protein in the store file.
+         */
+        private final long offset;
+        private final int length;
+
+        private StoredProtein( String primaryAc, String releaseVersion, Date lastAnnotationUpdate,
+                               boolean withSpliceVariants, Set<String> aliases, Set<String> completeAliases,
+                               long recordStart, long offset, int length ) {
+            this.primaryAc = primaryAc;
+            this.releaseVersion = releaseVersion;
+            this.lastAnnotationUpdate = lastAnnotationUpdate;
+            this.withSpliceVariants = withSpliceVariants;
+            this.aliases = Collections.unmodifiableSet( aliases );
+            this.completeAliases = Collections.unmodifiableSet( completeAliases );
+            this.recordStart = recordStart;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getPrimaryAc() {
+            return primaryAc;
+        }
+
+        /**
+         * @return the UniProt release the protein was built from, null if unknown.
+         */
+        public String getReleaseVersion() {
+            return releaseVersion;
+        }
+
+        public Date getLastAnnotationUpdate() {
+            return lastAnnotationUpdate;
+        }
+
+        public boolean isWithSpliceVariants() {
+            return withSpliceVariants;
+        }
+
+        public Set<String> getAliases() {
+            return aliases;
+        }
+
+        /**
+         * @return the aliases the protein is part of a complete answer for, a subset of getAliases().
+         */
+        public Set<String> getCompleteAliases() {
+            return completeAliases;
+        }
+
+        @Override
+        public String toString() {
+            return "StoredProtein{primaryAc='" + primaryAc + "', releaseVersion='" + releaseVersion + "'}";
+        }
+    }
+}
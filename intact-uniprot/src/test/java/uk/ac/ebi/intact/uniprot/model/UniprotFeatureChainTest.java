@@ -3,6 +3,7 @@ package uk.ac.ebi.intact.uniprot.model;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 /**
@@ -42,6 +43,17 @@ public class UniprotFeatureChainTest {
         assertEquals( "ACBEDFG", ufc.getSequence() );
     }
 
+    @Test
+    public void Sequence_partOfSource() throws Exception {
+        UniprotFeatureChain ufc = new UniprotFeatureChain( "PRO_123", new Organism( 1 ), "ABCD" );
+        ufc.setSequence( "ACBEDFG", 2, 5 );
+        assertEquals( "BED", ufc.getSequence() );
+        assertSame( ufc.getSequence(), ufc.getSequence() );
+
+        ufc.setSequence( "ABCD" );
+        assertEquals( "ABCD", ufc.getSequence() );
+    }
+
     @Test
     public void SetGetOrganism() throws Exception {
         UniprotFeatureChain ufc = new UniprotFeatureChain( "PRO_123", new Organism( 1 ), "ABCD" );
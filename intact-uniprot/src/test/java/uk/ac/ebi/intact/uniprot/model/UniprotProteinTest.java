@@ -3,6 +3,10 @@ package uk.ac.ebi.intact.uniprot.model;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.SimpleDateFormat;
 
 /**
@@ -269,4 +273,66 @@ public class UniprotProteinTest {
         protein.setSource( UniprotProteinType.SWISSPROT );
         assertEquals( UniprotProteinType.SWISSPROT, protein.getSource() );
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds one cross reference to the protein and one to its splice variant, counting how often it builds them.
+     */
+    private static class CountingResolver implements CrossReferenceResolver {
+
+        private final UniprotProtein protein;
+        private final UniprotSpliceVariant variant;
+        private boolean resolved;
+        private int builds;
+
+        private CountingResolver( UniprotProtein protein, UniprotSpliceVariant variant ) {
+            this.protein = protein;
+            this.variant = variant;
+            protein.setCrossReferenceResolver( this );
+            variant.setCrossReferenceResolver( this );
+        }
+
+        public synchronized void resolve() {
+            if ( resolved ) {
+                return;
+            }
+            resolved = true;
+            builds++;
+            protein.getCrossReferences().add( new UniprotXref( "IPR000001", "InterPro" ) );
+            variant.getCrossReferences().add( new UniprotXref( "ENST00000344548", "Ensembl", null, null, "P12345-2" ) );
+            protein.setCrossReferenceResolver( null );
+            variant.setCrossReferenceResolver( null );
+        }
+    }
+
+    @Test
+    public void GetCrossReferences_resolvedOnFirstAccess() {
+        UniprotProtein protein = new UniprotProtein( "P12345_HUMAN", "P12345", new Organism( 1 ), "desc" );
+        UniprotSpliceVariant variant = new UniprotSpliceVariant( "P12345-2", new Organism( 1 ), "MQTIK" );
+        protein.getSpliceVariants().add( variant );
+        CountingResolver resolver = new CountingResolver( protein, variant );
+
+        assertTrue( protein.hasUnresolvedCrossReferences() );
+        assertEquals( 1, variant.getCrossReferences().size() );
+        assertFalse( protein.hasUnresolvedCrossReferences() );
+        assertEquals( 1, protein.getCrossReferences().size() );
+        assertEquals( 1, resolver.builds );
+    }
+
+    @Test
+    public void Serialization_resolvesCrossReferences() throws Exception {
+        UniprotProtein protein = new UniprotProtein( "P12345_HUMAN", "P12345", new Organism( 1 ), "desc" );
+        UniprotSpliceVariant variant = new UniprotSpliceVariant( "P12345-2", new Organism( 1 ), "MQTIK" );
+        protein.getSpliceVariants().add( variant );
+        new CountingResolver( protein, variant );
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( bytes );
+        out.writeObject( protein );
+        out.close();
+        UniprotProtein copy = ( UniprotProtein ) new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ).readObject();
+
+        assertFalse( copy.hasUnresolvedCrossReferences() );
+        assertEquals( 1, copy.getCrossReferences().size() );
+        assertEquals( 1, copy.getSpliceVariants().iterator().next().getCrossReferences().size() );
+    }
+}
@@ -0,0 +1,123 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * AccessionAliasIndex Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class AccessionAliasIndexTest {
+
+    private UniprotProtein buildProtein( String primaryAc, String id, String... secondaryAcs ) {
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        UniprotProtein protein = new UniprotProtein( id, primaryAc, human, null );
+        protein.getSecondaryAcs().addAll( Arrays.asList( secondaryAcs ) );
+
+        UniprotSpliceVariant variant = new UniprotSpliceVariant( primaryAc + "-2", human, "MQTIK" );
+        variant.getSecondaryAcs().add( secondaryAcs.length > 0 ? secondaryAcs[0] + "-2" : primaryAc + "-9" );
+        protein.getSpliceVariants().add( variant );
+
+        protein.getFeatureChains().add( new UniprotFeatureChain( primaryAc + "-PRO_0000030424", human, "MQT" ) );
+        return protein;
+    }
+
+    @Test
+    public void aliasesOf() {
+        UniprotProtein protein = buildProtein( "P60953", "CDC42_HUMAN", "P21181" );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "P60953", "CDC42_HUMAN", "P21181", "P60953-2", "P21181-2",
+                                                          "P60953-PRO_0000030424", "PRO_0000030424" ) ),
+                      AccessionAliasIndex.aliasesOf( protein ) );
+    }
+
+    @Test
+    public void resolve() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( buildProtein( "P60953", "CDC42_HUMAN", "P21181" ) );
+
+        assertEquals( Collections.singleton( "P60953" ), index.resolve( "p60953" ) );
+        assertEquals( Collections.singleton( "P60953" ), index.resolve( "cdc42_human" ) );
+        assertTrue( index.resolve( "P12345" ).isEmpty() );
+        assertTrue( index.resolve( null ).isEmpty() );
+    }
+
+    @Test
+    public void resolve_derivedAliasesNotComplete() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( buildProtein( "P60953", "CDC42_HUMAN", "P21181" ) );
+
+        // other entries may share them, only a search tells
+        assertTrue( index.resolve( "P21181" ).isEmpty() );
+        assertTrue( index.resolve( "P21181-2" ).isEmpty() );
+        assertTrue( index.resolve( "PRO_0000030424" ).isEmpty() );
+    }
+
+    @Test
+    public void resolve_sharedSecondaryAc() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( "P21181", Arrays.asList( buildProtein( "P60953", "CDC42_HUMAN", "P21181" ),
+                                                 buildProtein( "P60952", "CDC42_CANFA", "P21181" ) ) );
+
+        assertEquals( new HashSet<String>( Arrays.asList( "P60953", "P60952" ) ), index.resolve( "P21181" ) );
+        assertEquals( Collections.singleton( "P60952" ), index.resolve( "CDC42_CANFA" ) );
+    }
+
+    @Test
+    public void register_searchedIdentifier() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( "Q00001", Arrays.asList( buildProtein( "P60953", "CDC42_HUMAN" ) ) );
+
+        assertEquals( Collections.singleton( "P60953" ), index.resolve( "q00001" ) );
+        assertEquals( Collections.singleton( "P60953" ), index.resolve( "P60953" ) );
+
+        index.clear();
+        assertEquals( 0, index.size() );
+    }
+
+    @Test
+    public void register_searchedIdentifierReplaced() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( "P21181", Arrays.asList( buildProtein( "P60953", "CDC42_HUMAN", "P21181" ) ) );
+
+        // after a demerge, the search gives the new entries only
+        index.register( "P21181", Arrays.asList( buildProtein( "P60952", "CDC42_CANFA", "P21181" ) ) );
+        assertEquals( Collections.singleton( "P60952" ), index.resolve( "P21181" ) );
+        assertEquals( Collections.singleton( "P60953" ), index.resolve( "CDC42_HUMAN" ) );
+
+        index.register( "P21181", Collections.<UniprotProtein>emptyList() );
+        assertTrue( index.resolve( "P21181" ).isEmpty() );
+    }
+
+    @Test
+    public void forget() {
+        AccessionAliasIndex index = new AccessionAliasIndex();
+        index.register( "P21181", Arrays.asList( buildProtein( "P60953", "CDC42_HUMAN", "P21181" ),
+                                                 buildProtein( "P60952", "CDC42_CANFA", "P21181" ) ) );
+        assertEquals( 5, index.size() );
+
+        index.forget( "p60953" );
+        assertTrue( index.resolve( "P60953" ).isEmpty() );
+        assertTrue( index.resolve( "CDC42_HUMAN" ).isEmpty() );
+        assertTrue( index.resolve( "P21181" ).isEmpty() );
+        assertEquals( Collections.singleton( "P60952" ), index.resolve( "CDC42_CANFA" ) );
+        assertEquals( 2, index.size() );
+
+        // the alias dropped with P60953 is not dropped again with P60952 once it resolves elsewhere
+        index.register( "P21181", Arrays.asList( buildProtein( "P60954", "CDC42_MOUSE", "P21181" ) ) );
+        index.forget( "P60952" );
+        assertEquals( Collections.singleton( "P60954" ), index.resolve( "P21181" ) );
+        assertEquals( 3, index.size() );
+    }
+}
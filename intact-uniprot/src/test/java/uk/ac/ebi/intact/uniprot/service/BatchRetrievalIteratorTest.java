@@ -0,0 +1,86 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * BatchRetrievalIterator Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class BatchRetrievalIteratorTest {
+
+    /**
+     * Records the batches searched and does not find the ACs starting with OBSOLETE.
+     */
+    private static class RecordingUniprotService extends DummyUniprotService {
+
+        private List<Integer> batches = new ArrayList<Integer>();
+
+        @Override
+        public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+            batches.add( acs.size() );
+            Map<String, Collection<UniprotProtein>> results = super.retrieve( acs );
+            for ( String ac : acs ) {
+                if ( ac.startsWith( "OBSOLETE" ) ) {
+                    results.put( ac, new ArrayList<UniprotProtein>() );
+                    addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                }
+            }
+            return results;
+        }
+
+        @Override
+        protected int getIncrementalBatchSize() {
+            return 2;
+        }
+    }
+
+    @Test
+    public void retrieveIncrementally() {
+        RecordingUniprotService service = new RecordingUniprotService();
+
+        Iterator<UniprotRetrievalResult> iterator =
+                service.retrieveIncrementally( Arrays.asList( "P12345", "OBSOLETE1", "Q67890", "", "P60953", null ), true );
+        assertTrue( service.batches.isEmpty() );
+
+        UniprotRetrievalResult result = iterator.next();
+        assertEquals( "P12345", result.getAc() );
+        assertTrue( result.isFound() );
+        assertFalse( result.hasReport() );
+        assertEquals( Collections.singletonList( 2 ), service.batches );
+
+        result = iterator.next();
+        assertEquals( "OBSOLETE1", result.getAc() );
+        assertFalse( result.isFound() );
+        assertEquals( "Could not find protein: OBSOLETE1", result.getReport().getMessage() );
+        assertTrue( service.getErrors().isEmpty() );
+
+        List<String> acs = new ArrayList<String>();
+        while ( iterator.hasNext() ) {
+            acs.add( iterator.next().getAc() );
+        }
+        assertEquals( Arrays.asList( "Q67890", "P60953" ), acs );
+        assertEquals( Arrays.asList( 2, 2 ), service.batches );
+    }
+
+    @Test( expected = NoSuchElementException.class )
+    public void next_exhausted() {
+        Iterator<UniprotRetrievalResult> iterator =
+                new DummyUniprotService().retrieveIncrementally( Collections.<String>emptyList(), true );
+        assertFalse( iterator.hasNext() );
+        iterator.next();
+    }
+}
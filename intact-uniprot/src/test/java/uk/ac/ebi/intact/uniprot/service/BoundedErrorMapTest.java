@@ -0,0 +1,96 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * BoundedErrorMap Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class BoundedErrorMapTest {
+
+    private static UniprotServiceReport report( String ac ) {
+        return new UniprotServiceReport( "Could not find protein: " + ac );
+    }
+
+    @Test
+    public void put_dropsOldest() {
+        BoundedErrorMap errors = new BoundedErrorMap( 2 );
+        errors.put( "P1", report( "P1" ) );
+        errors.put( "P2", report( "P2" ) );
+        errors.put( "P3", report( "P3" ) );
+
+        assertEquals( 2, errors.size() );
+        assertFalse( errors.containsKey( "P1" ) );
+        assertTrue( errors.containsKey( "P3" ) );
+        assertEquals( 1, errors.getDroppedCount() );
+    }
+
+    @Test
+    public void put_replacedReportKept() {
+        BoundedErrorMap errors = new BoundedErrorMap( 2 );
+        errors.put( "P1", report( "P1" ) );
+        UniprotServiceReport latest = report( "P1" );
+        errors.put( "P1", latest );
+
+        // the first report of P1 is dropped from the queue, not the one replacing it
+        errors.put( "P2", report( "P2" ) );
+        assertSame( latest, errors.get( "P1" ) );
+        assertEquals( 2, errors.size() );
+        assertEquals( 0, errors.getDroppedCount() );
+    }
+
+    @Test
+    public void setMaxSize() {
+        BoundedErrorMap errors = new BoundedErrorMap( 10 );
+        for ( int i = 0; i < 10; i++ ) {
+            errors.put( "P" + i, report( "P" + i ) );
+        }
+        errors.setMaxSize( 3 );
+
+        assertEquals( 3, errors.size() );
+        assertTrue( errors.containsKey( "P9" ) );
+
+        errors.clear();
+        assertTrue( errors.isEmpty() );
+        errors.put( "Q1", report( "Q1" ) );
+        assertEquals( 1, errors.size() );
+    }
+
+    @Test
+    public void put_concurrent() throws Exception {
+        final BoundedErrorMap errors = new BoundedErrorMap( 100 );
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < 8; t++ ) {
+            final int offset = t * 10000;
+            Thread thread = new Thread() {
+                public void run() {
+                    for ( int i = 0; i < 5000; i++ ) {
+                        String ac = "P" + ( offset + i );
+                        errors.put( ac, report( ac ) );
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+
+        assertEquals( 100, errors.size() );
+        assertEquals( 40000 - 100, errors.getDroppedCount() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void create_noSize() {
+        new BoundedErrorMap( 0 );
+    }
+}
@@ -2,8 +2,27 @@ package uk.ac.ebi.intact.uniprot.service;
 
 import org.junit.Test;
 import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 /**
  * CachedUniprotService Tester.
@@ -32,4 +51,337 @@ public class CachedUniprotServiceTest {
 //        assertEquals( p1, p2);
 //        assertSame( p1, p2 );
     }
+
+    @Test
+    public void retrieve_notFoundIsNotSearchedAgain() {
+        final List<String> searched = new ArrayList<String>();
+        CachedUniprotService service = new CachedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                searched.add( ac );
+                if ( ac.startsWith( "OBSOLETE" ) ) {
+                    addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                    return new ArrayList<UniprotProtein>();
+                }
+                return super.retrieve( ac );
+            }
+        } );
+
+        assertTrue( service.retrieve( "OBSOLETE1" ).isEmpty() );
+        assertTrue( service.retrieve( "OBSOLETE1" ).isEmpty() );
+        assertTrue( service.retrieveSpliceVariant( "OBSOLETE1" ).isEmpty() );
+        assertEquals( 1, service.retrieve( "P12345" ).size() );
+        assertEquals( 1, service.retrieve( "P12345" ).size() );
+
+        assertEquals( Arrays.asList( "OBSOLETE1", "P12345" ), searched );
+        assertEquals( 2, service.getNegativeResultCache().getSavedCalls( NegativeResultCache.LookupType.PROTEIN ) );
+        assertTrue( service.getErrors().containsKey( "OBSOLETE1" ) );
+
+        service.clearErrors();
+        assertTrue( service.getErrors().isEmpty() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_failureIsSearchedAgain() {
+        final List<String> searched = new ArrayList<String>();
+        CachedUniprotService service = new CachedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                searched.add( ac );
+                addError( ac, new UniprotServiceReport( UniprotReportType.RETRIEVAL_FAILED,
+                                                        "Could not retrieve protein: " + ac, null ) );
+                return new ArrayList<UniprotProtein>();
+            }
+        } );
+
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+
+        assertEquals( Arrays.asList( "P12345", "P12345" ), searched );
+        assertEquals( 0, service.getNegativeResultCache().size() );
+        assertEquals( UniprotReportType.RETRIEVAL_FAILED, service.getErrors().get( "P12345" ).getType() );
+        service.close();
+    }
+
+    @Test
+    public void retrieveWithReport_errorsArePerCall() throws Exception {
+        final CachedUniprotService service = new CachedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                if ( ac.startsWith( "OBSOLETE" ) ) {
+                    addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                    return new ArrayList<UniprotProtein>();
+                }
+                return super.retrieve( ac );
+            }
+        } );
+
+        final UniprotServiceResult[] results = new UniprotServiceResult[4];
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < results.length; t++ ) {
+            final int index = t;
+            Thread thread = new Thread() {
+                public void run() {
+                    results[index] = service.retrieveWithReport( Arrays.asList( "P1234" + index, "OBSOLETE" + index ), false );
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+
+        for ( int t = 0; t < results.length; t++ ) {
+            assertEquals( 1, results[t].getErrors().size() );
+            UniprotRetrievalResult obsolete = results[t].getResult( "OBSOLETE" + t );
+            assertFalse( obsolete.isFound() );
+            assertEquals( UniprotReportType.NOT_FOUND, obsolete.getReport().getType() );
+            assertTrue( results[t].getResult( "P1234" + t ).isFound() );
+        }
+        assertTrue( service.getErrors().isEmpty() );
+
+        // the identifiers not searched again are reported to the call too
+        UniprotServiceResult again = service.retrieveWithReport( Arrays.asList( "OBSOLETE0" ), false );
+        assertTrue( again.getErrors().containsKey( "OBSOLETE0" ) );
+        assertTrue( service.getErrors().isEmpty() );
+
+        // calls made without a report still fill the legacy errors
+        service.retrieve( "OBSOLETE1" );
+        assertTrue( service.getErrors().containsKey( "OBSOLETE1" ) );
+        service.close();
+    }
+
+    /**
+     * Builds proteins with a splice variant holding an isoform cross reference when asked to.
+     */
+    private static class SpliceVariantUniprotService extends DummyUniprotService {
+
+        private List<String> requests = new ArrayList<String>();
+
+        @Override
+        public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+            requests.add( ac + ( processSpliceVars ? "+sv" : "" ) );
+            Collection<UniprotProtein> proteins = retrieve( ac );
+            UniprotProtein protein = proteins.iterator().next();
+            UniprotXref isoformXref = new UniprotXref( "ENST00000344548", "Ensembl", null, null, ac + "-1" );
+            if ( processSpliceVars ) {
+                UniprotSpliceVariant variant = new UniprotSpliceVariant( ac + "-1", protein.getOrganism(), "MQTIK" );
+                variant.getCrossReferences().add( isoformXref );
+                protein.getSpliceVariants().add( variant );
+            } else {
+                protein.getCrossReferences().add( isoformXref );
+            }
+            return proteins;
+        }
+    }
+
+    @Test
+    public void retrieve_processSpliceVars() {
+        SpliceVariantUniprotService remote = new SpliceVariantUniprotService();
+        CachedUniprotService service = new CachedUniprotService( remote );
+
+        // proteins cached without splice variants do not answer requests needing them
+        assertTrue( service.retrieve( "P12345", false ).iterator().next().getSpliceVariants().isEmpty() );
+        assertEquals( 1, service.retrieve( "P12345", true ).iterator().next().getSpliceVariants().size() );
+        assertEquals( Arrays.asList( "P12345", "P12345+sv" ), remote.requests );
+
+        // proteins cached with splice variants answer lighter requests
+        assertEquals( 1, service.retrieve( "Q67890" ).iterator().next().getSpliceVariants().size() );
+        UniprotProtein light = service.retrieve( "q67890", false ).iterator().next();
+        assertTrue( light.getSpliceVariants().isEmpty() );
+        assertEquals( 1, light.getCrossReferences().size() );
+        assertEquals( 1, service.retrieve( "Q67890", true ).iterator().next().getSpliceVariants().size() );
+
+        assertEquals( Arrays.asList( "P12345", "P12345+sv", "Q67890+sv" ), remote.requests );
+        assertEquals( 1, service.getUpgradeHitCount() );
+        assertEquals( 1, service.getHitCount() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_projection() {
+        SpliceVariantUniprotService remote = new SpliceVariantUniprotService();
+        CachedUniprotService service = new CachedUniprotService( remote );
+        RetrievalOptions sequenceOnly = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) );
+        RetrievalOptions withXrefs = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE, UniprotField.XREFS ) );
+
+        // proteins cached with fewer parts do not answer requests needing more
+        UniprotProtein light = service.retrieve( "P12345", sequenceOnly ).iterator().next();
+        assertTrue( light.getCrossReferences().isEmpty() );
+        assertEquals( "human", service.retrieve( "P12345" ).iterator().next().getOrganism().getName() );
+        assertEquals( Arrays.asList( "P12345", "P12345+sv" ), remote.requests );
+
+        // proteins cached with every part answer any projection
+        UniprotProtein projected = service.retrieve( "p12345", withXrefs ).iterator().next();
+        assertTrue( projected.getSpliceVariants().isEmpty() );
+        assertEquals( 1, projected.getCrossReferences().size() );
+        assertNull( projected.getOrganism().getName() );
+        assertEquals( 9606, projected.getOrganism().getTaxid() );
+
+        assertEquals( 1, service.retrieve( Arrays.asList( "Q67890" ), sequenceOnly ).get( "Q67890" ).size() );
+        assertEquals( 1, service.retrieve( "Q67890", sequenceOnly ).size() );
+
+        assertEquals( Arrays.asList( "P12345", "P12345+sv", "Q67890" ), remote.requests );
+        assertEquals( 1, service.getUpgradeHitCount() );
+        assertEquals( 1, service.getHitCount() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_byAlias() {
+        final List<String> searched = new ArrayList<String>();
+        CachedUniprotService service = new CachedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                searched.add( ac );
+                Collection<UniprotProtein> proteins = super.retrieve( "P60953" );
+                UniprotProtein protein = proteins.iterator().next();
+                protein.setId( "CDC42_HUMAN" );
+                protein.getSecondaryAcs().add( "P21181" );
+                return proteins;
+            }
+        } );
+
+        assertEquals( "P60953", service.retrieve( "P21181" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P60953", service.retrieve( "p60953" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P60953", service.retrieve( "cdc42_human" ).iterator().next().getPrimaryAc() );
+        assertEquals( "P60953", service.retrieve( "P21181" ).iterator().next().getPrimaryAc() );
+
+        assertEquals( Arrays.asList( "P21181" ), searched );
+        assertEquals( 3, service.getHitCount() );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_secondaryAcSearchedAgain() {
+        final List<String> searched = new ArrayList<String>();
+        CachedUniprotService service = new CachedUniprotService( new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                searched.add( ac );
+                if ( ac.equals( "P21181" ) ) {
+                    // demerged: both entries list it as secondary AC
+                    Collection<UniprotProtein> proteins = super.retrieve( "P60953" );
+                    proteins.addAll( super.retrieve( "P60952" ) );
+                    for ( UniprotProtein protein : proteins ) {
+                        protein.getSecondaryAcs().add( "P21181" );
+                    }
+                    return proteins;
+                }
+                Collection<UniprotProtein> proteins = super.retrieve( ac );
+                proteins.iterator().next().getSecondaryAcs().add( "P21181" );
+                return proteins;
+            }
+        } );
+
+        assertEquals( 1, service.retrieve( "P60953" ).size() );
+
+        // the entry cached does not tell which other entries share its secondary AC
+        assertEquals( 2, service.retrieve( "P21181" ).size() );
+        assertEquals( 2, service.retrieve( "P21181" ).size() );
+        assertEquals( Arrays.asList( "P60953", "P21181" ), searched );
+        service.close();
+    }
+
+    /**
+     * Blocks every retrieval until released, and fails for the ACs starting with FAIL.
+     */
+    private static class BlockingUniprotService extends DummyUniprotService {
+
+        private final CountDownLatch release = new CountDownLatch( 1 );
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Collection<UniprotProtein> retrieve( String ac ) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch ( InterruptedException e ) {
+                throw new RuntimeUniprotServiceException( e );
+            }
+            if ( ac.startsWith( "FAIL" ) ) {
+                throw new RuntimeUniprotServiceException( "Could not reach UniProt" );
+            }
+            return super.retrieve( ac );
+        }
+    }
+
+    private List<Future<Collection<UniprotProtein>>> retrieveConcurrently( final CachedUniprotService service,
+                                                                          final String ac, int threads,
+                                                                          ExecutorService executor ) throws Exception {
+        List<Future<Collection<UniprotProtein>>> futures = new ArrayList<Future<Collection<UniprotProtein>>>();
+        for ( int i = 0; i < threads; i++ ) {
+            futures.add( executor.submit( new Callable<Collection<UniprotProtein>>() {
+                public Collection<UniprotProtein> call() {
+                    return service.retrieve( ac );
+                }
+            } ) );
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( service.getDeduplicatedCount() < threads - 1 && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 10 );
+        }
+        return futures;
+    }
+
+    @Test
+    public void retrieve_concurrentMissesFetchOnce() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CachedUniprotService service = new CachedUniprotService( remote );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+        List<Future<Collection<UniprotProtein>>> futures = retrieveConcurrently( service, "P12345", 8, executor );
+        remote.release.countDown();
+        Set<UniprotProtein> instances = Collections.newSetFromMap( new IdentityHashMap<UniprotProtein, Boolean>() );
+        for ( Future<Collection<UniprotProtein>> future : futures ) {
+            UniprotProtein protein = future.get( 5, TimeUnit.SECONDS ).iterator().next();
+            assertEquals( "P12345", protein.getPrimaryAc() );
+            instances.add( protein );
+        }
+
+        // the waiting threads get their own copies, as cache hits do
+        assertEquals( 8, instances.size() );
+
+        assertEquals( 1, remote.calls.get() );
+        assertEquals( 7, service.getDeduplicatedCount() );
+        assertEquals( 1, service.retrieve( "P12345" ).size() );
+        assertEquals( 1, remote.calls.get() );
+
+        executor.shutdown();
+        service.close();
+    }
+
+    @Test
+    public void retrieve_concurrentFailureShared() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CachedUniprotService service = new CachedUniprotService( remote );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+        List<Future<Collection<UniprotProtein>>> futures = retrieveConcurrently( service, "FAIL1", 4, executor );
+        remote.release.countDown();
+        for ( Future<Collection<UniprotProtein>> future : futures ) {
+            try {
+                future.get( 5, TimeUnit.SECONDS );
+                fail( "The retrieval should have failed" );
+            } catch ( ExecutionException e ) {
+                assertTrue( e.getCause() instanceof RuntimeUniprotServiceException );
+            }
+        }
+        assertEquals( 1, remote.calls.get() );
+        assertEquals( 3, service.getDeduplicatedCount() );
+
+        // failures are not remembered, the next call searches again
+        try {
+            service.retrieve( "FAIL1" );
+            fail( "The retrieval should have failed" );
+        } catch ( RuntimeUniprotServiceException e ) {
+            assertEquals( 2, remote.calls.get() );
+        }
+
+        executor.shutdown();
+        service.close();
+    }
 }
@@ -0,0 +1,197 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * CoalescingAsyncUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class CoalescingAsyncUniprotServiceTest {
+
+    /**
+     * Blocks every retrieval until released, and records whether a retrieval was interrupted.
+     */
+    private static class BlockingUniprotService extends DummyUniprotService {
+
+        private final CountDownLatch started = new CountDownLatch( 1 );
+        private final CountDownLatch release = new CountDownLatch( 1 );
+        private final CountDownLatch interrupted = new CountDownLatch( 1 );
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Collection<UniprotProtein> retrieve( String ac ) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch ( InterruptedException e ) {
+                interrupted.countDown();
+                throw new RuntimeUniprotServiceException( "Interrupted", e );
+            }
+            if ( ac.startsWith( "FAIL" ) ) {
+                throw new RuntimeUniprotServiceException( "Could not reach UniProt" );
+            }
+            if ( ac.startsWith( "X" ) ) {
+                addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                return new ArrayList<UniprotProtein>();
+            }
+            return super.retrieve( ac );
+        }
+    }
+
+    @Test
+    public void retrieveAsync_coalesced() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<Collection<UniprotProtein>> first = service.retrieveAsync( "P12345" );
+        CompletableFuture<Collection<UniprotProtein>> second = service.retrieveAsync( "p12345" );
+        CompletableFuture<Collection<UniprotProtein>> other = service.retrieveAsync( "P12345", false );
+        assertNotSame( first, second );
+        remote.release.countDown();
+
+        assertEquals( 1, first.get( 5, TimeUnit.SECONDS ).size() );
+        assertEquals( 1, second.get( 5, TimeUnit.SECONDS ).size() );
+        assertEquals( 1, other.get( 5, TimeUnit.SECONDS ).size() );
+        assertEquals( 2, remote.calls.get() );
+        assertEquals( 1, service.getCoalescedCount() );
+        service.close();
+    }
+
+    @Test
+    public void retrieveAsync_callersGetOwnProteins() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<Collection<UniprotProtein>> first = service.retrieveAsync( "P12345" );
+        CompletableFuture<Collection<UniprotProtein>> second = service.retrieveAsync( "P12345" );
+        remote.release.countDown();
+
+        Collection<UniprotProtein> firstProteins = first.get( 5, TimeUnit.SECONDS );
+        Collection<UniprotProtein> secondProteins = second.get( 5, TimeUnit.SECONDS );
+        assertEquals( 1, remote.calls.get() );
+        assertNotSame( firstProteins, secondProteins );
+
+        UniprotProtein firstProtein = firstProteins.iterator().next();
+        UniprotProtein secondProtein = secondProteins.iterator().next();
+        assertNotSame( firstProtein, secondProtein );
+        assertEquals( firstProtein, secondProtein );
+
+        // a caller changing its proteins does not change those of the other callers
+        firstProtein.getKeywords().add( "Changed" );
+        assertFalse( secondProtein.getKeywords().contains( "Changed" ) );
+        service.close();
+    }
+
+    @Test
+    public void retrieveWithReportAsync_reportPerCaller() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<UniprotRetrievalResult> first = service.retrieveWithReportAsync( "XXXXXX", true );
+        CompletableFuture<UniprotRetrievalResult> second = service.retrieveWithReportAsync( "XXXXXX", true );
+        CompletableFuture<UniprotRetrievalResult> found = service.retrieveWithReportAsync( "P12345", true );
+        remote.release.countDown();
+
+        for ( CompletableFuture<UniprotRetrievalResult> future : Arrays.asList( first, second ) ) {
+            UniprotRetrievalResult result = future.get( 5, TimeUnit.SECONDS );
+            assertEquals( "XXXXXX", result.getAc() );
+            assertFalse( result.isFound() );
+            assertEquals( UniprotReportType.NOT_FOUND, result.getReport().getType() );
+        }
+        assertEquals( 1, service.getCoalescedCount() );
+
+        UniprotRetrievalResult result = found.get( 5, TimeUnit.SECONDS );
+        assertTrue( result.isFound() );
+        assertFalse( result.hasReport() );
+
+        // the report went to the callers, not to the errors of the service
+        assertTrue( remote.getErrors().isEmpty() );
+        service.close();
+    }
+
+    @Test
+    public void retrieveAsync_failureShared() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<Collection<UniprotProtein>> first = service.retrieveAsync( "FAIL1" );
+        CompletableFuture<Collection<UniprotProtein>> second = service.retrieveAsync( "FAIL1" );
+        remote.release.countDown();
+
+        for ( CompletableFuture<Collection<UniprotProtein>> future : Arrays.asList( first, second ) ) {
+            try {
+                future.get( 5, TimeUnit.SECONDS );
+                fail( "The retrieval should have failed" );
+            } catch ( ExecutionException e ) {
+                assertTrue( e.getCause() instanceof RuntimeUniprotServiceException );
+            }
+        }
+        assertEquals( 1, remote.calls.get() );
+        assertEquals( 0, service.getInFlightCount() );
+        service.close();
+    }
+
+    @Test
+    public void cancel_lastCallerCancelsQuery() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<Collection<UniprotProtein>> first = service.retrieveAsync( "P12345" );
+        CompletableFuture<Collection<UniprotProtein>> second = service.retrieveAsync( "P12345" );
+        assertTrue( remote.started.await( 5, TimeUnit.SECONDS ) );
+
+        first.cancel( true );
+        assertEquals( 0, service.getCancelledCount() );
+        assertFalse( second.isDone() );
+
+        second.cancel( true );
+        assertTrue( remote.interrupted.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, service.getCancelledCount() );
+        assertEquals( 0, service.getInFlightCount() );
+        service.close();
+    }
+
+    @Test
+    public void timeout_cancelsQuery() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+        service.setTimeoutMillis( 50 );
+
+        try {
+            service.retrieveAsync( "P12345" ).get( 5, TimeUnit.SECONDS );
+            fail( "The retrieval should have timed out" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof TimeoutException );
+        }
+        assertTrue( remote.interrupted.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1, service.getCancelledCount() );
+        service.close();
+    }
+
+    @Test( expected = CancellationException.class )
+    public void close_cancelsRunningQueries() throws Exception {
+        BlockingUniprotService remote = new BlockingUniprotService();
+        CoalescingAsyncUniprotService service = new CoalescingAsyncUniprotService( remote );
+
+        CompletableFuture<Collection<UniprotProtein>> future = service.retrieveAsync( "P12345" );
+        service.close();
+        future.get( 5, TimeUnit.SECONDS );
+    }
+}
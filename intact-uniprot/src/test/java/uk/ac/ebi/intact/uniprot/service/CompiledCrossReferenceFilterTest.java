@@ -0,0 +1,155 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+import uk.ac.ebi.kraken.interfaces.uniprot.DatabaseType;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * CompiledCrossReferenceFilter Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class CompiledCrossReferenceFilterTest {
+
+    @Test
+    public void isSelected() {
+        DefaultCrossReferenceFilter original = new DefaultCrossReferenceFilter();
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( original );
+
+        for ( String database : original.getFilteredDatabases() ) {
+            assertTrue( database, filter.isSelected( database ) );
+            assertTrue( database, filter.isSelected( " " + database.toUpperCase() + " " ) );
+        }
+        assertTrue( filter.isSelected( "InterPro" ) );
+        assertTrue( filter.isSelected( "EnsemblMetazoa" ) );
+        assertFalse( filter.isSelected( "Pfam" ) );
+        assertFalse( filter.isSelected( "Ensemb" ) );
+        assertFalse( filter.isSelected( "EnsemblMetazoaX" ) );
+
+        assertEquals( original.getFilteredDatabases(), filter.getFilteredDatabases() );
+        assertSame( filter, CompiledCrossReferenceFilter.compile( filter ) );
+    }
+
+    @Test
+    public void isSelected_invalidDatabase() {
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( new DefaultCrossReferenceFilter() );
+        try {
+            filter.isSelected( ( String ) null );
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // ok
+        }
+        try {
+            filter.isSelected( "  " );
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // ok
+        }
+    }
+
+    @Test
+    public void getMi() {
+        DefaultCrossReferenceFilter original = new DefaultCrossReferenceFilter();
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( original );
+
+        for ( String database : original.getFilteredDatabases() ) {
+            assertEquals( database, original.getMi( database ), filter.getMi( database ) );
+        }
+        assertEquals( "MI:0448", filter.getMi( "GO" ) );
+        assertNull( filter.getMi( "pfam" ) );
+        assertNull( filter.getMi( "" ) );
+        assertNull( filter.getMi( ( String ) null ) );
+    }
+
+    @Test
+    public void isSelected_databaseType() {
+        DefaultCrossReferenceFilter original = new DefaultCrossReferenceFilter();
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( original );
+
+        for ( DatabaseType type : DatabaseType.values() ) {
+            if ( type.getName() != null && type.getName().trim().length() > 0 ) {
+                assertEquals( type.name(), original.isSelected( type.getName() ), filter.isSelected( type ) );
+                assertEquals( type.name(), filter.getMi( type.getName() ), filter.getMi( type ) );
+            } else {
+                assertFalse( filter.isSelected( type ) );
+            }
+        }
+    }
+
+    @Test
+    public void compile_manyDatabases() {
+        final List<String> databases = Arrays.asList( "go", "GO", "interpro", "pdb", "pfam", "smart", "prosite",
+                                                      "prints", "kegg", "pir", "embl", "refseq", "ensembl", "mint",
+                                                      "dip", "reactome", "flybase", "wormbase", "sgd", "rgd", "mgi" );
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( new CrossReferenceFilter() {
+            public boolean isSelected( String database ) {
+                return databases.contains( database.toLowerCase() );
+            }
+
+            public List<String> getFilteredDatabases() {
+                return databases;
+            }
+
+            public String getMi( String databaseName ) {
+                return "MI:" + databaseName.toLowerCase();
+            }
+        } );
+
+        for ( String database : databases ) {
+            assertTrue( database, filter.isSelected( database ) );
+            assertEquals( "MI:" + database.toLowerCase(), filter.getMi( database ) );
+        }
+        assertFalse( filter.isSelected( "uniprotkb" ) );
+    }
+
+    private static CrossReferenceFilter filterOf( final List<String> databases ) {
+        return new CrossReferenceFilter() {
+            public boolean isSelected( String database ) {
+                return databases.contains( database.toLowerCase() );
+            }
+
+            public List<String> getFilteredDatabases() {
+                return databases;
+            }
+
+            public String getMi( String databaseName ) {
+                return "MI:" + databaseName.toLowerCase();
+            }
+        };
+    }
+
+    @Test( timeout = 10000 )
+    public void compile_collidingNames() {
+        // these pairs share the same 31 multiplier polynomial hash whatever its starting value
+        List<String> databases = Arrays.asList( "aan", "ac0", "aaan", "aac0" );
+        CompiledCrossReferenceFilter filter = CompiledCrossReferenceFilter.compile( filterOf( databases ) );
+
+        assertTrue( filter.isPerfectlyHashed() );
+        for ( String database : databases ) {
+            assertTrue( database, filter.isSelected( database.toUpperCase() ) );
+            assertEquals( "MI:" + database, filter.getMi( database ) );
+        }
+        assertFalse( filter.isSelected( "aao" ) );
+    }
+
+    @Test
+    public void compile_noPerfectHash() {
+        List<String> databases = Arrays.asList( "go", "interpro", "pdb", "pfam" );
+        CompiledCrossReferenceFilter filter = new CompiledCrossReferenceFilter( filterOf( databases ), 4 );
+
+        assertFalse( filter.isPerfectlyHashed() );
+        for ( String database : databases ) {
+            assertTrue( database, filter.isSelected( " " + database.toUpperCase() ) );
+            assertEquals( "MI:" + database, filter.getMi( database ) );
+        }
+        assertFalse( filter.isSelected( "smart" ) );
+        assertNull( filter.getMi( "smart" ) );
+        assertNull( filter.getMi( " " ) );
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * ConcurrentUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ConcurrentUniprotServiceTest {
+
+    private List<String> buildAcs( int count ) {
+        List<String> acs = new ArrayList<String>( count );
+        for ( int i = 0; i < count; i++ ) {
+            acs.add( "P" + ( 10000 + i ) );
+        }
+        return acs;
+    }
+
+    @Test
+    public void retrieve() {
+        ConcurrentUniprotService service = new ConcurrentUniprotService( new DummyUniprotService(), 3 );
+        service.setChunkSize( 7 );
+
+        List<String> acs = buildAcs( 100 );
+        Map<String, Collection<UniprotProtein>> results = service.retrieve( acs );
+
+        assertEquals( 100, results.size() );
+        for ( String ac : acs ) {
+            assertEquals( 1, results.get( ac ).size() );
+            assertEquals( ac, results.get( ac ).iterator().next().getPrimaryAc() );
+        }
+        assertTrue( service.getErrors().isEmpty() );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieveWithReport_errorsArePerCall() {
+        DummyUniprotService dummy = new DummyUniprotService() {
+            @Override
+            public Collection<UniprotProtein> retrieve( String ac ) {
+                if ( ac.startsWith( "X" ) ) {
+                    addError( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                    return new ArrayList<UniprotProtein>();
+                }
+                return super.retrieve( ac );
+            }
+        };
+        ConcurrentUniprotService service = new ConcurrentUniprotService( dummy, 2 );
+        service.setChunkSize( 1 );
+
+        List<String> acs = buildAcs( 10 );
+        acs.add( "XXXXXX" );
+
+        UniprotServiceResult result = service.retrieveWithReport( acs, true );
+
+        assertEquals( 11, result.getProteins().size() );
+        assertTrue( result.getProteins().get( "XXXXXX" ).isEmpty() );
+        assertEquals( 1, result.getErrors().size() );
+        assertTrue( result.getErrors().containsKey( "XXXXXX" ) );
+
+        // the report went to the result of the call, not to the errors of the services
+        assertTrue( dummy.getErrors().isEmpty() );
+        assertTrue( service.getErrors().isEmpty() );
+
+        service.close();
+    }
+
+    @Test
+    public void retrieve_boundedInFlight() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        DummyUniprotService dummy = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+                int current = running.incrementAndGet();
+                maxRunning.accumulateAndGet( current, Math::max );
+                try {
+                    Thread.sleep( 20 );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return super.retrieve( acs );
+            }
+        };
+
+        ConcurrentUniprotService service = new ConcurrentUniprotService( dummy, 3 );
+        service.setChunkSize( 2 );
+
+        assertEquals( 40, service.retrieve( buildAcs( 40 ) ).size() );
+        assertTrue( maxRunning.get() <= 3 );
+
+        service.close();
+    }
+
+    @Test( timeout = 10000 )
+    public void retrieve_interruptedCallReleasesPermits() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        DummyUniprotService dummy = new DummyUniprotService() {
+            @Override
+            public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+                if ( acs.contains( "P10000" ) ) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.retrieve( acs );
+            }
+        };
+
+        final ConcurrentUniprotService service = new ConcurrentUniprotService( dummy, 2 );
+        service.setChunkSize( 1 );
+
+        final AtomicInteger failed = new AtomicInteger();
+        Thread caller = new Thread( new Runnable() {
+            public void run() {
+                try {
+                    service.retrieve( buildAcs( 10 ) );
+                } catch ( RuntimeUniprotServiceException e ) {
+                    failed.incrementAndGet();
+                }
+            }
+        } );
+        caller.start();
+        blocked.await();
+        caller.interrupt();
+        caller.join();
+        release.countDown();
+        assertEquals( 1, failed.get() );
+
+        // every permit of the interrupted call is back, whether its chunk had started or not
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals( 20, service.retrieve( buildAcs( 20 ) ).size() );
+        }
+
+        service.close();
+    }
+}
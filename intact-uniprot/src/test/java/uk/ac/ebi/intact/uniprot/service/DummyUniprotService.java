@@ -40,6 +40,34 @@ public class DummyUniprotService extends UniprotRemoteService {
         return proteins;
     }
 
+    public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+        return retrieve( ac );
+    }
+
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+        return retrieve( acs );
+    }
+
+    @Override
+    public Collection<UniprotProtein> retrieve( String ac, RetrievalOptions options ) {
+        Collection<UniprotProtein> proteins = retrieve( ac, options.isProcessSpliceVariants() );
+        for ( UniprotProtein protein : proteins ) {
+            project( protein, options );
+        }
+        return proteins;
+    }
+
+    @Override
+    public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, RetrievalOptions options ) {
+        Map<String, Collection<UniprotProtein>> map = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
+
+        for ( String ac : acs ) {
+            map.put( ac, retrieve( ac, options ) );
+        }
+
+        return map;
+    }
+
     public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
         Map<String, Collection<UniprotProtein>> map = new HashMap<String, Collection<UniprotProtein>>( acs.size() );
 
@@ -83,4 +83,63 @@ public class IdentifierCheckerTest {
             // ok
         }
     }
+
+    @Test
+    public void classify() {
+        assertEquals( IdentifierChecker.IdentifierType.PROTEIN, IdentifierChecker.classify( "P12345" ) );
+        assertEquals( IdentifierChecker.IdentifierType.PROTEIN, IdentifierChecker.classify( "q9vgx3" ) );
+        assertEquals( IdentifierChecker.IdentifierType.SPLICE_VARIANT, IdentifierChecker.classify( "P12345-12" ) );
+        assertEquals( IdentifierChecker.IdentifierType.FEATURE_CHAIN, IdentifierChecker.classify( "P12345-PRO_1234567890" ) );
+        assertEquals( IdentifierChecker.IdentifierType.FEATURE_CHAIN, IdentifierChecker.classify( "p12345-pro_1234567890" ) );
+        assertEquals( IdentifierChecker.IdentifierType.BARE_PRO, IdentifierChecker.classify( "PRO_1234567890" ) );
+
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "CDC42_HUMAN" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "P12345-" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "P12345_1" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "P12345-PRO_12345678900" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "PRO_123" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( " P12345" ) );
+        assertEquals( IdentifierChecker.IdentifierType.UNKNOWN, IdentifierChecker.classify( "" ) );
+
+        try {
+            IdentifierChecker.classify( null );
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // ok
+        }
+    }
+
+    @Test
+    public void classify_sameAsPatterns() {
+        String[] ids = { "P12345", "Q98765", "Z12345", "111111", "AAAAAA", "P1234", "P123456", "P12345-1", "P12345-123",
+                         "P12345-1 ", " P12345-1", "P12345-PRO_1234567890", "PRO_1234567890", "PRO_12345678900",
+                         "P123456-PRO_1234567890", "P12345-XXX_1234567890", "P12345-PRO_123456789A", "A0A024R161",
+                         "CDC42_HUMAN", "EBI-1234", "" };
+
+        for ( String id : ids ) {
+            IdentifierChecker.IdentifierType type = IdentifierChecker.classify( id );
+            assertEquals( id, IdentifierChecker.isProteinId( id ), type == IdentifierChecker.IdentifierType.PROTEIN );
+            assertEquals( id, IdentifierChecker.isSpliceVariantId( id ),
+                          type == IdentifierChecker.IdentifierType.SPLICE_VARIANT );
+            assertEquals( id, IdentifierChecker.isFeatureChainId( id ), type.isFeatureChain() );
+        }
+    }
+
+    @Test
+    public void parsedParts() {
+        assertEquals( 12, IdentifierChecker.getIsoformNumber( "P12345-12" ) );
+        assertEquals( -1, IdentifierChecker.getIsoformNumber( "P12345" ) );
+        assertEquals( -1, IdentifierChecker.getIsoformNumber( "P12345-99999999999" ) );
+
+        assertEquals( 30424, IdentifierChecker.getFeatureChainNumber( "P60953-PRO_0000030424" ) );
+        assertEquals( 30424, IdentifierChecker.getFeatureChainNumber( "PRO_0000030424" ) );
+        assertEquals( -1, IdentifierChecker.getFeatureChainNumber( "P60953-2" ) );
+
+        String chain = "P60953-PRO_0000030424";
+        IdentifierChecker.IdentifierType type = IdentifierChecker.classify( chain );
+        assertEquals( "P60953", chain.substring( 0, type.getProteinAcEnd() ) );
+        assertEquals( "PRO_0000030424", chain.substring( type.getFeatureChainIdStart() ) );
+        assertEquals( -1, IdentifierChecker.IdentifierType.BARE_PRO.getProteinAcEnd() );
+        assertEquals( 0, IdentifierChecker.IdentifierType.BARE_PRO.getFeatureChainIdStart() );
+    }
 }
@@ -0,0 +1,76 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * IsoformResolutionCache Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class IsoformResolutionCacheTest {
+
+    @Test
+    public void requestParent() {
+        IsoformResolutionCache cache = new IsoformResolutionCache();
+        cache.requestParent( "p12345" );
+        cache.requestParent( "P12345" );
+        cache.requestParent( "Q67890" );
+
+        assertEquals( Arrays.asList( "P12345", "Q67890" ), cache.getPendingParents() );
+        assertNull( cache.getParent( "P12345" ) );
+
+        cache.putParent( "P12345", new ArrayList<UniProtEntry>() );
+        assertEquals( Arrays.asList( "Q67890" ), cache.getPendingParents() );
+
+        // a parent already resolved is not requested again
+        cache.requestParent( "P12345" );
+        assertEquals( Arrays.asList( "Q67890" ), cache.getPendingParents() );
+    }
+
+    @Test
+    public void getParent() {
+        IsoformResolutionCache cache = new IsoformResolutionCache();
+        List<UniProtEntry> entries = new ArrayList<UniProtEntry>();
+        cache.putParent( "P12345", entries );
+
+        assertSame( entries, cache.getParent( "p12345" ) );
+        assertSame( entries, cache.getParent( "P12345" ) );
+        assertEquals( 2, cache.getParentHitCount() );
+        assertEquals( 1, cache.getParentFetchCount() );
+    }
+
+    @Test
+    public void resolvedSequence() {
+        IsoformResolutionCache cache = new IsoformResolutionCache();
+        assertNull( cache.getResolvedSequence( "P12345-2" ) );
+
+        cache.putResolvedSequence( "P12345-2", "" );
+        assertNull( cache.getResolvedSequence( "P12345-2" ) );
+
+        cache.putResolvedSequence( "P12345-2", "MQTIKCVVVGDG" );
+        assertEquals( "MQTIKCVVVGDG", cache.getResolvedSequence( "P12345-2" ) );
+        assertEquals( 1, cache.getSequenceHitCount() );
+    }
+
+    @Test
+    public void knownSequence() {
+        Map<String, String> sequences = new HashMap<String, String>();
+        sequences.put( "P12345-2", "MQTIKCVVVGDG" );
+        IsoformResolutionCache cache = new IsoformResolutionCache( sequences );
+
+        assertTrue( cache.isKnownSequence( "P12345-2" ) );
+        assertEquals( "MQTIKCVVVGDG", cache.getKnownSequence( "P12345-2" ) );
+        assertFalse( cache.isKnownSequence( "P12345-3" ) );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void create_nullSequences() {
+        new IsoformResolutionCache( null );
+    }
+}
@@ -0,0 +1,76 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import static org.junit.Assert.*;
+
+/**
+ * LazyCrossReferences Tester, along with the parts of the entries left out by RetrievalOptions.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class LazyCrossReferencesTest {
+
+    private ProteinCodec codec = new ProteinCodec();
+
+    private UniprotProtein build( UniProtEntry entry, RetrievalOptions options ) {
+        UniprotRemoteService service = new UniprotRemoteService();
+        service.setRetrievalOptions( options );
+        return service.buildUniprotProtein( entry, true );
+    }
+
+    private void assertSameAsEager( UniProtEntry entry ) throws Exception {
+        UniprotProtein eager = build( entry, RetrievalOptions.FULL );
+        UniprotProtein lazy = build( entry, RetrievalOptions.FULL.withLazyCrossReferences( true ) );
+
+        assertTrue( lazy.hasUnresolvedCrossReferences() );
+        assertArrayEquals( codec.serialize( eager ), codec.serialize( lazy ) );
+        assertFalse( lazy.hasUnresolvedCrossReferences() );
+    }
+
+    @Test
+    public void lazy_P60952() throws Exception {
+        assertSameAsEager( MockUniProtEntries.build_P60952() );
+    }
+
+    @Test
+    public void lazy_Q9VGX3() throws Exception {
+        assertSameAsEager( MockUniProtEntries.build_Q9VGX3() );
+    }
+
+    @Test
+    public void lazy_resolvedFromSpliceVariant() {
+        UniprotProtein eager = build( MockUniProtEntries.build_P60952(), RetrievalOptions.FULL );
+        UniprotProtein lazy = build( MockUniProtEntries.build_P60952(), RetrievalOptions.FULL.withLazyCrossReferences( true ) );
+
+        UniprotSpliceVariant variant = lazy.getSpliceVariants().iterator().next();
+        assertEquals( eager.getSpliceVariants().iterator().next().getCrossReferences(), variant.getCrossReferences() );
+        assertFalse( lazy.hasUnresolvedCrossReferences() );
+        assertEquals( eager.getCrossReferences(), lazy.getCrossReferences() );
+    }
+
+    @Test
+    public void without() {
+        UniprotProtein full = build( MockUniProtEntries.build_P60952(), RetrievalOptions.FULL );
+        assertFalse( full.getCrossReferences().isEmpty() );
+        assertFalse( full.getSpliceVariants().isEmpty() );
+
+        UniprotProtein light = build( MockUniProtEntries.build_P60952(),
+                                      RetrievalOptions.FULL.without( UniprotField.XREFS, UniprotField.COMMENTS,
+                                                                     UniprotField.SPLICE_VARIANTS,
+                                                                     UniprotField.FEATURE_CHAINS ) );
+        assertTrue( light.getCrossReferences().isEmpty() );
+        assertTrue( light.getFunctions().isEmpty() );
+        assertTrue( light.getSpliceVariants().isEmpty() );
+        assertTrue( light.getFeatureChains().isEmpty() );
+        assertEquals( full.getSequence(), light.getSequence() );
+        assertEquals( full.getOrganism(), light.getOrganism() );
+        assertEquals( full.getKeywords(), light.getKeywords() );
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * LocalUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class LocalUniprotServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private LocalUniprotService service;
+
+    @Before
+    public void setUp() throws Exception {
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        UniprotProtein protein = new UniprotProtein( "CDC42_HUMAN", "P60953", human, "Cell division control protein 42 homolog" );
+        protein.getSecondaryAcs().add( "P21181" );
+        protein.setSequence( "MQTIKCVVVGDGAVGKTCLL" );
+
+        UniprotSpliceVariant variant = new UniprotSpliceVariant( "P60953-1", human, "MQTIK" );
+        variant.getSecondaryAcs().add( "P21181-1" );
+        variant.getCrossReferences().add( new UniprotXref( "ENST00000344548", "Ensembl", null, null, "P60953-1" ) );
+        protein.getSpliceVariants().add( variant );
+
+        // an EXTERNAL isoform, with the cross references of its parent entry
+        UniprotSpliceVariant external = new UniprotSpliceVariant( "Q99999-3", human, "MQTIKCV" );
+        external.getCrossReferences().add( new UniprotXref( "ENST00000315554", "Ensembl", null, null, "Q99999-3" ) );
+        protein.getSpliceVariants().add( external );
+        protein.getFeatureChains().add( new UniprotFeatureChain( "P60953-PRO_0000030424", human, "MQTIKCVVVG" ) );
+
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+        store.put( protein, true, null );
+        store.put( new UniprotProtein( "FAU_DROME", "Q9VGX3", new Organism( 7227 ), "Protein FAU" ), false, null );
+        service = new LocalUniprotService( store );
+    }
+
+    @After
+    public void tearDown() {
+        service.close();
+    }
+
+    @Test
+    public void retrieve_byAnyIdentifier() {
+        for ( String identifier : Arrays.asList( "P60953", "p60953", "P21181", "CDC42_HUMAN", "P60953-1", "P21181-1",
+                                                 "P60953-PRO_0000030424", "PRO_0000030424" ) ) {
+            Collection<UniprotProtein> proteins = service.retrieve( identifier );
+            assertEquals( identifier, 1, proteins.size() );
+            assertEquals( identifier, "P60953", proteins.iterator().next().getPrimaryAc() );
+        }
+        assertTrue( service.getErrors().isEmpty() );
+    }
+
+    @Test
+    public void retrieve_notFound() {
+        assertTrue( service.retrieve( "P12345" ).isEmpty() );
+        assertTrue( service.getErrors().containsKey( "P12345" ) );
+
+        Map<String, Collection<UniprotProtein>> results = service.retrieve( Arrays.asList( "P60953", "Q99999" ) );
+        assertEquals( 1, results.get( "P60953" ).size() );
+        assertTrue( results.get( "Q99999" ).isEmpty() );
+    }
+
+    @Test
+    public void retrieve_withoutSpliceVariants() {
+        UniprotProtein protein = service.retrieve( "P60953", false ).iterator().next();
+        assertTrue( protein.getSpliceVariants().isEmpty() );
+        assertTrue( protein.getFeatureChains().isEmpty() );
+        // only the cross reference of the entry goes back to the protein, not the one of the other entry
+        assertEquals( 1, protein.getCrossReferences().size() );
+        assertEquals( "ENST00000344548", protein.getCrossReferences().iterator().next().getAccession() );
+
+        // every call gets its own copy
+        assertEquals( 2, service.retrieve( "P60953" ).iterator().next().getSpliceVariants().size() );
+    }
+
+    @Test
+    public void retrieveSpliceVariant() {
+        Collection<UniprotSpliceVariant> variants = service.retrieveSpliceVariant( "P60953-1" );
+        assertEquals( 1, variants.size() );
+        assertEquals( "P60953", variants.iterator().next().getMasterProtein().getPrimaryAc() );
+
+        assertEquals( 1, service.retrieveSpliceVariant( "P21181-1" ).size() );
+        assertTrue( service.retrieveSpliceVariant( "P99999-1" ).isEmpty() );
+        assertTrue( service.getErrors().containsKey( "P99999-1" ) );
+    }
+
+    @Test
+    public void retrieveFeatureChain() {
+        Collection<UniprotFeatureChain> chains = service.retrieveFeatureChain( "PRO_0000030424" );
+        assertEquals( 1, chains.size() );
+        assertEquals( "P60953-PRO_0000030424", chains.iterator().next().getPrimaryAc() );
+
+        assertEquals( 1, service.retrieveProteinTranscripts( "P60953-PRO_0000030424" ).size() );
+    }
+
+    @Test
+    public void retrieve_storedWithoutSpliceVariants() {
+        assertEquals( 1, service.retrieve( "Q9VGX3", false ).size() );
+        assertTrue( service.getErrors().isEmpty() );
+
+        // the snapshot cannot give what was left out when it was filled
+        assertTrue( service.retrieve( "Q9VGX3", true ).isEmpty() );
+        assertEquals( UniprotReportType.RETRIEVAL_FAILED, service.getErrors().get( "Q9VGX3" ).getType() );
+
+        assertTrue( service.retrieveSpliceVariant( "Q9VGX3-2" ).isEmpty() );
+        assertEquals( UniprotReportType.NOT_FOUND, service.getErrors().get( "Q9VGX3-2" ).getType() );
+        assertTrue( service.retrieveFeatureChain( "Q9VGX3" ).isEmpty() );
+        assertEquals( UniprotReportType.RETRIEVAL_FAILED, service.getErrors().get( "Q9VGX3" ).getType() );
+        assertTrue( service.retrieve( "Q9VGX3", RetrievalOptions.FULL.without( UniprotField.XREFS ) ).isEmpty() );
+    }
+
+    @Test
+    public void retrieve_compactedSinceLookup() throws Exception {
+        // the store is compacted right after the first lookup, replacing every record it found
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() ) {
+            private boolean compacted;
+
+            @Override
+            public Collection<StoredProtein> lookup( String identifier ) {
+                Collection<StoredProtein> stored = super.lookup( identifier );
+                if ( !compacted ) {
+                    compacted = true;
+                    compact();
+                }
+                return stored;
+            }
+        };
+        store.put( new UniprotProtein( "FAU_DROME", "Q9VGX3", new Organism( 7227 ), "Protein FAU" ), true, null );
+        LocalUniprotService local = new LocalUniprotService( store );
+
+        Collection<UniprotProtein> proteins = local.retrieve( "Q9VGX3" );
+        assertEquals( 1, proteins.size() );
+        assertEquals( "Q9VGX3", proteins.iterator().next().getPrimaryAc() );
+        local.close();
+    }
+}
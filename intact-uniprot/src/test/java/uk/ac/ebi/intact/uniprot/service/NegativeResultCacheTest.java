@@ -0,0 +1,109 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static uk.ac.ebi.intact.uniprot.service.NegativeResultCache.LookupType.*;
+
+/**
+ * NegativeResultCache Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class NegativeResultCacheTest {
+
+    /**
+     * Cache whose time only moves when told to.
+     */
+    private static class ManualClockCache extends NegativeResultCache {
+
+        private long now = 1000;
+
+        private ManualClockCache( long timeToLiveMillis ) {
+            super( timeToLiveMillis );
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    public void lookupType() {
+        assertEquals( PROTEIN, NegativeResultCache.LookupType.of( "P12345" ) );
+        assertEquals( SPLICE_VARIANT, NegativeResultCache.LookupType.of( "P12345-2" ) );
+        assertEquals( FEATURE_CHAIN, NegativeResultCache.LookupType.of( "P12345-PRO_0000021413" ) );
+    }
+
+    @Test
+    public void isNotFound() {
+        NegativeResultCache cache = new ManualClockCache( 100 );
+        assertFalse( cache.isNotFound( PROTEIN, "P12345" ) );
+
+        cache.putNotFound( PROTEIN, "p12345" );
+        assertTrue( cache.isNotFound( PROTEIN, "P12345" ) );
+        assertTrue( cache.isNotFound( PROTEIN, "p12345" ) );
+        assertFalse( cache.isNotFound( SPLICE_VARIANT, "P12345" ) );
+
+        assertEquals( 2, cache.getSavedCalls( PROTEIN ) );
+        assertEquals( 0, cache.getSavedCalls( SPLICE_VARIANT ) );
+        assertEquals( 2, cache.getSavedCalls() );
+        assertEquals( 2, cache.getMissCount() );
+    }
+
+    @Test
+    public void timeToLive() {
+        ManualClockCache cache = new ManualClockCache( 100 );
+        cache.setTimeToLiveMillis( SPLICE_VARIANT, 500 );
+
+        cache.putNotFound( PROTEIN, "P12345" );
+        cache.putNotFound( SPLICE_VARIANT, "P12345-2" );
+
+        cache.now += 100;
+        assertFalse( cache.isNotFound( PROTEIN, "P12345" ) );
+        assertTrue( cache.isNotFound( SPLICE_VARIANT, "P12345-2" ) );
+        assertEquals( 1, cache.getExpiredCount() );
+        assertEquals( 1, cache.size() );
+
+        cache.now += 400;
+        assertEquals( 1, cache.evictExpired() );
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test
+    public void putNotFound_evictsExpired() {
+        ManualClockCache cache = new ManualClockCache( 100 );
+        for ( int i = 0; i < NegativeResultCache.EVICTION_INTERVAL / 2; i++ ) {
+            cache.putNotFound( PROTEIN, "OBSOLETE" + i );
+        }
+
+        // the identifiers recorded first are never looked up again
+        cache.now += 100;
+        for ( int i = 0; i < NegativeResultCache.EVICTION_INTERVAL / 2; i++ ) {
+            cache.putNotFound( PROTEIN, "DELETED" + i );
+        }
+        assertEquals( NegativeResultCache.EVICTION_INTERVAL / 2, cache.size() );
+        assertEquals( NegativeResultCache.EVICTION_INTERVAL / 2, cache.getExpiredCount() );
+    }
+
+    @Test
+    public void remove() {
+        NegativeResultCache cache = new NegativeResultCache();
+        cache.putNotFound( FEATURE_CHAIN, "PRO_0000021413" );
+        assertEquals( 1, cache.size( FEATURE_CHAIN ) );
+
+        cache.remove( FEATURE_CHAIN, "pro_0000021413" );
+        assertFalse( cache.isNotFound( FEATURE_CHAIN, "PRO_0000021413" ) );
+
+        cache.putNotFound( PROTEIN, "P12345" );
+        cache.clear();
+        assertEquals( 0, cache.size() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void setTimeToLive_notPositive() {
+        new NegativeResultCache().setTimeToLiveMillis( PROTEIN, 0 );
+    }
+}
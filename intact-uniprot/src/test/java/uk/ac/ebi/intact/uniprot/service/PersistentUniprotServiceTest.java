@@ -0,0 +1,144 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * PersistentUniprotService Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class PersistentUniprotServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Counts the ACs it is asked for and stamps proteins with a release, a secondary AC and a splice variant.
+     */
+    private static class CountingUniprotService extends DummyUniprotService {
+
+        private int fetched;
+        private String release = "56";
+
+        @Override
+        public Collection<UniprotProtein> retrieve( String ac ) {
+            fetched++;
+            Collection<UniprotProtein> proteins = super.retrieve( ac );
+            for ( UniprotProtein protein : proteins ) {
+                protein.setReleaseVersion( release );
+                protein.getSecondaryAcs().add( "Q" + ac.substring( 1 ) );
+                protein.getSpliceVariants().add( new UniprotSpliceVariant( ac + "-2", new Organism( 9606 ), "MAAA" ) );
+            }
+            return proteins;
+        }
+    }
+
+    @Test
+    public void retrieve_survivesRestart() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, directory );
+        assertEquals( 1, service.retrieve( "P12345" ).size() );
+        assertEquals( 1, service.retrieve( "P12345" ).size() );
+        assertEquals( 1, remote.fetched );
+        service.close();
+
+        remote = new CountingUniprotService();
+        service = new PersistentUniprotService( remote, directory );
+        Collection<UniprotProtein> proteins = service.retrieve( "P12345" );
+        assertEquals( 1, proteins.size() );
+        assertEquals( "P12345", proteins.iterator().next().getPrimaryAc() );
+        assertEquals( 0, remote.fetched );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_newRelease() throws Exception {
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, temporaryFolder.newFolder() );
+        service.setCurrentRelease( "56" );
+
+        service.retrieve( "P12345" );
+        service.retrieve( "P12345" );
+        assertEquals( 1, remote.fetched );
+
+        remote.release = "57";
+        service.setCurrentRelease( "57" );
+        assertEquals( "57", service.retrieve( "P12345" ).iterator().next().getReleaseVersion() );
+        service.retrieve( "P12345" );
+        assertEquals( 2, remote.fetched );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_spliceVariantsRequired() throws Exception {
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, temporaryFolder.newFolder() );
+
+        service.retrieve( "P12345", false );
+        service.retrieve( "P12345", false );
+        assertEquals( 1, remote.fetched );
+
+        service.retrieve( "P12345", true );
+        service.retrieve( "P12345", false );
+        assertEquals( 2, remote.fetched );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_spliceVariantsDropped() throws Exception {
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, temporaryFolder.newFolder() );
+
+        assertEquals( 1, service.retrieve( "P12345", true ).iterator().next().getSpliceVariants().size() );
+        assertTrue( service.retrieve( "P12345", false ).iterator().next().getSpliceVariants().isEmpty() );
+        assertTrue( service.retrieve( Arrays.asList( "P12345" ), false ).get( "P12345" ).iterator().next()
+                           .getSpliceVariants().isEmpty() );
+        assertEquals( 1, service.retrieve( "P12345", true ).iterator().next().getSpliceVariants().size() );
+        assertEquals( 1, remote.fetched );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_secondaryAcRetrievedAgain() throws Exception {
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, temporaryFolder.newFolder() );
+
+        service.retrieve( "P12345" );
+        assertEquals( 1, remote.fetched );
+
+        // the stored protein may not be the only one having Q12345 as secondary AC
+        service.retrieve( "Q12345" );
+        assertEquals( 2, remote.fetched );
+
+        service.retrieve( "Q12345" );
+        assertEquals( 2, remote.fetched );
+        service.close();
+    }
+
+    @Test
+    public void retrieve_collection() throws Exception {
+        CountingUniprotService remote = new CountingUniprotService();
+        PersistentUniprotService service = new PersistentUniprotService( remote, temporaryFolder.newFolder() );
+
+        service.retrieve( "P12345" );
+        Map<String, Collection<UniprotProtein>> results = service.retrieve( Arrays.asList( "P12345", "P67890" ) );
+        assertEquals( 2, results.size() );
+        assertEquals( 2, remote.fetched );
+        service.close();
+    }
+}
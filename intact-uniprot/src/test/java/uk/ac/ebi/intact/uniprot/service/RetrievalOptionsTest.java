@@ -0,0 +1,129 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
+import uk.ac.ebi.uniprot.dataservice.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * RetrievalOptions Tester, along with the projection of the proteins already built.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class RetrievalOptionsTest {
+
+    private ProteinCodec codec = new ProteinCodec();
+
+    @Test
+    public void of_featureChainsGiveSequence() {
+        RetrievalOptions options = RetrievalOptions.of( EnumSet.of( UniprotField.FEATURE_CHAINS ) );
+
+        assertTrue( options.includes( UniprotField.SEQUENCE ) );
+        assertTrue( options.isProcessSpliceVariants() );
+        assertTrue( RetrievalOptions.FULL.without( UniprotField.SEQUENCE ).includes( UniprotField.SEQUENCE ) );
+        assertFalse( RetrievalOptions.of( EnumSet.of( UniprotField.XREFS ) ).isProcessSpliceVariants() );
+    }
+
+    @Test
+    public void forSpliceVariants() {
+        assertSame( RetrievalOptions.FULL, RetrievalOptions.forSpliceVariants( true ) );
+        assertEquals( RetrievalOptions.FULL.without( UniprotField.SPLICE_VARIANTS, UniprotField.FEATURE_CHAINS ),
+                      RetrievalOptions.forSpliceVariants( false ) );
+    }
+
+    @Test
+    public void covers() {
+        RetrievalOptions sequenceOnly = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) );
+
+        assertTrue( RetrievalOptions.FULL.covers( sequenceOnly ) );
+        assertTrue( RetrievalOptions.NO_SPLICE_VARIANTS.covers( sequenceOnly ) );
+        assertFalse( sequenceOnly.covers( RetrievalOptions.NO_SPLICE_VARIANTS ) );
+        assertFalse( RetrievalOptions.NO_SPLICE_VARIANTS.covers( RetrievalOptions.FULL ) );
+    }
+
+    @Test
+    public void getProjectionKey() {
+        assertEquals( "SV", RetrievalOptions.FULL.getProjectionKey() );
+        assertEquals( "SV", RetrievalOptions.FULL.withLazyCrossReferences( true ).getProjectionKey() );
+        assertEquals( "NOSV", RetrievalOptions.NO_SPLICE_VARIANTS.getProjectionKey() );
+
+        String sequenceOnly = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) ).getProjectionKey();
+        String sequenceAndXrefs = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE, UniprotField.XREFS ) ).getProjectionKey();
+        assertFalse( sequenceOnly.equals( sequenceAndXrefs ) );
+        assertFalse( sequenceOnly.equals( "SV" ) || sequenceOnly.equals( "NOSV" ) );
+    }
+
+    private UniprotProtein build( UniProtEntry entry, RetrievalOptions options ) {
+        UniprotRemoteService service = new UniprotRemoteService();
+        return service.buildUniprotProtein( entry, true, new IsoformResolutionCache(), options );
+    }
+
+    private void assertProjectedAsBuilt( UniProtEntry entry, RetrievalOptions options ) throws Exception {
+        UniprotProtein projected = build( entry, RetrievalOptions.FULL );
+        AbstractUniprotService.project( projected, options );
+
+        assertArrayEquals( codec.serialize( build( entry, options ) ), codec.serialize( projected ) );
+    }
+
+    @Test
+    public void project_sameAsBuilt() throws Exception {
+        for ( UniProtEntry entry : new UniProtEntry[]{ MockUniProtEntries.build_P60952(), MockUniProtEntries.build_Q9VGX3() } ) {
+            assertProjectedAsBuilt( entry, RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) ) );
+            assertProjectedAsBuilt( entry, RetrievalOptions.of( EnumSet.of( UniprotField.ORGANISM, UniprotField.KEYWORDS ) ) );
+            assertProjectedAsBuilt( entry, RetrievalOptions.FULL.without( UniprotField.NAMES, UniprotField.ORGANISM ) );
+            assertProjectedAsBuilt( entry, RetrievalOptions.FULL.without( UniprotField.FEATURE_CHAINS, UniprotField.SEQUENCE ) );
+        }
+    }
+
+    @Test
+    public void build_sequenceOnly() {
+        UniprotProtein full = build( MockUniProtEntries.build_P60952(), RetrievalOptions.FULL );
+        UniprotProtein light = build( MockUniProtEntries.build_P60952(),
+                                      RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) ) );
+
+        assertEquals( full.getPrimaryAc(), light.getPrimaryAc() );
+        assertEquals( full.getSequence(), light.getSequence() );
+        assertEquals( full.getCrc64(), light.getCrc64() );
+        assertEquals( full.getOrganism().getTaxid(), light.getOrganism().getTaxid() );
+        assertNull( light.getOrganism().getName() );
+        assertTrue( light.getGenes().isEmpty() );
+        assertTrue( light.getSynomyms().isEmpty() );
+        assertTrue( light.getKeywords().isEmpty() );
+        assertTrue( light.getCrossReferences().isEmpty() );
+        assertTrue( light.getSpliceVariants().isEmpty() );
+    }
+
+    @Test
+    public void retrieve_cachedUnderOptionsUsed() {
+        final List<Query> queries = new ArrayList<Query>();
+        UniprotRemoteService service = new UniprotRemoteService() {
+            @Override
+            protected List<UniProtEntry> executeQuery( Query query ) throws ServiceException {
+                queries.add( query );
+                return Arrays.asList( MockUniProtEntries.build_P60952() );
+            }
+        };
+
+        service.setRetrievalOptions( RetrievalOptions.FULL.without( UniprotField.XREFS ) );
+        assertEquals( RetrievalOptions.NO_SPLICE_VARIANTS.without( UniprotField.XREFS ), service.getRetrievalOptions( false ) );
+        assertTrue( service.retrieve( "P60952", true ).iterator().next().getCrossReferences().isEmpty() );
+        assertTrue( service.retrieve( "P60952", true ).iterator().next().getCrossReferences().isEmpty() );
+        assertEquals( 1, queries.size() );
+
+        // the proteins cached without cross references do not answer the requests needing them
+        service.setRetrievalOptions( RetrievalOptions.FULL );
+        assertFalse( service.retrieve( "P60952", true ).iterator().next().getCrossReferences().isEmpty() );
+        assertEquals( 2, queries.size() );
+    }
+}
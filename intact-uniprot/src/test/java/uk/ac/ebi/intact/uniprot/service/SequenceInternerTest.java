@@ -0,0 +1,136 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * SequenceInterner Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class SequenceInternerTest {
+
+    public static final Log log = LogFactory.getLog( SequenceInternerTest.class );
+
+    @Test
+    public void intern() {
+        SequenceInterner interner = new SequenceInterner();
+
+        String sequence = "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEY";
+        assertSame( sequence, interner.intern( sequence ) );
+        assertSame( sequence, interner.intern( new String( sequence ) ) );
+        assertSame( sequence, interner.intern( sequence ) );
+
+        String other = "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEV";
+        assertSame( other, interner.intern( other ) );
+
+        assertNull( interner.intern( null ) );
+        assertEquals( 2, interner.size() );
+        assertEquals( 1, interner.getHitCount() );
+        assertEquals( sequence.length(), interner.getSavedResidues() );
+    }
+
+    @Test
+    public void intern_collectedSequence() throws Exception {
+        SequenceInterner interner = new SequenceInterner();
+        interner.intern( new String( "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEY" ) );
+
+        for ( int i = 0; i < 10 && interner.size() > 0; i++ ) {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        assertEquals( 0, interner.size() );
+
+        String sequence = new String( "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEY" );
+        assertSame( sequence, interner.intern( sequence ) );
+    }
+
+    @Test
+    public void crc64() {
+        assertEquals( 0, SequenceInterner.crc64( "" ) );
+        assertEquals( SequenceInterner.crc64( "MQTIKCVVVGDG" ), SequenceInterner.crc64( new String( "MQTIKCVVVGDG" ) ) );
+        assertFalse( SequenceInterner.crc64( "MQTIKCVVVGDG" ) == SequenceInterner.crc64( "MQTIKCVVVGDA" ) );
+    }
+
+    @Test
+    public void buildUniprotProtein_sharesSequences() {
+        UniprotRemoteService service = new UniprotRemoteService();
+        UniprotProtein protein = service.buildUniprotProtein( MockUniProtEntries.build_P60952(), true );
+
+        UniprotSpliceVariant canonical = null;
+        for ( UniprotSpliceVariant variant : protein.getSpliceVariants() ) {
+            if ( variant.isCanonical() ) {
+                canonical = variant;
+            }
+        }
+        assertNotNull( canonical );
+        assertSame( protein.getSequence(), canonical.getSequence() );
+    }
+
+    /**
+     * Compares the heap used by proteins built from the mock entries with the heap used by the same proteins when
+     * every isoform and chain holds its own copy of its sequence, as they used to.
+     */
+    @Test
+    public void memory_mockEntries() {
+        UniprotRemoteService service = new UniprotRemoteService();
+        int copies = 500;
+
+        long before = usedMemory();
+        List<UniprotProtein> shared = new ArrayList<UniprotProtein>( copies * 2 );
+        for ( int i = 0; i < copies; i++ ) {
+            shared.add( service.buildUniprotProtein( MockUniProtEntries.build_P60952(), true ) );
+            shared.add( service.buildUniprotProtein( MockUniProtEntries.build_Q9VGX3(), true ) );
+        }
+        long sharedMemory = usedMemory() - before;
+
+        before = usedMemory();
+        List<UniprotProtein> copied = new ArrayList<UniprotProtein>( copies * 2 );
+        for ( int i = 0; i < copies; i++ ) {
+            copied.add( copySequences( service.buildUniprotProtein( MockUniProtEntries.build_P60952(), true ) ) );
+            copied.add( copySequences( service.buildUniprotProtein( MockUniProtEntries.build_Q9VGX3(), true ) ) );
+        }
+        long copiedMemory = usedMemory() - before;
+
+        log.info( copies * 2 + " proteins: " + ( sharedMemory / 1024 ) + " KB with shared sequences, "
+                  + ( copiedMemory / 1024 ) + " KB with copied sequences, "
+                  + service.getSequenceInterner().getSavedResidues() + " residues saved by interning" );
+
+        assertEquals( shared.size(), copied.size() );
+        assertTrue( service.getSequenceInterner().getSavedResidues() > 0 );
+    }
+
+    private UniprotProtein copySequences( UniprotProtein protein ) {
+        if ( protein.getSequence() != null ) {
+            protein.setSequence( new String( protein.getSequence() ) );
+        }
+        for ( UniprotSpliceVariant variant : protein.getSpliceVariants() ) {
+            variant.setSequence( new String( variant.getSequence() ) );
+        }
+        for ( UniprotFeatureChain chain : protein.getFeatureChains() ) {
+            if ( chain.getSequence() != null ) {
+                chain.setSequence( new String( chain.getSequence() ) );
+            }
+        }
+        return protein;
+    }
+
+    private long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for ( int i = 0; i < 3; i++ ) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,117 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
+import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * SimpleUniprotRemoteService Tester, against a UniProtService answering every query with the same entries.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class SimpleUniprotRemoteServiceTest {
+
+    /**
+     * Answers every query with the given entries, and fails the queries numbered in failedQueries (starting at 1).
+     */
+    private static SimpleUniprotRemoteService newService( final AtomicInteger queries, final List<Integer> failedQueries,
+                                                          final UniProtEntry... entries ) {
+        final UniProtService uniProtService = ( UniProtService ) Proxy.newProxyInstance(
+                UniProtService.class.getClassLoader(), new Class[]{UniProtService.class}, new InvocationHandler() {
+                    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+                        String name = method.getName();
+                        if ( "getEntries".equals( name ) ) {
+                            if ( failedQueries.contains( queries.incrementAndGet() ) ) {
+                                throw new ServiceException( "UniProt is not available" );
+                            }
+                            return queryResult( Arrays.asList( entries ).iterator() );
+                        }
+                        if ( "isStarted".equals( name ) ) {
+                            return true;
+                        }
+                        return null;
+                    }
+                } );
+
+        UniProtServicePool pool = new UniProtServicePool( new Supplier<UniProtService>() {
+            public UniProtService get() {
+                return uniProtService;
+            }
+        }, 1 );
+        return new SimpleUniprotRemoteService( null, pool );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static QueryResult<UniProtEntry> queryResult( final Iterator<UniProtEntry> iterator ) {
+        return ( QueryResult<UniProtEntry> ) Proxy.newProxyInstance(
+                QueryResult.class.getClassLoader(), new Class[]{QueryResult.class}, new InvocationHandler() {
+                    public Object invoke( Object proxy, Method method, Object[] args ) {
+                        if ( "hasNext".equals( method.getName() ) ) {
+                            return iterator.hasNext();
+                        }
+                        if ( "next".equals( method.getName() ) ) {
+                            return iterator.next();
+                        }
+                        throw new UnsupportedOperationException( method.getName() );
+                    }
+                } );
+    }
+
+    @Test
+    public void retrieve_batchMatchesEntries() {
+        AtomicInteger queries = new AtomicInteger();
+        SimpleUniprotRemoteService service = newService( queries, Arrays.<Integer>asList(),
+                                                         MockUniProtEntries.build_P60952(), MockUniProtEntries.build_Q9VGX3() );
+
+        Map<String, Collection<UniprotProtein>> results =
+                service.retrieve( Arrays.asList( "P60952", "p21181", "Q9VGX3", "P12345" ), false );
+
+        assertEquals( 1, queries.get() );
+        assertEquals( "P60952", results.get( "P60952" ).iterator().next().getPrimaryAc() );
+        assertSame( results.get( "P60952" ).iterator().next(), results.get( "p21181" ).iterator().next() );
+        assertEquals( "Q9VGX3", results.get( "Q9VGX3" ).iterator().next().getPrimaryAc() );
+        assertEquals( 1, results.get( "Q9VGX3" ).size() );
+
+        assertTrue( results.get( "P12345" ).isEmpty() );
+        assertEquals( UniprotReportType.NOT_FOUND, service.getErrors().get( "P12345" ).getType() );
+        assertEquals( 1, service.getErrors().size() );
+    }
+
+    @Test
+    public void retrieve_failedBatchNotReportedAsNotFound() {
+        AtomicInteger queries = new AtomicInteger();
+        SimpleUniprotRemoteService service = newService( queries, Arrays.asList( 2 ),
+                                                         MockUniProtEntries.build_P60952(), MockUniProtEntries.build_Q9VGX3() );
+        service.setBatchSize( 1 );
+
+        UniprotServiceResult result = service.retrieveWithReport( Arrays.asList( "P60952", "Q9VGX3" ), false );
+
+        assertEquals( 2, queries.get() );
+        assertTrue( result.getResult( "P60952" ).isFound() );
+        assertFalse( result.getResult( "P60952" ).hasReport() );
+
+        // the entry of Q9VGX3 answered the first query, but it was not asked for there
+        UniprotRetrievalResult failed = result.getResult( "Q9VGX3" );
+        assertFalse( failed.isFound() );
+        assertEquals( UniprotReportType.RETRIEVAL_FAILED, failed.getReport().getType() );
+        assertTrue( failed.getReport().getException() instanceof ServiceException );
+    }
+}
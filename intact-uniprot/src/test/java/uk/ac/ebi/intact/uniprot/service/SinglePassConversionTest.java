@@ -0,0 +1,177 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinType;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
+import uk.ac.ebi.intact.uniprot.service.store.ProteinCodec;
+import uk.ac.ebi.kraken.interfaces.uniprot.*;
+import uk.ac.ebi.kraken.interfaces.uniprot.comments.CommentType;
+import uk.ac.ebi.kraken.interfaces.uniprot.comments.DiseaseCommentStructured;
+import uk.ac.ebi.kraken.interfaces.uniprot.comments.FunctionComment;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.Field;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.FieldType;
+import uk.ac.ebi.kraken.interfaces.uniprot.description.Name;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the single pass conversion of UniProt entries against the multi pass conversion it replaced.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class SinglePassConversionTest {
+
+    public static final Log log = LogFactory.getLog( SinglePassConversionTest.class );
+
+    /**
+     * Converts entries the way it was done before, looking comments and features up once per type and assigning
+     * isoform cross references by scanning every splice variant.
+     */
+    private static class MultiPassConverter extends UniprotRemoteService {
+
+        private UniprotProtein build( UniProtEntry uniProtEntry ) {
+            List<NcbiTaxonomyId> taxids = uniProtEntry.getNcbiTaxonomyIds();
+
+            final uk.ac.ebi.kraken.interfaces.uniprot.Organism organism = uniProtEntry.getOrganism();
+            Organism o = new Organism( Integer.parseInt( taxids.get( 0 ).getValue() ), organism.getScientificName().getValue() );
+            o.setCommonName( organism.getCommonName().getValue() );
+            if ( organism.hasCommonName() ) {
+                o.getParents().add( organism.getCommonName().getValue() );
+            }
+            if ( organism.hasSynonym() ) {
+                o.getParents().add( organism.getSynonym().getValue() );
+            }
+
+            UniprotProtein uniprotProtein = new UniprotProtein( uniProtEntry.getUniProtId().getValue(),
+                    uniProtEntry.getPrimaryUniProtAccession().getValue(), o, readDescription( uniProtEntry ) );
+
+            for ( SecondaryUniProtAccession secondaryAc : uniProtEntry.getSecondaryUniProtAccessions() ) {
+                uniprotProtein.getSecondaryAcs().add( secondaryAc.getValue() );
+            }
+
+            uniprotProtein.setReleaseVersion( getSPTREntryReleaseVersion( uniProtEntry ) );
+            uniprotProtein.setLastAnnotationUpdate( uniProtEntry.getEntryAudit().getLastAnnotationUpdateDate() );
+            uniprotProtein.setLastSequenceUpdate( uniProtEntry.getEntryAudit().getLastSequenceUpdateDate() );
+
+            if ( UniProtEntryType.SWISSPROT.equals( uniProtEntry.getType() ) ) {
+                uniprotProtein.setSource( UniprotProteinType.SWISSPROT );
+            } else if ( UniProtEntryType.TREMBL.equals( uniProtEntry.getType() ) ) {
+                uniprotProtein.setSource( UniprotProteinType.TREMBL );
+            } else {
+                uniprotProtein.setSource( UniprotProteinType.UNKNOWN );
+            }
+
+            processGeneNames( uniProtEntry, uniprotProtein );
+
+            for ( Name name : uniProtEntry.getProteinDescription().getAlternativeNames() ) {
+                for ( Field fullField : name.getFieldsByType( FieldType.FULL ) ) {
+                    uniprotProtein.getSynomyms().add( fullField.getValue() );
+                }
+            }
+
+            List<FunctionComment> functions = uniProtEntry.getComments( CommentType.FUNCTION );
+            for ( FunctionComment function : functions ) {
+                uniprotProtein.getFunctions().add( function.getValue() );
+            }
+            List<DiseaseCommentStructured> diseases = uniProtEntry.getComments( CommentType.DISEASE );
+            for ( DiseaseCommentStructured disease : diseases ) {
+                uniprotProtein.getFunctions().add( disease.getDisease().getDescription().getValue() );
+            }
+
+            for ( Keyword keyword : uniProtEntry.getKeywords() ) {
+                uniprotProtein.getKeywords().add( keyword.getValue() );
+            }
+
+            uniprotProtein.setSequence( uniProtEntry.getSequence().getValue() );
+            uniprotProtein.setSequenceLength( uniProtEntry.getSequence().getLength() );
+            uniprotProtein.setCrc64( uniProtEntry.getSequence().getCRC64() );
+
+            processSpliceVariants( uniProtEntry, uniprotProtein );
+            processFeatureChain( uniProtEntry, uniprotProtein );
+            processFeaturePeptide( uniProtEntry, uniprotProtein );
+            processFeatureProPeptide( uniProtEntry, uniprotProtein );
+
+            Collection<UniprotXref> propagateToMasterXref = new HashSet<UniprotXref>();
+            Collection<UniprotXref> xrefs = convertCrossReferenceToUniprotXref( uniProtEntry.getDatabaseCrossReferences() );
+            for ( Iterator<UniprotXref> iterator = xrefs.iterator(); iterator.hasNext(); ) {
+                UniprotXref xref = iterator.next();
+                for ( UniprotSpliceVariant spliceVariant : uniprotProtein.getSpliceVariants() ) {
+                    if ( spliceVariant.getId().equalsIgnoreCase( xref.getIsoformId() ) ) {
+                        spliceVariant.getCrossReferences().add( xref );
+                        if ( spliceVariant.isCanonical() ) {
+                            propagateToMasterXref.add( xref );
+                        }
+                        iterator.remove();
+                    }
+                }
+            }
+            uniprotProtein.getCrossReferences().addAll( xrefs );
+            uniprotProtein.getCrossReferences().addAll( propagateToMasterXref );
+
+            return uniprotProtein;
+        }
+    }
+
+    private ProteinCodec codec = new ProteinCodec();
+
+    private void assertSameConversion( UniProtEntry entry ) throws Exception {
+        UniprotProtein expected = new MultiPassConverter().build( entry );
+        UniprotProtein actual = new UniprotRemoteService().buildUniprotProtein( entry, true );
+
+        assertFalse( actual.getSpliceVariants().isEmpty() );
+        assertArrayEquals( codec.serialize( expected ), codec.serialize( actual ) );
+    }
+
+    @Test
+    public void buildUniprotProtein_CDC42_CANFA() throws Exception {
+        assertSameConversion( MockUniProtEntries.build_P60952() );
+    }
+
+    @Test
+    public void buildUniprotProtein_Q9VGX3() throws Exception {
+        assertSameConversion( MockUniProtEntries.build_Q9VGX3() );
+    }
+
+    @Test
+    public void buildUniprotProtein_fasterThanMultiPass() throws Exception {
+        List<UniProtEntry> entries = Arrays.asList( MockUniProtEntries.build_P60952(), MockUniProtEntries.build_Q9VGX3() );
+        MultiPassConverter multiPass = new MultiPassConverter();
+        UniprotRemoteService singlePass = new UniprotRemoteService();
+        int rounds = 2000;
+
+        for ( int i = 0; i < rounds; i++ ) {
+            for ( UniProtEntry entry : entries ) {
+                multiPass.build( entry );
+                singlePass.buildUniprotProtein( entry, true );
+            }
+        }
+
+        long start = System.nanoTime();
+        for ( int i = 0; i < rounds; i++ ) {
+            for ( UniProtEntry entry : entries ) {
+                multiPass.build( entry );
+            }
+        }
+        long multiPassTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for ( int i = 0; i < rounds; i++ ) {
+            for ( UniProtEntry entry : entries ) {
+                singlePass.buildUniprotProtein( entry, true );
+            }
+        }
+        long singlePassTime = System.nanoTime() - start;
+
+        log.info( "Conversion of the mock entries: multi pass " + ( multiPassTime / rounds / 1000 ) + " us, single pass "
+                  + ( singlePassTime / rounds / 1000 ) + " us" );
+    }
+}
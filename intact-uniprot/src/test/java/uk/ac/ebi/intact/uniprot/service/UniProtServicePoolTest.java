@@ -0,0 +1,135 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniProtServicePool Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniProtServicePoolTest {
+
+    private int created;
+    private int stopped;
+
+    private UniProtService newService() {
+        created++;
+        return ( UniProtService ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                          new Class[]{UniProtService.class},
+                                                          new InvocationHandler() {
+                                                              private boolean started;
+
+                                                              public Object invoke( Object proxy, Method method, Object[] args ) {
+                                                                  String name = method.getName();
+                                                                  if ( "start".equals( name ) ) {
+                                                                      started = true;
+                                                                  } else if ( "stop".equals( name ) ) {
+                                                                      started = false;
+                                                                      stopped++;
+                                                                  } else if ( "isStarted".equals( name ) ) {
+                                                                      return started;
+                                                                  }
+                                                                  return null;
+                                                              }
+                                                          } );
+    }
+
+    private UniProtServicePool newPool( int maxSize ) {
+        return new UniProtServicePool( new Supplier<UniProtService>() {
+            public UniProtService get() {
+                return newService();
+            }
+        }, maxSize );
+    }
+
+    @Test
+    public void lease_reusesStartedService() {
+        UniProtServicePool pool = newPool( 2 );
+
+        for ( int i = 0; i < 10; i++ ) {
+            UniProtService service = pool.lease();
+            assertTrue( service.isStarted() );
+            pool.release( service );
+        }
+
+        assertEquals( 1, created );
+        assertEquals( 10, pool.getLeaseCount() );
+        assertEquals( 1, pool.getStartCount() );
+        assertEquals( 1, pool.getIdleCount() );
+        assertEquals( 0, stopped );
+    }
+
+    @Test
+    public void invalidate_stopsService() {
+        UniProtServicePool pool = newPool( 2 );
+
+        UniProtService service = pool.lease();
+        pool.invalidate( service );
+        assertFalse( service.isStarted() );
+        assertEquals( 0, pool.getIdleCount() );
+
+        assertNotSame( service, pool.lease() );
+        assertEquals( 2, created );
+    }
+
+    @Test
+    public void lease_discardsStoppedService() {
+        UniProtServicePool pool = newPool( 2 );
+
+        UniProtService service = pool.lease();
+        pool.release( service );
+        service.stop();
+
+        assertNotSame( service, pool.lease() );
+        assertEquals( 2, created );
+    }
+
+    @Test
+    public void evictIdle() throws Exception {
+        UniProtServicePool pool = newPool( 2 );
+
+        UniProtService service = pool.lease();
+        pool.release( service );
+        assertEquals( 1, pool.getIdleCount() );
+
+        pool.setIdleTimeoutMillis( 0 );
+        Thread.sleep( 5 );
+        pool.evictIdle();
+
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( 1, pool.getEvictionCount() );
+        assertFalse( service.isStarted() );
+    }
+
+    @Test
+    public void close() {
+        UniProtServicePool pool = newPool( 2 );
+
+        UniProtService first = pool.lease();
+        UniProtService second = pool.lease();
+        pool.release( first );
+        pool.release( second );
+        assertEquals( 2, pool.getIdleCount() );
+
+        pool.close();
+        assertEquals( 0, pool.getIdleCount() );
+        assertEquals( 2, stopped );
+
+        // the pool can still be used after being closed
+        assertTrue( pool.lease().isStarted() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void new_invalidSize() {
+        newPool( 0 );
+    }
+}
@@ -0,0 +1,138 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
+import uk.ac.ebi.uniprot.dataservice.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotEntryVersion Tester, along with the delta retrieval of SimpleUniprotRemoteService.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotDeltaTest {
+
+    private static final Date DATE = new Date( 1170000000000L );
+
+    /**
+     * Answers every query with the same entries, counting the queries.
+     */
+    private static class MockEntriesUniprotService extends UniprotRemoteService {
+
+        private final List<UniProtEntry> entries;
+
+        private int queryCount;
+
+        private MockEntriesUniprotService( UniProtEntry... entries ) {
+            this.entries = Arrays.asList( entries );
+        }
+
+        @Override
+        protected List<UniProtEntry> executeQuery( Query query ) throws ServiceException {
+            queryCount++;
+            return new ArrayList<UniProtEntry>( entries );
+        }
+    }
+
+    @Test
+    public void compare() {
+        UniprotEntryVersion known = new UniprotEntryVersion( "41", DATE, "34B44F9225EC106B" );
+
+        assertEquals( UniprotChangeType.UNCHANGED,
+                      known.compare( new UniprotEntryVersion( "41", new Date( DATE.getTime() ), "34b44f9225ec106b" ) ) );
+        assertEquals( UniprotChangeType.ANNOTATION_CHANGED, known.compare( new UniprotEntryVersion( "42", DATE, "34B44F9225EC106B" ) ) );
+        assertEquals( UniprotChangeType.ANNOTATION_CHANGED,
+                      known.compare( new UniprotEntryVersion( "41", new Date( 0 ), "34B44F9225EC106B" ) ) );
+        assertEquals( UniprotChangeType.SEQUENCE_CHANGED, known.compare( new UniprotEntryVersion( "42", null, "7DDCB26AD1AB9CEE" ) ) );
+    }
+
+    @Test
+    public void compare_missingValues() {
+        UniprotEntryVersion current = new UniprotEntryVersion( "41", DATE, "34B44F9225EC106B" );
+
+        assertEquals( UniprotChangeType.SEQUENCE_CHANGED, new UniprotEntryVersion( "41", DATE, null ).compare( current ) );
+        assertEquals( UniprotChangeType.ANNOTATION_CHANGED,
+                      new UniprotEntryVersion( "41", null, "34B44F9225EC106B" ).compare( current ) );
+    }
+
+    @Test
+    public void isRebuilt() {
+        assertFalse( UniprotChangeType.UNCHANGED.isRebuilt() );
+        assertFalse( UniprotChangeType.DELETED.isRebuilt() );
+        assertTrue( UniprotChangeType.ANNOTATION_CHANGED.isRebuilt() );
+        assertTrue( UniprotChangeType.MERGED.isRebuilt() );
+    }
+
+    @Test
+    public void retrieveDelta() {
+        UniProtEntry cdc42 = MockUniProtEntries.build_P60952();
+        UniProtEntry q9vgx3 = MockUniProtEntries.build_Q9VGX3();
+        MockEntriesUniprotService service = new MockEntriesUniprotService( cdc42, q9vgx3 );
+        UniprotEntryVersion cdc42Version = service.readVersion( cdc42 );
+        UniprotEntryVersion q9vgx3Version = service.readVersion( q9vgx3 );
+
+        Map<String, UniprotEntryVersion> known = new LinkedHashMap<String, UniprotEntryVersion>();
+        known.put( "Q9VGX3", new UniprotEntryVersion( q9vgx3Version.getReleaseVersion(),
+                                                      q9vgx3Version.getLastAnnotationUpdate(), "0000000000000000" ) );
+        known.put( "P60952", cdc42Version );
+        known.put( "p21181", cdc42Version );
+        known.put( "P12345", cdc42Version );
+
+        Map<String, UniprotDelta> deltas = service.retrieveDelta( known );
+        assertEquals( Arrays.asList( "Q9VGX3", "P60952", "p21181", "P12345" ), new ArrayList<String>( deltas.keySet() ) );
+        assertEquals( 1, service.queryCount );
+
+        UniprotDelta unchanged = deltas.get( "P60952" );
+        assertEquals( UniprotChangeType.UNCHANGED, unchanged.getChangeType() );
+        assertFalse( unchanged.isChanged() );
+        assertTrue( unchanged.getProteins().isEmpty() );
+        assertEquals( cdc42Version, unchanged.getCurrentVersion() );
+
+        UniprotDelta sequenceChanged = deltas.get( "Q9VGX3" );
+        assertEquals( UniprotChangeType.SEQUENCE_CHANGED, sequenceChanged.getChangeType() );
+        assertEquals( 1, sequenceChanged.getProteins().size() );
+        assertEquals( "Q9VGX3", sequenceChanged.getProteins().iterator().next().getPrimaryAc() );
+
+        UniprotDelta merged = deltas.get( "p21181" );
+        assertEquals( UniprotChangeType.MERGED, merged.getChangeType() );
+        assertEquals( Arrays.asList( "P60952" ), merged.getCurrentPrimaryAcs() );
+        assertEquals( 1, merged.getProteins().size() );
+
+        UniprotDelta deleted = deltas.get( "P12345" );
+        assertEquals( UniprotChangeType.DELETED, deleted.getChangeType() );
+        assertTrue( deleted.getCurrentPrimaryAcs().isEmpty() );
+        assertNull( deleted.getCurrentVersion() );
+    }
+
+    @Test
+    public void retrieveDelta_annotationChanged() {
+        UniProtEntry cdc42 = MockUniProtEntries.build_P60952();
+        MockEntriesUniprotService service = new MockEntriesUniprotService( cdc42 );
+        UniprotEntryVersion current = service.readVersion( cdc42 );
+
+        Map<String, UniprotEntryVersion> known = new LinkedHashMap<String, UniprotEntryVersion>();
+        known.put( "P60952", new UniprotEntryVersion( "1", current.getLastAnnotationUpdate(), current.getCrc64() ) );
+
+        UniprotDelta delta = service.retrieveDelta( known, RetrievalOptions.NO_SPLICE_VARIANTS ).get( "P60952" );
+        assertEquals( UniprotChangeType.ANNOTATION_CHANGED, delta.getChangeType() );
+        assertTrue( delta.getProteins().iterator().next().getSpliceVariants().isEmpty() );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void retrieveDelta_spliceVariant() {
+        Map<String, UniprotEntryVersion> known = new LinkedHashMap<String, UniprotEntryVersion>();
+        known.put( "P60952-2", new UniprotEntryVersion( "1", DATE, "34B44F9225EC106B" ) );
+        new MockEntriesUniprotService().retrieveDelta( known );
+    }
+}
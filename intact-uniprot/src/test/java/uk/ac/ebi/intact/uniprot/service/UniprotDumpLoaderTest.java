@@ -0,0 +1,217 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.model.UniprotXref;
+import uk.ac.ebi.intact.uniprot.service.store.UniprotProteinStore;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotDumpLoader Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotDumpLoaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Parses records made of an AC only into entries answering that AC to toString(), records starting with BROKEN
+     * cannot be parsed.
+     */
+    private static final UniprotEntryParser PARSER = new UniprotEntryParser() {
+        public UniProtEntry parse( final String record ) {
+            if ( record.startsWith( "BROKEN" ) ) {
+                throw new IllegalStateException( "Could not parse " + record );
+            }
+            return ( UniProtEntry ) Proxy.newProxyInstance( UniProtEntry.class.getClassLoader(),
+                                                            new Class[]{UniProtEntry.class},
+                                                            new InvocationHandler() {
+                                                                public Object invoke( Object proxy, Method method, Object[] args ) {
+                                                                    return record;
+                                                                }
+                                                            } );
+        }
+    };
+
+    /**
+     * Builds a protein named after the first word of the entry. The other words are isoforms: ISOFORM-ID=SEQUENCE for
+     * a described isoform, with a cross reference of its own, ISOFORM-ID alone for an EXTERNAL isoform.
+     */
+    private static class EntryNameConverter extends SimpleUniprotRemoteService {
+
+        private final Map<String, String> remoteEntries = new HashMap<String, String>();
+
+        private int remoteFetchCount;
+
+        @Override
+        protected void collectExternalParents( UniProtEntry entry, IsoformResolutionCache isoformCache ) {
+            String[] words = entry.toString().split( " " );
+            for ( int i = 1; i < words.length; i++ ) {
+                if ( words[i].indexOf( '=' ) < 0 ) {
+                    isoformCache.requestParent( getUniProtAccFromSpliceVariantId( words[i] ) );
+                }
+            }
+        }
+
+        @Override
+        protected UniprotProtein buildUniprotProtein( UniProtEntry entry, boolean fetchSpliceVariants,
+                                                      IsoformResolutionCache isoformCache ) {
+            String[] words = entry.toString().split( " " );
+            String ac = words[0];
+            Organism human = new Organism( 9606, "human" );
+            UniprotProtein protein = new UniprotProtein( ac + "_HUMAN", ac, human, null );
+            protein.setSequence( "MQTIK" );
+
+            for ( int i = 1; fetchSpliceVariants && i < words.length; i++ ) {
+                String[] isoform = words[i].split( "=" );
+                if ( isoform.length == 1 ) {
+                    // the loader never lets an EXTERNAL parent be fetched while building
+                    assertTrue( isoformCache.getParent( getUniProtAccFromSpliceVariantId( isoform[0] ) ).isEmpty() );
+                    protein.getSpliceVariants().add( new UniprotSpliceVariant( isoform[0], human, null ) );
+                } else {
+                    UniprotSpliceVariant spliceVariant = new UniprotSpliceVariant( isoform[0], human, isoform[1] );
+                    spliceVariant.getCrossReferences().add( new UniprotXref( "ENST" + ac, "Ensembl", null, null, isoform[0] ) );
+                    protein.getSpliceVariants().add( spliceVariant );
+                }
+            }
+            return protein;
+        }
+
+        @Override
+        protected void fetchExternalParents( IsoformResolutionCache isoformCache ) {
+            for ( String parentAc : isoformCache.getPendingParents() ) {
+                remoteFetchCount++;
+                List<UniProtEntry> entries = new ArrayList<UniProtEntry>();
+                if ( remoteEntries.containsKey( parentAc ) ) {
+                    entries.add( PARSER.parse( remoteEntries.get( parentAc ) ) );
+                }
+                isoformCache.putParent( parentAc, entries );
+            }
+        }
+    }
+
+    @Test
+    public void load() throws Exception {
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+        List<String> records = new ArrayList<String>();
+        for ( int i = 0; i < 1000; i++ ) {
+            records.add( "P" + ( 10000 + i ) );
+        }
+        records.add( "BROKEN1" );
+
+        UniprotDumpLoader loader = new UniprotDumpLoader( PARSER, new EntryNameConverter(), store );
+        loader.setBuildThreads( 4 );
+        loader.setWriteBatchSize( 64 );
+        loader.setQueueCapacity( 16 );
+        UniprotDumpLoader.LoadStatistics statistics = loader.load( records.iterator() );
+
+        assertEquals( 1001, statistics.getReadCount() );
+        assertEquals( 1000, statistics.getBuiltCount() );
+        assertEquals( 1, statistics.getFailedCount() );
+        assertEquals( 1000, statistics.getWrittenCount() );
+        assertTrue( statistics.getEntriesPerSecond() > 0 );
+
+        assertEquals( 1000, store.size() );
+        assertEquals( "P10500", store.lookup( "P10500_HUMAN" ).iterator().next().getPrimaryAc() );
+        assertTrue( store.get( "P10999" ).isWithSpliceVariants() );
+        store.close();
+    }
+
+    @Test
+    public void load_externalIsoforms() throws Exception {
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+        List<String> records = new ArrayList<String>();
+        // the parent comes after the entry pointing to it
+        records.add( "P10000 P10000-1=MQTIK Q20000-2 R30000-2" );
+        for ( int i = 0; i < 100; i++ ) {
+            records.add( "P" + ( 10001 + i ) );
+        }
+        records.add( "Q20000 Q20000-1=MQT Q20000-2=MKVL" );
+
+        EntryNameConverter converter = new EntryNameConverter();
+        UniprotDumpLoader loader = new UniprotDumpLoader( PARSER, converter, store );
+        loader.setBuildThreads( 4 );
+        loader.setWriteBatchSize( 8 );
+        UniprotDumpLoader.LoadStatistics statistics = loader.load( records.iterator() );
+
+        assertEquals( 102, statistics.getWrittenCount() );
+        assertEquals( 1, statistics.getResolvedIsoformCount() );
+        assertEquals( 1, statistics.getUnresolvedIsoformCount() );
+        assertEquals( 0, converter.remoteFetchCount );
+
+        UniprotProtein protein = store.load( store.get( "P10000" ) );
+        assertEquals( 3, protein.getSpliceVariants().size() );
+        for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+            if ( spliceVariant.getPrimaryAc().equals( "Q20000-2" ) ) {
+                assertEquals( "MKVL", spliceVariant.getSequence() );
+                assertEquals( "ENSTQ20000", spliceVariant.getCrossReferences().iterator().next().getAccession() );
+            } else if ( spliceVariant.getPrimaryAc().equals( "R30000-2" ) ) {
+                try {
+                    spliceVariant.getSequence();
+                    fail( "R30000 is not in the dump" );
+                } catch ( IllegalArgumentException e ) {
+                    // expected
+                }
+            }
+        }
+        store.close();
+    }
+
+    @Test
+    public void load_externalIsoformsRemotely() throws Exception {
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+        List<String> records = new ArrayList<String>();
+        records.add( "P10000 Q20000-2 R30000-2" );
+        records.add( "Q20000 Q20000-2=MKVL" );
+
+        EntryNameConverter converter = new EntryNameConverter();
+        converter.remoteEntries.put( "R30000", "R30000 R30000-2=MRRR" );
+        UniprotDumpLoader loader = new UniprotDumpLoader( PARSER, converter, store );
+        loader.setResolveExternalIsoformsRemotely( true );
+        UniprotDumpLoader.LoadStatistics statistics = loader.load( records.iterator() );
+
+        assertEquals( 2, statistics.getResolvedIsoformCount() );
+        assertEquals( 0, statistics.getUnresolvedIsoformCount() );
+        // only the parent missing from the dump is fetched
+        assertEquals( 1, converter.remoteFetchCount );
+        assertNull( store.get( "R30000" ) );
+
+        UniprotProtein protein = store.load( store.get( "P10000" ) );
+        for ( UniprotSpliceVariant spliceVariant : protein.getSpliceVariants() ) {
+            assertEquals( spliceVariant.getPrimaryAc().startsWith( "Q" ) ? "MKVL" : "MRRR", spliceVariant.getSequence() );
+        }
+        store.close();
+    }
+
+    @Test( expected = RuntimeUniprotServiceException.class )
+    public void load_writeFailureStopsLoad() throws Exception {
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+        store.close();
+
+        List<String> records = new ArrayList<String>();
+        for ( int i = 0; i < 10000; i++ ) {
+            records.add( "P" + ( 10000 + i ) );
+        }
+        UniprotDumpLoader loader = new UniprotDumpLoader( PARSER, new EntryNameConverter(), store );
+        loader.setWriteBatchSize( 10 );
+        loader.setQueueCapacity( 10 );
+        loader.load( records.iterator() );
+    }
+}
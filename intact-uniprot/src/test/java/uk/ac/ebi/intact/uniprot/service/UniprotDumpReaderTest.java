@@ -0,0 +1,95 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotDumpReader Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotDumpReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String FLAT_FILE = "ID   CDC42_HUMAN             Reviewed;         191 AA.\n" +
+                                            "AC   P60953; P21181;\n" +
+                                            "//\n" +
+                                            "ID   ABC_HUMAN               Reviewed;          12 AA.\n" +
+                                            "AC   P12345;\n" +
+                                            "//\n" +
+                                            "ID   INCOMPLETE_HUMAN\n";
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                                      "<uniprot xmlns=\"http://uniprot.org/uniprot\">\n" +
+                                      "<entry dataset=\"Swiss-Prot\">\n" +
+                                      "  <accession>P60953</accession>\n" +
+                                      "</entry>\n" +
+                                      "<entry dataset=\"Swiss-Prot\">\n" +
+                                      "  <accession>P12345</accession>\n" +
+                                      "</entry>\n" +
+                                      "</uniprot>\n";
+
+    private List<String> readAll( UniprotDumpReader reader ) throws Exception {
+        List<String> records = new ArrayList<String>();
+        while ( reader.hasNext() ) {
+            records.add( reader.next() );
+        }
+        reader.close();
+        return records;
+    }
+
+    @Test
+    public void read_flatFile() throws Exception {
+        UniprotDumpReader reader = new UniprotDumpReader( new StringReader( FLAT_FILE ), UniprotDumpReader.Format.FLAT_FILE );
+        List<String> records = readAll( reader );
+
+        assertEquals( 2, records.size() );
+        assertTrue( records.get( 0 ).startsWith( "ID   CDC42_HUMAN" ) );
+        assertTrue( records.get( 0 ).endsWith( "AC   P60953; P21181;\n//\n" ) );
+        assertTrue( records.get( 1 ).contains( "AC   P12345;" ) );
+        assertEquals( 2, reader.getRecordCount() );
+    }
+
+    @Test
+    public void read_xml() throws Exception {
+        List<String> records = readAll( new UniprotDumpReader( new StringReader( XML ), UniprotDumpReader.Format.XML ) );
+
+        assertEquals( 2, records.size() );
+        assertEquals( "<entry dataset=\"Swiss-Prot\">\n  <accession>P60953</accession>\n</entry>\n", records.get( 0 ) );
+    }
+
+    @Test
+    public void read_gzippedFile() throws Exception {
+        File dump = new File( temporaryFolder.newFolder(), "uniprot_sprot.dat.gz" );
+        Writer writer = new OutputStreamWriter( new GZIPOutputStream( new FileOutputStream( dump ) ), StandardCharsets.UTF_8 );
+        writer.write( FLAT_FILE );
+        writer.close();
+
+        UniprotDumpReader reader = new UniprotDumpReader( dump );
+        assertEquals( UniprotDumpReader.Format.FLAT_FILE, reader.getFormat() );
+        assertEquals( 2, readAll( reader ).size() );
+    }
+
+    @Test
+    public void format() {
+        assertEquals( UniprotDumpReader.Format.XML, UniprotDumpReader.Format.of( new File( "uniprot_sprot.xml.gz" ) ) );
+        assertEquals( UniprotDumpReader.Format.XML, UniprotDumpReader.Format.of( new File( "uniprot_sprot.xml" ) ) );
+        assertEquals( UniprotDumpReader.Format.FLAT_FILE, UniprotDumpReader.Format.of( new File( "uniprot_sprot.dat.gz" ) ) );
+    }
+}
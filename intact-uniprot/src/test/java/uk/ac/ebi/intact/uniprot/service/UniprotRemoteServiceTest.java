@@ -13,6 +13,7 @@ import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.List;
@@ -131,6 +132,28 @@ public class UniprotRemoteServiceTest {
         assertEquals("Angiotensin-3", prots.iterator().next().getDescription());
     }
 
+    @Test
+    public void retrieveCollection() throws Exception {
+        SimpleUniprotRemoteService service = new SimpleUniprotRemoteService();
+        // force several batches
+        service.setBatchSize(2);
+
+        Map<String, Collection<UniprotProtein>> results = service.retrieve(Arrays.asList("P47068", "cdk1_human", "P21181",
+                "Q13535-1", "P97887-PRO_0000025599", "PRO_0000032459", "P12345-123456"));
+
+        assertEquals(7, results.size());
+        assertEquals("BBC1_YEAST", results.get("P47068").iterator().next().getId());
+        assertEquals("P06493", results.get("cdk1_human").iterator().next().getPrimaryAc());
+        // P21181 is a secondary AC
+        assertFalse(results.get("P21181").isEmpty());
+        assertEquals("ATR_HUMAN", results.get("Q13535-1").iterator().next().getId());
+        assertEquals("P97887", results.get("P97887-PRO_0000025599").iterator().next().getPrimaryAc());
+        assertEquals("P01019", results.get("PRO_0000032459").iterator().next().getPrimaryAc());
+
+        assertTrue(results.get("P12345-123456").isEmpty());
+        assertTrue(service.getErrors().containsKey("P12345-123456"));
+    }
+
     @Test
     public void convert_FAU_DROME() throws Exception {
 
@@ -0,0 +1,90 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotRequestDescriptor Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotRequestDescriptorTest {
+
+    private static class FixedFilter implements CrossReferenceFilter {
+
+        private final List<String> databases;
+
+        private FixedFilter( String... databases ) {
+            this.databases = Arrays.asList( databases );
+        }
+
+        public boolean isSelected( String database ) {
+            return databases.contains( database );
+        }
+
+        public List<String> getFilteredDatabases() {
+            return databases;
+        }
+
+        public String getMi( String databaseName ) {
+            return null;
+        }
+    }
+
+    @Test
+    public void normalization() {
+        CrossReferenceFilter filter = new DefaultCrossReferenceFilter();
+        UniprotRequestDescriptor request = new UniprotRequestDescriptor( " p12345-2 ", true, filter );
+
+        assertEquals( "P12345-2", request.getAc() );
+        assertEquals( NegativeResultCache.LookupType.SPLICE_VARIANT, request.getLookupType() );
+        assertEquals( request, new UniprotRequestDescriptor( "P12345-2", true, new DefaultCrossReferenceFilter() ) );
+        assertEquals( request.hashCode(), new UniprotRequestDescriptor( "P12345-2", true, filter ).hashCode() );
+        assertFalse( request.equals( new UniprotRequestDescriptor( "P12345-2", false, filter ) ) );
+    }
+
+    @Test
+    public void fingerprint() {
+        assertEquals( UniprotRequestDescriptor.fingerprint( new FixedFilter( "GO", "InterPro" ) ),
+                      UniprotRequestDescriptor.fingerprint( new FixedFilter( "interpro", "go" ) ) );
+        assertFalse( UniprotRequestDescriptor.fingerprint( new FixedFilter( "GO" ) )
+                             .equals( UniprotRequestDescriptor.fingerprint( new FixedFilter( "GO", "InterPro" ) ) ) );
+        assertEquals( "none", UniprotRequestDescriptor.fingerprint( null ) );
+
+        assertFalse( new UniprotRequestDescriptor( "P12345", true, new FixedFilter( "GO" ) ).toCacheKey()
+                             .equals( new UniprotRequestDescriptor( "P12345", true, null ).toCacheKey() ) );
+    }
+
+    @Test
+    public void toCacheKey_projection() {
+        RetrievalOptions sequenceOnly = RetrievalOptions.of( EnumSet.of( UniprotField.SEQUENCE ) );
+        UniprotRequestDescriptor request = new UniprotRequestDescriptor( "P12345", sequenceOnly, null );
+
+        assertEquals( new UniprotRequestDescriptor( "P12345", true, null ).toCacheKey(),
+                      new UniprotRequestDescriptor( "P12345", RetrievalOptions.FULL, null ).toCacheKey() );
+        assertEquals( request, new UniprotRequestDescriptor( "P12345", sequenceOnly.withLazyCrossReferences( true ), null ) );
+        assertFalse( request.toCacheKey().equals( new UniprotRequestDescriptor( "P12345", false, null ).toCacheKey() ) );
+        assertFalse( request.isProcessSpliceVariants() );
+        assertEquals( request.toCacheKey(), request.withAc( "p12345" ).toCacheKey() );
+        assertEquals( new UniprotRequestDescriptor( "P12345", false, null ),
+                      request.withOptions( RetrievalOptions.NO_SPLICE_VARIANTS ) );
+    }
+
+    @Test
+    public void withSpliceVariants() {
+        UniprotRequestDescriptor request = new UniprotRequestDescriptor( "P12345", false, null );
+        UniprotRequestDescriptor full = request.withSpliceVariants();
+
+        assertTrue( full.isProcessSpliceVariants() );
+        assertEquals( request.getAc(), full.getAc() );
+        assertEquals( request.getFilterFingerprint(), full.getFilterFingerprint() );
+        assertSame( full, full.withSpliceVariants() );
+    }
+}
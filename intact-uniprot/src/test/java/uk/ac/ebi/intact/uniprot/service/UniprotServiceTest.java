@@ -0,0 +1,142 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotFeatureChain;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+import uk.ac.ebi.intact.uniprot.model.UniprotProteinTranscript;
+import uk.ac.ebi.intact.uniprot.model.UniprotSpliceVariant;
+import uk.ac.ebi.intact.uniprot.service.referenceFilter.CrossReferenceFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotService Tester, against a service only implementing the retrievals it had before RetrievalOptions.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotServiceTest {
+
+    private static class LegacyUniprotService implements UniprotService {
+
+        private final Map<String, UniprotServiceReport> errors = new HashMap<String, UniprotServiceReport>();
+
+        public Collection<UniprotProtein> retrieve( String ac ) {
+            return retrieve( ac, true );
+        }
+
+        public Collection<UniprotProtein> retrieve( String ac, boolean processSpliceVars ) {
+            Collection<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+            if ( ac.startsWith( "X" ) ) {
+                errors.put( ac, new UniprotServiceReport( "Could not find protein: " + ac ) );
+                return proteins;
+            }
+            Organism human = new Organism( 9606, "Homo sapiens" );
+            UniprotProtein protein = new UniprotProtein( ac + "_HUMAN", ac, human, "protein " + ac );
+            protein.getKeywords().add( "Kinase" );
+            if ( processSpliceVars ) {
+                protein.getSpliceVariants().add( new UniprotSpliceVariant( ac + "-2", human, "MQTIK" ) );
+            }
+            proteins.add( protein );
+            return proteins;
+        }
+
+        public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs ) {
+            return retrieve( acs, true );
+        }
+
+        public Map<String, Collection<UniprotProtein>> retrieve( Collection<String> acs, boolean processSpliceVars ) {
+            Map<String, Collection<UniprotProtein>> results = new HashMap<String, Collection<UniprotProtein>>();
+            for ( String ac : acs ) {
+                results.put( ac, retrieve( ac, processSpliceVars ) );
+            }
+            return results;
+        }
+
+        public Map<String, UniprotServiceReport> getErrors() {
+            return errors;
+        }
+
+        public void clearErrors() {
+            errors.clear();
+        }
+
+        public void setCrossReferenceSelector( CrossReferenceFilter crossReferenceFilter ) {
+        }
+
+        public CrossReferenceFilter getCrossReferenceSelector() {
+            return null;
+        }
+
+        public Collection<UniprotProteinTranscript> retrieveProteinTranscripts( String ac ) {
+            return new ArrayList<UniprotProteinTranscript>();
+        }
+
+        public Collection<UniprotSpliceVariant> retrieveSpliceVariant( String ac ) {
+            return new ArrayList<UniprotSpliceVariant>();
+        }
+
+        public Collection<UniprotFeatureChain> retrieveFeatureChain( String ac ) {
+            return new ArrayList<UniprotFeatureChain>();
+        }
+
+        public UniprotFeatureChain retrieveUniprotFeatureChain( UniprotProtein uniProtEntry, String ac ) {
+            return null;
+        }
+
+        public UniprotSpliceVariant retrieveUniprotSpliceVariant( UniprotProtein uniProtEntry, String ac ) {
+            return null;
+        }
+
+        public void close() {
+        }
+
+        public void start() {
+        }
+    }
+
+    @Test
+    public void retrieve_options() {
+        UniprotService service = new LegacyUniprotService();
+        RetrievalOptions options = RetrievalOptions.NO_SPLICE_VARIANTS.without( UniprotField.KEYWORDS );
+
+        UniprotProtein protein = service.retrieve( "P60953", options ).iterator().next();
+        assertTrue( protein.getSpliceVariants().isEmpty() );
+        assertTrue( protein.getKeywords().isEmpty() );
+
+        protein = service.retrieve( Arrays.asList( "P60953" ), RetrievalOptions.FULL ).get( "P60953" ).iterator().next();
+        assertEquals( 1, protein.getSpliceVariants().size() );
+        assertEquals( 1, protein.getKeywords().size() );
+    }
+
+    @Test
+    public void retrieveWithReport() {
+        UniprotService service = new LegacyUniprotService();
+
+        UniprotServiceResult result = service.retrieveWithReport( Arrays.asList( "P60953", "XXXXXX" ), false );
+        assertTrue( result.getResult( "P60953" ).isFound() );
+        assertFalse( result.getResult( "P60953" ).hasReport() );
+        assertFalse( result.getResult( "XXXXXX" ).isFound() );
+        assertEquals( UniprotReportType.NOT_FOUND, result.getResult( "XXXXXX" ).getReport().getType() );
+    }
+
+    @Test
+    public void retrieveIncrementally() {
+        UniprotService service = new LegacyUniprotService();
+
+        Iterator<UniprotRetrievalResult> results =
+                service.retrieveIncrementally( Arrays.asList( "P60953", "XXXXXX", "P60952" ), true );
+        assertEquals( "P60953", results.next().getProteins().iterator().next().getPrimaryAc() );
+        assertTrue( results.next().hasReport() );
+        assertEquals( "P60952", results.next().getAc() );
+        assertFalse( results.hasNext() );
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.ebi.intact.uniprot.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * WeightedLruCache Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class WeightedLruCacheTest {
+
+    private static final ToLongFunction<String> LENGTH = new ToLongFunction<String>() {
+        public long applyAsLong( String value ) {
+            return value.length();
+        }
+    };
+
+    @Test
+    public void get() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<String, String>( 100, 1, LENGTH );
+        cache.put( "a", "AAAA" );
+
+        assertEquals( "AAAA", cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+        assertEquals( 4, cache.getWeight() );
+
+        cache.put( "a", "AA" );
+        assertEquals( "AA", cache.get( "a" ) );
+        assertEquals( 2, cache.getWeight() );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<String, String>( 10, 1, LENGTH );
+        cache.put( "a", "AAAA" );
+        cache.put( "b", "BBBB" );
+        cache.get( "a" );
+
+        cache.put( "c", "CCCC" );
+
+        assertNotNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+        assertNotNull( cache.get( "c" ) );
+        assertEquals( 1, cache.getEvictionCount() );
+        assertEquals( 8, cache.getWeight() );
+    }
+
+    @Test
+    public void put_heavierThanCache() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<String, String>( 10, 1, LENGTH );
+        cache.put( "a", "AAAA" );
+        cache.put( "b", "BBBBBBBBBBBB" );
+
+        assertNull( cache.get( "b" ) );
+        assertNotNull( cache.get( "a" ) );
+        assertEquals( 0, cache.getEvictionCount() );
+    }
+
+    @Test
+    public void remove() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<String, String>( 10, 1, LENGTH );
+        cache.put( "a", "AAAA" );
+        cache.put( "b", "BB" );
+        cache.remove( "a" );
+        assertNull( cache.get( "a" ) );
+        assertEquals( 2, cache.getWeight() );
+
+        cache.clear();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getWeight() );
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        final WeightedLruCache<Integer, String> cache = new WeightedLruCache<Integer, String>( 1000, 4, LENGTH );
+        final AtomicInteger failures = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int t = 0; t < 8; t++ ) {
+            final int offset = t * 1000;
+            Thread thread = new Thread() {
+                public void run() {
+                    for ( int i = 0; i < 5000; i++ ) {
+                        Integer key = offset + ( i % 500 );
+                        cache.put( key, "value" + key );
+                        String value = cache.get( key );
+                        if ( value != null && !value.equals( "value" + key ) ) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+        for ( Thread thread : threads ) {
+            thread.join();
+        }
+
+        assertEquals( 0, failures.get() );
+        assertTrue( cache.getWeight() <= cache.getMaximumWeight() );
+        assertTrue( cache.getEvictionCount() > 0 );
+    }
+
+    @Test( expected = IllegalArgumentException.class )
+    public void create_noWeight() {
+        new WeightedLruCache<String, String>( 0, LENGTH );
+    }
+}
@@ -0,0 +1,157 @@
+package uk.ac.ebi.intact.uniprot.service.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+import uk.ac.ebi.uniprot.dataservice.client.QueryResult;
+import uk.ac.ebi.uniprot.dataservice.client.exception.ServiceException;
+import uk.ac.ebi.uniprot.dataservice.client.uniprot.UniProtService;
+import uk.ac.ebi.uniprot.dataservice.query.Query;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * RecordingUniProtService and ReplayUniProtService Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ReplayUniProtServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Answers toString() with a fixed value, serializable so that the entries it backs can be recorded.
+     */
+    private static class NamedHandler implements InvocationHandler, Serializable {
+
+        private final String name;
+
+        private NamedHandler( String name ) {
+            this.name = name;
+        }
+
+        public Object invoke( Object proxy, Method method, Object[] args ) {
+            if ( "toString".equals( method.getName() ) ) {
+                return name;
+            }
+            throw new UnsupportedOperationException( method.getName() );
+        }
+    }
+
+    private static UniProtEntry entry( String ac ) {
+        return ( UniProtEntry ) Proxy.newProxyInstance( UniProtEntry.class.getClassLoader(),
+                                                        new Class[]{UniProtEntry.class}, new NamedHandler( ac ) );
+    }
+
+    private static Query query( String text ) {
+        return ( Query ) Proxy.newProxyInstance( Query.class.getClassLoader(), new Class[]{Query.class},
+                                                 new NamedHandler( text ) );
+    }
+
+    /**
+     * Finds one entry per AC listed in the query, separated by spaces.
+     */
+    private static UniProtService remote( final AtomicInteger calls ) {
+        return ( UniProtService ) Proxy.newProxyInstance( UniProtService.class.getClassLoader(),
+                                                          new Class[]{UniProtService.class}, new InvocationHandler() {
+            public Object invoke( Object proxy, Method method, Object[] args ) {
+                calls.incrementAndGet();
+                if ( "getEntries".equals( method.getName() ) ) {
+                    List<UniProtEntry> entries = new ArrayList<UniProtEntry>();
+                    for ( String ac : args[0].toString().split( " " ) ) {
+                        entries.add( entry( ac ) );
+                    }
+                    return ReplayUniProtService.queryResult( entries );
+                }
+                if ( "getEntry".equals( method.getName() ) ) {
+                    return entry( ( String ) args[0] );
+                }
+                return null;
+            }
+        } );
+    }
+
+    private static List<String> names( QueryResult<UniProtEntry> result ) {
+        List<String> names = new ArrayList<String>();
+        while ( result.hasNext() ) {
+            names.add( result.next().toString() );
+        }
+        return names;
+    }
+
+    @Test
+    public void recordAndReplay() throws Exception {
+        UniProtResponseStore store = new UniProtResponseStore( temporaryFolder.newFolder() );
+        AtomicInteger calls = new AtomicInteger();
+
+        UniProtService recording = RecordingUniProtService.newInstance( remote( calls ), store );
+        assertEquals( Arrays.asList( "P12345", "P60953" ), names( recording.getEntries( query( "P12345 P60953" ) ) ) );
+        assertEquals( "Q00001", recording.getEntry( "Q00001" ).toString() );
+        assertEquals( 2, calls.get() );
+        assertEquals( 2, store.size() );
+
+        ReplayUniProtService replay = new ReplayUniProtService( store );
+        UniProtService replaying = replay.newService();
+        QueryResult<UniProtEntry> result = replaying.getEntries( query( "P12345 P60953" ) );
+        assertEquals( 2, result.getNumberOfHits() );
+        assertEquals( Arrays.asList( "P12345", "P60953" ), names( result ) );
+        assertEquals( "Q00001", replaying.getEntry( "Q00001" ).toString() );
+
+        assertEquals( Collections.emptyList(), names( replaying.getEntries( query( "P99999" ) ) ) );
+        assertNull( replaying.getEntry( "P99999" ) );
+        assertEquals( 4, replay.getReplayCount() );
+        assertEquals( 2, replay.getMissingCount() );
+        assertEquals( 2, calls.get() );
+    }
+
+    @Test( expected = ServiceException.class )
+    public void replay_strict() throws Exception {
+        ReplayUniProtService replay = new ReplayUniProtService( new UniProtResponseStore( temporaryFolder.newFolder() ) );
+        replay.setStrict( true );
+        replay.newService().getEntries( query( "P99999" ) );
+    }
+
+    @Test
+    public void replay_injectedFailuresAndLatency() throws Exception {
+        ReplayUniProtService replay = new ReplayUniProtService( new UniProtResponseStore( temporaryFolder.newFolder() ) );
+        replay.setFailureRate( 0.3 );
+        int failures = countFailures( replay.newService(), 1000 );
+        assertEquals( failures, replay.getFailureCount() );
+        assertTrue( failures > 200 && failures < 400 );
+
+        // the same seed gives the same failures
+        replay.setSeed( ReplayUniProtService.DEFAULT_SEED );
+        assertEquals( failures, countFailures( replay.newService(), 1000 ) );
+
+        replay.setFailureRate( 0 );
+        replay.setLatencyMillis( 20 );
+        long start = System.nanoTime();
+        replay.newService().getEntry( "P12345" );
+        assertTrue( System.nanoTime() - start >= 20000000L );
+    }
+
+    private int countFailures( UniProtService service, int calls ) {
+        int failures = 0;
+        for ( int i = 0; i < calls; i++ ) {
+            try {
+                service.getEntry( "P12345" );
+            } catch ( ServiceException e ) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
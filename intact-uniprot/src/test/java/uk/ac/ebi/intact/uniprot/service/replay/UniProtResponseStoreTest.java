@@ -0,0 +1,72 @@
+package uk.ac.ebi.intact.uniprot.service.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.service.RuntimeUniprotServiceException;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.io.File;
+import java.io.NotSerializableException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniProtResponseStore Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniProtResponseStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws Exception {
+        UniProtResponseStore store = new UniProtResponseStore( temporaryFolder.newFolder() );
+        UniProtEntry cdc42 = MockUniProtEntries.build_P60952();
+        UniProtEntry fau = MockUniProtEntries.build_Q9VGX3();
+
+        store.write( "accession:P60952 OR accession:Q9VGX3", Arrays.asList( cdc42, fau ) );
+        assertEquals( 1, store.size() );
+        assertNull( store.read( "accession:P60952" ) );
+
+        List<UniProtEntry> entries = store.read( "accession:P60952 OR accession:Q9VGX3" );
+        assertEquals( 2, entries.size() );
+        assertEquals( "P60952", entries.get( 0 ).getPrimaryUniProtAccession().getValue() );
+        assertEquals( cdc42.getSequence().getValue(), entries.get( 0 ).getSequence().getValue() );
+        assertEquals( "Q9VGX3", entries.get( 1 ).getPrimaryUniProtAccession().getValue() );
+        assertEquals( fau.getSequence().getCRC64(), entries.get( 1 ).getSequence().getCRC64() );
+    }
+
+    @Test
+    public void write_notSerializable() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        UniProtResponseStore store = new UniProtResponseStore( directory );
+
+        UniProtEntry entry = ( UniProtEntry ) Proxy.newProxyInstance(
+                UniProtEntry.class.getClassLoader(), new Class[]{UniProtEntry.class}, new InvocationHandler() {
+                    public Object invoke( Object proxy, Method method, Object[] args ) {
+                        throw new UnsupportedOperationException( method.getName() );
+                    }
+                } );
+
+        try {
+            store.write( "accession:P12345", Arrays.asList( entry ) );
+            fail( "The entry cannot be serialized" );
+        } catch ( RuntimeUniprotServiceException e ) {
+            assertTrue( e.getCause() instanceof NotSerializableException );
+        }
+
+        // neither the recording nor its temporary file is left behind
+        assertEquals( 0, directory.list().length );
+        assertNull( store.read( "accession:P12345" ) );
+    }
+}
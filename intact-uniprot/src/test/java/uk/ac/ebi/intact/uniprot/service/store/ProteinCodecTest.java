@@ -0,0 +1,226 @@
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import uk.ac.ebi.intact.uniprot.data.MockUniProtEntries;
+import uk.ac.ebi.intact.uniprot.model.*;
+import uk.ac.ebi.intact.uniprot.service.UniprotRemoteService;
+import uk.ac.ebi.kraken.interfaces.uniprot.UniProtEntry;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * ProteinCodec Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class ProteinCodecTest {
+
+    public static final Log log = LogFactory.getLog( ProteinCodecTest.class );
+
+    /**
+     * Gives access to the conversion of UniProt entries.
+     */
+    private static class ProteinBuilder extends UniprotRemoteService {
+        private UniprotProtein build( UniProtEntry entry ) {
+            return buildUniprotProtein( entry, true );
+        }
+    }
+
+    private ProteinCodec codec = new ProteinCodec();
+
+    private UniprotProtein buildProtein() {
+        Organism human = new Organism( 9606, "Homo sapiens" );
+        human.setCommonName( "Human" );
+        human.getParents().add( "Mammalia" );
+
+        UniprotProtein protein = new UniprotProtein( "CDC42_HUMAN", "P60953", human, "Cell division control protein 42" );
+        protein.getSecondaryAcs().addAll( Arrays.asList( "P21181", "P25763" ) );
+        protein.getGenes().add( "CDC42" );
+        protein.getKeywords().addAll( Arrays.asList( "GTP-binding", "Lipoprotein" ) );
+        protein.getFunctions().add( "Plasma membrane-associated small GTPase" );
+        protein.setSequence( "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEYVPTVFDNYAVTVMIGGEPYTLGLFDTAGQEDYDRLRPLSYPQTDVFLVCFSVVSPSSFENVKEKWVPEITHHCPKTPFLLVGTQIDLRDDPSTIEKLAKNKQKPITPETAEKLARDLKAVKYVECSALTQKGLKNVFDEAILAALEPPEPKKSRRCVLL" );
+        protein.setSequenceLength( protein.getSequence().length() );
+        protein.setCrc64( "34B44F9225EC106B" );
+        protein.setReleaseVersion( "56" );
+        protein.setLastAnnotationUpdate( new Date( 1200000000000L ) );
+        protein.setLastSequenceUpdate( new Date( 1100000000000L ) );
+        protein.setSource( UniprotProteinType.SWISSPROT );
+
+        for ( int i = 0; i < 20; i++ ) {
+            protein.getCrossReferences().add( new UniprotXref( "GO:00" + ( 10000 + i ), "GO", "term " + i, "C" ) );
+        }
+        protein.getCrossReferences().add( new UniprotXref( "IPR003578", "InterPro" ) );
+
+        UniprotSpliceVariant variant = new UniprotSpliceVariant( "P60953-2", human, "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEYVPTVFDNYAVTVMIGGEPYTLGLFDTAGQEDYDRLRPLSYPQTDVFLVCFSVVSPSSFENVKEKWVPEITHHCPKTPFLLVGTQIDLRDDPSTIEKLAKNKQKPITPETAEKLARDLKAVKYVECSALTQRGLKTVFDEAIRAVL" );
+        variant.getSecondaryAcs().add( "P21181-1" );
+        variant.getSynomyms().add( "Brain" );
+        variant.setNote( "Brain specific" );
+        variant.setCanonical( true );
+        variant.setMasterProtein( protein );
+        variant.getCrossReferences().add( new UniprotXref( "ENST00000344548", "Ensembl", null, "C", "P60953-2" ) );
+        protein.getSpliceVariants().add( variant );
+
+        UniprotFeatureChain chain = new UniprotFeatureChain( "PRO_0000030424", human, "MQTIKCVVVGDGAVGKTCLLISYTTNKFPSEY" );
+        chain.setPrimaryAc( "P60953-PRO_0000030424" );
+        chain.setStart( 1 );
+        chain.setEnd( -1 );
+        chain.setDescription( "Cell division control protein 42 homolog" );
+        protein.getFeatureChains().add( chain );
+
+        return protein;
+    }
+
+    private void assertSameProtein( UniprotProtein expected, UniprotProtein actual ) {
+        assertEquals( expected.getId(), actual.getId() );
+        assertEquals( expected.getPrimaryAc(), actual.getPrimaryAc() );
+        assertSameOrganism( expected.getOrganism(), actual.getOrganism() );
+        assertEquals( expected.getDescription(), actual.getDescription() );
+        assertEquals( expected.getSecondaryAcs(), actual.getSecondaryAcs() );
+        assertEquals( new ArrayList<String>( expected.getGenes() ), new ArrayList<String>( actual.getGenes() ) );
+        assertEquals( new ArrayList<String>( expected.getOrfs() ), new ArrayList<String>( actual.getOrfs() ) );
+        assertEquals( new ArrayList<String>( expected.getSynomyms() ), new ArrayList<String>( actual.getSynomyms() ) );
+        assertEquals( new ArrayList<String>( expected.getLocuses() ), new ArrayList<String>( actual.getLocuses() ) );
+        assertEquals( new ArrayList<String>( expected.getDiseases() ), new ArrayList<String>( actual.getDiseases() ) );
+        assertEquals( new ArrayList<String>( expected.getKeywords() ), new ArrayList<String>( actual.getKeywords() ) );
+        assertEquals( new ArrayList<String>( expected.getFunctions() ), new ArrayList<String>( actual.getFunctions() ) );
+        assertEquals( new ArrayList<UniprotXref>( expected.getCrossReferences() ), new ArrayList<UniprotXref>( actual.getCrossReferences() ) );
+        assertEquals( expected.getCrc64(), actual.getCrc64() );
+        assertEquals( expected.getSequence(), actual.getSequence() );
+        assertEquals( expected.getSequenceLength(), actual.getSequenceLength() );
+        assertEquals( expected.getReleaseVersion(), actual.getReleaseVersion() );
+        assertEquals( expected.getLastAnnotationUpdate(), actual.getLastAnnotationUpdate() );
+        assertEquals( expected.getLastSequenceUpdate(), actual.getLastSequenceUpdate() );
+        assertEquals( expected.getSource(), actual.getSource() );
+
+        assertEquals( expected.getSpliceVariants().size(), actual.getSpliceVariants().size() );
+        Iterator<UniprotSpliceVariant> variants = actual.getSpliceVariants().iterator();
+        for ( UniprotSpliceVariant expectedVariant : expected.getSpliceVariants() ) {
+            UniprotSpliceVariant variant = variants.next();
+            assertSameTranscript( expectedVariant, variant, expected, actual );
+            assertEquals( expectedVariant.getSecondaryAcs(), variant.getSecondaryAcs() );
+            assertEquals( new ArrayList<String>( expectedVariant.getSynomyms() ), new ArrayList<String>( variant.getSynomyms() ) );
+            assertEquals( expectedVariant.getNote(), variant.getNote() );
+            assertEquals( expectedVariant.isCanonical(), variant.isCanonical() );
+        }
+
+        assertEquals( expected.getFeatureChains().size(), actual.getFeatureChains().size() );
+        Iterator<UniprotFeatureChain> chains = actual.getFeatureChains().iterator();
+        for ( UniprotFeatureChain expectedChain : expected.getFeatureChains() ) {
+            UniprotFeatureChain chain = chains.next();
+            assertSameTranscript( expectedChain, chain, expected, actual );
+            assertEquals( expectedChain.getDescription(), chain.getDescription() );
+        }
+    }
+
+    private void assertSameTranscript( UniprotProteinTranscript expected, UniprotProteinTranscript actual,
+                                       UniprotProtein expectedMaster, UniprotProtein actualMaster ) {
+        assertEquals( expected.getId(), actual.getId() );
+        assertEquals( expected.getPrimaryAc(), actual.getPrimaryAc() );
+        assertSameOrganism( expected.getOrganism(), actual.getOrganism() );
+        assertEquals( expected.getSequence(), actual.getSequence() );
+        assertEquals( expected.getStart(), actual.getStart() );
+        assertEquals( expected.getEnd(), actual.getEnd() );
+        assertEquals( new ArrayList<UniprotXref>( expected.getCrossReferences() ), new ArrayList<UniprotXref>( actual.getCrossReferences() ) );
+        if ( expected.getMasterProtein() == null ) {
+            assertNull( actual.getMasterProtein() );
+        } else if ( expected.getMasterProtein() == expectedMaster ) {
+            assertSame( actualMaster, actual.getMasterProtein() );
+        }
+    }
+
+    private void assertSameOrganism( Organism expected, Organism actual ) {
+        assertEquals( expected, actual );
+        assertEquals( expected.getName(), actual.getName() );
+        assertEquals( expected.getCommonName(), actual.getCommonName() );
+        assertEquals( expected.getParents(), actual.getParents() );
+    }
+
+    private UniprotProtein roundTrip( UniprotProtein protein ) throws Exception {
+        return codec.deserialize( codec.serialize( protein ) );
+    }
+
+    @Test
+    public void roundTrip_CDC42_CANFA() throws Exception {
+        UniprotProtein protein = new ProteinBuilder().build( MockUniProtEntries.build_P60952() );
+        assertSameProtein( protein, roundTrip( protein ) );
+    }
+
+    @Test
+    public void roundTrip_Q9VGX3() throws Exception {
+        UniprotProtein protein = new ProteinBuilder().build( MockUniProtEntries.build_Q9VGX3() );
+        assertSameProtein( protein, roundTrip( protein ) );
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        UniprotProtein protein = buildProtein();
+        UniprotProtein decoded = roundTrip( protein );
+
+        assertSameProtein( protein, decoded );
+        // the organism is shared by the protein and its transcripts
+        assertSame( decoded.getOrganism(), decoded.getSpliceVariants().iterator().next().getOrganism() );
+    }
+
+    @Test
+    public void roundTrip_unusualSequence() throws Exception {
+        UniprotProtein protein = new UniprotProtein( "ABC_HUMAN", "P12345", new Organism( 9606 ), null );
+        protein.setSequence( "mqtik cvv" );
+        assertEquals( "mqtik cvv", roundTrip( protein ).getSequence() );
+
+        protein.setSequence( "" );
+        assertEquals( "", roundTrip( protein ).getSequence() );
+
+        protein.setSequence( null );
+        assertNull( roundTrip( protein ).getSequence() );
+    }
+
+    @Test
+    public void roundTrip_collection() throws Exception {
+        UniprotProtein p1 = buildProtein();
+        UniprotProtein p2 = new UniprotProtein( "CDC42_CANFA", "P60952", p1.getOrganism(), "dog" );
+
+        List<UniprotProtein> decoded = codec.decode( codec.encode( Arrays.asList( p1, p2 ) ) );
+
+        assertEquals( 2, decoded.size() );
+        assertSameProtein( p1, decoded.get( 0 ) );
+        assertSameProtein( p2, decoded.get( 1 ) );
+    }
+
+    @Test
+    public void serialize_smallerThanJavaSerialization() throws Exception {
+        List<UniprotProtein> proteins = new ArrayList<UniprotProtein>();
+        proteins.add( buildProtein() );
+        proteins.add( new ProteinBuilder().build( MockUniProtEntries.build_P60952() ) );
+        proteins.add( new ProteinBuilder().build( MockUniProtEntries.build_Q9VGX3() ) );
+
+        JavaProteinSerializer java = new JavaProteinSerializer();
+        int rounds = 1000;
+
+        for ( UniprotProtein protein : proteins ) {
+            int codecSize = codec.serialize( protein ).length;
+            int javaSize = java.serialize( protein ).length;
+
+            long start = System.nanoTime();
+            for ( int i = 0; i < rounds; i++ ) {
+                codec.deserialize( codec.serialize( protein ) );
+            }
+            long codecTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for ( int i = 0; i < rounds; i++ ) {
+                java.deserialize( java.serialize( protein ) );
+            }
+            long javaTime = System.nanoTime() - start;
+
+            log.info( protein.getPrimaryAc() + ": codec " + codecSize + " bytes, " + ( codecTime / rounds / 1000 ) + " us/round trip"
+                      + " - java serialization " + javaSize + " bytes, " + ( javaTime / rounds / 1000 ) + " us/round trip" );
+
+            assertTrue( codecSize < javaSize );
+        }
+    }
+}
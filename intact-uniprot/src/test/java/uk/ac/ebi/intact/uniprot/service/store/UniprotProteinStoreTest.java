@@ -0,0 +1,181 @@
+package uk.ac.ebi.intact.uniprot.service.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.intact.uniprot.model.Organism;
+import uk.ac.ebi.intact.uniprot.model.UniprotProtein;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * UniprotProteinStore Tester.
+ *
+ * @version $Id$
+ * @since 2.2.4
+ */
+public class UniprotProteinStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private UniprotProtein buildProtein( String ac, String id, String release ) {
+        UniprotProtein protein = new UniprotProtein( id, ac, new Organism( 9606, "human" ), "description of " + ac );
+        protein.getSecondaryAcs().add( "Q" + ac.substring( 1 ) );
+        protein.setSequence( "MAAAPKLLVVGG" );
+        protein.setReleaseVersion( release );
+        protein.setLastAnnotationUpdate( new Date( 1000000L ) );
+        return protein;
+    }
+
+    @Test
+    public void put_lookup() throws Exception {
+        UniprotProteinStore store = new UniprotProteinStore( temporaryFolder.newFolder() );
+
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "56" ), true, Collections.singleton( "P12345-2" ) );
+        assertEquals( 1, store.size() );
+
+        for ( String identifier : new String[]{"P12345", "p12345", "ABC_HUMAN", "Q12345", "P12345-2"} ) {
+            Collection<UniprotProteinStore.StoredProtein> found = store.lookup( identifier );
+            assertEquals( identifier, 1, found.size() );
+
+            UniprotProteinStore.StoredProtein stored = found.iterator().next();
+            assertEquals( "P12345", stored.getPrimaryAc() );
+            assertEquals( "56", stored.getReleaseVersion() );
+            assertEquals( new Date( 1000000L ), stored.getLastAnnotationUpdate() );
+            assertTrue( stored.isWithSpliceVariants() );
+
+            UniprotProtein protein = store.load( stored );
+            assertEquals( "ABC_HUMAN", protein.getId() );
+            assertEquals( "MAAAPKLLVVGG", protein.getSequence() );
+        }
+
+        assertTrue( store.lookup( "P99999" ).isEmpty() );
+        store.close();
+    }
+
+    @Test
+    public void lookupComplete() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        UniprotProteinStore store = new UniprotProteinStore( directory );
+
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "56" ), true, null );
+        for ( String identifier : new String[]{"P12345", "ABC_HUMAN"} ) {
+            assertEquals( identifier, 1, store.lookupComplete( identifier ).size() );
+        }
+        assertEquals( 1, store.lookup( "Q12345" ).size() );
+        assertTrue( store.lookupComplete( "Q12345" ).isEmpty() );
+
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "56" ), true, Collections.singleton( "q12345" ) );
+        assertEquals( "P12345", store.lookupComplete( "Q12345" ).iterator().next().getPrimaryAc() );
+
+        // replacing the protein keeps the identifiers it was retrieved for
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "57" ), true, null );
+        store.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 1, store.lookupComplete( "Q12345" ).size() );
+        assertEquals( "57", store.lookupComplete( "Q12345" ).iterator().next().getReleaseVersion() );
+        store.close();
+    }
+
+    @Test
+    public void putAll() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        UniprotProteinStore store = new UniprotProteinStore( directory );
+
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "55" ), true, null );
+        store.putAll( Arrays.asList( buildProtein( "P12345", "ABC_HUMAN", "56" ),
+                                     buildProtein( "P67890", "DEF_HUMAN", "56" ) ), false );
+        assertEquals( 2, store.size() );
+        assertEquals( "56", store.get( "P12345" ).getReleaseVersion() );
+        assertFalse( store.get( "P12345" ).isWithSpliceVariants() );
+        assertEquals( "DEF_HUMAN", store.load( store.lookup( "Q67890" ).iterator().next() ).getId() );
+        store.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 2, store.size() );
+        assertEquals( "MAAAPKLLVVGG", store.load( store.get( "P67890" ) ).getSequence() );
+        store.close();
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        UniprotProteinStore store = new UniprotProteinStore( directory );
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "56" ), true, null );
+        store.put( buildProtein( "P67890", "DEF_HUMAN", "56" ), false, null );
+        store.put( buildProtein( "P12345", "ABC2_HUMAN", "57" ), true, null );
+        store.remove( "P67890" );
+        store.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 1, store.size() );
+        assertTrue( store.lookup( "ABC_HUMAN" ).isEmpty() );
+        assertTrue( store.lookup( "DEF_HUMAN" ).isEmpty() );
+
+        UniprotProteinStore.StoredProtein stored = store.get( "P12345" );
+        assertEquals( "57", stored.getReleaseVersion() );
+        assertEquals( "ABC2_HUMAN", store.load( stored ).getId() );
+        store.close();
+    }
+
+    @Test
+    public void reopen_incompleteRecord() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        UniprotProteinStore store = new UniprotProteinStore( directory );
+        store.put( buildProtein( "P12345", "ABC_HUMAN", "56" ), true, null );
+        store.put( buildProtein( "P67890", "DEF_HUMAN", "56" ), true, null );
+        store.close();
+
+        // simulates a crash in the middle of the last write
+        RandomAccessFile file = new RandomAccessFile( store.getFile(), "rw" );
+        file.setLength( file.length() - 10 );
+        file.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 1, store.size() );
+        assertNotNull( store.get( "P12345" ) );
+
+        store.put( buildProtein( "P67890", "DEF_HUMAN", "56" ), true, null );
+        store.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 2, store.size() );
+        assertEquals( "DEF_HUMAN", store.load( store.get( "P67890" ) ).getId() );
+        store.close();
+    }
+
+    @Test
+    public void compact() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        UniprotProteinStore store = new UniprotProteinStore( directory );
+        for ( int i = 0; i < 10; i++ ) {
+            store.put( buildProtein( "P12345", "ABC_HUMAN", String.valueOf( i ) ), true, null );
+        }
+        store.put( buildProtein( "P67890", "DEF_HUMAN", "9" ), true, null );
+        long before = store.getFile().length();
+
+        store.compact();
+        assertTrue( store.getFile().length() < before );
+        assertEquals( 2, store.size() );
+        assertEquals( "9", store.get( "P12345" ).getReleaseVersion() );
+        assertEquals( "DEF_HUMAN", store.load( store.lookup( "Q67890" ).iterator().next() ).getId() );
+        store.close();
+
+        store = new UniprotProteinStore( directory );
+        assertEquals( 2, store.size() );
+        assertEquals( "ABC_HUMAN", store.load( store.get( "P12345" ) ).getId() );
+        store.close();
+    }
+}